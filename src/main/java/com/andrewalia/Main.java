@@ -1,29 +1,100 @@
 package com.andrewalia;
 
 import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.lang3.ArrayUtils;
+import com.andrewalia.simulator.permutations.cluster.Coordinator;
+import com.andrewalia.simulator.permutations.util.AutoTuner;
+import com.andrewalia.simulator.permutations.util.BoardOrder;
+import com.andrewalia.simulator.permutations.util.PermutationsResult;
+import com.andrewalia.simulator.permutations.util.ProgressFormat;
+import com.andrewalia.simulator.permutations.util.WaitStrategy;
+import com.andrewalia.simulator.permutations.util.WorkUnit;
+import com.andrewalia.util.BatchEvaluator;
 import com.andrewalia.util.Card;
 import com.andrewalia.util.Deck;
-import com.andrewalia.util.FiveCardHand;
+import com.andrewalia.util.HandRank;
+import com.andrewalia.util.HandRankTable;
 import com.andrewalia.util.HandType;
+import com.andrewalia.util.NCardHand;
+import com.andrewalia.util.PreflopMatrix;
 
 public final class Main {
 
+    private static final int BATCH_SIZE = 4096;
+    private static final String DEFAULT_CHECKPOINT = "permutations.ckpt";
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 60;
+
     private Main() {}
 
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) throws InterruptedException, IOException {
         if (args.length == 0) {
             System.out.println("Usage:");
             System.out.println("\t-t <number of threads>  : Set the number of threads");
             System.out.println("\t-i <number of iterations>: Set the number of iterations");
             System.out.println("\t-p                       : Run permutations main");
+            System.out.println("\t-b                       : Compare hands by brute force instead of the lookup evaluator");
+            System.out.println("\t-g <file>                : Generate the hand rank table file");
+            System.out.println("\t-m <file>                : Generate the preflop matchup matrix file, on -t threads");
+            System.out.println("\t-s <deals per batch>     : Set the permutations batch size (default " + com.andrewalia.simulator.permutations.Main.DEFAULT_BATCH_SIZE + ")");
+            System.out.println("\t-w <spin|yield|park>     : Set how permutations threads wait (default yield)");
+            System.out.println("\t-o <order>               : Set the order producers walk boards in, lex, revolving or stratified (queue, default lex)");
+            System.out.println("\t--seed <n>               : Seed the stratified board order (default random)");
+            System.out.println("\t--producers <n>          : Use n of the -t threads as producers instead of one in 2.5 (queue)");
+            System.out.println("\t--auto-tune              : Measure and keep adjusting the threads, up to -t, and the producers and batch size (queue) as the run goes (not -m, --worker)");
+            System.out.println("\t-u <board|deal>          : Pass every hero and board, or every deal, to the comparing threads (queue, default board)");
+            System.out.println("\t-e <queue|forkjoin|board>: Set the permutations engine (default queue)");
+            System.out.println("\t-n                       : Evaluate every deal instead of suit-canonical deals (forkjoin, board)");
+            System.out.println("\t--checkpoint <file>      : Save permutations progress to a file (forkjoin, default " + DEFAULT_CHECKPOINT + ", or permutations-<k>-of-<n>.ckpt for a shard)");
+            System.out.println("\t--checkpoint-interval <s>: Set the seconds between checkpoints, 0 for only the last (default " + DEFAULT_CHECKPOINT_INTERVAL + ")");
+            System.out.println("\t--resume                 : Resume permutations from the checkpoint file (forkjoin)");
+            System.out.println("\t--overwrite-checkpoint   : Start permutations from scratch even if the checkpoint file exists (forkjoin)");
+            System.out.println("\t--shard <k>/<n>          : Run only shard k of n of the permutations and write its result file (forkjoin)");
+            System.out.println("\t--shard-file <file>      : Set the shard result file (default shard-<k>-of-<n>.dat)");
+            System.out.println("\t--merge <file> <shard>...: Merge shard result files covering a whole run into one result file");
+            System.out.println("\t--coordinator <port>     : Hand out permutations ranges to workers connecting on a port and add up their results");
+            System.out.println("\t--range-size <leaves>    : Set the leaves per range a coordinator hands out (default " + Coordinator.DEFAULT_RANGE_SIZE + ")");
+            System.out.println("\t--worker <host>:<port>   : Evaluate permutations ranges for a coordinator on -t threads");
+            System.out.println("\t--progress <text|json>   : Print permutations progress as text or as JSON lines (default text)");
+            System.out.println("\t--scaling <leaves>       : Measure forkjoin deals per second on 1 to -t threads over a number of leaves");
             return;
         }
 
         int[][] handCounts = { { 0 }, { 0 }, { 0 }, { 0 }, { 0 }, { 0 }, { 0 }, { 0 }, { 0 }, { 0 } };
         int availableProcessors = Runtime.getRuntime().availableProcessors();
         int iterations = 100000;
+        boolean permutations = false;
+        int batchSize = com.andrewalia.simulator.permutations.Main.DEFAULT_BATCH_SIZE;
+        WaitStrategy waitStrategy = WaitStrategy.YIELD;
+        BoardOrder boardOrder = BoardOrder.LEXICOGRAPHIC;
+        WorkUnit workUnit = WorkUnit.BOARD;
+        long seed = new Random().nextLong();
+        int producerCount = 0;
+        boolean autoTune = false;
+        ProgressFormat progressFormat = ProgressFormat.TEXT;
+        String engine = "queue";
+        boolean canonical = true;
+        Path checkpoint = null;
+        int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        boolean resume = false;
+        boolean overwriteCheckpoint = false;
+        Path preflopMatrix = null;
+        int scalingLeaves = 0;
+        int shardIndex = 1;
+        int shardCount = 1;
+        Path shardFile = null;
+        int coordinatorPort = -1;
+        int rangeSize = Coordinator.DEFAULT_RANGE_SIZE;
+        String worker = null;
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("-t")) {
@@ -31,57 +102,277 @@ public final class Main {
             } else if (args[i].equals("-i")) {
                 iterations = Integer.parseInt(args[i + 1]);
             } else if (args[i].equals("-p")) {
-                com.andrewalia.simulator.permutations.Main.main(availableProcessors, iterations);
+                permutations = true;
+            } else if (args[i].equals("-b")) {
+                NCardHand.setLookupEvaluatorEnabled(false);
+            } else if (args[i].equals("-s")) {
+                batchSize = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-w")) {
+                waitStrategy = WaitStrategy.fromName(args[i + 1]);
+            } else if (args[i].equals("-u")) {
+                workUnit = WorkUnit.fromName(args[i + 1]);
+            } else if (args[i].equals("-o")) {
+                boardOrder = BoardOrder.fromName(args[i + 1]);
+            } else if (args[i].equals("--producers")) {
+                producerCount = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--auto-tune")) {
+                autoTune = true;
+            } else if (args[i].equals("--seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            } else if (args[i].equals("--progress")) {
+                progressFormat = ProgressFormat.fromName(args[i + 1]);
+            } else if (args[i].equals("-n")) {
+                canonical = false;
+            } else if (args[i].equals("--checkpoint")) {
+                checkpoint = Paths.get(args[i + 1]);
+            } else if (args[i].equals("--checkpoint-interval")) {
+                checkpointInterval = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--resume")) {
+                resume = true;
+            } else if (args[i].equals("--overwrite-checkpoint")) {
+                overwriteCheckpoint = true;
+            } else if (args[i].equals("-e")) {
+                engine = args[i + 1];
+            } else if (args[i].equals("--shard")) {
+                final String[] shard = args[i + 1].split("/");
+                if (shard.length != 2) {
+                    throw new IllegalArgumentException("Invalid shard " + args[i + 1] + ", expected <k>/<n>");
+                }
+                shardIndex = Integer.parseInt(shard[0]);
+                shardCount = Integer.parseInt(shard[1]);
+            } else if (args[i].equals("--shard-file")) {
+                shardFile = Paths.get(args[i + 1]);
+            } else if (args[i].equals("--merge")) {
+                final List<Path> shardFiles = new ArrayList<>();
+                for (int j = i + 2; j < args.length; j++) {
+                    shardFiles.add(Paths.get(args[j]));
+                }
+                com.andrewalia.simulator.permutations.Main.merge(Paths.get(args[i + 1]), shardFiles);
+                return;
+            } else if (args[i].equals("--coordinator")) {
+                coordinatorPort = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--range-size")) {
+                rangeSize = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--worker")) {
+                worker = args[i + 1];
+            } else if (args[i].equals("--scaling")) {
+                scalingLeaves = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("-m")) {
+                preflopMatrix = Paths.get(args[i + 1]);
+            } else if (args[i].equals("-g")) {
+                generateHandRankTable(Paths.get(args[i + 1]));
                 return;
             }
         }
 
+        if (preflopMatrix != null) {
+            generatePreflopMatrix(preflopMatrix, availableProcessors);
+            return;
+        }
+
+        if (coordinatorPort >= 0) {
+            final PermutationsResult result = com.andrewalia.simulator.permutations.Main.coordinate(coordinatorPort, canonical, rangeSize);
+            System.exit(result.getExitCode());
+            return;
+        }
+
+        if (worker != null) {
+            final int colon = worker.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Invalid coordinator " + worker + ", expected <host>:<port>");
+            }
+            com.andrewalia.simulator.permutations.Main.work(worker.substring(0, colon), Integer.parseInt(worker.substring(colon + 1)), availableProcessors);
+            return;
+        }
+
+        if (scalingLeaves > 0) {
+            com.andrewalia.simulator.permutations.Main.scaling(availableProcessors, scalingLeaves);
+            return;
+        }
+
+        if (permutations) {
+            final PermutationsResult result;
+            switch (engine) {
+                case "queue":
+                    if (autoTune) {
+                        result = com.andrewalia.simulator.permutations.Main.autoTune(availableProcessors, waitStrategy, boardOrder, workUnit, seed, progressFormat);
+                    } else if (producerCount > 0) {
+                        result = com.andrewalia.simulator.permutations.Main.main(new AutoTuner.Setup(producerCount, Math.max(1, availableProcessors - producerCount), batchSize), waitStrategy, boardOrder, workUnit, seed, progressFormat);
+                    } else {
+                        result = com.andrewalia.simulator.permutations.Main.main(availableProcessors, iterations, batchSize, waitStrategy, boardOrder, workUnit, seed, progressFormat);
+                    }
+                    break;
+                case "forkjoin":
+                    if (shardCount > 1 && shardFile == null) {
+                        shardFile = Paths.get("shard-" + shardIndex + "-of-" + shardCount + ".dat");
+                    }
+                    if (checkpoint == null) {
+                        checkpoint = Paths.get(shardCount > 1 ? "permutations-" + shardIndex + "-of-" + shardCount + ".ckpt" : DEFAULT_CHECKPOINT);
+                    }
+                    result = com.andrewalia.simulator.permutations.Main.forkJoin(availableProcessors, autoTune, canonical, shardIndex, shardCount, shardFile, checkpoint, checkpointInterval, resume, overwriteCheckpoint, progressFormat);
+                    break;
+                case "board":
+                    result = com.andrewalia.simulator.permutations.Main.boardMajor(availableProcessors, autoTune, canonical, progressFormat);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown engine " + engine + ", expected queue, forkjoin or board");
+            }
+            System.exit(result.getExitCode());
+            return;
+        }
+
+        if (autoTune) {
+            autoTunedFiveCardHistogram(handCounts, availableProcessors, iterations);
+            return;
+        }
         final int perThreadIterations = iterations / availableProcessors;
         randomFiveCardHistogram(handCounts, availableProcessors, perThreadIterations);
     }
 
-    private static void randomFiveCardHistogram(int[][] handCounts, int availableProcessors, final int perThreadIterations) {
-        Runnable runnable = () -> {
-            int[] personalHandCounts = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
-            Random random = new XoRoShiRo128PlusRandom();
-            for (int i = 0; i < perThreadIterations; i++) {
-                //make an array of 5 card
-                Card[] cards = new Card[5];
-                //for each index of cards, set the value to a random card from FULL_DECK, making sure that the card is not already in the array
-                for (int j = 0; j < cards.length; j++) {
-                    Card card;
-                    do card = Deck.FULL_DECK.get((int) (random.nextDouble() * Deck.FULL_DECK.size())); while (
-                        ArrayUtils.contains(cards, card)
-                    );
-                    cards[j] = card;
-                }
+    private static void generateHandRankTable(Path path) throws IOException {
+        final long begin = System.currentTimeMillis();
+        final HandRankTable table = HandRankTable.build();
+        final long built = System.currentTimeMillis();
+        table.write(path);
+        final long end = System.currentTimeMillis();
+        System.out.println("Generated " + table.getStateCount() + " states in " + (built - begin) + "ms");
+        System.out.println("Wrote " + Files.size(path) + " bytes to " + path + " in " + (end - built) + "ms");
+    }
 
-                FiveCardHand hand = new FiveCardHand(cards);
-                if (HandType.ROYAL_FLUSH.test(hand)) personalHandCounts[0]++; else if (
-                    HandType.STRAIGHT_FLUSH.test(hand)
-                ) personalHandCounts[1]++; else if (HandType.FOUR_OF_A_KIND.test(hand)) personalHandCounts[2]++; else if (
-                    HandType.FULL_HOUSE.test(hand)
-                ) personalHandCounts[3]++; else if (HandType.FLUSH.test(hand)) personalHandCounts[4]++; else if (
-                    HandType.STRAIGHT.test(hand)
-                ) personalHandCounts[5]++; else if (HandType.THREE_OF_A_KIND.test(hand)) personalHandCounts[6]++; else if (
-                    HandType.TWO_PAIR.test(hand)
-                ) personalHandCounts[7]++; else if (
-                    HandType.PAIR.test(hand)
-                ) personalHandCounts[8]++; else personalHandCounts[9]++;
+    private static void generatePreflopMatrix(Path path, int threadCount) throws IOException {
+        final long begin = System.currentTimeMillis();
+        final AtomicInteger progress = new AtomicInteger();
+        final Timer timer = new Timer();
+        //use a timer to print the progress every 10 seconds
+        timer.schedule(new TimerTask() { @Override public void run() {
+                System.out.println("Matchups: " + progress.get() + "/" + PreflopMatrix.MATCHUP_COUNT);
+        }}, 10000, 10000);
+        final PreflopMatrix matrix;
+        try {
+            matrix = PreflopMatrix.build(threadCount, progress);
+        } finally {
+            timer.cancel();
+        }
+        final long built = System.currentTimeMillis();
+        matrix.write(path);
+        final long end = System.currentTimeMillis();
+        System.out.println("Generated " + PreflopMatrix.MATCHUP_COUNT + " matchups on " + threadCount + " threads in "
+            + (built - begin) + "ms");
+        System.out.println("Wrote " + Files.size(path) + " bytes to " + path + " in " + (end - built) + "ms");
+    }
+
+    /**
+     * Deals random five-card hands in batches and scores each batch with one {@link BatchEvaluator} call.
+     *
+     * @param handCounts Counts to add to, from royal flush down to high card
+     * @param random Source of the random cards
+     * @param iterations Number of hands to deal
+     */
+    private static void randomFiveCardBatches(int[] handCounts, Random random, int iterations) {
+        final long[] cardMasks = new long[BATCH_SIZE];
+        final int[] strengths = new int[BATCH_SIZE];
+        for (int dealt = 0; dealt < iterations; dealt += BATCH_SIZE) {
+            final int count = Math.min(BATCH_SIZE, iterations - dealt);
+            for (int i = 0; i < count; i++) {
+                long cardMask = 0;
+                while (Long.bitCount(cardMask) < 5) {
+                    cardMask |= 1L << (int) (random.nextDouble() * Deck.FULL_DECK_ARRAY.length);
+                }
+                cardMasks[i] = cardMask;
             }
 
-            for (int i = 0; i < handCounts.length; i++) synchronized (handCounts[i]) {
-                handCounts[i][0] += personalHandCounts[i];
+            BatchEvaluator.evaluate(cardMasks, strengths, count);
+
+            for (int i = 0; i < count; i++) {
+                handCounts[HandType.ROYAL_FLUSH.ordinal() - HandRank.getHandType(strengths[i]).ordinal()]++;
             }
-        };
+        }
+    }
 
+    private static void randomFiveCardHistogram(int[][] handCounts, int availableProcessors, final int perThreadIterations) {
         long begin = System.currentTimeMillis();
+        dealFiveCardHands(handCounts, availableProcessors, perThreadIterations * availableProcessors);
+        long end = System.currentTimeMillis();
+        printHistogram(handCounts, end - begin, String.valueOf(availableProcessors));
+    }
 
-        Thread[] threads = new Thread[availableProcessors];
+    /**
+     * Deals random five-card hands like {@link #randomFiveCardHistogram}, but in consecutive segments on as many
+     * threads as an {@link AutoTuner} finds fastest, and prints its calibration along with the histogram.
+     *
+     * @param handCounts Counts to add to, from royal flush down to high card
+     * @param maxThreads Most threads to try
+     * @param iterations Number of hands to deal
+     */
+    private static void autoTunedFiveCardHistogram(int[][] handCounts, int maxThreads, int iterations) {
+        final AutoTuner tuner = AutoTuner.forThreads(maxThreads);
+        long begin = System.currentTimeMillis();
+        int dealt = 0;
+        while (dealt < iterations) {
+            final AutoTuner.Phase phase = tuner.getPhase();
+            final AutoTuner.Setup setup = tuner.next();
+            final int hands = (int) Math.min(iterations - dealt, tuner.getSegmentUnits());
+            final long segmentBegin = System.currentTimeMillis();
+            dealFiveCardHands(handCounts, setup.getThreadCount(), hands);
+            final AutoTuner.Measurement measurement = tuner.record(setup, hands, hands,
+                System.currentTimeMillis() - segmentBegin);
+            dealt += hands;
+            final String description = tuner.describe(phase, measurement);
+            if (!description.isEmpty()) {
+                System.out.println(description);
+            }
+        }
+        long end = System.currentTimeMillis();
+        printHistogram(handCounts, end - begin, "auto-tuned up to " + maxThreads);
 
-        for (int i = 0; i < threads.length; i++) {
-            threads[i] = new Thread(runnable);
-            threads[i].start();
+        System.out.println(tuner.describeCurve());
+        if (tuner.getPhase() == AutoTuner.Phase.STEADY) {
+            System.out.println("Chosen setup: " + tuner.getBest() + ", run it again with -t " + tuner.getBest().getThreadCount());
+        } else {
+            System.out.println("Calibration was not done after " + iterations + " hands, raise -i to finish it");
+        }
+    }
+
+    /**
+     * Deals random five-card hands on a number of threads, splitting the hands evenly between them, and adds up what
+     * they got.
+     *
+     * @param handCounts Counts to add to, from royal flush down to high card
+     * @param threadCount Number of threads
+     * @param iterations Number of hands to deal
+     */
+    private static void dealFiveCardHands(int[][] handCounts, int threadCount, int iterations) {
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threads.length; t++) {
+            final int threadIterations = (int) ((long) iterations * (t + 1) / threadCount - (long) iterations * t / threadCount);
+            threads[t] = new Thread(() -> {
+                int[] personalHandCounts = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+                Random random = new XoRoShiRo128PlusRandom();
+                if (NCardHand.isLookupEvaluatorEnabled()) {
+                    randomFiveCardBatches(personalHandCounts, random, threadIterations);
+                } else {
+                    for (int i = 0; i < threadIterations; i++) {
+                        //make an array of 5 card
+                        Card[] cards = new Card[5];
+                        //for each index of cards, set the value to a random card from FULL_DECK, making sure that the card is not already in the array
+                        for (int j = 0; j < cards.length; j++) {
+                            Card card;
+                            do card = Deck.FULL_DECK.get((int) (random.nextDouble() * Deck.FULL_DECK.size())); while (
+                                ArrayUtils.contains(cards, card)
+                            );
+                            cards[j] = card;
+                        }
+
+                        personalHandCounts[HandType.ROYAL_FLUSH.ordinal() - HandType.getBestHandType(cards).ordinal()]++;
+                    }
+                }
+
+                for (int i = 0; i < handCounts.length; i++) synchronized (handCounts[i]) {
+                    handCounts[i][0] += personalHandCounts[i];
+                }
+            });
+            threads[t].start();
         }
 
         for (int i = 0; i < threads.length; i++) {
@@ -91,11 +382,12 @@ public final class Main {
                 e.printStackTrace();
             }
         }
+    }
 
-        long end = System.currentTimeMillis();
+    private static void printHistogram(int[][] handCounts, long millis, String threads) {
         System.out.println("----------------------------------------------------");
-        System.out.println("\tTime: " + (end - begin) + "ms");
-        System.out.println("\tThreads: " + availableProcessors + "\n");
+        System.out.println("\tTime: " + millis + "ms");
+        System.out.println("\tThreads: " + threads + "\n");
 
         System.out.println("\tRoyal Flushes: " + handCounts[0][0]);
         System.out.println("\tStraight Flushes: " + handCounts[1][0]);
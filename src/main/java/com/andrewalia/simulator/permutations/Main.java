@@ -1,92 +1,873 @@
 package com.andrewalia.simulator.permutations;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntToLongFunction;
 
 //import org.apache.commons.math3.util.Combinations;
 
+import com.andrewalia.simulator.permutations.cluster.Coordinator;
+import com.andrewalia.simulator.permutations.cluster.Worker;
+import com.andrewalia.simulator.permutations.thread.BoardMajorTask;
 import com.andrewalia.simulator.permutations.thread.ComparingThread;
+import com.andrewalia.simulator.permutations.thread.DealRangeTask;
 import com.andrewalia.simulator.permutations.thread.ProducerThread;
+import com.andrewalia.simulator.permutations.util.AutoTuner;
+import com.andrewalia.simulator.permutations.util.BoardOrder;
+import com.andrewalia.simulator.permutations.util.BoardSampleMoments;
+import com.andrewalia.simulator.permutations.util.Checkpoint;
+import com.andrewalia.simulator.permutations.util.DealRingBuffer;
+import com.andrewalia.simulator.permutations.util.PermutationsResult;
+import com.andrewalia.simulator.permutations.util.ProgressFormat;
+import com.andrewalia.simulator.permutations.util.ProgressSnapshot;
+import com.andrewalia.simulator.permutations.util.ShardResult;
 import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+import com.andrewalia.simulator.permutations.util.StripedCounter;
+import com.andrewalia.simulator.permutations.util.WaitStrategy;
+import com.andrewalia.simulator.permutations.util.WorkUnit;
 
 
 
 
 public class Main {
     
-    private static final double PRODUCER_COMPARING_RATIO = 2.5;
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final int BATCHES_PER_THREAD = 4;
 
-    public static void main(int threadCount, int iterations) throws InterruptedException {
-        final double startTime = System.currentTimeMillis();
-        final Queue<int[]> queue = new ArrayDeque<>();
-        final AtomicLong permutations = new AtomicLong(0);
-        final ShowdownResultsMap globalShowdownResultsMap = new ShowdownResultsMap();
+    public static PermutationsResult main(int threadCount, int iterations) {
+        return main(threadCount, iterations, DEFAULT_BATCH_SIZE, WaitStrategy.YIELD, ProgressFormat.TEXT);
+    }
 
-        final int producingThreadCount = (int) (threadCount / PRODUCER_COMPARING_RATIO);
-        final int comparingThreadCount = threadCount - producingThreadCount;
+    /**
+     * Runs the permutations simulation.
+     *
+     * @param threadCount Number of producer and comparing threads together, at least one of each is started
+     * @param iterations Unused, the simulation runs through every deal
+     * @param batchSize Number of deals passed from producers to comparing threads at once
+     * @param waitStrategy How threads wait when the ring buffer is full or empty
+     * @param progressFormat How to print the progress every 10 seconds
+     * @return The result of the run, which failed if any thread did
+     */
+    public static PermutationsResult main(int threadCount, int iterations, int batchSize, WaitStrategy waitStrategy,
+            ProgressFormat progressFormat) {
+        return main(threadCount, iterations, batchSize, waitStrategy, BoardOrder.LEXICOGRAPHIC, WorkUnit.BOARD,
+            progressFormat);
+    }
 
-        ProducerThread.setTotalThreadCount(producingThreadCount);
+    /**
+     * Runs the permutations simulation.
+     *
+     * @param threadCount Number of producer and comparing threads together, at least one of each is started
+     * @param iterations Unused, the simulation runs through every deal
+     * @param batchSize Number of deals passed from producers to comparing threads at once
+     * @param waitStrategy How threads wait when the ring buffer is full or empty
+     * @param boardOrder Order the producers walk the boards of each hero in
+     * @param workUnit Whether producers pass every deal, or every hero and board for the comparing threads to deal
+     *     the villains of, scoring the hero once per board
+     * @param progressFormat How to print the progress every 10 seconds
+     * @return The result of the run, which failed if any thread did
+     */
+    public static PermutationsResult main(int threadCount, int iterations, int batchSize, WaitStrategy waitStrategy,
+            BoardOrder boardOrder, WorkUnit workUnit, ProgressFormat progressFormat) {
+        return main(threadCount, iterations, batchSize, waitStrategy, boardOrder, workUnit, new Random().nextLong(),
+            progressFormat);
+    }
 
-        final Thread[] producerThreads = new Thread[producingThreadCount];
-        final Thread[] comparingThreads = new Thread[comparingThreadCount];
+    /**
+     * Runs the permutations simulation.
+     * <p>
+     * In {@link BoardOrder#STRATIFIED} order with board work units, the progress also gives the margin of error of
+     * each top hand's win percentage, as the results so far are an unbiased sample of the final ones.
+     * </p>
+     *
+     * @param threadCount Number of producer and comparing threads together, at least one of each is started
+     * @param iterations Unused, the simulation runs through every deal
+     * @param batchSize Number of deals passed from producers to comparing threads at once
+     * @param waitStrategy How threads wait when the ring buffer is full or empty
+     * @param boardOrder Order the producers walk the boards of each hero in
+     * @param workUnit Whether producers pass every deal, or every hero and board for the comparing threads to deal
+     *     the villains of, scoring the hero once per board
+     * @param seed Seed of the board permutation in stratified order
+     * @param progressFormat How to print the progress every 10 seconds
+     * @return The result of the run, which failed if any thread did
+     */
+    public static PermutationsResult main(int threadCount, int iterations, int batchSize, WaitStrategy waitStrategy,
+            BoardOrder boardOrder, WorkUnit workUnit, long seed, ProgressFormat progressFormat) {
+        return main(AutoTuner.Setup.split(threadCount, batchSize), waitStrategy, boardOrder, workUnit, seed,
+            progressFormat);
+    }
 
-        
-        System.out.println("Starting " + producingThreadCount + " producer threads and " + comparingThreadCount + " comparing threads.");
+    /**
+     * Runs the permutations simulation with a given number of producer and comparing threads.
+     *
+     * @param setup Producer threads, comparing threads and batch size, e.g. as chosen by {@link #autoTune}
+     * @param waitStrategy How threads wait when the ring buffer is full or empty
+     * @param boardOrder Order the producers walk the boards of each hero in
+     * @param workUnit Whether producers pass every deal, or every hero and board for the comparing threads to deal
+     *     the villains of, scoring the hero once per board
+     * @param seed Seed of the board permutation in stratified order
+     * @param progressFormat How to print the progress every 10 seconds
+     * @return The result of the run, which failed if any thread did
+     */
+    public static PermutationsResult main(AutoTuner.Setup setup, WaitStrategy waitStrategy, BoardOrder boardOrder,
+            WorkUnit workUnit, long seed, ProgressFormat progressFormat) {
+        final long startTime = System.currentTimeMillis();
+        final int batchSize = setup.getBatchSize();
+        final DealRingBuffer ringBuffer = new DealRingBuffer(BATCHES_PER_THREAD * setup.getThreadCount(), batchSize,
+            waitStrategy);
+        final int producingThreadCount = setup.getProducers();
+        final int comparingThreadCount = setup.getComparers();
+        final StripedCounter permutations = new StripedCounter(comparingThreadCount);
+        final ShowdownResultsMap[] showdownResultsMaps = new ShowdownResultsMap[comparingThreadCount];
+        final BoardSampleMoments[] boardSampleMoments = boardOrder == BoardOrder.STRATIFIED && workUnit == WorkUnit.BOARD
+            ? new BoardSampleMoments[comparingThreadCount]
+            : null;
 
+        final Runnable[] producers = new Runnable[producingThreadCount];
+        final ComparingThread[] comparers = new ComparingThread[comparingThreadCount];
         for (int i = 0; i < producingThreadCount; i++) {
-            producerThreads[i] = new Thread(new ProducerThread(queue));
-            //set name to ProducerThread-1, ProducerThread-2, etc
-            producerThreads[i].setName(ProducerThread.class.getSimpleName() + "-" + (i + 1));
+            producers[i] = new ProducerThread(ringBuffer, i, producingThreadCount, boardOrder, workUnit, seed);
         }
-
         for (int i = 0; i < comparingThreadCount; i++) {
-            comparingThreads[i] = new Thread(new ComparingThread(queue, permutations, globalShowdownResultsMap));
-            //set name to ComparingThread-1, ComparingThread-2, etc
-            comparingThreads[i].setName(ComparingThread.class.getSimpleName() + "-" + (i + 1));
+            showdownResultsMaps[i] = new ShowdownResultsMap();
+            if (boardSampleMoments != null) {
+                boardSampleMoments[i] = new BoardSampleMoments();
+            }
+            comparers[i] = new ComparingThread(ringBuffer, permutations, i, showdownResultsMaps[i], workUnit,
+                boardSampleMoments == null ? null : boardSampleMoments[i]);
         }
 
+        System.out.println("Starting " + producingThreadCount + " producer threads and " + comparingThreadCount + " comparing threads.");
+        System.out.println("Ring buffer of " + ringBuffer.getCapacity() + " batches of " + batchSize + " "
+            + (workUnit == WorkUnit.BOARD ? "boards" : "deals") + ", "
+            + waitStrategy + " wait strategy, " + boardOrder + " board order"
+            + (boardOrder == BoardOrder.STRATIFIED ? " with seed " + seed : "") + ".");
 
+        Timer timer = new Timer();
+        //use a timer to print the progress every 10 seconds
+        timer.schedule(new TimerTask() { @Override public void run() {
+                System.out.println(ProgressSnapshot.take(System.currentTimeMillis() - startTime, 0, permutations.sum(),
+                    DealRangeTask.DEAL_COUNT, ShowdownResultsMap.reduce(showdownResultsMaps),
+                    boardSampleMoments == null ? null : BoardSampleMoments.reduce(boardSampleMoments))
+                    .format(progressFormat));
+                if (progressFormat == ProgressFormat.TEXT) {
+                    System.out.println("Ring buffer: " + ringBuffer.size() + "/" + ringBuffer.getCapacity() + " batches");
+                }
+        }}, 10000, 10000);
 
+        final PermutationsResult result;
+        try {
+            result = run(ringBuffer, producers, comparers, permutations, showdownResultsMaps);
+        } finally {
+            timer.cancel();
+        }
+        printResult(result);
+        printEvaluations(comparers, result, workUnit);
+        return result;
+    }
 
-        for (Thread thread : comparingThreads) {
-            thread.start();
+    /**
+     * Prints how many hands the comparing threads scored per deal, against the two per deal of scoring both hands of
+     * every deal.
+     */
+    private static void printEvaluations(ComparingThread[] comparers, PermutationsResult result, WorkUnit workUnit) {
+        long evaluations = 0;
+        for (ComparingThread comparer : comparers) {
+            evaluations += comparer.getEvaluations();
+        }
+        if (evaluations == 0) {
+            return;
+        }
+        final double perDeal = (double) evaluations / result.getDeals();
+        System.out.println("Work unit: " + workUnit + ", " + evaluations + " hand evaluations, "
+            + String.format("%.4f", perDeal) + " per deal, " + String.format("%.3f", 2 / perDeal)
+            + "x fewer than scoring both hands of every deal");
+        if (result.getElapsedMillis() > 0) {
+            System.out.println("Throughput: " + String.format("%.4g", result.getDeals() * 1000.0 / result.getElapsedMillis())
+                + " deals/s");
         }
+    }
 
-        for (Thread thread : producerThreads) {
-            thread.start();
+    /**
+     * Runs the permutations simulation with the setup an {@link AutoTuner} finds fastest on this machine.
+     * <p>
+     * The (hero, board) units are run in consecutive segments, each with its own producers, comparing threads and ring
+     * buffer, set up as the tuner asks. The first segments calibrate the setup and the rest run the best one, which is
+     * calibrated again if the throughput changes. Every segment counts towards the run, so the totals are those of any
+     * other run. Each measurement is printed as it is made, and the whole calibration curve and the chosen setup at
+     * the end, with the flags that run it again.
+     * </p>
+     *
+     * @param maxThreads Most producer and comparing threads together to try
+     * @param waitStrategy How threads wait when the ring buffer is full or empty
+     * @param boardOrder Order of the units
+     * @param workUnit Whether producers pass every deal, or every hero and board
+     * @param seed Seed of the board permutation in stratified order
+     * @param progressFormat How to print the progress every 10 seconds
+     * @return The result of the run, which failed if any thread did
+     */
+    public static PermutationsResult autoTune(int maxThreads, WaitStrategy waitStrategy, BoardOrder boardOrder,
+            WorkUnit workUnit, long seed, ProgressFormat progressFormat) {
+        final long startTime = System.currentTimeMillis();
+        final AutoTuner tuner = new AutoTuner(maxThreads, DEFAULT_BATCH_SIZE);
+        // no setup has more comparing threads than the most threads tried
+        final int maxComparers = Math.max(2, maxThreads);
+        final StripedCounter permutations = new StripedCounter(maxComparers);
+        final ShowdownResultsMap[] showdownResultsMaps = new ShowdownResultsMap[maxComparers];
+        final BoardSampleMoments[] boardSampleMoments = boardOrder == BoardOrder.STRATIFIED && workUnit == WorkUnit.BOARD
+            ? new BoardSampleMoments[maxComparers]
+            : null;
+        for (int i = 0; i < maxComparers; i++) {
+            showdownResultsMaps[i] = new ShowdownResultsMap();
+            if (boardSampleMoments != null) {
+                boardSampleMoments[i] = new BoardSampleMoments();
+            }
         }
 
+        System.out.println("Auto-tuning up to " + maxComparers + " threads, " + waitStrategy + " wait strategy, "
+            + boardOrder + " board order" + (boardOrder == BoardOrder.STRATIFIED ? " with seed " + seed : "") + ".");
+
+        Timer timer = new Timer();
+        timer.schedule(new TimerTask() { @Override public void run() {
+                System.out.println(ProgressSnapshot.take(System.currentTimeMillis() - startTime, 0, permutations.sum(),
+                    DealRangeTask.DEAL_COUNT, ShowdownResultsMap.reduce(showdownResultsMaps),
+                    boardSampleMoments == null ? null : BoardSampleMoments.reduce(boardSampleMoments))
+                    .format(progressFormat));
+        }}, 10000, 10000);
+
+        Throwable failure = null;
+        try {
+            long unit = 0;
+            while (unit < ProducerThread.UNIT_COUNT) {
+                final AutoTuner.Phase phase = tuner.getPhase();
+                final AutoTuner.Setup setup = tuner.next();
+                final long end = Math.min(ProducerThread.UNIT_COUNT, unit + tuner.getSegmentUnits());
+                final DealRingBuffer ringBuffer = new DealRingBuffer(BATCHES_PER_THREAD * setup.getThreadCount(),
+                    setup.getBatchSize(), waitStrategy);
+                final Runnable[] producers = new Runnable[setup.getProducers()];
+                for (int i = 0; i < producers.length; i++) {
+                    producers[i] = ProducerThread.ofRange(ringBuffer, unit + (end - unit) * i / producers.length,
+                        unit + (end - unit) * (i + 1) / producers.length, boardOrder, workUnit, seed);
+                }
+                final Runnable[] comparers = new Runnable[setup.getComparers()];
+                for (int i = 0; i < comparers.length; i++) {
+                    comparers[i] = new ComparingThread(ringBuffer, permutations, i, showdownResultsMaps[i], workUnit,
+                        boardSampleMoments == null ? null : boardSampleMoments[i]);
+                }
 
+                final long deals = permutations.sum();
+                final PermutationsResult segment = run(ringBuffer, producers, comparers, permutations);
+                if (!segment.isSuccessful()) {
+                    failure = segment.getFailure();
+                    break;
+                }
+                final AutoTuner.Measurement measurement = tuner.record(setup, end - unit,
+                    permutations.sum() - deals, segment.getElapsedMillis());
+                unit = end;
+                printTuning(tuner.describe(phase, measurement));
+            }
+        } finally {
+            timer.cancel();
+        }
+
+        final PermutationsResult result = new PermutationsResult(permutations.sum(),
+            ShowdownResultsMap.reduce(showdownResultsMaps), System.currentTimeMillis() - startTime, failure);
+        printResult(result);
+        System.out.println(tuner.describeCurve());
+        final AutoTuner.Setup best = tuner.getBest();
+        System.out.println("Chosen setup: " + best + ", run it again with -p --producers " + best.getProducers()
+            + " -t " + best.getThreadCount() + " -s " + best.getBatchSize());
+        return result;
+    }
 
+    /**
+     * Runs producers and comparing threads over a ring buffer until every deal is compared or one of them fails.
+     * <p>
+     * Once every producer is done the ring buffer is closed, and once the comparing threads have drained it their maps
+     * are reduced to the result. If any thread throws, or the calling thread is interrupted, the ring buffer is
+     * aborted so every other thread stops too, and the result holds the first failure. An interrupted call still waits
+     * for every thread to stop before reducing the maps, so the deals counted match the results, and then restores
+     * the interrupt.
+     * </p>
+     *
+     * @param ringBuffer Ring buffer the producers publish to and the comparing threads read from
+     * @param producers Producers of deals, each run on its own thread
+     * @param comparers Comparing threads, each run on its own thread
+     * @param permutations Counter of deals compared, that the comparing threads update
+     * @param showdownResultsMaps Maps the comparing threads add their results to
+     * @return The result of the run
+     */
+    public static PermutationsResult run(DealRingBuffer ringBuffer, Runnable[] producers, Runnable[] comparers,
+            StripedCounter permutations, ShowdownResultsMap... showdownResultsMaps) {
+        final long startTime = System.currentTimeMillis();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread.UncaughtExceptionHandler abortOnFailure = (thread, e) -> {
+            if (!failure.compareAndSet(null, e) && !(e instanceof CancellationException)) {
+                failure.get().addSuppressed(e);
+            }
+            ringBuffer.abort();
+        };
 
+        final Thread[] producerThreads = startThreads(producers, abortOnFailure);
+        final Thread[] comparingThreads = startThreads(comparers, abortOnFailure);
+        try {
+            for (Thread thread : producerThreads) {
+                thread.join();
+            }
+            ringBuffer.close();
+
+            for (Thread thread : comparingThreads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, e);
+            ringBuffer.abort();
+            // every thread leaves at its next claim, and the result must hold what each of them flushed by then
+            joinUninterruptibly(producerThreads);
+            joinUninterruptibly(comparingThreads);
+            Thread.currentThread().interrupt();
+        }
+
+        return new PermutationsResult(permutations.sum(), ShowdownResultsMap.reduce(showdownResultsMaps),
+            System.currentTimeMillis() - startTime, failure.get());
+    }
+
+    /**
+     * Waits for threads to end, even if the calling thread is interrupted meanwhile.
+     */
+    private static void joinUninterruptibly(Thread[] threads) {
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    // the caller restores the interrupt once every thread is joined
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a thread for each runnable, named after its class, e.g. ProducerThread-1, ProducerThread-2.
+     */
+    private static Thread[] startThreads(Runnable[] runnables, Thread.UncaughtExceptionHandler handler) {
+        final Thread[] threads = new Thread[runnables.length];
+        for (int i = 0; i < runnables.length; i++) {
+            threads[i] = new Thread(runnables[i]);
+            threads[i].setName(runnables[i].getClass().getSimpleName() + "-" + (i + 1));
+            threads[i].setUncaughtExceptionHandler(handler);
+            threads[i].start();
+        }
+        return threads;
+    }
+
+    /**
+     * Prints the final counts, the total time and, if the run failed, why.
+     */
+    private static void printResult(PermutationsResult result) {
+        System.out.println("Permutations: " + result.getDeals());
+        System.out.println("Showdown results:\n" + result.getShowdownResultsMap());
+
+        //print the time it took to run
+        System.out.println("\nTotal time: " + result.getElapsedMillis() + "ms");
+        if (!result.isSuccessful()) {
+            System.err.println("Permutations run failed:");
+            result.getFailure().printStackTrace();
+        }
+    }
+
+    /**
+     * Runs the permutations simulation without producer threads or checkpoints.
+     *
+     * @param threadCount Number of worker threads, all of which evaluate deals
+     * @param canonical True to evaluate only suit-canonical deals, weighted, false to evaluate every deal
+     * @return The result of the run, which failed if any task did
+     * @throws IOException Never, as there is no checkpoint to read
+     */
+    public static PermutationsResult forkJoin(int threadCount, boolean canonical) throws IOException {
+        return forkJoin(threadCount, canonical, null, 0, false, ProgressFormat.TEXT);
+    }
+
+    /**
+     * Runs the permutations simulation without producer threads: the (hero hole cards, board) space is cut into
+     * ranges that {@link DealRangeTask}s enumerate and evaluate on a work-stealing {@link ForkJoinPool}.
+     * <p>
+     * With a checkpoint file, the ranges done and their results are saved to it periodically and at the end, and the
+     * time spent writing is reported against the time spent running. Resuming from it skips the ranges done and
+     * gives the same totals as a run that was never stopped. A run that doesn't resume refuses to start over an
+     * existing checkpoint file, so a forgotten resume doesn't replace a long run's progress.
+     * </p>
+     * <p>
+     * If any task throws, the tasks not started yet are cancelled, the last checkpoint still holds every range done,
+     * and the result holds the failure.
+     * </p>
+     *
+     * @param threadCount Number of worker threads, all of which evaluate deals
+     * @param canonical True to evaluate only suit-canonical deals, weighted, false to evaluate every deal
+     * @param checkpointPath File to save checkpoints to, or null for none
+     * @param checkpointInterval Seconds between checkpoints, or 0 to only save one at the end
+     * @param resume True to start from the checkpoint file instead of from scratch
+     * @param progressFormat How to print the progress every 10 seconds
+     * @return The result of the run, which failed if any task did or the last checkpoint couldn't be written
+     * @throws FileAlreadyExistsException If the checkpoint file exists and the run doesn't resume from it
+     * @throws IOException If the checkpoint to resume from can't be read or doesn't match the run
+     */
+    public static PermutationsResult forkJoin(int threadCount, boolean canonical, Path checkpointPath,
+            int checkpointInterval, boolean resume, ProgressFormat progressFormat) throws IOException {
+        return forkJoin(threadCount, canonical, 1, 1, null, checkpointPath, checkpointInterval, resume, false,
+            progressFormat);
+    }
+
+    /**
+     * Runs one shard of the permutations simulation without producer threads: only the ranges of a deterministic
+     * slice of the (hero hole cards, board) space, see {@link ShardResult}. Each machine of a fleet can run a
+     * different shard with no coordination, and {@link #merge(Path, List)} adds up their result files.
+     *
+     * @param threadCount Number of worker threads, all of which evaluate deals
+     * @param canonical True to evaluate only suit-canonical deals, weighted, false to evaluate every deal
+     * @param shardIndex Index of the shard to run, from 1
+     * @param shardCount Number of shards the space is cut into
+     * @param shardPath File to write the result of the shard to once every range of it is done, or null for none
+     * @param checkpointPath File to save checkpoints to, or null for none
+     * @param checkpointInterval Seconds between checkpoints, or 0 to only save one at the end
+     * @param resume True to start from the checkpoint file instead of from scratch
+     * @param overwrite True to start from scratch even if the checkpoint file exists, replacing it
+     * @param progressFormat How to print the progress every 10 seconds
+     * @return The result of the shard, which failed if any task did or the last checkpoint or the result file
+     *     couldn't be written
+     * @throws FileAlreadyExistsException If the checkpoint file exists and the run neither resumes from it nor
+     *     overwrites it
+     * @throws IOException If the checkpoint to resume from can't be read or doesn't match the shard
+     */
+    public static PermutationsResult forkJoin(int threadCount, boolean canonical, int shardIndex, int shardCount,
+            Path shardPath, Path checkpointPath, int checkpointInterval, boolean resume, boolean overwrite,
+            ProgressFormat progressFormat) throws IOException {
+        return forkJoin(threadCount, false, canonical, shardIndex, shardCount, shardPath, checkpointPath,
+            checkpointInterval, resume, overwrite, progressFormat);
+    }
+
+    /**
+     * Runs one shard of the permutations simulation without producer threads, optionally with the number of workers
+     * an {@link AutoTuner} finds fastest on this machine, see {@link #invokeTuned}. Every range is still evaluated
+     * once, checkpointed and written to the shard result the same way, so the totals are those of any other run.
+     *
+     * @param threadCount Number of worker threads, or the most to try when auto-tuning
+     * @param autoTune True to calibrate the number of workers as the run goes, false to run them all throughout
+     * @param canonical True to evaluate only suit-canonical deals, weighted, false to evaluate every deal
+     * @param shardIndex Index of the shard to run, from 1
+     * @param shardCount Number of shards the space is cut into
+     * @param shardPath File to write the result of the shard to once every range of it is done, or null for none
+     * @param checkpointPath File to save checkpoints to, or null for none
+     * @param checkpointInterval Seconds between checkpoints, or 0 to only save one at the end
+     * @param resume True to start from the checkpoint file instead of from scratch
+     * @param overwrite True to start from scratch even if the checkpoint file exists, replacing it
+     * @param progressFormat How to print the progress every 10 seconds
+     * @return The result of the shard, which failed if any task did or the last checkpoint or the result file
+     *     couldn't be written
+     * @throws FileAlreadyExistsException If the checkpoint file exists and the run neither resumes from it nor
+     *     overwrites it
+     * @throws IOException If the checkpoint to resume from can't be read or doesn't match the shard
+     */
+    public static PermutationsResult forkJoin(int threadCount, boolean autoTune, boolean canonical, int shardIndex,
+            int shardCount, Path shardPath, Path checkpointPath, int checkpointInterval, boolean resume,
+            boolean overwrite, ProgressFormat progressFormat) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final int leafCount = DealRangeTask.getLeafCount(canonical);
+        final int start = ShardResult.getStart(leafCount, shardIndex, shardCount);
+        final int end = ShardResult.getStart(leafCount, shardIndex + 1, shardCount);
+        final long dealCount = DealRangeTask.getDealCount(canonical, start, end);
+        final Checkpoint checkpoint;
+        if (resume) {
+            if (checkpointPath == null) {
+                throw new IllegalArgumentException("Resuming needs a checkpoint file");
+            }
+            checkpoint = Checkpoint.read(checkpointPath);
+            if (checkpoint.isCanonical() != canonical || checkpoint.getLeafCount() != leafCount) {
+                throw new IOException(checkpointPath + " is a checkpoint of a "
+                    + (checkpoint.isCanonical() ? "suit-canonical" : "full") + " run of " + checkpoint.getLeafCount()
+                    + " ranges, not of a " + (canonical ? "suit-canonical" : "full") + " run of " + leafCount + " ranges");
+            }
+            for (int leaf = 0; leaf < leafCount; leaf++) {
+                if ((leaf < start || leaf >= end) && checkpoint.isCompleted(leaf)) {
+                    throw new IOException(checkpointPath + " has range " + leaf + " done, which is not in shard "
+                        + shardIndex + "/" + shardCount);
+                }
+            }
+            System.out.println("Resuming from " + checkpointPath + ": " + checkpoint.getCompletedLeafCount() + " of "
+                + (end - start) + " ranges done.");
+        } else {
+            if (checkpointPath != null && !overwrite && Files.exists(checkpointPath)) {
+                throw new FileAlreadyExistsException(checkpointPath.toString(), null,
+                    "holds a checkpoint, resume from it or overwrite it to start over");
+            }
+            checkpoint = new Checkpoint(canonical, leafCount);
+        }
+        final StripedCounter permutations = new StripedCounter(threadCount);
+        final long startDeals = checkpoint.getCompletedDeals();
+        permutations.add(0, startDeals);
+        final ShowdownResultsMap globalShowdownResultsMap = checkpoint.getShowdownResultsMap();
+        final AutoTuner tuner = autoTune ? AutoTuner.forThreads(threadCount) : null;
+        // auto-tuned segments each run on a pool of their own
+        final ForkJoinPool pool = tuner == null ? new ForkJoinPool(threadCount) : null;
+        final AtomicLong checkpointMillis = new AtomicLong(0);
+
+        System.out.println("Starting " + (tuner == null ? "" : "up to ") + threadCount + " fork-join workers over "
+            + (end - start) + " ranges of " + dealCount + " deals"
+            + (shardCount > 1 ? ", shard " + shardIndex + "/" + shardCount : "")
+            + (canonical ? ", suit-canonical deals only" : "") + (tuner == null ? "." : ", auto-tuned."));
 
         Timer timer = new Timer();
-        //use a timer to print the showdown results every 10 seconds
+        //use a timer to print the progress every 10 seconds
         timer.schedule(new TimerTask() { @Override public void run() {
-                System.out.println("Permutations: " + permutations.get());
-                System.out.println("Showdown results:\n" + globalShowdownResultsMap.toString());
-                System.out.println("Queue size: " + queue.size());
+                System.out.println(ProgressSnapshot.take(System.currentTimeMillis() - startTime, startDeals,
+                    permutations.sum(), dealCount, globalShowdownResultsMap).format(progressFormat));
+                if (pool != null && progressFormat == ProgressFormat.TEXT) {
+                    System.out.println("Steals: " + pool.getStealCount());
+                }
         }}, 10000, 10000);
+        if (checkpointPath != null && checkpointInterval > 0) {
+            timer.schedule(new TimerTask() { @Override public void run() {
+                    try {
+                        writeCheckpoint(checkpoint, checkpointPath, checkpointMillis, startTime);
+                    } catch (IOException e) {
+                        System.err.println("Could not write checkpoint " + checkpointPath + ": " + e);
+                    }
+            }}, checkpointInterval * 1000L, checkpointInterval * 1000L);
+        }
 
-        for (Thread thread : producerThreads) {
-            thread.join();
+        Throwable failure = null;
+        try {
+            if (tuner == null) {
+                pool.invoke(new DealRangeTask(start, end, permutations, checkpoint));
+                pool.shutdown();
+            } else {
+                // a canonical leaf stands for about as many deals per deal evaluated as any other
+                invokeTuned(tuner, start, end,
+                    leaf -> checkpoint.isCompleted(leaf) ? 0 : DealRangeTask.getDealCount(canonical, leaf, leaf + 1),
+                    (first, last) -> new DealRangeTask(first, last, permutations, checkpoint));
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        } finally {
+            timer.cancel();
+        }
+        if (checkpointPath != null) {
+            try {
+                writeCheckpoint(checkpoint, checkpointPath, checkpointMillis, startTime);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (shardPath != null && failure == null) {
+            try {
+                final long bytes = ShardResult.of(checkpoint, shardIndex, shardCount).write(shardPath);
+                System.out.println("Wrote shard " + shardIndex + "/" + shardCount + " to " + shardPath + ", " + bytes
+                    + " bytes");
+            } catch (IOException e) {
+                failure = e;
+            }
         }
 
-        for (Thread thread : comparingThreads) {
-            thread.join();
+        final PermutationsResult result = new PermutationsResult(permutations.sum(), globalShowdownResultsMap,
+            System.currentTimeMillis() - startTime, failure);
+        printResult(result);
+        if (tuner != null) {
+            printChosenThreads(tuner, "-p -e forkjoin" + (canonical ? "" : " -n"));
         }
+        return result;
+    }
+
+    /**
+     * Runs the permutations simulation board by board, see {@link BoardMajorTask}, which scores each board's hole
+     * cards once instead of once per deal and gives the same totals as {@link #forkJoin(int, boolean)}.
+     *
+     * @param threadCount Number of fork-join workers
+     * @param canonical True to evaluate only suit-canonical boards, weighted, false to evaluate every board
+     * @param progressFormat How to print the progress every 10 seconds
+     * @return The result of the run, which failed if any task did
+     */
+    public static PermutationsResult boardMajor(int threadCount, boolean canonical, ProgressFormat progressFormat) {
+        return boardMajor(threadCount, false, canonical, progressFormat);
+    }
 
-        timer.cancel();
+    /**
+     * Runs the permutations simulation board by board, optionally with the number of workers an {@link AutoTuner}
+     * finds fastest on this machine, see {@link #invokeTuned}.
+     *
+     * @param threadCount Number of fork-join workers, or the most to try when auto-tuning
+     * @param autoTune True to calibrate the number of workers as the run goes, false to run them all throughout
+     * @param canonical True to evaluate only suit-canonical boards, weighted, false to evaluate every board
+     * @param progressFormat How to print the progress every 10 seconds
+     * @return The result of the run, which failed if any task did
+     */
+    public static PermutationsResult boardMajor(int threadCount, boolean autoTune, boolean canonical,
+            ProgressFormat progressFormat) {
+        final long startTime = System.currentTimeMillis();
+        final int boardCount = BoardMajorTask.getBoardCount(canonical);
+        final long dealCount = BoardMajorTask.getDealCount(canonical, 0, boardCount);
+        final StripedCounter permutations = new StripedCounter(threadCount);
+        final ShowdownResultsMap globalShowdownResultsMap = new ShowdownResultsMap();
+        final AutoTuner tuner = autoTune ? AutoTuner.forThreads(threadCount) : null;
+        final ForkJoinPool pool = tuner == null ? new ForkJoinPool(threadCount) : null;
 
-        System.out.println("Permutations: " + permutations.get());
-        System.out.println("Showdown results:\n" + globalShowdownResultsMap);
+        System.out.println("Starting " + (tuner == null ? "" : "up to ") + threadCount + " fork-join workers over "
+            + boardCount + " boards of " + dealCount + " deals" + (canonical ? ", suit-canonical boards only" : "")
+            + (tuner == null ? "." : ", auto-tuned."));
 
-        //print the time it took to run
-        double endTime = System.currentTimeMillis();
-        double totalTime = endTime - startTime;
-        System.out.println("\nTotal time: " + totalTime + "ms");
+        Timer timer = new Timer();
+        //use a timer to print the progress every 10 seconds
+        timer.schedule(new TimerTask() { @Override public void run() {
+                System.out.println(ProgressSnapshot.take(System.currentTimeMillis() - startTime, 0,
+                    permutations.sum(), dealCount, globalShowdownResultsMap).format(progressFormat));
+        }}, 10000, 10000);
+
+        Throwable failure = null;
+        try {
+            if (tuner == null) {
+                pool.invoke(new BoardMajorTask(0, boardCount, canonical, permutations, globalShowdownResultsMap));
+                pool.shutdown();
+            } else {
+                // a board takes as long to evaluate however many boards it stands for
+                invokeTuned(tuner, 0, boardCount, board -> BoardMajorTask.getDealCount(false, board, board + 1),
+                    (first, last) -> new BoardMajorTask(first, last, canonical, permutations,
+                        globalShowdownResultsMap));
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        } finally {
+            timer.cancel();
+        }
+
+        final PermutationsResult result = new PermutationsResult(permutations.sum(), globalShowdownResultsMap,
+            System.currentTimeMillis() - startTime, failure);
+        printResult(result);
+        if (tuner != null) {
+            printChosenThreads(tuner, "-p -e board" + (canonical ? "" : " -n"));
+        }
+        return result;
+    }
+
+    /**
+     * Creates the fork-join task of a segment of a range, e.g. of leaves or boards.
+     */
+    @FunctionalInterface
+    private interface SegmentTask {
+        ForkJoinTask<?> of(int start, int end);
+    }
+
+    /**
+     * Invokes fork-join tasks over a range in consecutive segments, each on a pool of as many workers as an
+     * {@link AutoTuner} asks. Each segment takes indexes until it has as many deals to evaluate as the tuner wants,
+     * and its throughput is measured on those deals. The first segments calibrate the number of workers and the rest
+     * run the best one, which is calibrated again if the throughput changes. Each measurement is printed as it is
+     * made.
+     *
+     * @param tuner Tuner of the number of workers
+     * @param start Index of the first leaf or board, inclusive
+     * @param end Index of the last leaf or board, exclusive
+     * @param dealCount Gives the deals to evaluate at an index, or anything in proportion to the time they take, 0 if
+     *     it is done already
+     * @param task Creates the task of a segment
+     */
+    private static void invokeTuned(AutoTuner tuner, int start, int end, IntToLongFunction dealCount,
+            SegmentTask task) {
+        int segmentStart = start;
+        while (segmentStart < end) {
+            final AutoTuner.Phase phase = tuner.getPhase();
+            final AutoTuner.Setup setup = tuner.next();
+            final long units = tuner.getSegmentUnits();
+            int segmentEnd = segmentStart;
+            long segmentDeals = 0;
+            while (segmentEnd < end && (segmentDeals < units || segmentEnd == segmentStart)) {
+                segmentDeals += dealCount.applyAsLong(segmentEnd++);
+            }
+
+            final ForkJoinPool pool = new ForkJoinPool(setup.getThreadCount());
+            final long begin = System.currentTimeMillis();
+            try {
+                pool.invoke(task.of(segmentStart, segmentEnd));
+                pool.shutdown();
+            } catch (RuntimeException | Error e) {
+                pool.shutdownNow();
+                throw e;
+            }
+            final long millis = System.currentTimeMillis() - begin;
+            segmentStart = segmentEnd;
+
+            // a segment of ranges done before a resume has nothing to measure
+            if (segmentDeals > 0) {
+                final AutoTuner.Measurement measurement = tuner.record(setup, segmentDeals, segmentDeals, millis);
+                printTuning(tuner.describe(phase, measurement));
+            }
+        }
+    }
+
+    /**
+     * Prints what an {@link AutoTuner} says about a segment, if anything.
+     */
+    private static void printTuning(String description) {
+        if (!description.isEmpty()) {
+            System.out.println(description);
+        }
+    }
+
+    /**
+     * Prints the calibration curve of a tuner of the number of threads and the flags that run its choice again.
+     */
+    private static void printChosenThreads(AutoTuner tuner, String flags) {
+        System.out.println(tuner.describeCurve());
+        System.out.println("Chosen setup: " + tuner.getBest() + ", run it again with " + flags + " -t "
+            + tuner.getBest().getThreadCount());
+    }
+
+    /**
+     * Merges the result files of shards that together cover every range of a run exactly once, prints the totals and
+     * writes them to a result file of their own, which is the same as that of a run of the single shard 1/1.
+     *
+     * @param outputPath File to write the merged result to
+     * @param shardPaths Result files of the shards, in any order
+     * @return The merged result
+     * @throws IOException If a result file can't be read or written, or the shards don't cover the run exactly once
+     */
+    public static PermutationsResult merge(Path outputPath, List<Path> shardPaths) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final List<ShardResult> shards = new ArrayList<>();
+        for (Path path : shardPaths) {
+            final ShardResult shard = ShardResult.read(path);
+            System.out.println("Read shard " + shard.describe() + " of " + shard.getDeals() + " deals from " + path);
+            shards.add(shard);
+        }
+        final ShardResult merged;
+        try {
+            merged = ShardResult.merge(shards);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Can't merge " + shardPaths + ": " + e.getMessage(), e);
+        }
+        if (merged.getDeals() != DealRangeTask.DEAL_COUNT) {
+            throw new IOException("Merged shards account for " + merged.getDeals() + " deals, expected "
+                + DealRangeTask.DEAL_COUNT);
+        }
+        merged.write(outputPath);
+        System.out.println("Wrote merged result to " + outputPath);
+
+        final PermutationsResult result = new PermutationsResult(merged.getDeals(), merged.getShowdownResultsMap(),
+            System.currentTimeMillis() - startTime, null);
+        printResult(result);
+        return result;
+    }
+
+    /**
+     * Coordinates a run across workers that connect over TCP, see {@link Coordinator}, and prints the totals once every
+     * range is done.
+     *
+     * @param port Port to accept workers on, or 0 for any free port
+     * @param canonical True to evaluate only suit-canonical deals, weighted, false to evaluate every deal
+     * @param rangeSize Number of leaves handed out to a worker at once
+     * @return The result of the run
+     * @throws IOException If the port can't be opened
+     * @throws InterruptedException If interrupted while waiting for the workers
+     */
+    public static PermutationsResult coordinate(int port, boolean canonical, int rangeSize)
+            throws IOException, InterruptedException {
+        final PermutationsResult result;
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            result = new Coordinator(serverSocket, canonical, 0, DealRangeTask.getLeafCount(canonical), rangeSize)
+                .run();
+        }
+        printResult(result);
+        return result;
+    }
+
+    /**
+     * Evaluates ranges for a coordinator, see {@link Worker}, until it says every range is done.
+     *
+     * @param host Host of the coordinator
+     * @param port Port of the coordinator
+     * @param threadCount Number of fork-join workers to evaluate each range on
+     * @throws IOException If the connection to the coordinator fails
+     */
+    public static void work(String host, int port, int threadCount) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        System.out.println("Working for " + host + ":" + port + " on " + threadCount + " threads.");
+        final int ranges = Worker.run(host, port, threadCount);
+        System.out.println("Evaluated " + ranges + " ranges in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * Measures how the fork-join engine scales: evaluates the same suit-canonical leaves on one worker, then two, and
+     * so on up to a number of workers, and prints the deals per second, speedup and efficiency of each. The leaves are
+     * evaluated once first without being timed, so JIT compilation isn't counted against one worker.
+     *
+     * @param maxThreadCount Largest number of workers to measure
+     * @param leafCount Number of leaves to evaluate each time, from the first
+     * @return Deals per second with each number of workers, from one
+     */
+    public static double[] scaling(int maxThreadCount, int leafCount) {
+        final int leaves = Math.min(leafCount, DealRangeTask.getLeafCount(true));
+        final double[] dealsPerSecond = new double[maxThreadCount];
+        final ForkJoinPool warmUp = new ForkJoinPool(maxThreadCount);
+        try {
+            warmUp.invoke(new DealRangeTask(0, leaves, new StripedCounter(maxThreadCount),
+                new Checkpoint(true, DealRangeTask.getLeafCount(true))));
+        } finally {
+            warmUp.shutdown();
+        }
+
+        System.out.println("Threads\tDeals/s\tSpeedup\tEfficiency");
+        for (int threadCount = 1; threadCount <= maxThreadCount; threadCount++) {
+            final StripedCounter permutations = new StripedCounter(threadCount);
+            final Checkpoint checkpoint = new Checkpoint(true, DealRangeTask.getLeafCount(true));
+            final ForkJoinPool pool = new ForkJoinPool(threadCount);
+            final long begin = System.nanoTime();
+            try {
+                pool.invoke(new DealRangeTask(0, leaves, permutations, checkpoint));
+            } finally {
+                pool.shutdown();
+            }
+            final long elapsed = Math.max(1, System.nanoTime() - begin);
+            dealsPerSecond[threadCount - 1] = permutations.sum() * 1e9 / elapsed;
+            final double speedup = dealsPerSecond[threadCount - 1] / dealsPerSecond[0];
+            System.out.println(threadCount + "\t" + String.format("%.4g", dealsPerSecond[threadCount - 1]) + "\t"
+                + String.format("%.2f", speedup) + "\t" + String.format("%.0f%%", 100 * speedup / threadCount));
+        }
+        return dealsPerSecond;
+    }
+
+    /**
+     * Writes a checkpoint and reports its size, how long it took and the share of the run spent writing checkpoints.
+     */
+    private static synchronized void writeCheckpoint(Checkpoint checkpoint, Path path, AtomicLong checkpointMillis,
+            long startTime) throws IOException {
+        final long begin = System.currentTimeMillis();
+        final long bytes = checkpoint.write(path);
+        final long end = System.currentTimeMillis();
+        final long total = checkpointMillis.addAndGet(end - begin);
+        System.out.println("Checkpoint: " + checkpoint.getCompletedLeafCount() + "/" + checkpoint.getLeafCount()
+            + " ranges, " + bytes + " bytes in " + (end - begin) + "ms, "
+            + String.format("%.3f", 100.0 * total / Math.max(1, end - startTime)) + "% of run time");
     }
 }
@@ -0,0 +1,205 @@
+package com.andrewalia.simulator.permutations.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+import com.andrewalia.util.HoleCards;
+
+/**
+ * Binary framing of the messages between a {@link Coordinator} and its {@link Worker}s.
+ * <p>
+ * Every frame is a big-endian {@code int} length, a type byte and a payload of {@code length - 1} bytes:
+ * </p>
+ * <ul>
+ * <li>{@link #HELLO}, worker to coordinator: {@code int} version, {@code int} thread count, UTF name.</li>
+ * <li>{@link #ASSIGN}, coordinator to worker: {@code boolean} canonical, {@code int} leaf count of the run,
+ * {@code int} first leaf, {@code int} end leaf, {@code int} milliseconds between heartbeats.</li>
+ * <li>{@link #HEARTBEAT}, worker to coordinator while it evaluates a range: {@code long} deals of the range
+ * evaluated so far.</li>
+ * <li>{@link #RESULT}, worker to coordinator: {@code int} first leaf, {@code int} end leaf, {@code long} deals,
+ * {@code short} number of classes with results, then per class a {@code short} class id and {@code long} wins,
+ * losses and ties.</li>
+ * <li>{@link #DONE}, coordinator to worker: no payload, every range is done or the run failed.</li>
+ * </ul>
+ * <p>
+ * A worker says hello once, and then the coordinator answers every hello or result with the next assignment, or
+ * done. A worker holds one range at a time, so a lost connection loses at most one range. It sends heartbeats while
+ * it evaluates, so the coordinator can tell a worker that hangs or whose host dropped off from a slow one.
+ * </p>
+ */
+public final class ClusterProtocol {
+
+    /** Version of the protocol, sent in {@link #HELLO}, that both ends have to agree on. */
+    public static final int VERSION = 2;
+
+    public static final byte HELLO = 1;
+    public static final byte ASSIGN = 2;
+    public static final byte RESULT = 3;
+    public static final byte DONE = 4;
+    public static final byte HEARTBEAT = 5;
+
+    /** Largest frame accepted, so a corrupt length doesn't allocate gigabytes. */
+    private static final int MAX_FRAME_LENGTH = 1 << 16;
+
+    private ClusterProtocol() {}
+
+    /**
+     * A frame read from a stream.
+     */
+    public static final class Frame {
+
+        private final byte type;
+        private final DataInputStream payload;
+
+        private Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = new DataInputStream(new ByteArrayInputStream(payload));
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public DataInputStream getPayload() {
+            return payload;
+        }
+
+        /**
+         * Checks the type of the frame.
+         *
+         * @param expected The type the frame should have.
+         * @return This frame.
+         * @throws IOException If the frame has another type.
+         */
+        public Frame expect(byte expected) throws IOException {
+            if (type != expected) {
+                throw new IOException("Expected frame type " + expected + ", got " + type);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Reads one frame, waiting for all of it.
+     *
+     * @param in The stream to read from.
+     * @return The frame.
+     * @throws IOException If the stream ends or fails, or the frame is too long.
+     */
+    public static Frame read(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        final byte type = in.readByte();
+        final byte[] payload = new byte[length - 1];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    /**
+     * Writes one frame and flushes it.
+     *
+     * @param out The stream to write to.
+     * @param type The type of the frame.
+     * @param payload The payload of the frame.
+     * @throws IOException If the stream fails.
+     */
+    public static void write(DataOutputStream out, byte type, ByteArrayOutputStream payload) throws IOException {
+        out.writeInt(payload.size() + 1);
+        out.writeByte(type);
+        payload.writeTo(out);
+        out.flush();
+    }
+
+    public static void writeHello(DataOutputStream out, int threadCount, String name) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeInt(VERSION);
+        payload.writeInt(threadCount);
+        payload.writeUTF(name);
+        write(out, HELLO, bytes);
+    }
+
+    public static void writeAssign(DataOutputStream out, boolean canonical, int leafCount, int start, int end,
+            int heartbeatMillis) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeBoolean(canonical);
+        payload.writeInt(leafCount);
+        payload.writeInt(start);
+        payload.writeInt(end);
+        payload.writeInt(heartbeatMillis);
+        write(out, ASSIGN, bytes);
+    }
+
+    public static void writeHeartbeat(DataOutputStream out, long deals) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeLong(deals);
+        write(out, HEARTBEAT, bytes);
+    }
+
+    /**
+     * Writes the result of a range, with only the classes that have any results.
+     *
+     * @param out The stream to write to.
+     * @param start Index of the first leaf of the range, inclusive.
+     * @param end Index of the last leaf of the range, exclusive.
+     * @param deals Number of deals accounted for by the range.
+     * @param results Showdown results of the range.
+     * @throws IOException If the stream fails.
+     */
+    public static void writeResult(DataOutputStream out, int start, int end, long deals, ShowdownResultsMap results)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeInt(start);
+        payload.writeInt(end);
+        payload.writeLong(deals);
+        final long[] counts = results.snapshotCounts();
+        int classes = 0;
+        for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+            if (counts[3 * id] != 0 || counts[3 * id + 1] != 0 || counts[3 * id + 2] != 0) {
+                classes++;
+            }
+        }
+        payload.writeShort(classes);
+        for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+            if (counts[3 * id] != 0 || counts[3 * id + 1] != 0 || counts[3 * id + 2] != 0) {
+                payload.writeShort(id);
+                payload.writeLong(counts[3 * id]);
+                payload.writeLong(counts[3 * id + 1]);
+                payload.writeLong(counts[3 * id + 2]);
+            }
+        }
+        write(out, RESULT, bytes);
+    }
+
+    /**
+     * Reads the showdown results of a {@link #RESULT} payload, after its range and deals.
+     *
+     * @param payload The payload, positioned at the number of classes.
+     * @return The showdown results.
+     * @throws IOException If the payload is too short or has an invalid class id.
+     */
+    public static ShowdownResultsMap readResults(DataInputStream payload) throws IOException {
+        final ShowdownResultsMap results = new ShowdownResultsMap();
+        final int count = payload.readShort();
+        for (int i = 0; i < count; i++) {
+            final int id = payload.readShort();
+            if (id < 0 || id >= HoleCards.CLASS_COUNT) {
+                throw new IOException("Invalid class id " + id);
+            }
+            results.add(id, payload.readLong(), payload.readLong(), payload.readLong());
+        }
+        return results;
+    }
+
+    public static void writeDone(DataOutputStream out) throws IOException {
+        write(out, DONE, new ByteArrayOutputStream());
+    }
+}
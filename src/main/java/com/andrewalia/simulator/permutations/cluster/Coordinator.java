@@ -0,0 +1,370 @@
+package com.andrewalia.simulator.permutations.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.andrewalia.simulator.permutations.thread.DealRangeTask;
+import com.andrewalia.simulator.permutations.util.Checkpoint;
+import com.andrewalia.simulator.permutations.util.PermutationsResult;
+import com.andrewalia.simulator.permutations.util.ProgressSnapshot;
+import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+
+/**
+ * Hands out small ranges of the fork-join leaves (see {@link DealRangeTask}) to {@link Worker}s that connect over
+ * TCP, one range at a time, and adds up their results as they come back.
+ * <p>
+ * Workers ask for the next range as soon as they send a result, so fast workers take more ranges and none sits idle
+ * while there is work left. If a worker's connection is lost, the range it held goes back to the front of the queue
+ * for the next worker that asks, and is counted as reassigned. Results are whole counts added to a
+ * {@link Checkpoint}, so the totals are exactly those of a run on one machine however the ranges were spread.
+ * </p>
+ * <p>
+ * A worker holds its range on a lease: while it evaluates, it sends a heartbeat with its progress every quarter of
+ * the lease, and if the coordinator hears nothing from it, or no progress, for a whole lease, the worker is treated
+ * as lost. That catches workers that hang and hosts that drop off without closing the connection, which TCP
+ * keepalive would only notice hours later. A range lost by {@link #DEFAULT_MAX_ATTEMPTS} workers most likely fails
+ * wherever it runs, so the run fails then instead of handing it out forever.
+ * </p>
+ */
+public final class Coordinator {
+
+    /** Leaves per range handed out by default. */
+    public static final int DEFAULT_RANGE_SIZE = 8;
+
+    /** Time a worker may go without a heartbeat showing progress before its range is handed out again, by default. */
+    public static final int DEFAULT_LEASE_MILLIS = 60000;
+
+    /** Times a range is handed out, by default, before a run whose workers all lost it fails. */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /** Longest wait for the connected workers to be told every range is done, once it is. */
+    private static final long DONE_TIMEOUT_MILLIS = 10000;
+
+    private final ServerSocket serverSocket;
+    private final boolean canonical;
+    private final int leafCount;
+    private final long dealCount;
+    private final Checkpoint checkpoint;
+    private final int leaseMillis;
+    private final int maxAttempts;
+
+    /** Ranges not handed out yet, as {start, end, times lost}. Guarded by this. */
+    private final Deque<int[]> pending = new ArrayDeque<>();
+
+    /** Every worker that ever connected. Guarded by this. */
+    private final List<WorkerStats> workers = new ArrayList<>();
+
+    /** Ranges not done yet, handed out or not. Guarded by this. */
+    private int remainingRanges;
+
+    /** Ranges handed out again after their worker was lost. Guarded by this. */
+    private int reassignments;
+
+    /** Workers connected now. Guarded by this. */
+    private int connectedWorkers;
+
+    /** Why the run failed, or null while it hasn't. Guarded by this. */
+    private IOException failure;
+
+    /**
+     * Throughput of one connected worker.
+     */
+    private static final class WorkerStats {
+        private final String name;
+        private final int threadCount;
+        private int ranges;
+        private long deals;
+        private long busyNanos;
+        private boolean lost;
+
+        private WorkerStats(String name, int threadCount) {
+            this.name = name;
+            this.threadCount = threadCount;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + threadCount + " threads" + (lost ? ", lost" : "") + "): " + ranges
+                + " ranges, " + deals + " deals, "
+                + String.format("%.4g", busyNanos == 0 ? 0 : deals * 1e9 / busyNanos) + " deals/s";
+        }
+    }
+
+    /**
+     * Creates a coordinator of a range of leaves.
+     *
+     * @param serverSocket Socket to accept workers on, which the coordinator closes once every range is done
+     * @param canonical True to evaluate only suit-canonical deals, weighted, false to evaluate every deal
+     * @param start Index of the first leaf, inclusive
+     * @param end Index of the last leaf, exclusive
+     * @param rangeSize Number of leaves handed out at once
+     */
+    public Coordinator(ServerSocket serverSocket, boolean canonical, int start, int end, int rangeSize) {
+        this(serverSocket, canonical, start, end, rangeSize, DEFAULT_LEASE_MILLIS, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Creates a coordinator of a range of leaves.
+     *
+     * @param serverSocket Socket to accept workers on, which the coordinator closes once every range is done
+     * @param canonical True to evaluate only suit-canonical deals, weighted, false to evaluate every deal
+     * @param start Index of the first leaf, inclusive
+     * @param end Index of the last leaf, exclusive
+     * @param rangeSize Number of leaves handed out at once
+     * @param leaseMillis Time a worker may go without a message, or without progress, before it is treated as lost
+     * @param maxAttempts Number of workers that may lose a range before the run fails
+     */
+    public Coordinator(ServerSocket serverSocket, boolean canonical, int start, int end, int rangeSize,
+            int leaseMillis, int maxAttempts) {
+        if (rangeSize < 1) {
+            throw new IllegalArgumentException("Range size must be positive, was " + rangeSize);
+        }
+        if (leaseMillis < 4 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid lease of " + leaseMillis + "ms or " + maxAttempts
+                + " attempts");
+        }
+        this.leaseMillis = leaseMillis;
+        this.maxAttempts = maxAttempts;
+        this.serverSocket = serverSocket;
+        this.canonical = canonical;
+        this.leafCount = DealRangeTask.getLeafCount(canonical);
+        if (start < 0 || start > end || end > leafCount) {
+            throw new IllegalArgumentException("Invalid range [" + start + ", " + end + ") of " + leafCount + " leaves");
+        }
+        this.dealCount = DealRangeTask.getDealCount(canonical, start, end);
+        this.checkpoint = new Checkpoint(canonical, leafCount);
+        for (int leaf = start; leaf < end; leaf += rangeSize) {
+            pending.add(new int[] { leaf, Math.min(end, leaf + rangeSize), 0 });
+        }
+        this.remainingRanges = pending.size();
+    }
+
+    /**
+     * Accepts workers and hands out ranges until every range is done, printing the progress, the throughput of every
+     * worker and the number of reassignments every 10 seconds and at the end.
+     *
+     * @return The result of the run, which failed if a range was lost {@code maxAttempts} times
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the workers
+     */
+    public PermutationsResult run() throws InterruptedException {
+        final long startTime = System.currentTimeMillis();
+        final Thread acceptor = new Thread(this::accept, "Coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Coordinating " + remainingRanges + " ranges of " + dealCount + " deals on port "
+            + serverSocket.getLocalPort() + (canonical ? ", suit-canonical deals only." : "."));
+
+        Timer timer = new Timer();
+        //use a timer to print the progress every 10 seconds
+        timer.schedule(new TimerTask() { @Override public void run() {
+                printProgress(startTime);
+        }}, 10000, 10000);
+        try {
+            synchronized (this) {
+                while (remainingRanges > 0 && failure == null) {
+                    wait();
+                }
+                // wake the workers waiting for a range, so they are told every range is done
+                notifyAll();
+                final long deadline = System.currentTimeMillis() + DONE_TIMEOUT_MILLIS;
+                while (connectedWorkers > 0 && System.currentTimeMillis() < deadline) {
+                    wait(Math.max(1, deadline - System.currentTimeMillis()));
+                }
+            }
+        } finally {
+            timer.cancel();
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the coordinator socket: " + e);
+            }
+        }
+        printProgress(startTime);
+        synchronized (this) {
+            return new PermutationsResult(checkpoint.getCompletedDeals(), checkpoint.getShowdownResultsMap(),
+                System.currentTimeMillis() - startTime, failure);
+        }
+    }
+
+    public synchronized int getReassignments() {
+        return reassignments;
+    }
+
+    private void printProgress(long startTime) {
+        System.out.println(ProgressSnapshot.take(System.currentTimeMillis() - startTime, 0,
+            checkpoint.getCompletedDeals(), dealCount, checkpoint.getShowdownResultsMap()));
+        synchronized (this) {
+            for (WorkerStats worker : workers) {
+                System.out.println("Worker " + worker);
+            }
+            System.out.println("Ranges: " + remainingRanges + " left, " + reassignments + " reassigned");
+        }
+    }
+
+    /**
+     * Accepts workers until the server socket is closed, serving each on its own thread.
+     */
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connect();
+                final Thread thread = new Thread(() -> serve(socket), "Coordinator-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Could not accept a worker: " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves one worker until every range is done or its connection or lease is lost, and puts back the range it held
+     * then.
+     */
+    private void serve(Socket accepted) {
+        WorkerStats worker = null;
+        int[] range = null;
+        boolean lost = false;
+        try (Socket socket = accepted) {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            // a worker that sends nothing for a whole lease, not even a heartbeat, is lost
+            socket.setSoTimeout(leaseMillis);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            final DataInputStream hello = ClusterProtocol.read(in).expect(ClusterProtocol.HELLO).getPayload();
+            final int version = hello.readInt();
+            if (version != ClusterProtocol.VERSION) {
+                throw new IOException("Worker speaks protocol version " + version + ", expected "
+                    + ClusterProtocol.VERSION);
+            }
+            final int threadCount = hello.readInt();
+            worker = register(hello.readUTF() + "@" + socket.getRemoteSocketAddress(), threadCount);
+
+            while ((range = take()) != null) {
+                final long begin = System.nanoTime();
+                ClusterProtocol.writeAssign(out, canonical, leafCount, range[0], range[1], leaseMillis / 4);
+                final DataInputStream result = awaitResult(in, range);
+                final int start = result.readInt();
+                final int end = result.readInt();
+                if (start != range[0] || end != range[1]) {
+                    throw new IOException("Got the result of [" + start + ", " + end + ") for range [" + range[0]
+                        + ", " + range[1] + ")");
+                }
+                final long deals = result.readLong();
+                complete(worker, range, ClusterProtocol.readResults(result), deals, System.nanoTime() - begin);
+                range = null;
+            }
+            ClusterProtocol.writeDone(out);
+        } catch (IOException e) {
+            lost = true;
+            System.err.println("Lost worker " + (worker == null ? accepted.getRemoteSocketAddress() : worker.name)
+                + ": " + e);
+        } finally {
+            release(worker, range, lost);
+        }
+    }
+
+    /**
+     * Reads the heartbeats of a worker until it sends the result of its range.
+     *
+     * @return The payload of the result
+     * @throws IOException If the connection fails, or the worker sends nothing or makes no progress for a lease
+     */
+    private DataInputStream awaitResult(DataInputStream in, int[] range) throws IOException {
+        long progress = -1;
+        long deadline = 0;
+        while (true) {
+            final ClusterProtocol.Frame frame = ClusterProtocol.read(in);
+            if (frame.getType() != ClusterProtocol.HEARTBEAT) {
+                return frame.expect(ClusterProtocol.RESULT).getPayload();
+            }
+            final long deals = frame.getPayload().readLong();
+            final long now = System.currentTimeMillis();
+            if (deals > progress) {
+                progress = deals;
+                deadline = now + leaseMillis;
+            } else if (now > deadline) {
+                throw new IOException("No progress on range [" + range[0] + ", " + range[1] + ") for " + leaseMillis
+                    + "ms");
+            }
+        }
+    }
+
+    private synchronized void connect() {
+        connectedWorkers++;
+    }
+
+    private synchronized WorkerStats register(String name, int threadCount) {
+        final WorkerStats worker = new WorkerStats(name, threadCount);
+        workers.add(worker);
+        System.out.println("Worker " + name + " joined with " + threadCount + " threads.");
+        return worker;
+    }
+
+    /**
+     * Takes the next range to hand out, waiting while every range left is held by a worker that may still be lost.
+     *
+     * @return The range, or null once every range is done or the run failed
+     */
+    private synchronized int[] take() throws IOException {
+        try {
+            while (pending.isEmpty() && remainingRanges > 0 && failure == null) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a range", e);
+        }
+        return failure == null ? pending.poll() : null;
+    }
+
+    private synchronized void complete(WorkerStats worker, int[] range, ShowdownResultsMap results, long deals,
+            long nanos) {
+        checkpoint.complete(range[0], range[1], results, deals);
+        worker.ranges++;
+        worker.deals += deals;
+        worker.busyNanos += nanos;
+        if (--remainingRanges == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Forgets a worker that hung up, and puts back the range it held if it was lost, for the next worker that asks,
+     * or fails the run if too many workers lost it already.
+     */
+    private synchronized void release(WorkerStats worker, int[] range, boolean lost) {
+        connectedWorkers--;
+        if (worker != null) {
+            worker.lost = lost;
+        }
+        if (range != null) {
+            if (++range[2] >= maxAttempts) {
+                if (failure == null) {
+                    failure = new IOException("Range [" + range[0] + ", " + range[1] + ") was lost by " + range[2]
+                        + " workers");
+                }
+            } else {
+                pending.addFirst(range);
+                reassignments++;
+            }
+        }
+        notifyAll();
+    }
+}
@@ -0,0 +1,98 @@
+package com.andrewalia.simulator.permutations.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ForkJoinPool;
+
+import com.andrewalia.simulator.permutations.thread.DealRangeTask;
+import com.andrewalia.simulator.permutations.util.Checkpoint;
+import com.andrewalia.simulator.permutations.util.StripedCounter;
+
+/**
+ * Evaluates the ranges a {@link Coordinator} assigns, on a fork-join pool of its own, and sends back their results.
+ * <p>
+ * While it evaluates a range, a timer thread sends the coordinator a heartbeat with the deals done so far, as often
+ * as the assignment asks, so the coordinator keeps the range leased to this worker as long as it makes progress.
+ * </p>
+ */
+public final class Worker {
+
+    private Worker() {}
+
+    /**
+     * Connects to a coordinator and evaluates the ranges it assigns until it says every range is done.
+     *
+     * @param host Host of the coordinator
+     * @param port Port of the coordinator
+     * @param threadCount Number of fork-join workers to evaluate each range on
+     * @return The number of ranges evaluated
+     * @throws IOException If the connection fails or the coordinator assigns a range of another kind of run
+     */
+    public static int run(String host, int port, int threadCount) throws IOException {
+        int ranges = 0;
+        final ForkJoinPool pool = new ForkJoinPool(threadCount);
+        final Timer timer = new Timer("Worker-heartbeat", true);
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            ClusterProtocol.writeHello(out, threadCount, ManagementFactory.getRuntimeMXBean().getName());
+
+            while (true) {
+                final ClusterProtocol.Frame frame = ClusterProtocol.read(in);
+                if (frame.getType() == ClusterProtocol.DONE) {
+                    break;
+                }
+                final DataInputStream assign = frame.expect(ClusterProtocol.ASSIGN).getPayload();
+                final boolean canonical = assign.readBoolean();
+                final int leafCount = assign.readInt();
+                final int start = assign.readInt();
+                final int end = assign.readInt();
+                final int heartbeatMillis = assign.readInt();
+                if (heartbeatMillis < 1) {
+                    throw new IOException("Invalid heartbeat interval of " + heartbeatMillis + "ms");
+                }
+                if (leafCount != DealRangeTask.getLeafCount(canonical)) {
+                    throw new IOException("Coordinator runs " + leafCount + " leaves, expected "
+                        + DealRangeTask.getLeafCount(canonical));
+                }
+
+                final Checkpoint checkpoint = new Checkpoint(canonical, leafCount);
+                final StripedCounter permutations = new StripedCounter(threadCount);
+                final TimerTask heartbeat = new TimerTask() { @Override public void run() {
+                    try {
+                        synchronized (out) {
+                            ClusterProtocol.writeHeartbeat(out, permutations.sum());
+                        }
+                    } catch (IOException e) {
+                        // the connection is gone, which writing the result will report
+                        cancel();
+                    }
+                }};
+                timer.schedule(heartbeat, heartbeatMillis, heartbeatMillis);
+                try {
+                    pool.invoke(new DealRangeTask(start, end, permutations, checkpoint));
+                } finally {
+                    heartbeat.cancel();
+                }
+                synchronized (out) {
+                    ClusterProtocol.writeResult(out, start, end, checkpoint.getCompletedDeals(),
+                        checkpoint.getShowdownResultsMap());
+                }
+                ranges++;
+            }
+        } finally {
+            timer.cancel();
+            pool.shutdown();
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,292 @@
+package com.andrewalia.simulator.permutations.thread;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+import com.andrewalia.simulator.permutations.util.StripedCounter;
+import com.andrewalia.util.CardSet;
+import com.andrewalia.util.HandRankTable;
+import com.andrewalia.util.HoleCards;
+import com.andrewalia.util.NCardHand;
+import com.andrewalia.util.SuitIsomorphism;
+
+/**
+ * Fork-join task that accounts for every deal of a range of boards, scoring each board's hole cards once.
+ * <p>
+ * {@link DealRangeTask} goes hero, board, villain, and scores the villains of every (hero, board) again, so each
+ * two-card combo of a board is scored once per hero it can face. This task turns the loops around: for each board it
+ * scores the {@value #COMBO_COUNT} combos of the 47 cards left once, and sorts them by strength. A combo then beats
+ * every combo ranked below it except those sharing one of its cards, which are found the same way by sorting the
+ * {@value #COMBOS_PER_CARD} combos of each card. Every combo is the hero of {@value #VILLAIN_COUNT} deals, so a board
+ * accounts for {@value #COMBO_COUNT} x {@value #VILLAIN_COUNT} deals at the cost of {@value #COMBO_COUNT} evaluations
+ * and a few small sorts, instead of twice that many evaluations per deal.
+ * </p>
+ * <p>
+ * Renaming suits doesn't change the {@link HoleCards} class of any combo, so with suit canonicalization only the
+ * canonical board of each {@link SuitIsomorphism} orbit is evaluated, weighted by the size of the orbit. The totals
+ * are exactly those of every deal either way.
+ * </p>
+ */
+public class BoardMajorTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Cards left once the board is dealt. */
+    private static final int CARDS_LEFT = 47;
+
+    /** Two-card combos of the cards left. */
+    public static final int COMBO_COUNT = CARDS_LEFT * (CARDS_LEFT - 1) / 2;
+
+    /** Combos that hold a given card of those left. */
+    private static final int COMBOS_PER_CARD = CARDS_LEFT - 1;
+
+    /** Villain combos that share no card with a given hero combo. */
+    public static final int VILLAIN_COUNT = COMBO_COUNT - 2 * COMBOS_PER_CARD + 1;
+
+    /** Boards evaluated by one leaf, between two updates of the results. */
+    private static final int LEAF_BOARDS = 256;
+
+    /** Bits of a sort key that hold the combo or card slot, below the strength. */
+    private static final int INDEX_BITS = 12;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    /** Combos holding each card of those left, with whether the card is their first (0) or second (1) card. */
+    private static final int[][] CARD_COMBOS = new int[CARDS_LEFT][COMBOS_PER_CARD];
+
+    static {
+        final int[] found = new int[CARDS_LEFT];
+        int combo = 0;
+        for (int i = 0; i < CARDS_LEFT; i++) {
+            for (int j = i + 1; j < CARDS_LEFT; j++) {
+                CARD_COMBOS[i][found[i]++] = combo << 1;
+                CARD_COMBOS[j][found[j]++] = combo << 1 | 1;
+                combo++;
+            }
+        }
+    }
+
+    /**
+     * Every board as a {@link CardSet} mask, in lexicographic order, built on first use.
+     */
+    private static final class AllBoards {
+        private static final long[] BOARDS = boards(false);
+    }
+
+    /**
+     * One board per {@link SuitIsomorphism#ALL} orbit, in lexicographic order, and the size of its orbit, built on
+     * first use.
+     */
+    private static final class CanonicalBoards {
+        private static final long[] BOARDS = boards(true);
+        private static final int[] WEIGHTS = new int[BOARDS.length];
+
+        static {
+            for (int i = 0; i < BOARDS.length; i++) {
+                WEIGHTS[i] = SuitIsomorphism.ALL.orbitSize(BOARDS[i]);
+            }
+        }
+    }
+
+    private final int start;
+    private final int end;
+    private final boolean canonical;
+    private final StripedCounter permutations;
+    private final ShowdownResultsMap results;
+
+    /**
+     * Creates a task for a range of boards.
+     *
+     * @param start Index of the first board, inclusive
+     * @param end Index of the last board, exclusive
+     * @param canonical True to evaluate only suit-canonical boards, weighted, false to evaluate every board
+     * @param permutations Counter of deals accounted for, that each worker adds to at the stripe of its pool index
+     * @param results Showdown results to add the results of each leaf to
+     */
+    public BoardMajorTask(int start, int end, boolean canonical, StripedCounter permutations,
+            ShowdownResultsMap results) {
+        this.start = start;
+        this.end = end;
+        this.canonical = canonical;
+        this.permutations = permutations;
+        this.results = results;
+    }
+
+    /**
+     * Gets the number of boards in the whole space.
+     *
+     * @param canonical True with suit canonicalization
+     * @return The number of boards
+     */
+    public static int getBoardCount(boolean canonical) {
+        return canonical ? CanonicalBoards.BOARDS.length : AllBoards.BOARDS.length;
+    }
+
+    /**
+     * Gets the number of deals a range of boards accounts for, including those stood for by canonical boards.
+     *
+     * @param canonical True with suit canonicalization
+     * @param start Index of the first board, inclusive
+     * @param end Index of the last board, exclusive
+     * @return The number of deals
+     */
+    public static long getDealCount(boolean canonical, int start, int end) {
+        long boards = end - start;
+        if (canonical) {
+            boards = 0;
+            for (int board = start; board < end; board++) {
+                boards += CanonicalBoards.WEIGHTS[board];
+            }
+        }
+        return boards * COMBO_COUNT * VILLAIN_COUNT;
+    }
+
+    @Override
+    protected void compute() {
+        if (end - start <= LEAF_BOARDS) {
+            evaluateLeaf();
+            return;
+        }
+        final int middle = (start + end) >>> 1;
+        invokeAll(
+            new BoardMajorTask(start, middle, canonical, permutations, results),
+            new BoardMajorTask(middle, end, canonical, permutations, results)
+        );
+    }
+
+    /**
+     * Evaluates every board of this task, adding up the wins, losses and ties of every class locally and then to the
+     * shared results once.
+     */
+    private void evaluateLeaf() {
+        final HandRankTable table = NCardHand.isLookupEvaluatorEnabled() ? HandRankTable.getInstance() : null;
+        final int stripe = Thread.currentThread() instanceof ForkJoinWorkerThread
+            ? ((ForkJoinWorkerThread) Thread.currentThread()).getPoolIndex()
+            : 0;
+        final long[] boards = canonical ? CanonicalBoards.BOARDS : AllBoards.BOARDS;
+
+        final int[] board = new int[5];
+        final int[] cards = new int[CARDS_LEFT];
+        final int[] comboClasses = new int[COMBO_COUNT];
+        final int[] strengths = new int[COMBO_COUNT];
+        final long[] keys = new long[COMBO_COUNT];
+        final long[] cardKeys = new long[COMBOS_PER_CARD];
+        // combos ranked below, and ranked the same including the combo itself, among all combos and among the
+        // combos sharing its first and its second card
+        final int[] below = new int[COMBO_COUNT];
+        final int[] same = new int[COMBO_COUNT];
+        final int[][] belowSharing = new int[2][COMBO_COUNT];
+        final int[][] sameSharing = new int[2][COMBO_COUNT];
+        final long[] counts = new long[3 * HoleCards.CLASS_COUNT];
+        long deals = 0;
+
+        for (int b = start; b < end; b++) {
+            final long boardMask = boards[b];
+            final long weight = canonical ? CanonicalBoards.WEIGHTS[b] : 1;
+            CardSet.ofMask(boardMask).toIndexes(board);
+            CardSet.ofMask(CardSet.FULL_DECK.getMask() & ~boardMask).toIndexes(cards);
+
+            final int boardState = table == null ? 0 : table.extend(HandRankTable.START, board);
+            int combo = 0;
+            for (int i = 0; i < CARDS_LEFT; i++) {
+                final int state = table == null ? 0 : table.extend(boardState, cards[i]);
+                for (int j = i + 1; j < CARDS_LEFT; j++) {
+                    strengths[combo] = table == null
+                        ? DealRangeTask.bruteForceStrength(cards[i], cards[j], board)
+                        : table.extend(state, cards[j]);
+                    comboClasses[combo] = HoleCards.valueOf(cards[i], cards[j]).getId();
+                    keys[combo] = (long) strengths[combo] << INDEX_BITS | combo;
+                    combo++;
+                }
+            }
+
+            Arrays.sort(keys);
+            rankGroups(keys, COMBO_COUNT, below, same);
+            for (int card = 0; card < CARDS_LEFT; card++) {
+                final int[] sharing = CARD_COMBOS[card];
+                for (int k = 0; k < COMBOS_PER_CARD; k++) {
+                    cardKeys[k] = (long) strengths[sharing[k] >>> 1] << INDEX_BITS | sharing[k];
+                }
+                Arrays.sort(cardKeys);
+                rankGroups(cardKeys, COMBOS_PER_CARD, belowSharing, sameSharing);
+            }
+
+            for (int c = 0; c < COMBO_COUNT; c++) {
+                // the combos sharing the first card and those sharing the second card only have this combo in common
+                final long wins = below[c] - belowSharing[0][c] - belowSharing[1][c];
+                final long ties = same[c] - sameSharing[0][c] - sameSharing[1][c] + 1;
+                final int id = comboClasses[c];
+                counts[3 * id] += weight * wins;
+                counts[3 * id + 1] += weight * (VILLAIN_COUNT - wins - ties);
+                counts[3 * id + 2] += weight * ties;
+            }
+            deals += weight * COMBO_COUNT * VILLAIN_COUNT;
+        }
+
+        results.add(counts);
+        permutations.add(stripe, deals);
+    }
+
+    private static long[] boards(boolean canonical) {
+        final long[] boards = new long[2598960];
+        int count = 0;
+        for (int b0 = 0; b0 < 52; b0++)
+            for (int b1 = b0 + 1; b1 < 52; b1++)
+                for (int b2 = b1 + 1; b2 < 52; b2++)
+                    for (int b3 = b2 + 1; b3 < 52; b3++)
+                        for (int b4 = b3 + 1; b4 < 52; b4++) {
+                            final long mask = CardSet.bit(b0) | CardSet.bit(b1) | CardSet.bit(b2) | CardSet.bit(b3)
+                                | CardSet.bit(b4);
+                            if (!canonical || SuitIsomorphism.ALL.isCanonical(mask)) {
+                                boards[count++] = mask;
+                            }
+                        }
+        return Arrays.copyOf(boards, count);
+    }
+
+    /**
+     * Counts, for each combo of a sorted run of combos, how many are ranked below it and how many the same.
+     *
+     * @param keys Sort keys of all combos, strength above the combo index
+     * @param length Number of keys
+     * @param below Number of combos ranked below, by combo index
+     * @param same Number of combos ranked the same, including the combo itself, by combo index
+     */
+    private static void rankGroups(long[] keys, int length, int[] below, int[] same) {
+        int group = 0;
+        while (group < length) {
+            final long strength = keys[group] >> INDEX_BITS;
+            int next = group + 1;
+            while (next < length && keys[next] >> INDEX_BITS == strength) {
+                next++;
+            }
+            for (int k = group; k < next; k++) {
+                below[(int) (keys[k] & INDEX_MASK)] = group;
+                same[(int) (keys[k] & INDEX_MASK)] = next - group;
+            }
+            group = next;
+        }
+    }
+
+    /**
+     * Counts, for each combo of a sorted run of the combos sharing one card, how many are ranked below it and how many
+     * the same, filed under whether the card is the combo's first or second card.
+     */
+    private static void rankGroups(long[] keys, int length, int[][] below, int[][] same) {
+        int group = 0;
+        while (group < length) {
+            final long strength = keys[group] >> INDEX_BITS;
+            int next = group + 1;
+            while (next < length && keys[next] >> INDEX_BITS == strength) {
+                next++;
+            }
+            for (int k = group; k < next; k++) {
+                final int slot = (int) (keys[k] & INDEX_MASK);
+                below[slot & 1][slot >>> 1] = group;
+                same[slot & 1][slot >>> 1] = next - group;
+            }
+            group = next;
+        }
+    }
+}
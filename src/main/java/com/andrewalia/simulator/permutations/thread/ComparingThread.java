@@ -1,13 +1,17 @@
 package com.andrewalia.simulator.permutations.thread;
 
-import java.util.Queue;
-import java.util.concurrent.atomic.AtomicLong;
-
-import org.javatuples.Triplet;
+import java.util.Arrays;
 
+import com.andrewalia.simulator.permutations.util.BoardSampleMoments;
+import com.andrewalia.simulator.permutations.util.DealRingBuffer;
 import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+import com.andrewalia.simulator.permutations.util.StripedCounter;
+import com.andrewalia.simulator.permutations.util.WorkUnit;
+import com.andrewalia.util.BatchEvaluator;
 import com.andrewalia.util.Card;
+import com.andrewalia.util.CardSet;
 import com.andrewalia.util.Deck;
+import com.andrewalia.util.HandRankTable;
 import com.andrewalia.util.HoleCards;
 import com.andrewalia.util.NCardHand;
 
@@ -17,139 +21,317 @@ import com.andrewalia.util.NCardHand;
  */
 public class ComparingThread implements Runnable {
 
-    private static final int REPORTING_INTERVAL = 500000;
+    private static final int DEAL_SIZE = DealRingBuffer.DEAL_SIZE;
 
-    /** Local map to store results of showdown comparisons */
-    private final ShowdownResultsMap localShowdownResultsMap;
+    /** Map to store results of showdown comparisons, that only this thread adds to */
+    private final ShowdownResultsMap showdownResultsMap;
 
     /** Counter for tracking number of permutations processed */
-    private final AtomicLong permutations;
+    private final StripedCounter permutations;
+
+    /** Stripe of the permutations counter that this thread adds to */
+    private final int stripe;
+
+    /** Ring buffer of batches of card index permutations */
+    private final DealRingBuffer ringBuffer;
+
+    /** First villain hole card of each deal in a run of deals sharing a hero and board */
+    private final int[] villainCards0;
+
+    /** Second villain hole card of each deal in a run of deals sharing a hero and board */
+    private final int[] villainCards1;
+
+    /** Villain strengths of a run of deals sharing a hero and board */
+    private final int[] villainStrengths;
+
+    /** Whether each slot of the ring buffer is a deal, or a hero and board to deal every villain of */
+    private final WorkUnit workUnit;
+
+    /** Sums of the wins of every board work unit, that only this thread adds to, or null to keep none */
+    private final BoardSampleMoments boardSampleMoments;
+
+    /** Cards left once the hero's hole cards and the board are dealt, for board work units */
+    private final int[] villainCandidates = new int[45];
 
-    /** Global map to store results of showdown comparisons */
-    private final ShowdownResultsMap globalShowdownResultsMap;
+    /** Wins, losses and ties of the batch being compared, by class id, added to the map once it is done */
+    private final long[] batchCounts = new long[3 * HoleCards.CLASS_COUNT];
 
-    /** Queue for card index permutations */
-    private final Queue<int[]> queue;
+    /** Board sums of the batch being compared, by class id, added to the moments once it is done */
+    private final long[] batchSums = new long[3 * HoleCards.CLASS_COUNT];
+
+    /** Number of seven-card hands this thread scored */
+    private long evaluations;
+
+    /** Cards of one deal, for brute force comparison */
+    private final Card[] heroCards = new Card[7];
+    private final Card[] villainCards = new Card[7];
+
+    /**
+     * Constructor to initialize ComparingThread.
+     *
+     * @param ringBuffer Ring buffer of batches of card index permutations
+     * @param permutations Counter for permutations
+     * @param stripe Stripe of the counter to add to, which no other comparing thread should use
+     * @param showdownResultsMap Map to store showdown results, which no other comparing thread should use
+     */
+    public ComparingThread(DealRingBuffer ringBuffer, StripedCounter permutations, int stripe,
+            ShowdownResultsMap showdownResultsMap) {
+        this(ringBuffer, permutations, stripe, showdownResultsMap, WorkUnit.DEAL);
+    }
 
-    /** Counter for the number of reports generated */
-    private long reports;
+    /**
+     * Constructor to initialize ComparingThread.
+     *
+     * @param ringBuffer Ring buffer of batches of card index permutations
+     * @param permutations Counter for permutations
+     * @param stripe Stripe of the counter to add to, which no other comparing thread should use
+     * @param showdownResultsMap Map to store showdown results, which no other comparing thread should use
+     * @param workUnit What the producers put in each slot of the ring buffer
+     */
+    public ComparingThread(DealRingBuffer ringBuffer, StripedCounter permutations, int stripe,
+            ShowdownResultsMap showdownResultsMap, WorkUnit workUnit) {
+        this(ringBuffer, permutations, stripe, showdownResultsMap, workUnit, null);
+    }
 
     /**
      * Constructor to initialize ComparingThread.
      *
-     * @param queue Queue of card index permutations
-     * @param permutations AtomicLong counter for permutations
-     * @param globalShowdownResultsMap Global map to store showdown results
+     * @param ringBuffer Ring buffer of batches of card index permutations
+     * @param permutations Counter for permutations
+     * @param stripe Stripe of the counter to add to, which no other comparing thread should use
+     * @param showdownResultsMap Map to store showdown results, which no other comparing thread should use
+     * @param workUnit What the producers put in each slot of the ring buffer
+     * @param boardSampleMoments Sums to add the wins of every board work unit to, which no other comparing thread
+     *     should use, or null to keep none
      */
-    public ComparingThread(Queue<int[]> queue, AtomicLong permutations, ShowdownResultsMap globalShowdownResultsMap) {
+    public ComparingThread(DealRingBuffer ringBuffer, StripedCounter permutations, int stripe,
+            ShowdownResultsMap showdownResultsMap, WorkUnit workUnit, BoardSampleMoments boardSampleMoments) {
+        this.boardSampleMoments = boardSampleMoments;
         this.permutations = permutations;
-        this.localShowdownResultsMap = new ShowdownResultsMap();
-        this.reports = 0;
-        this.globalShowdownResultsMap = globalShowdownResultsMap;
-        this.queue = queue;
+        this.workUnit = workUnit;
+        this.stripe = stripe;
+        this.showdownResultsMap = showdownResultsMap;
+        this.ringBuffer = ringBuffer;
+        this.villainCards0 = new int[ringBuffer.getBatchSize()];
+        this.villainCards1 = new int[ringBuffer.getBatchSize()];
+        this.villainStrengths = new int[ringBuffer.getBatchSize()];
     }
 
     /**
-     * The main run method where the thread execution starts.
+     * The main run method where the thread execution starts. Runs until the ring buffer is closed and drained, or
+     * aborted. Every batch is counted and added to this thread's map as soon as it is compared, so nothing is left
+     * to report when it returns.
      */
     @Override
     public void run() {
-        int[] cardIndexes;
-        while (true) {
-            synchronized(queue) {
-                while (queue.isEmpty()) {
-                    try {
-                        queue.wait();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-                cardIndexes = queue.poll();
-                queue.notify();
+        long sequence;
+        while ((sequence = ringBuffer.claimRead()) >= 0) {
+            final int size = ringBuffer.getSize(sequence);
+            if (workUnit == WorkUnit.BOARD) {
+                compareBoards(ringBuffer.getBatch(sequence), size);
+            } else {
+                compareAndUpdateShowdownResultsMap(ringBuffer.getBatch(sequence), size);
+            }
+            ringBuffer.release(sequence);
+            flushBatch();
+            permutations.add(stripe, (long) size * workUnit.getDeals());
+        }
+    }
+
+    /**
+     * Gets the number of seven-card hands this thread scored, which is only up to date once it returned.
+     *
+     * @return The number of evaluations
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Compares a batch of heroes and boards against every villain left and updates this thread's showdown results
+     * map.
+     * <p>
+     * The hero of each board is scored once and every villain once, and the board's wins, losses and ties are added
+     * to the map in one go.
+     * </p>
+     *
+     * @param units Flat array of heroes and boards, {@link DealRingBuffer#DEAL_SIZE} card indexes each, of which the
+     *     villain cards are unused
+     * @param size Number of heroes and boards in the batch
+     */
+    private void compareBoards(int[] units, int size) {
+        final HandRankTable table = NCardHand.isLookupEvaluatorEnabled() ? HandRankTable.getInstance() : null;
+        for (int offset = 0; offset < size * DEAL_SIZE; offset += DEAL_SIZE) {
+            long dealt = 0;
+            for (int i = 0; i < 7; i++) {
+                dealt |= CardSet.bit(units[offset + i]);
             }
+            CardSet.ofMask(CardSet.FULL_DECK.getMask() & ~dealt).toIndexes(villainCandidates);
 
-            compareAndUpdateLocalShowdownResultsMap(cardIndexes);
+            final int heroStrength;
+            int boardState = 0;
+            if (table != null) {
+                boardState = table.extend(HandRankTable.START, units[offset + 2], units[offset + 3],
+                    units[offset + 4], units[offset + 5], units[offset + 6]);
+                heroStrength = table.evaluate(boardState, units[offset], units[offset + 1]);
+            } else {
+                heroStrength = bruteForceStrength(units, offset, units[offset], units[offset + 1]);
+            }
 
-            if (permutations.getAndIncrement() > (reports + 1 ) * REPORTING_INTERVAL) {
-                report();
+            long wins = 0;
+            long losses = 0;
+            for (int i = 0; i < villainCandidates.length; i++) {
+                final int villainState = table == null ? 0 : table.extend(boardState, villainCandidates[i]);
+                for (int j = i + 1; j < villainCandidates.length; j++) {
+                    final int villainStrength = table == null
+                        ? bruteForceStrength(units, offset, villainCandidates[i], villainCandidates[j])
+                        : table.extend(villainState, villainCandidates[j]);
+                    if (heroStrength > villainStrength) {
+                        wins++;
+                    } else if (heroStrength < villainStrength) {
+                        losses++;
+                    }
+                }
+            }
+            evaluations += 1 + WorkUnit.VILLAINS_PER_BOARD;
+            final HoleCards holeCards = HoleCards.valueOf(units[offset], units[offset + 1]);
+            addResults(holeCards, wins, losses, WorkUnit.VILLAINS_PER_BOARD - wins - losses);
+            if (boardSampleMoments != null) {
+                BoardSampleMoments.add(batchSums, holeCards.getId(), wins);
             }
         }
     }
 
-
     /**
-     * Compares card permutations and updates the local showdown results map.
+     * Gets the strength of two hole cards and the board of a deal by brute force.
      *
-     * @param cardIndexes An array containing indices of cards
+     * @param deals Flat array of deals
+     * @param offset Offset of the deal whose board to use
+     * @param c0 Index of the first hole card
+     * @param c1 Index of the second hole card
+     * @return The strength of the best five-card hand
      */
-    private void compareAndUpdateLocalShowdownResultsMap(int[] cardIndexes) {
-        HoleCards holeCards;
-        try {
-            holeCards = HoleCards.valueOf(Deck.FULL_DECK.get(cardIndexes[0]), Deck.FULL_DECK.get(cardIndexes[1]));
-        } catch (NullPointerException e) {
-            System.out.println("cardIndexes[0] = " + cardIndexes[0]);
-            System.out.println("cardIndexes[1] = " + cardIndexes[1]);
-            throw e;
+    private int bruteForceStrength(int[] deals, int offset, int c0, int c1) {
+        heroCards[0] = Deck.FULL_DECK_ARRAY[c0];
+        heroCards[1] = Deck.FULL_DECK_ARRAY[c1];
+        for (int i = 2; i < 7; i++) {
+            heroCards[i] = Deck.FULL_DECK_ARRAY[deals[offset + i]];
         }
+        return NCardHand.bruteForceStrength(heroCards);
+    }
+
 
-        if (!localShowdownResultsMap.containsKey(holeCards)) {
-            localShowdownResultsMap.put(holeCards, new Triplet<Long[],Long[],Long[]>(new Long[] {0L}, new Long[] {0L}, new Long[] {0L}));
+    /**
+     * Compares a batch of deals and updates this thread's showdown results map.
+     * <p>
+     * Deals arrive in villain order for each hero and board, so with the hand rank table each run of deals
+     * sharing a hero and board walks the board once and scores all of its villains with one batch call.
+     * </p>
+     *
+     * @param deals Flat array of deals, {@link DealRingBuffer#DEAL_SIZE} card indexes each
+     * @param size Number of deals in the batch
+     */
+    private void compareAndUpdateShowdownResultsMap(int[] deals, int size) {
+        if (!NCardHand.isLookupEvaluatorEnabled()) {
+            for (int offset = 0; offset < size * DEAL_SIZE; offset += DEAL_SIZE) {
+                final int comparison = bruteForceCompare(deals, offset);
+                addResults(HoleCards.valueOf(deals[offset], deals[offset + 1]),
+                    comparison > 0 ? 1 : 0, comparison < 0 ? 1 : 0, comparison == 0 ? 1 : 0);
+            }
+            evaluations += 2L * size;
+            return;
         }
 
-        final int comparison =
-                new NCardHand( new Card[] {
-                    Deck.FULL_DECK_ARRAY[cardIndexes[0]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[1]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[2]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[3]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[4]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[5]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[6]]})
-            .compareTo(
-                new NCardHand( new Card[] {
-                    Deck.FULL_DECK_ARRAY[cardIndexes[7]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[8]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[2]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[3]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[4]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[5]],
-                    Deck.FULL_DECK_ARRAY[cardIndexes[6]]}));
-
-        final Triplet<Long[],Long[],Long[]> localShowdownResults = localShowdownResultsMap.get(holeCards);
-      
-        if (comparison > 0) { // if the holeCards win
-            localShowdownResults.getValue0()[0] = (localShowdownResultsMap.get(holeCards).getValue0()[0] + 1);
-        } else if (comparison < 0) { // loss
-            localShowdownResults.getValue1()[0] = (localShowdownResultsMap.get(holeCards).getValue1()[0] + 1);
-        } else { // tie
-            localShowdownResults.getValue2()[0] = (localShowdownResultsMap.get(holeCards).getValue2()[0] + 1);
+        final HandRankTable table = HandRankTable.getInstance();
+        int runStart = 0;
+        while (runStart < size) {
+            final int first = runStart * DEAL_SIZE;
+            int runEnd = runStart;
+            do {
+                villainCards0[runEnd - runStart] = deals[runEnd * DEAL_SIZE + 7];
+                villainCards1[runEnd - runStart] = deals[runEnd * DEAL_SIZE + 8];
+                runEnd++;
+            } while (runEnd < size && isSameHeroAndBoard(deals, first, runEnd * DEAL_SIZE));
+            final int runSize = runEnd - runStart;
+
+            final int boardState = table.extend(HandRankTable.START,
+                deals[first + 2], deals[first + 3], deals[first + 4], deals[first + 5], deals[first + 6]);
+            final int heroStrength = table.evaluate(boardState, deals[first], deals[first + 1]);
+            BatchEvaluator.evaluate(table, boardState, villainCards0, villainCards1, villainStrengths, runSize);
+            evaluations += 1 + runSize;
+
+            long wins = 0;
+            long losses = 0;
+            for (int i = 0; i < runSize; i++) {
+                if (heroStrength > villainStrengths[i]) {
+                    wins++;
+                } else if (heroStrength < villainStrengths[i]) {
+                    losses++;
+                }
+            }
+            addResults(HoleCards.valueOf(deals[first], deals[first + 1]), wins, losses, runSize - wins - losses);
+
+            runStart = runEnd;
         }
     }
 
     /**
-     * Reports results by updating the global showdown results map.
+     * Adds win, loss and tie counts for some hole cards to the counts of the batch.
+     *
+     * @param holeCards The hero's hole cards
+     * @param wins Number of deals the hero won
+     * @param losses Number of deals the hero lost
+     * @param ties Number of deals that tied
      */
-    private void report(){
-        synchronized (globalShowdownResultsMap) {
-            for (final HoleCards holeCards : localShowdownResultsMap.keySet()) {
-                if (!(globalShowdownResultsMap.containsKey(holeCards))) {
-                    globalShowdownResultsMap.put(holeCards, new Triplet<Long[],Long[],Long[]>(new Long[] {0L}, new Long[] {0L}, new Long[] {0L}));
-                }
-                final Triplet<Long[],Long[],Long[]> localShowdownResults = localShowdownResultsMap.get(holeCards);
-                final Triplet<Long[],Long[],Long[]> globalShowdownResults = globalShowdownResultsMap.get(holeCards);
+    private void addResults(HoleCards holeCards, long wins, long losses, long ties) {
+        final int id = holeCards.getId();
+        batchCounts[3 * id] += wins;
+        batchCounts[3 * id + 1] += losses;
+        batchCounts[3 * id + 2] += ties;
+    }
 
-                globalShowdownResults.getValue0()[0] = (globalShowdownResults.getValue0()[0] + localShowdownResults.getValue0()[0]);
-                localShowdownResults.getValue0()[0] = 0L;
+    /**
+     * Adds the counts and sums of the batch to this thread's map and moments, each under a single lock, and clears
+     * them for the next batch.
+     */
+    private void flushBatch() {
+        showdownResultsMap.add(batchCounts);
+        Arrays.fill(batchCounts, 0);
+        if (boardSampleMoments != null) {
+            boardSampleMoments.add(batchSums);
+            Arrays.fill(batchSums, 0);
+        }
+    }
 
-                globalShowdownResults.getValue1()[0] = (globalShowdownResults.getValue1()[0] + localShowdownResults.getValue1()[0]);
-                localShowdownResults.getValue1()[0] = 0L;
+    /**
+     * Compares the hero's hand (indexes 0-6) to the villain's hand (indexes 7, 8 and the board at 2-6) by brute force.
+     *
+     * @param deals Flat array of deals
+     * @param offset Offset of the deal to compare
+     * @return A positive number if the hero wins, negative if the villain wins, 0 on a tie
+     */
+    private int bruteForceCompare(int[] deals, int offset) {
+        for (int i = 0; i < 7; i++) {
+            heroCards[i] = Deck.FULL_DECK_ARRAY[deals[offset + i]];
+            villainCards[i] = Deck.FULL_DECK_ARRAY[deals[offset + (i < 2 ? i + 7 : i)]];
+        }
+        return new NCardHand(heroCards).compareTo(new NCardHand(villainCards));
+    }
 
-                globalShowdownResults.getValue2()[0] = (globalShowdownResults.getValue2()[0] + localShowdownResults.getValue2()[0]);
-                localShowdownResults.getValue2()[0] = 0L;
+    /**
+     * Checks whether two deals have the same hero hole cards and board.
+     *
+     * @param deals Flat array of deals
+     * @param offset0 Offset of one deal
+     * @param offset1 Offset of another deal
+     * @return True if indexes 0-6 match
+     */
+    private static boolean isSameHeroAndBoard(int[] deals, int offset0, int offset1) {
+        for (int i = 6; i >= 0; i--) {
+            if (deals[offset0 + i] != deals[offset1 + i]) {
+                return false;
             }
         }
-        reports++;
+        return true;
     }
-
-    
-}
\ No newline at end of file
+}
@@ -1,10 +1,12 @@
 package com.andrewalia.simulator.permutations.thread;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Queue;
-
-import org.apache.commons.math3.util.Combinations;
+import com.andrewalia.simulator.permutations.util.BoardOrder;
+import com.andrewalia.simulator.permutations.util.DealRingBuffer;
+import com.andrewalia.simulator.permutations.util.WorkUnit;
+import com.andrewalia.util.CardSet;
+import com.andrewalia.util.IndexPermutation;
+import com.andrewalia.util.IndexedCombinations;
+import com.andrewalia.util.RevolvingDoorCombinations;
 
 /**
  * The ProducerThread class is responsible for generating card index permutations.
@@ -12,119 +14,358 @@ import org.apache.commons.math3.util.Combinations;
  */
 public class ProducerThread implements Runnable {
 
-    private static int instanceCount = 0;
-    private static int totalThreadCount = 0;
-    private static boolean hasStarted = false;
+    /** Hero hole cards, as indexes of the deck */
+    private static final IndexedCombinations HOLE_CARDS = new IndexedCombinations(52, 2);
+
+    /** Boards, as indexes of the cards left once the hole cards are dealt */
+    private static final IndexedCombinations BOARDS = new IndexedCombinations(50, 5);
+
+    /** Number of (hero, board) units, each standing for the deals of a hero and board against every villain */
+    public static final long UNIT_COUNT = 1326L * 2118760L;
+
+    /** Ring buffer to publish batches of generated card index permutations to */
+    private final DealRingBuffer ringBuffer;
+
+    /** Order to walk the boards of each hero in */
+    private final BoardOrder boardOrder;
+
+    /** Whether to publish every deal or every hero and board */
+    private final WorkUnit workUnit;
 
-    /** Unique identifier for the instance */
-    private final int instanceNumber;
+    /** Seed of the board permutation in stratified order, which every producer of a run must share */
+    private final long seed;
 
-    /** Queue to hold generated card index permutations */
-    private final Queue<int[]> queue;
+    /** First (hero, board) unit of this producer, inclusive, in the order of its boards */
+    private final long rangeStart;
 
-    /** List to hold indices for a full deck of cards */
-    private final List<Integer> availableFullDeckArrayIndexes = new ArrayList<>(52);
+    /** Last (hero, board) unit of this producer, exclusive, in the order of its boards */
+    private final long rangeEnd;
+
+    /** Indexes of the cards left once the hole cards are dealt */
+    private final int[] boardCandidateIndexes = new int[50];
+
+    /** Indexes of the cards left once the hole cards and the board are dealt */
+    private final int[] opponentCandidateIndexes = new int[45];
+
+    /** Slot of the deal holding each board candidate, while it is on the board in revolving-door order */
+    private final int[] boardSlots = new int[50];
 
     /** Array to hold selected card indices */
     private final int[] fullDeckArrayIndexes = new int[9];
 
-    /** Counter for tracking the number of permutations processed */
-    private int permutations;
+    /** Sequence of the ring buffer slot being filled, or -1 if none is claimed */
+    private long sequence = -1;
+
+    /** Number of deals written to the slot being filled */
+    private int batchSize;
 
     /**
      * The main run method where the thread execution starts.
      */
     @Override
     public void run() {
+        if (boardOrder == BoardOrder.REVOLVING_DOOR) {
+            revolvingDoorBoards(rangeStart, rangeEnd);
+        } else if (boardOrder == BoardOrder.STRATIFIED) {
+            stratifiedBoards(rangeStart, rangeEnd);
+        } else {
+            lexicographicBoards(rangeStart, rangeEnd);
+        }
+        flush();
+    }
 
-        hasStarted = true;
-        for (int[] holeCardIndexes : new Combinations(52, 2)) {
-
-            fullDeckArrayIndexes[0] = availableFullDeckArrayIndexes.get(holeCardIndexes[0]);
-            fullDeckArrayIndexes[1] = availableFullDeckArrayIndexes.get(holeCardIndexes[1]);
-
-            availableFullDeckArrayIndexes.remove((Integer) fullDeckArrayIndexes[0]);
-            availableFullDeckArrayIndexes.remove((Integer) fullDeckArrayIndexes[1]);
-
-            for (int[] boardCardIndexes : new Combinations(50, 5)) {
-
-                fullDeckArrayIndexes[2] = availableFullDeckArrayIndexes.get(boardCardIndexes[0]);
-                fullDeckArrayIndexes[3] = availableFullDeckArrayIndexes.get(boardCardIndexes[1]);
-                fullDeckArrayIndexes[4] = availableFullDeckArrayIndexes.get(boardCardIndexes[2]);
-                fullDeckArrayIndexes[5] = availableFullDeckArrayIndexes.get(boardCardIndexes[3]);
-                fullDeckArrayIndexes[6] = availableFullDeckArrayIndexes.get(boardCardIndexes[4]);
-                
-                availableFullDeckArrayIndexes.remove((Integer)fullDeckArrayIndexes[2]);
-                availableFullDeckArrayIndexes.remove((Integer)fullDeckArrayIndexes[3]);
-                availableFullDeckArrayIndexes.remove((Integer)fullDeckArrayIndexes[4]);
-                availableFullDeckArrayIndexes.remove((Integer)fullDeckArrayIndexes[5]);
-                availableFullDeckArrayIndexes.remove((Integer)fullDeckArrayIndexes[6]);
-                
-                for (int[] opponentHoleCardIndexes : new Combinations(45, 2)) {
-                    if (permutations++ % totalThreadCount != instanceNumber) {
-                        continue;
-                    }
-
-                    fullDeckArrayIndexes[7] = availableFullDeckArrayIndexes.get(opponentHoleCardIndexes[0]);
-                    fullDeckArrayIndexes[8] = availableFullDeckArrayIndexes.get(opponentHoleCardIndexes[1]);
-
-                    synchronized (queue) {
-
-                        if (queue.size() > 10000) {
-                            try {
-                                queue.wait();
-                            } catch (InterruptedException e) {
-                                e.printStackTrace();
-                            }
-                        }
-
-                        queue.add(fullDeckArrayIndexes.clone());
-                        queue.notifyAll();
-                    }
+    /**
+     * Walks a range of (hero, board) units in the order of {@link IndexedCombinations}, the unit index being the index
+     * of the hero times the number of boards plus the index of the board. The first hero and board are found from
+     * their indexes, and the rest are stepped in place.
+     *
+     * @param start Index of the first unit, inclusive
+     * @param end Index of the last unit, exclusive
+     */
+    private void lexicographicBoards(long start, long end) {
+        if (start >= end) {
+            return;
+        }
+        final int[] holeCardIndexes = HOLE_CARDS.unrank(start / BOARDS.size(), new int[2]);
+        final int[] boardCardIndexes = BOARDS.unrank(start % BOARDS.size(), new int[5]);
+        long unit = start;
+        while (true) {
+            fullDeckArrayIndexes[0] = holeCardIndexes[0];
+            fullDeckArrayIndexes[1] = holeCardIndexes[1];
+            final CardSet afterHoleCards = CardSet.FULL_DECK.remove(CardSet.of(holeCardIndexes));
+            afterHoleCards.toIndexes(boardCandidateIndexes);
+
+            do {
+                addBoard(afterHoleCards, boardCardIndexes);
+                if (++unit == end) {
+                    return;
                 }
+            } while (BOARDS.next(boardCardIndexes));
 
-                availableFullDeckArrayIndexes.add(boardCardIndexes[0], fullDeckArrayIndexes[2]);
-                availableFullDeckArrayIndexes.add(boardCardIndexes[1], fullDeckArrayIndexes[3]);
-                availableFullDeckArrayIndexes.add(boardCardIndexes[2], fullDeckArrayIndexes[4]);
-                availableFullDeckArrayIndexes.add(boardCardIndexes[3], fullDeckArrayIndexes[5]);
-                availableFullDeckArrayIndexes.add(boardCardIndexes[4], fullDeckArrayIndexes[6]);
+            HOLE_CARDS.next(holeCardIndexes);
+            BOARDS.unrank(0, boardCardIndexes);
+        }
+    }
+
+    /**
+     * Walks a range of (hero, board) units in stratified order: unit i is hero i mod the number of heroes, with the
+     * board the seeded permutation maps i div the number of heroes to. The heroes take turns, and every hero's boards
+     * so far are a uniform random sample of its boards.
+     *
+     * @param start Index of the first unit, inclusive
+     * @param end Index of the last unit, exclusive
+     */
+    private void stratifiedBoards(long start, long end) {
+        final IndexPermutation boardPermutation = new IndexPermutation(BOARDS.size(), seed);
+        final int[] holeCardIndexes = new int[2];
+        final int[] boardCardIndexes = new int[5];
+        for (long unit = start; unit < end; unit++) {
+            HOLE_CARDS.unrank(unit % HOLE_CARDS.size(), holeCardIndexes);
+            BOARDS.unrank(boardPermutation.apply(unit / HOLE_CARDS.size()), boardCardIndexes);
+
+            fullDeckArrayIndexes[0] = holeCardIndexes[0];
+            fullDeckArrayIndexes[1] = holeCardIndexes[1];
+            final CardSet afterHoleCards = CardSet.FULL_DECK.remove(CardSet.of(holeCardIndexes));
+            afterHoleCards.toIndexes(boardCandidateIndexes);
+            addBoard(afterHoleCards, boardCardIndexes);
+        }
+    }
+
+    /**
+     * Walks a range of (hero, board) units in revolving-door order, the unit index being the index of the hero times
+     * the number of boards plus the position of the board in the hero's revolving-door order. Revolving-door order
+     * can't be entered in the middle, so a range starting inside a hero steps through that hero's earlier boards
+     * without adding them.
+     *
+     * @param start Index of the first unit, inclusive
+     * @param end Index of the last unit, exclusive
+     */
+    private void revolvingDoorBoards(long start, long end) {
+        if (start >= end) {
+            return;
+        }
+        final int[] holeCardIndexes = HOLE_CARDS.unrank(start / BOARDS.size(), new int[2]);
+        long unit = start - start % BOARDS.size();
+        while (true) {
+            fullDeckArrayIndexes[0] = holeCardIndexes[0];
+            fullDeckArrayIndexes[1] = holeCardIndexes[1];
+            final CardSet afterHoleCards = CardSet.FULL_DECK.remove(CardSet.of(holeCardIndexes));
+            afterHoleCards.toIndexes(boardCandidateIndexes);
+
+            unit = revolvingDoorBoards(afterHoleCards.getMask(), unit, start, end);
+            if (unit == end) {
+                return;
             }
-            availableFullDeckArrayIndexes.add(holeCardIndexes[0], fullDeckArrayIndexes[0]);
-            availableFullDeckArrayIndexes.add(holeCardIndexes[1], fullDeckArrayIndexes[1]);
+            HOLE_CARDS.next(holeCardIndexes);
         }
     }
 
     /**
-     * Constructor to initialize the ProducerThread.
+     * Adds the current hero with a board of this producer's.
+     *
+     * @param afterHoleCards The 50 cards left once the hero's hole cards are dealt
+     * @param boardCardIndexes Positions of the board cards among those 50
+     */
+    private void addBoard(CardSet afterHoleCards, int[] boardCardIndexes) {
+        fullDeckArrayIndexes[2] = boardCandidateIndexes[boardCardIndexes[0]];
+        fullDeckArrayIndexes[3] = boardCandidateIndexes[boardCardIndexes[1]];
+        fullDeckArrayIndexes[4] = boardCandidateIndexes[boardCardIndexes[2]];
+        fullDeckArrayIndexes[5] = boardCandidateIndexes[boardCardIndexes[3]];
+        fullDeckArrayIndexes[6] = boardCandidateIndexes[boardCardIndexes[4]];
+
+        addVillains(afterHoleCards.remove(CardSet.of(
+            fullDeckArrayIndexes[2],
+            fullDeckArrayIndexes[3],
+            fullDeckArrayIndexes[4],
+            fullDeckArrayIndexes[5],
+            fullDeckArrayIndexes[6]
+        )));
+    }
+
+    /**
+     * Walks the boards of the current hero in revolving-door order, with a fresh enumeration for each hero. Each
+     * board swaps one card of the last, so only that card's slot of the deal and bit of the board mask change.
+     *
+     * @param afterHoleCards Mask of the cards left once the hero's hole cards are dealt
+     * @param unit Index of the hero's first unit
+     * @param start Index of the first unit to add, inclusive
+     * @param end Index of the last unit to add, exclusive
+     * @return Index of the unit after the last one walked, which is end or the next hero's first unit
+     */
+    private long revolvingDoorBoards(long afterHoleCards, long unit, long start, long end) {
+        final RevolvingDoorCombinations boards = new RevolvingDoorCombinations(50, 5);
+        final int[] first = boards.getCombination();
+        long boardMask = 0;
+        for (int slot = 0; slot < 5; slot++) {
+            fullDeckArrayIndexes[2 + slot] = boardCandidateIndexes[first[slot]];
+            boardSlots[first[slot]] = 2 + slot;
+            boardMask |= CardSet.bit(boardCandidateIndexes[first[slot]]);
+        }
+
+        while (true) {
+            if (unit >= start) {
+                addVillains(CardSet.ofMask(afterHoleCards & ~boardMask));
+            }
+            if (++unit == end || !boards.next()) {
+                return unit;
+            }
+            final int removed = boards.getRemoved();
+            final int added = boards.getAdded();
+            final int slot = boardSlots[removed];
+            boardSlots[added] = slot;
+            fullDeckArrayIndexes[slot] = boardCandidateIndexes[added];
+            boardMask ^= CardSet.bit(boardCandidateIndexes[removed]) | CardSet.bit(boardCandidateIndexes[added]);
+        }
+    }
+
+    /**
+     * Adds the current hero and board as one unit, or else a deal of them against every pair of villain hole cards.
      *
-     * @param queue Queue to hold generated card index permutations
+     * @param villainCandidates The 45 cards left once the hero's hole cards and the board are dealt
      */
-    public ProducerThread(Queue<int[]> queue) {
-        if (totalThreadCount == 0)
-            throw new IllegalArgumentException("threadCount must be greater than 0");
-        this.queue = queue;
-        instanceNumber = instanceCount++;
-        permutations = 0;
-
-        for (int i = 0; i < 52; i++) {
-            availableFullDeckArrayIndexes.add(i);
+    private void addVillains(CardSet villainCandidates) {
+        if (workUnit == WorkUnit.BOARD) {
+            fullDeckArrayIndexes[7] = -1;
+            fullDeckArrayIndexes[8] = -1;
+            add(fullDeckArrayIndexes);
+            return;
+        }
+        villainCandidates.toIndexes(opponentCandidateIndexes);
+        for (int i = 0; i < opponentCandidateIndexes.length; i++) {
+            for (int j = i + 1; j < opponentCandidateIndexes.length; j++) {
+                fullDeckArrayIndexes[7] = opponentCandidateIndexes[i];
+                fullDeckArrayIndexes[8] = opponentCandidateIndexes[j];
+                add(fullDeckArrayIndexes);
+            }
         }
     }
 
     /**
-     * Static method to set the total thread count for ProducerThread instances.
+     * Copies a deal into the batch being filled, publishing the batch once it is full.
      *
-     * @param totalThreadCount The total number of threads to be created
-     * @throws IllegalArgumentException If totalThreadCount is less than 1
-     * @throws IllegalStateException If the threads have already started
+     * @param deal Array of card indexes
+     */
+    private void add(int[] deal) {
+        if (sequence < 0) {
+            sequence = ringBuffer.claimWrite();
+        }
+        System.arraycopy(deal, 0, ringBuffer.getBatch(sequence), batchSize * DealRingBuffer.DEAL_SIZE,
+            DealRingBuffer.DEAL_SIZE);
+        if (++batchSize == ringBuffer.getBatchSize()) {
+            flush();
+        }
+    }
+
+    /**
+     * Publishes the batch being filled, if any.
      */
-    public static void setTotalThreadCount(int totalThreadCount) {
+    private void flush() {
+        if (sequence >= 0) {
+            ringBuffer.publish(sequence, batchSize);
+            sequence = -1;
+            batchSize = 0;
+        }
+    }
+
+    /**
+     * Constructor to initialize the ProducerThread.
+     *
+     * @param ringBuffer Ring buffer to publish batches of generated card index permutations to
+     * @param instanceNumber Which of the producer threads this is, from 0
+     * @param totalThreadCount Number of producer threads sharing the deals
+     * @throws IllegalArgumentException If totalThreadCount is less than 1 or instanceNumber is out of range
+     */
+    public ProducerThread(DealRingBuffer ringBuffer, int instanceNumber, int totalThreadCount) {
+        this(ringBuffer, instanceNumber, totalThreadCount, BoardOrder.LEXICOGRAPHIC, WorkUnit.DEAL);
+    }
+
+    /**
+     * Constructor to initialize the ProducerThread.
+     *
+     * @param ringBuffer Ring buffer to publish batches of generated card index permutations to
+     * @param instanceNumber Which of the producer threads this is, from 0
+     * @param totalThreadCount Number of producer threads sharing the deals
+     * @param boardOrder Order to walk the boards of each hero in
+     * @param workUnit Whether to publish every deal, or every hero and board for the comparing threads to deal the
+     *     villains of
+     * @throws IllegalArgumentException If totalThreadCount is less than 1 or instanceNumber is out of range
+     */
+    public ProducerThread(DealRingBuffer ringBuffer, int instanceNumber, int totalThreadCount, BoardOrder boardOrder,
+            WorkUnit workUnit) {
+        this(ringBuffer, instanceNumber, totalThreadCount, boardOrder, workUnit, 0);
+    }
+
+    /**
+     * Constructor to initialize the ProducerThread.
+     *
+     * @param ringBuffer Ring buffer to publish batches of generated card index permutations to
+     * @param instanceNumber Which of the producer threads this is, from 0
+     * @param totalThreadCount Number of producer threads sharing the deals
+     * @param boardOrder Order to walk the boards of each hero in
+     * @param workUnit Whether to publish every deal, or every hero and board for the comparing threads to deal the
+     *     villains of
+     * @param seed Seed of the board permutation in stratified order, the same for every producer of a run
+     * @throws IllegalArgumentException If totalThreadCount is less than 1 or instanceNumber is out of range
+     */
+    public ProducerThread(DealRingBuffer ringBuffer, int instanceNumber, int totalThreadCount, BoardOrder boardOrder,
+            WorkUnit workUnit, long seed) {
+        this(ringBuffer, instanceNumber, totalThreadCount, boardOrder, workUnit, seed,
+            rangeBound(instanceNumber, totalThreadCount, boardOrder),
+            rangeBound(instanceNumber + 1, totalThreadCount, boardOrder));
+    }
+
+    /**
+     * Gets where the units of a producer start when they are shared evenly among the producers. In revolving-door
+     * order the units are shared by whole heroes, so every producer walks each of its heroes' boards from the first.
+     *
+     * @param instanceNumber Which of the producer threads this is, from 0, or the number of them for the end
+     * @param totalThreadCount Number of producer threads sharing the deals
+     * @param boardOrder Order to walk the boards of each hero in
+     * @return Index of the producer's first unit
+     */
+    private static long rangeBound(int instanceNumber, int totalThreadCount, BoardOrder boardOrder) {
+        final int instance = Math.max(0, instanceNumber);
+        final int total = Math.max(1, totalThreadCount);
+        if (boardOrder == BoardOrder.REVOLVING_DOOR) {
+            return HOLE_CARDS.size() * instance / total * BOARDS.size();
+        }
+        return UNIT_COUNT * instance / total;
+    }
+
+    private ProducerThread(DealRingBuffer ringBuffer, int instanceNumber, int totalThreadCount, BoardOrder boardOrder,
+            WorkUnit workUnit, long seed, long rangeStart, long rangeEnd) {
         //must be >= 1
         if (totalThreadCount < 1)
             throw new IllegalArgumentException("totalThreadCount must be greater than 0");
-        //must not have started yet
-        if (hasStarted)
-            throw new IllegalStateException("totalThreadCount cannot be changed after threads have started");
-        ProducerThread.totalThreadCount = totalThreadCount;
+        if (instanceNumber < 0 || instanceNumber >= totalThreadCount)
+            throw new IllegalArgumentException("instanceNumber must be between 0 and " + (totalThreadCount - 1));
+        this.ringBuffer = ringBuffer;
+        this.boardOrder = boardOrder;
+        this.workUnit = workUnit;
+        this.seed = seed;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+    }
+
+    /**
+     * Creates a producer of one range of the (hero, board) units, e.g. a segment of a run whose segments are produced
+     * one after another.
+     *
+     * @param ringBuffer Ring buffer to publish batches of generated card index permutations to
+     * @param start First unit, inclusive
+     * @param end Last unit, exclusive
+     * @param boardOrder Order of the units
+     * @param workUnit Whether to publish every deal, or every hero and board for the comparing threads to deal the
+     *     villains of
+     * @param seed Seed of the board permutation in stratified order, the same for every producer of a run
+     * @return The producer
+     * @throws IllegalArgumentException If the range is out of bounds
+     */
+    public static ProducerThread ofRange(DealRingBuffer ringBuffer, long start, long end, BoardOrder boardOrder,
+            WorkUnit workUnit, long seed) {
+        if (start < 0 || end > UNIT_COUNT || start > end) {
+            throw new IllegalArgumentException("Range " + start + " to " + end + " out of 0 to " + UNIT_COUNT);
+        }
+        return new ProducerThread(ringBuffer, 0, 1, boardOrder, workUnit, seed, start, end);
     }
 }
@@ -0,0 +1,451 @@
+package com.andrewalia.simulator.permutations.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Picks the producer threads, comparing threads and batch size of a permutations run by measuring them, or only the
+ * number of threads of a run whose threads all do the same work, see {@link #forThreads(int)}.
+ * <p>
+ * A tuned run goes through the deals in consecutive segments, and asks the tuner for the setup of each one. After a
+ * warm-up segment, the tuner calibrates one parameter at a time on short segments: first the number of threads, with
+ * producers and comparers split the usual way, then the split, then the batch size, keeping the fastest value of each.
+ * Every segment is part of the run, so calibrating costs no deals, only the time of the slower setups. After that it
+ * runs long segments with the best setup, and calibrates again if their throughput moves by more than
+ * {@link #TOLERANCE} from the calibrated one, e.g. when other jobs start or stop on the machine.
+ * </p>
+ * <p>
+ * Every measurement is kept, in order, as the calibration curve, so a run can log what it tried and what it chose.
+ * </p>
+ */
+public final class AutoTuner {
+
+    /** Target length of a calibration segment. */
+    public static final long CALIBRATION_MILLIS = 2000;
+
+    /** Target length of a segment with the chosen setup. */
+    public static final long STEADY_MILLIS = 30000;
+
+    /** Relative change of throughput that makes the tuner calibrate again. */
+    public static final double TOLERANCE = 0.15;
+
+    /** Units of the first segment, before any rate is known. */
+    static final long FIRST_SEGMENT_UNITS = 1 << 14;
+
+    /** Batch sizes tried, around the default. */
+    private static final int[] BATCH_SIZES = { 256, 1024, 4096, 16384 };
+
+    /** Threads per producer thread in the usual split. */
+    private static final double PRODUCER_COMPARING_RATIO = 2.5;
+
+    /**
+     * What a segment is run for.
+     */
+    public enum Phase {
+        /** Running once so the first measurements don't include JIT compilation. */
+        WARMUP,
+        /** Trying thread counts. */
+        THREADS,
+        /** Trying splits of the threads into producers and comparers. */
+        PRODUCERS,
+        /** Trying batch sizes. */
+        BATCH_SIZE,
+        /** Running with the chosen setup. */
+        STEADY
+    }
+
+    /**
+     * Producer threads, comparing threads and batch size of a segment.
+     */
+    public static final class Setup {
+        private final int producers;
+        private final int comparers;
+        private final int batchSize;
+
+        public Setup(int producers, int comparers, int batchSize) {
+            if (producers < 1 || comparers < 1 || batchSize < 1) {
+                throw new IllegalArgumentException("Invalid setup " + producers + "+" + comparers + " threads, batch "
+                    + batchSize);
+            }
+            this.producers = producers;
+            this.comparers = comparers;
+            this.batchSize = batchSize;
+        }
+
+        private Setup(int threadCount) {
+            if (threadCount < 1) {
+                throw new IllegalArgumentException("Invalid setup of " + threadCount + " threads");
+            }
+            this.producers = 0;
+            this.comparers = threadCount;
+            this.batchSize = 0;
+        }
+
+        /**
+         * Gets the setup of a run whose threads all do the same work, which has no producers and no batch size.
+         *
+         * @param threadCount Number of threads
+         * @return The setup
+         */
+        public static Setup ofThreads(int threadCount) {
+            return new Setup(threadCount);
+        }
+
+        /**
+         * Gets the usual setup for a number of threads, one producer for every 2.5 threads and the rest comparing.
+         *
+         * @param threadCount Number of threads, of which at least one of each kind is used
+         * @param batchSize Units per batch
+         * @return The setup
+         */
+        public static Setup split(int threadCount, int batchSize) {
+            final int producers = Math.max(1, (int) (threadCount / PRODUCER_COMPARING_RATIO));
+            return new Setup(producers, Math.max(1, threadCount - producers), batchSize);
+        }
+
+        public int getProducers() {
+            return producers;
+        }
+
+        public int getComparers() {
+            return comparers;
+        }
+
+        public int getThreadCount() {
+            return producers + comparers;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Setup)) {
+                return false;
+            }
+            final Setup other = (Setup) o;
+            return producers == other.producers && comparers == other.comparers && batchSize == other.batchSize;
+        }
+
+        @Override
+        public int hashCode() {
+            return (producers * 31 + comparers) * 31 + batchSize;
+        }
+
+        /**
+         * Formats the setup, e.g. "2 producer + 5 comparing threads, batch 1024", or "4 threads" without producers.
+         */
+        @Override
+        public String toString() {
+            if (producers == 0) {
+                return comparers + " threads";
+            }
+            return producers + " producer + " + comparers + " comparing threads, batch " + batchSize;
+        }
+    }
+
+    /**
+     * Throughput of one segment.
+     */
+    public static final class Measurement {
+        private final Phase phase;
+        private final Setup setup;
+        private final long deals;
+        private final long millis;
+
+        Measurement(Phase phase, Setup setup, long deals, long millis) {
+            this.phase = phase;
+            this.setup = setup;
+            this.deals = deals;
+            this.millis = Math.max(1, millis);
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        public Setup getSetup() {
+            return setup;
+        }
+
+        public long getDeals() {
+            return deals;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public double getDealsPerSecond() {
+            return deals * 1000.0 / millis;
+        }
+
+        /**
+         * Formats the measurement, e.g. "THREADS: 2 producer + 5 comparing threads, batch 1024: 4.123e+08 deals/s".
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s: %s: %.4g deals/s", phase, setup, getDealsPerSecond());
+        }
+    }
+
+    private final int minThreads;
+    private final int maxThreads;
+
+    /** Whether the split into producers and comparers and the batch size are tuned after the number of threads. */
+    private final boolean tunesSplit;
+
+    private final List<Measurement> curve = new ArrayList<>();
+
+    private Phase phase = Phase.WARMUP;
+
+    /** Setups left to try in the current phase, the first of which runs next. */
+    private final List<Setup> candidates = new ArrayList<>();
+
+    /** Measurements of the current phase, including the setup it started from. */
+    private final List<Measurement> phaseMeasurements = new ArrayList<>();
+
+    private Setup best;
+    private double bestDealsPerSecond;
+
+    /** Units per millisecond of the last segment, or 0 before the first. */
+    private double unitsPerMilli;
+
+    /**
+     * Creates a tuner.
+     *
+     * @param maxThreads Most producer and comparing threads together to try, at least 2 are always tried
+     * @param batchSize Batch size to start from
+     */
+    public AutoTuner(int maxThreads, int batchSize) {
+        this.minThreads = 2;
+        this.maxThreads = Math.max(minThreads, maxThreads);
+        this.tunesSplit = true;
+        this.best = Setup.split(this.maxThreads, batchSize);
+        candidates.add(best);
+    }
+
+    private AutoTuner(int maxThreads) {
+        this.minThreads = 1;
+        this.maxThreads = Math.max(minThreads, maxThreads);
+        this.tunesSplit = false;
+        this.best = Setup.ofThreads(this.maxThreads);
+        candidates.add(best);
+    }
+
+    /**
+     * Creates a tuner of the number of threads only, for a run whose threads all do the same work, e.g. fork-join
+     * workers. Its setups are {@link Setup#ofThreads(int)}, and it goes to {@link Phase#STEADY} right after
+     * {@link Phase#THREADS}.
+     *
+     * @param maxThreads Most threads to try, at least 1 is always tried
+     * @return The tuner
+     */
+    public static AutoTuner forThreads(int maxThreads) {
+        return new AutoTuner(maxThreads);
+    }
+
+    /**
+     * Gets the setup to run the next segment with.
+     *
+     * @return The setup
+     */
+    public Setup next() {
+        return candidates.isEmpty() ? best : candidates.get(0);
+    }
+
+    /**
+     * Gets the number of units the next segment should have to last about as long as its phase wants, at the rate of
+     * the last segment.
+     *
+     * @return The number of units, at least {@link #FIRST_SEGMENT_UNITS}
+     */
+    public long getSegmentUnits() {
+        final long millis = phase == Phase.STEADY ? STEADY_MILLIS : CALIBRATION_MILLIS;
+        return Math.max(FIRST_SEGMENT_UNITS, (long) (unitsPerMilli * millis));
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Gets the best setup found so far.
+     *
+     * @return The setup
+     */
+    public Setup getBest() {
+        return best;
+    }
+
+    /**
+     * Gets the throughput of the best setup when it was calibrated.
+     *
+     * @return Deals per second, or 0 before calibration
+     */
+    public double getBestDealsPerSecond() {
+        return bestDealsPerSecond;
+    }
+
+    /**
+     * Gets every measurement so far, in order.
+     *
+     * @return The calibration curve
+     */
+    public List<Measurement> getCurve() {
+        return Collections.unmodifiableList(curve);
+    }
+
+    /**
+     * Describes a segment just recorded, for a log: its measurement while calibrating, then the setup chosen if that
+     * ended the calibration, or the change of throughput if it started the calibration again.
+     *
+     * @param phase The phase of the segment, as {@link #getPhase()} gave before it ran
+     * @param measurement The measurement {@link #record(Setup, long, long, long)} returned for it
+     * @return The lines to log, or an empty string for a segment of the chosen setup that changed nothing
+     */
+    public String describe(Phase phase, Measurement measurement) {
+        final StringBuilder sb = new StringBuilder();
+        if (phase != Phase.STEADY) {
+            sb.append("Calibration ").append(measurement);
+            if (this.phase == Phase.STEADY) {
+                sb.append(String.format(Locale.ROOT, "%nAuto-tune chose %s, %.4g deals/s", best, bestDealsPerSecond));
+            }
+        } else if (this.phase != Phase.STEADY) {
+            sb.append(String.format(Locale.ROOT, "Throughput moved to %.4g deals/s from %.4g, calibrating again",
+                measurement.getDealsPerSecond(), bestDealsPerSecond));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Describes every calibration measurement so far, one per line, e.g. to log at the end of a run.
+     *
+     * @return The calibration curve, with a heading
+     */
+    public String describeCurve() {
+        final StringBuilder sb = new StringBuilder("Calibration curve:");
+        for (Measurement measurement : curve) {
+            if (measurement.getPhase() != Phase.STEADY) {
+                sb.append(String.format("%n\t")).append(measurement);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Records how a segment went and moves on to the next setup to try.
+     *
+     * @param setup The setup the segment ran with, as given by {@link #next()}
+     * @param units Units in the segment
+     * @param deals Deals in the segment
+     * @param millis Time the segment took
+     * @return The measurement
+     */
+    public Measurement record(Setup setup, long units, long deals, long millis) {
+        final Measurement measurement = new Measurement(phase, setup, deals, millis);
+        curve.add(measurement);
+        unitsPerMilli = (double) units / measurement.getMillis();
+
+        switch (phase) {
+            case WARMUP:
+                startPhase(Phase.THREADS, null);
+                break;
+            case STEADY:
+                final double change = measurement.getDealsPerSecond() / bestDealsPerSecond - 1;
+                if (Math.abs(change) > TOLERANCE) {
+                    startPhase(Phase.THREADS, null);
+                }
+                break;
+            default:
+                candidates.remove(setup);
+                phaseMeasurements.add(measurement);
+                if (candidates.isEmpty()) {
+                    endPhase();
+                }
+        }
+        return measurement;
+    }
+
+    /**
+     * Keeps the fastest setup of the phase and starts the next one.
+     */
+    private void endPhase() {
+        Measurement fastest = phaseMeasurements.get(0);
+        for (Measurement m : phaseMeasurements) {
+            if (m.getDealsPerSecond() > fastest.getDealsPerSecond()) {
+                fastest = m;
+            }
+        }
+        best = fastest.getSetup();
+        bestDealsPerSecond = fastest.getDealsPerSecond();
+        switch (phase) {
+            case THREADS:
+                if (tunesSplit) {
+                    startPhase(Phase.PRODUCERS, fastest);
+                } else {
+                    phase = Phase.STEADY;
+                }
+                break;
+            case PRODUCERS:
+                startPhase(Phase.BATCH_SIZE, fastest);
+                break;
+            default:
+                phase = Phase.STEADY;
+        }
+    }
+
+    /**
+     * Gets the setup to try a number of threads with, split the usual way if the split is tuned.
+     */
+    private Setup setupOf(int threadCount) {
+        return tunesSplit ? Setup.split(threadCount, best.getBatchSize()) : Setup.ofThreads(threadCount);
+    }
+
+    /**
+     * Starts a calibration phase with the setups to try around the best one.
+     *
+     * @param phase The phase
+     * @param incumbent Measurement of the best setup, which isn't run again, or null to run every setup
+     */
+    private void startPhase(Phase phase, Measurement incumbent) {
+        this.phase = phase;
+        candidates.clear();
+        phaseMeasurements.clear();
+        final Set<Setup> setups = new LinkedHashSet<>();
+        switch (phase) {
+            case THREADS:
+                for (int threads = minThreads; threads < maxThreads; threads *= 2) {
+                    setups.add(setupOf(threads));
+                }
+                setups.add(setupOf(maxThreads));
+                break;
+            case PRODUCERS:
+                final int threads = best.getThreadCount();
+                for (int producers : new int[] { best.getProducers() - 1, best.getProducers() + 1,
+                    2 * best.getProducers() }) {
+                    if (producers >= 1 && producers < threads) {
+                        setups.add(new Setup(producers, threads - producers, best.getBatchSize()));
+                    }
+                }
+                break;
+            default:
+                for (int batchSize : BATCH_SIZES) {
+                    setups.add(new Setup(best.getProducers(), best.getComparers(), batchSize));
+                }
+        }
+        if (incumbent != null) {
+            setups.remove(incumbent.getSetup());
+            phaseMeasurements.add(incumbent);
+        }
+        candidates.addAll(setups);
+        if (candidates.isEmpty()) {
+            endPhase();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.andrewalia.simulator.permutations.util;
+
+/**
+ * Order in which producers walk the boards of each hero.
+ */
+public enum BoardOrder {
+
+    /** Lexicographic order of the board card positions, where several board cards can change between boards. */
+    LEXICOGRAPHIC,
+
+    /**
+     * Revolving-door order, where each board swaps exactly one card for another, so the board's mask and the deal's
+     * board slots are updated in constant time instead of rebuilt.
+     */
+    REVOLVING_DOOR,
+
+    /**
+     * Stratified pseudo-random order: heroes take turns, one board each, and the boards of every hero follow the same
+     * seeded permutation of the board indexes. At any point every hero has seen as many boards as any other, give or
+     * take one, drawn uniformly at random, so the results so far are unbiased estimates of the final ones, which are
+     * still reached exactly once every board is seen.
+     */
+    STRATIFIED;
+
+    /**
+     * Gets a board order by name, e.g. "lex", "revolving" or "stratified".
+     *
+     * @param name The name of the order, ignoring case, or of the constant.
+     * @return The board order.
+     * @throws IllegalArgumentException If there is no order by that name.
+     */
+    public static BoardOrder fromName(String name) {
+        switch (name.toLowerCase()) {
+            case "lex":
+            case "lexicographic":
+                return LEXICOGRAPHIC;
+            case "revolving":
+            case "revolving_door":
+                return REVOLVING_DOOR;
+            case "stratified":
+                return STRATIFIED;
+            default:
+                throw new IllegalArgumentException("Unknown board order " + name
+                    + ", expected lex, revolving or stratified");
+        }
+    }
+}
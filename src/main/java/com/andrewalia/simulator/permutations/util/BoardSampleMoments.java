@@ -0,0 +1,138 @@
+package com.andrewalia.simulator.permutations.util;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+import com.andrewalia.util.HoleCards;
+
+/**
+ * Number of heroes and boards seen, and the sum and sum of squares of their wins, for every {@link HoleCards} class.
+ * <p>
+ * In {@link BoardOrder#STRATIFIED} order the heroes and boards seen so far are a uniform random sample of each
+ * class's, so the win percentage of a class so far is an unbiased estimate of its final one, and these sums give its
+ * standard error. The sums are kept like the counts of a {@link ShowdownResultsMap}: writers take a
+ * {@link StampedLock}, once per batch of sums rather than per board, readers copy optimistically, and every comparing
+ * thread keeps its own, which are {@link #reduce(BoardSampleMoments...)}d when read.
+ * </p>
+ */
+public class BoardSampleMoments {
+
+    /** Boards dealt to every hero, C(50, 5). */
+    public static final long BOARDS_PER_HERO = 2118760;
+
+    private static final int BOARDS = 0;
+    private static final int WINS = 1;
+    private static final int SQUARES = 2;
+
+    /** Boards, wins and squared wins of every class, by class id. */
+    private final long[] sums = new long[3 * HoleCards.CLASS_COUNT];
+
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Adds the wins of one hero and board against all of its villains.
+     *
+     * @param id The {@link HoleCards#getId()} of the hero's hole cards
+     * @param wins Number of the {@value WorkUnit#VILLAINS_PER_BOARD} villains the hero beat
+     */
+    public void add(int id, long wins) {
+        final long stamp = lock.writeLock();
+        try {
+            add(sums, id, wins);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds the wins of one hero and board to sums laid out like {@link #snapshotSums()}, e.g. those of a batch that
+     * are {@link #add(long[])}ed once the batch is done, without taking any lock.
+     *
+     * @param sums Boards, wins and squared wins of every class, by class id
+     * @param id The {@link HoleCards#getId()} of the hero's hole cards
+     * @param wins Number of the {@value WorkUnit#VILLAINS_PER_BOARD} villains the hero beat
+     */
+    public static void add(long[] sums, int id, long wins) {
+        sums[3 * id + BOARDS]++;
+        sums[3 * id + WINS] += wins;
+        sums[3 * id + SQUARES] += wins * wins;
+    }
+
+    /**
+     * Adds the sums of every class at once, taking the write lock a single time.
+     *
+     * @param added Boards, wins and squared wins of every class, by class id, laid out like {@link #snapshotSums()}
+     */
+    public void add(long[] added) {
+        if (added.length != sums.length) {
+            throw new IllegalArgumentException("Expected " + sums.length + " sums, got " + added.length);
+        }
+        final long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += added[i];
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds all the sums of another instance to this one.
+     *
+     * @param other The sums to add, which are left unchanged
+     */
+    public void merge(BoardSampleMoments other) {
+        add(other.snapshotSums());
+    }
+
+    /**
+     * Adds up a number of instances into a new one.
+     *
+     * @param moments The sums to add up, which are left unchanged
+     * @return The total sums
+     */
+    public static BoardSampleMoments reduce(BoardSampleMoments... moments) {
+        return Arrays.stream(moments).parallel()
+            .collect(BoardSampleMoments::new, BoardSampleMoments::merge, BoardSampleMoments::merge);
+    }
+
+    /**
+     * Copies the sums without blocking writers, copying again until no write came in during the copy.
+     *
+     * @return Boards, wins and squared wins of every class, by class id
+     */
+    public long[] snapshotSums() {
+        final long[] snapshot = new long[sums.length];
+        long stamp;
+        do {
+            stamp = lock.tryOptimisticRead();
+            System.arraycopy(sums, 0, snapshot, 0, sums.length);
+        } while (!lock.validate(stamp));
+        return snapshot;
+    }
+
+    /**
+     * Gets the standard error of the win ratio of a class so far as an estimate of its final win ratio.
+     * <p>
+     * The win ratio of every hero and board is one sample, drawn without replacement from the
+     * {@link HoleCards#getComboCount()} x {@value #BOARDS_PER_HERO} of the class, so the error shrinks with the finite
+     * population correction and is 0 once every board is seen.
+     * </p>
+     *
+     * @param sums Sums of every class, as copied by {@link #snapshotSums()}
+     * @param id The {@link HoleCards#getId()} of the class
+     * @return The standard error, or NaN with fewer than two boards seen
+     */
+    public static double standardError(long[] sums, int id) {
+        final long boards = sums[3 * id + BOARDS];
+        if (boards < 2) {
+            return Double.NaN;
+        }
+        final double population = (double) HoleCards.fromId(id).getComboCount() * BOARDS_PER_HERO;
+        final double mean = (double) sums[3 * id + WINS] / boards;
+        final double variance = Math.max(0, ((double) sums[3 * id + SQUARES] - boards * mean * mean) / (boards - 1))
+            / ((double) WorkUnit.VILLAINS_PER_BOARD * WorkUnit.VILLAINS_PER_BOARD);
+        return Math.sqrt(Math.max(0, 1 - boards / population) * variance / boards);
+    }
+}
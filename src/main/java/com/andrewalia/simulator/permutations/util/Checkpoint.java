@@ -0,0 +1,213 @@
+package com.andrewalia.simulator.permutations.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+import com.andrewalia.util.AtomicFiles;
+import com.andrewalia.util.HoleCards;
+
+/**
+ * Progress of a fork-join permutations run that can be saved to a file and resumed from.
+ * <p>
+ * The run is cut into leaves (see {@code DealRangeTask}), and a checkpoint records which leaves are done and the
+ * showdown results of those leaves only. A leaf adds its results and marks itself done in one step, so a checkpoint
+ * taken at any moment is consistent, and resuming only redoes the leaves that were in progress. Results are whole
+ * counts, so the totals of a resumed run are exactly those of an uninterrupted one.
+ * </p>
+ * <p>
+ * Files are written with {@link AtomicFiles}, so a crash leaves either the old or the new checkpoint, never a partial
+ * one. They end with a checksum.
+ * </p>
+ */
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x504b4350; // "PKCP"
+    private static final int VERSION = 2;
+
+    private final boolean canonical;
+    private final int leafCount;
+    private final BitSet completedLeaves;
+    private final ShowdownResultsMap showdownResultsMap;
+    private long completedDeals;
+
+    /**
+     * Creates a checkpoint with no leaves done.
+     *
+     * @param canonical True if the run evaluates suit-canonical deals only
+     * @param leafCount Number of leaves in the run
+     */
+    public Checkpoint(boolean canonical, int leafCount) {
+        this(canonical, leafCount, new BitSet(leafCount), new ShowdownResultsMap(), 0);
+    }
+
+    private Checkpoint(boolean canonical, int leafCount, BitSet completedLeaves, ShowdownResultsMap showdownResultsMap,
+            long completedDeals) {
+        this.canonical = canonical;
+        this.leafCount = leafCount;
+        this.completedLeaves = completedLeaves;
+        this.showdownResultsMap = showdownResultsMap;
+        this.completedDeals = completedDeals;
+    }
+
+    public boolean isCanonical() {
+        return canonical;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * Gets the results of the leaves done so far. The map is updated as leaves complete.
+     *
+     * @return The showdown results.
+     */
+    public ShowdownResultsMap getShowdownResultsMap() {
+        return showdownResultsMap;
+    }
+
+    public synchronized boolean isCompleted(int leaf) {
+        return completedLeaves.get(leaf);
+    }
+
+    public synchronized int getCompletedLeafCount() {
+        return completedLeaves.cardinality();
+    }
+
+    /**
+     * Gets the number of deals accounted for by the leaves done so far.
+     *
+     * @return The number of deals.
+     */
+    public synchronized long getCompletedDeals() {
+        return completedDeals;
+    }
+
+    /**
+     * Adds the results of a leaf and marks it done.
+     *
+     * @param leaf Index of the leaf
+     * @param holeCards The hero's hole cards
+     * @param wins Number of deals the hero won
+     * @param losses Number of deals the hero lost
+     * @param ties Number of deals that tied
+     * @param deals Number of deals accounted for by the leaf
+     */
+    public synchronized void complete(int leaf, HoleCards holeCards, long wins, long losses, long ties, long deals) {
+        if (completedLeaves.get(leaf)) {
+            throw new IllegalStateException("Leaf " + leaf + " is already complete");
+        }
+        showdownResultsMap.add(holeCards, wins, losses, ties);
+        completedLeaves.set(leaf);
+        completedDeals += deals;
+    }
+
+    /**
+     * Adds the results of a range of leaves and marks them all done.
+     *
+     * @param start Index of the first leaf, inclusive
+     * @param end Index of the last leaf, exclusive
+     * @param results Showdown results of the range, which are left unchanged
+     * @param deals Number of deals accounted for by the range
+     */
+    public synchronized void complete(int start, int end, ShowdownResultsMap results, long deals) {
+        final int completed = completedLeaves.nextSetBit(start);
+        if (completed >= 0 && completed < end) {
+            throw new IllegalStateException("Leaf " + completed + " is already complete");
+        }
+        showdownResultsMap.merge(results);
+        completedLeaves.set(start, end);
+        completedDeals += deals;
+    }
+
+    /**
+     * Writes the checkpoint to a file, replacing it atomically.
+     *
+     * @param path The file to write.
+     * @return The number of bytes written.
+     * @throws IOException If the file can't be written.
+     */
+    public long write(Path path) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        synchronized (this) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeBoolean(canonical);
+            out.writeInt(leafCount);
+            out.writeLong(completedDeals);
+            final long[] leaves = completedLeaves.toLongArray();
+            out.writeInt(leaves.length);
+            for (long word : leaves) {
+                out.writeLong(word);
+            }
+            final long[] counts = showdownResultsMap.snapshotCounts();
+            out.writeInt(HoleCards.CLASS_COUNT);
+            for (long count : counts) {
+                out.writeLong(count);
+            }
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        return AtomicFiles.write(path, ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #write(Path)} and verifies its checksum.
+     *
+     * @param path The checkpoint file.
+     * @return The checkpoint.
+     * @throws IOException If the file can't be read, or is not a valid checkpoint of this version.
+     */
+    public static Checkpoint read(Path path) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.capacity() < 8 + 8 || buffer.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a checkpoint");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(path + " has version " + buffer.getInt(4) + ", expected " + VERSION);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.capacity() - 8);
+        if (crc.getValue() != buffer.getLong(buffer.capacity() - 8)) {
+            throw new IOException(path + " failed its checksum");
+        }
+
+        try {
+            ((Buffer) buffer).position(8);
+            final boolean canonical = buffer.get() != 0;
+            final int leafCount = buffer.getInt();
+            final long completedDeals = buffer.getLong();
+            final long[] leaves = new long[buffer.getInt()];
+            for (int i = 0; i < leaves.length; i++) {
+                leaves[i] = buffer.getLong();
+            }
+            final ShowdownResultsMap showdownResultsMap = new ShowdownResultsMap();
+            if (buffer.getInt() != HoleCards.CLASS_COUNT) {
+                throw new IOException(path + " does not have results for " + HoleCards.CLASS_COUNT + " classes");
+            }
+            for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+                showdownResultsMap.add(id, buffer.getLong(), buffer.getLong(), buffer.getLong());
+            }
+            if (buffer.remaining() != 8) {
+                throw new IOException(path + " has " + (buffer.remaining() - 8) + " unexpected bytes");
+            }
+            final BitSet completedLeaves = BitSet.valueOf(leaves);
+            if (completedLeaves.length() > leafCount) {
+                throw new IOException(path + " has leaf " + (completedLeaves.length() - 1) + " of " + leafCount + " done");
+            }
+            return new Checkpoint(canonical, leafCount, completedLeaves, showdownResultsMap, completedDeals);
+        } catch (RuntimeException e) {
+            throw new IOException(path + " is not a valid checkpoint", e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.andrewalia.simulator.permutations.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated, lock-free ring buffer that passes batches of deals from producers to consumers.
+ * <p>
+ * Each slot holds one flat {@code int[]} batch of up to {@link #getBatchSize()} deals, {@link #DEAL_SIZE} card
+ * indexes per deal, so deal {@code i} of a batch starts at {@code i * DEAL_SIZE}. The arrays are allocated once and
+ * reused, so passing deals allocates nothing.
+ * </p>
+ * <p>
+ * Any number of producers and consumers can share the buffer. Every slot has a sequence number that says whose
+ * turn it is, and threads claim slots with a compare-and-set on the head or tail cursor, so no monitor is ever held.
+ * Both sides use two-phase calls: a producer {@link #claimWrite()}s a slot, fills {@link #getBatch(long)} and
+ * {@link #publish(long, int)}es it; a consumer {@link #claimRead()}s a slot, reads it and {@link #release(long)}s
+ * it. Threads that find the buffer full or empty wait with the configured {@link WaitStrategy}.
+ * </p>
+ * <p>
+ * Producers {@link #close()} the buffer once they are done, and consumers stop once it is drained. If any thread
+ * fails, {@link #abort()} stops every other thread at its next claim instead.
+ * </p>
+ */
+public final class DealRingBuffer {
+
+    /** Card indexes per deal: hero hole cards, board, villain hole cards. */
+    public static final int DEAL_SIZE = 9;
+
+    /** Cursor positions in {@link #cursors}, 128 bytes apart so producers and consumers don't share a cache line. */
+    private static final int HEAD = 15;
+    private static final int TAIL = 31;
+
+    private final int[][] batches;
+    private final int[] sizes;
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray cursors = new AtomicLongArray(TAIL + 16);
+    private final int mask;
+    private final int batchSize;
+    private final WaitStrategy waitStrategy;
+    private volatile boolean closed;
+    private volatile boolean aborted;
+
+    /**
+     * Creates a ring buffer.
+     *
+     * @param capacity The number of batches the buffer holds, rounded up to a power of two.
+     * @param batchSize The number of deals per batch.
+     * @param waitStrategy How threads wait when the buffer is full or empty.
+     */
+    public DealRingBuffer(int capacity, int batchSize, WaitStrategy waitStrategy) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("capacity and batchSize must be greater than 0");
+        }
+        int slots = 1;
+        while (slots < capacity) {
+            slots <<= 1;
+        }
+        this.batches = new int[slots][batchSize * DEAL_SIZE];
+        this.sizes = new int[slots];
+        this.sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = slots - 1;
+        this.batchSize = batchSize;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Claims an empty slot to write a batch to, waiting while the buffer is full.
+     *
+     * @return The sequence of the claimed slot.
+     * @throws CancellationException If the buffer has been aborted.
+     */
+    public long claimWrite() {
+        int attempt = 0;
+        while (true) {
+            checkNotAborted();
+            final long tail = cursors.get(TAIL);
+            final long difference = sequences.get((int) tail & mask) - tail;
+            if (difference == 0) {
+                if (cursors.compareAndSet(TAIL, tail, tail + 1)) {
+                    return tail;
+                }
+            } else if (difference < 0) {
+                waitStrategy.idle(++attempt);
+            }
+        }
+    }
+
+    /**
+     * Hands a written batch over to the consumers.
+     *
+     * @param sequence The sequence returned by {@link #claimWrite()}.
+     * @param size The number of deals written to the batch.
+     */
+    public void publish(long sequence, int size) {
+        sizes[(int) sequence & mask] = size;
+        sequences.lazySet((int) sequence & mask, sequence + 1);
+    }
+
+    /**
+     * Claims a full slot to read a batch from, waiting while the buffer is empty.
+     *
+     * @return The sequence of the claimed slot, or -1 if the buffer has been closed and drained.
+     * @throws CancellationException If the buffer has been aborted.
+     */
+    public long claimRead() {
+        int attempt = 0;
+        while (true) {
+            checkNotAborted();
+            final long head = cursors.get(HEAD);
+            final long difference = sequences.get((int) head & mask) - (head + 1);
+            if (difference == 0) {
+                if (cursors.compareAndSet(HEAD, head, head + 1)) {
+                    return head;
+                }
+            } else if (difference < 0) {
+                if (closed && head == cursors.get(TAIL)) {
+                    return -1;
+                }
+                waitStrategy.idle(++attempt);
+            }
+        }
+    }
+
+    /**
+     * Hands a read slot back to the producers.
+     *
+     * @param sequence The sequence returned by {@link #claimRead()}.
+     */
+    public void release(long sequence) {
+        sequences.lazySet((int) sequence & mask, sequence + mask + 1);
+    }
+
+    /**
+     * Gets the batch of a claimed slot.
+     *
+     * @param sequence A sequence returned by {@link #claimWrite()} or {@link #claimRead()}.
+     * @return The flat array of deals in the slot.
+     */
+    public int[] getBatch(long sequence) {
+        return batches[(int) sequence & mask];
+    }
+
+    /**
+     * Gets the number of deals in a published batch.
+     *
+     * @param sequence A sequence returned by {@link #claimRead()}.
+     * @return The number of deals in the batch.
+     */
+    public int getSize(long sequence) {
+        return sizes[(int) sequence & mask];
+    }
+
+    /**
+     * Tells consumers that no more batches will be published. Once the published batches are read,
+     * {@link #claimRead()} returns -1.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Stops every producer and consumer, e.g. because one of them failed. Batches still in the buffer are dropped,
+     * and {@link #claimWrite()} and {@link #claimRead()} throw from then on, also in threads waiting in them.
+     */
+    public void abort() {
+        aborted = true;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    private void checkNotAborted() {
+        if (aborted) {
+            throw new CancellationException("Ring buffer aborted");
+        }
+    }
+
+    /**
+     * Gets the number of batches claimed by producers and not yet claimed by consumers.
+     *
+     * @return The number of batches in the buffer.
+     */
+    public long size() {
+        return Math.max(0, cursors.get(TAIL) - cursors.get(HEAD));
+    }
+
+    /**
+     * Gets the number of batches the buffer holds.
+     *
+     * @return The capacity in batches.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the maximum number of deals per batch.
+     *
+     * @return The batch size in deals.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
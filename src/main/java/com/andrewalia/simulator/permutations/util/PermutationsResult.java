@@ -0,0 +1,68 @@
+package com.andrewalia.simulator.permutations.util;
+
+/**
+ * Outcome of a permutations run: how many deals it accounted for, their showdown results, how long it took and,
+ * if it did not finish, why.
+ */
+public final class PermutationsResult {
+
+    /** Exit code of a run that went through every deal. */
+    public static final int EXIT_SUCCESS = 0;
+
+    /** Exit code of a run that failed or was cancelled. */
+    public static final int EXIT_FAILURE = 1;
+
+    private final long deals;
+    private final ShowdownResultsMap showdownResultsMap;
+    private final long elapsedMillis;
+    private final Throwable failure;
+
+    /**
+     * Creates a result.
+     *
+     * @param deals Number of deals accounted for
+     * @param showdownResultsMap Showdown results of those deals
+     * @param elapsedMillis Wall time of the run in milliseconds
+     * @param failure What stopped the run, or null if it went through every deal
+     */
+    public PermutationsResult(long deals, ShowdownResultsMap showdownResultsMap, long elapsedMillis, Throwable failure) {
+        this.deals = deals;
+        this.showdownResultsMap = showdownResultsMap;
+        this.elapsedMillis = elapsedMillis;
+        this.failure = failure;
+    }
+
+    public long getDeals() {
+        return deals;
+    }
+
+    public ShowdownResultsMap getShowdownResultsMap() {
+        return showdownResultsMap;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Gets what stopped the run.
+     *
+     * @return The first failure of any thread of the run, or null if it went through every deal.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    /**
+     * Gets the process exit code for this result.
+     *
+     * @return {@link #EXIT_SUCCESS} or {@link #EXIT_FAILURE}.
+     */
+    public int getExitCode() {
+        return isSuccessful() ? EXIT_SUCCESS : EXIT_FAILURE;
+    }
+}
@@ -0,0 +1,31 @@
+package com.andrewalia.simulator.permutations.util;
+
+/**
+ * How a permutations run prints its {@link ProgressSnapshot}s.
+ */
+public enum ProgressFormat {
+
+    /** A few lines for people to read. */
+    TEXT,
+
+    /** One JSON object per line, for tools to tail. */
+    JSON;
+
+    /**
+     * Gets a progress format by name, "text" or "json".
+     *
+     * @param name The name of the format, ignoring case.
+     * @return The progress format.
+     * @throws IllegalArgumentException If there is no format by that name.
+     */
+    public static ProgressFormat fromName(String name) {
+        switch (name.toLowerCase()) {
+            case "text":
+                return TEXT;
+            case "json":
+                return JSON;
+            default:
+                throw new IllegalArgumentException("Unknown progress format " + name + ", expected text or json");
+        }
+    }
+}
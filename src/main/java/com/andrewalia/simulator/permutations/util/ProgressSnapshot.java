@@ -0,0 +1,265 @@
+package com.andrewalia.simulator.permutations.util;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import com.andrewalia.util.HoleCards;
+
+/**
+ * Progress of a permutations run at one moment: how far through the deals it is, how fast it is going, when it
+ * should be done and the hole cards that are winning most so far.
+ * <p>
+ * A snapshot copies everything it needs when it is taken, from a {@link StripedCounter} sum and a
+ * {@link ShowdownResultsMap#snapshotCounts()} copy, neither of which blocks the workers, and is immutable after that,
+ * so it can be formatted and printed at leisure.
+ * </p>
+ * <p>
+ * When the run samples its boards in {@link BoardOrder#STRATIFIED} order, each top hand also gets the margin of error
+ * of its win percentage at 95% confidence, from the {@link BoardSampleMoments} of the run.
+ * </p>
+ */
+public final class ProgressSnapshot {
+
+    /** Number of hole cards classes listed by {@link #format(ProgressFormat)}. */
+    public static final int TOP_HAND_COUNT = 10;
+
+    /** Standard errors in the margin of error at 95% confidence. */
+    private static final double Z_95 = 1.96;
+
+    private final long elapsedMillis;
+    private final long deals;
+    private final long totalDeals;
+    private final double dealsPerSecond;
+    private final long etaMillis;
+
+    /** Class ids of the classes with the best win percentage, best first. */
+    private final int[] topHands;
+
+    /** Wins, losses and ties of every class, by class id. */
+    private final long[] counts;
+
+    /** Board sample sums of every class, see {@link BoardSampleMoments#snapshotSums()}, or null if not sampled. */
+    private final long[] sampleSums;
+
+    private ProgressSnapshot(long elapsedMillis, long deals, long totalDeals, double dealsPerSecond, long etaMillis,
+            int[] topHands, long[] counts, long[] sampleSums) {
+        this.elapsedMillis = elapsedMillis;
+        this.deals = deals;
+        this.totalDeals = totalDeals;
+        this.dealsPerSecond = dealsPerSecond;
+        this.etaMillis = etaMillis;
+        this.topHands = topHands;
+        this.counts = counts;
+        this.sampleSums = sampleSums;
+    }
+
+    /**
+     * Takes a snapshot of a run.
+     * <p>
+     * The rate only counts the deals of this run, not those it resumed from, and the ETA assumes the rest of the
+     * deals go at the same rate, which holds as every range of the enumeration has as many deals.
+     * </p>
+     *
+     * @param elapsedMillis Time since the run started
+     * @param startDeals Deals already done when the run started, e.g. from a checkpoint
+     * @param deals Deals done so far, including the start deals
+     * @param totalDeals Deals in the whole run
+     * @param results Showdown results so far
+     * @return The snapshot
+     */
+    public static ProgressSnapshot take(long elapsedMillis, long startDeals, long deals, long totalDeals,
+            ShowdownResultsMap results) {
+        return take(elapsedMillis, startDeals, deals, totalDeals, results, null);
+    }
+
+    /**
+     * Takes a snapshot of a run whose results so far are a random sample of its boards.
+     *
+     * @param elapsedMillis Time since the run started
+     * @param startDeals Deals already done when the run started, e.g. from a checkpoint
+     * @param deals Deals done so far, including the start deals
+     * @param totalDeals Deals in the whole run
+     * @param results Showdown results so far
+     * @param moments Sums of the boards sampled so far, or null if the boards aren't sampled at random
+     * @return The snapshot
+     */
+    public static ProgressSnapshot take(long elapsedMillis, long startDeals, long deals, long totalDeals,
+            ShowdownResultsMap results, BoardSampleMoments moments) {
+        final long[] counts = results.snapshotCounts();
+        final double dealsPerSecond = elapsedMillis > 0 ? (deals - startDeals) * 1000.0 / elapsedMillis : 0;
+        final long etaMillis = dealsPerSecond > 0
+            ? (long) (Math.max(0, totalDeals - deals) * 1000.0 / dealsPerSecond)
+            : -1;
+        return new ProgressSnapshot(elapsedMillis, deals, totalDeals, dealsPerSecond, etaMillis, topHands(counts),
+            counts, moments == null ? null : moments.snapshotSums());
+    }
+
+    /**
+     * Picks the classes with the best win percentage, among those with more than
+     * {@link ShowdownResultsMap#MINIMUM_SHOWDOWNS} showdowns, without sorting the rest.
+     */
+    private static int[] topHands(long[] counts) {
+        final int[] top = new int[TOP_HAND_COUNT];
+        int size = 0;
+        for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+            if (showdowns(counts, id) <= ShowdownResultsMap.MINIMUM_SHOWDOWNS) {
+                continue;
+            }
+            int i = size < top.length ? size++ : top.length;
+            while (i > 0 && winRatio(counts, id) > winRatio(counts, top[i - 1])) {
+                if (i < top.length) {
+                    top[i] = top[i - 1];
+                }
+                i--;
+            }
+            if (i < top.length) {
+                top[i] = id;
+            }
+        }
+        return Arrays.copyOf(top, size);
+    }
+
+    private static long showdowns(long[] counts, int id) {
+        return counts[3 * id] + counts[3 * id + 1] + counts[3 * id + 2];
+    }
+
+    private static double winRatio(long[] counts, int id) {
+        return (double) counts[3 * id] / showdowns(counts, id);
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getDeals() {
+        return deals;
+    }
+
+    public long getTotalDeals() {
+        return totalDeals;
+    }
+
+    public double getDealsPerSecond() {
+        return dealsPerSecond;
+    }
+
+    /**
+     * Gets the estimated time left.
+     *
+     * @return Milliseconds until every deal is done at the current rate, or -1 if nothing was done yet.
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    /**
+     * Gets the hole cards with the best win percentage so far.
+     *
+     * @return Up to {@link #TOP_HAND_COUNT} hole cards, best first.
+     */
+    public HoleCards[] getTopHands() {
+        final HoleCards[] hands = new HoleCards[topHands.length];
+        for (int i = 0; i < topHands.length; i++) {
+            hands[i] = HoleCards.fromId(topHands[i]);
+        }
+        return hands;
+    }
+
+    /**
+     * Gets the margin of error of the win ratio of some hole cards so far, as an estimate of the final one.
+     *
+     * @param holeCards The hole cards
+     * @return Half the width of the 95% confidence interval of the win ratio, 0 once every board was seen, or NaN if
+     *     the boards aren't sampled at random or too few were seen
+     */
+    public double getWinMargin(HoleCards holeCards) {
+        return sampleSums == null ? Double.NaN
+            : Z_95 * BoardSampleMoments.standardError(sampleSums, holeCards.getId());
+    }
+
+    /**
+     * Formats the snapshot.
+     *
+     * @param format Text for a few lines to read, or JSON for a single line
+     * @return The formatted snapshot, without a trailing line break.
+     */
+    public String format(ProgressFormat format) {
+        return format == ProgressFormat.JSON ? toJson() : toString();
+    }
+
+    /**
+     * Formats the snapshot as one JSON object, e.g. {@code {"elapsedMillis":10000,"deals":45510000000,...,
+     * "topHands":[{"hand":"AA","wins":850,"losses":140,"ties":10},...]}}. The ETA is null until it is known, and
+     * each top hand has a "winMargin", see {@link #getWinMargin(HoleCards)}, once it is known.
+     *
+     * @return The JSON object, on one line.
+     */
+    public String toJson() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\"elapsedMillis\":").append(elapsedMillis);
+        sb.append(",\"deals\":").append(deals);
+        sb.append(",\"totalDeals\":").append(totalDeals);
+        sb.append(",\"fraction\":").append(String.format(Locale.ROOT, "%.6f", (double) deals / totalDeals));
+        sb.append(",\"dealsPerSecond\":").append(String.format(Locale.ROOT, "%.1f", dealsPerSecond));
+        sb.append(",\"etaMillis\":").append(etaMillis < 0 ? "null" : Long.toString(etaMillis));
+        sb.append(",\"topHands\":[");
+        for (int i = 0; i < topHands.length; i++) {
+            final int id = topHands[i];
+            sb.append(i == 0 ? "" : ",");
+            sb.append("{\"hand\":\"").append(HoleCards.fromId(id)).append('"');
+            sb.append(",\"wins\":").append(counts[3 * id]);
+            sb.append(",\"losses\":").append(counts[3 * id + 1]);
+            sb.append(",\"ties\":").append(counts[3 * id + 2]);
+            final double margin = getWinMargin(HoleCards.fromId(id));
+            if (!Double.isNaN(margin)) {
+                sb.append(",\"winMargin\":").append(String.format(Locale.ROOT, "%.6f", margin));
+            }
+            sb.append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * Formats the snapshot for people to read: the deals done, the rate and ETA, then one line per top hand.
+     *
+     * @return The formatted snapshot.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Permutations: ").append(deals).append('/').append(totalDeals);
+        sb.append(String.format(Locale.ROOT, " (%.3f%%), %.4g deals/s, ETA ", 100.0 * deals / totalDeals,
+            dealsPerSecond));
+        sb.append(etaMillis < 0 ? "unknown" : formatDuration(etaMillis));
+        sb.append("\nTop hands:");
+        if (topHands.length == 0) {
+            sb.append(" none yet");
+        }
+        for (int id : topHands) {
+            final String name = HoleCards.fromId(id).toString();
+            sb.append("\n\t").append(name).append(name.length() == 2 ? " " : "");
+            sb.append(String.format(Locale.ROOT, "\tWIN%% %.2f", 100 * winRatio(counts, id)));
+            final double margin = getWinMargin(HoleCards.fromId(id));
+            if (!Double.isNaN(margin)) {
+                sb.append(String.format(Locale.ROOT, " +/- %.2f", 100 * margin));
+            }
+            sb.append("\tW/L/T ").append(counts[3 * id]).append('/').append(counts[3 * id + 1]).append('/')
+                .append(counts[3 * id + 2]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats a duration as days, hours, minutes and seconds, e.g. "2d 03h 04m 05s" or "04m 05s".
+     */
+    private static String formatDuration(long millis) {
+        final long seconds = millis / 1000;
+        if (seconds >= 86400) {
+            return String.format(Locale.ROOT, "%dd %02dh %02dm %02ds", seconds / 86400, seconds / 3600 % 24,
+                seconds / 60 % 60, seconds % 60);
+        } else if (seconds >= 3600) {
+            return String.format(Locale.ROOT, "%dh %02dm %02ds", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        }
+        return String.format(Locale.ROOT, "%02dm %02ds", seconds / 60, seconds % 60);
+    }
+}
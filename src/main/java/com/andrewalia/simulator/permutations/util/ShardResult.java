@@ -0,0 +1,274 @@
+package com.andrewalia.simulator.permutations.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.andrewalia.util.AtomicFiles;
+import com.andrewalia.util.HoleCards;
+
+/**
+ * Results of one shard of a fork-join permutations run, as saved to a result file and merged with the other shards.
+ * <p>
+ * A run of {@code n} shards cuts its leaves (see {@code DealRangeTask}) into {@code n} contiguous ranges of nearly the
+ * same size, and shard {@code k} (from 1) evaluates range {@code k}, so any machine can run any shard with no
+ * coordination. A result file says which run and range it holds, the deals it accounted for and their showdown
+ * results, and ends with a checksum. {@link #merge(List)} adds up any set of results whose ranges cover every leaf
+ * exactly once; results are whole counts, so the merged totals are exactly those of a run on one machine.
+ * </p>
+ */
+public final class ShardResult {
+
+    private static final int MAGIC = 0x504b5352; // "PKSR"
+    private static final int VERSION = 1;
+
+    private final boolean canonical;
+    private final int leafCount;
+    private final int shardIndex;
+    private final int shardCount;
+    private final int start;
+    private final int end;
+    private final long deals;
+    private final ShowdownResultsMap showdownResultsMap;
+
+    /**
+     * Creates the result of a shard.
+     *
+     * @param canonical True if the run evaluates suit-canonical deals only
+     * @param leafCount Number of leaves in the whole run
+     * @param shardIndex Index of the shard, from 1
+     * @param shardCount Number of shards the run is cut into
+     * @param start Index of the first leaf of the shard, inclusive
+     * @param end Index of the last leaf of the shard, exclusive
+     * @param deals Number of deals accounted for by the shard
+     * @param showdownResultsMap Showdown results of the shard
+     * @throws IllegalArgumentException If the range is not that of the shard
+     */
+    public ShardResult(boolean canonical, int leafCount, int shardIndex, int shardCount, int start, int end,
+            long deals, ShowdownResultsMap showdownResultsMap) {
+        if (shardCount < 1 || shardIndex < 1 || shardIndex > shardCount) {
+            throw new IllegalArgumentException("Invalid shard " + shardIndex + "/" + shardCount);
+        }
+        if (start != getStart(leafCount, shardIndex, shardCount)
+                || end != getStart(leafCount, shardIndex + 1, shardCount)) {
+            throw new IllegalArgumentException("Range [" + start + ", " + end + ") of " + leafCount
+                + " leaves is not shard " + shardIndex + "/" + shardCount);
+        }
+        this.canonical = canonical;
+        this.leafCount = leafCount;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.start = start;
+        this.end = end;
+        this.deals = deals;
+        this.showdownResultsMap = showdownResultsMap;
+    }
+
+    /**
+     * Gets the first leaf of a shard.
+     *
+     * @param leafCount Number of leaves in the whole run
+     * @param shardIndex Index of the shard, from 1
+     * @param shardCount Number of shards
+     * @return Index of the first leaf of the shard, inclusive; the shard ends where the next one starts
+     */
+    public static int getStart(int leafCount, int shardIndex, int shardCount) {
+        if (shardCount < 1 || shardIndex < 1 || shardIndex > shardCount + 1) {
+            throw new IllegalArgumentException("Invalid shard " + shardIndex + "/" + shardCount);
+        }
+        return (int) ((long) leafCount * (shardIndex - 1) / shardCount);
+    }
+
+    /**
+     * Creates the result of a shard from the checkpoint of a run over its range.
+     *
+     * @param checkpoint Checkpoint with every leaf of the shard done and no other
+     * @param shardIndex Index of the shard, from 1
+     * @param shardCount Number of shards
+     * @return The result of the shard
+     * @throws IllegalStateException If the checkpoint doesn't have exactly the leaves of the shard done
+     */
+    public static ShardResult of(Checkpoint checkpoint, int shardIndex, int shardCount) {
+        final int start = getStart(checkpoint.getLeafCount(), shardIndex, shardCount);
+        final int end = getStart(checkpoint.getLeafCount(), shardIndex + 1, shardCount);
+        synchronized (checkpoint) {
+            for (int leaf = start; leaf < end; leaf++) {
+                if (!checkpoint.isCompleted(leaf)) {
+                    throw new IllegalStateException("Leaf " + leaf + " of shard " + shardIndex + "/" + shardCount
+                        + " is not done");
+                }
+            }
+            if (checkpoint.getCompletedLeafCount() != end - start) {
+                throw new IllegalStateException("Checkpoint has leaves outside shard " + shardIndex + "/" + shardCount
+                    + " done");
+            }
+            return new ShardResult(checkpoint.isCanonical(), checkpoint.getLeafCount(), shardIndex, shardCount, start,
+                end, checkpoint.getCompletedDeals(), checkpoint.getShowdownResultsMap().snapshot());
+        }
+    }
+
+    /**
+     * Adds up the results of shards that together cover every leaf of a run exactly once.
+     *
+     * @param results Results of the shards, in any order and from any numbers of shards
+     * @return A result covering every leaf, as shard 1/1
+     * @throws IllegalArgumentException If the results are of different runs, overlap or leave leaves out
+     */
+    public static ShardResult merge(List<ShardResult> results) {
+        if (results.isEmpty()) {
+            throw new IllegalArgumentException("No shard results to merge");
+        }
+        final List<ShardResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingInt(ShardResult::getStart));
+        final ShardResult first = sorted.get(0);
+        final ShowdownResultsMap showdownResultsMap = new ShowdownResultsMap();
+        long deals = 0;
+        int covered = 0;
+        for (ShardResult result : sorted) {
+            if (result.canonical != first.canonical || result.leafCount != first.leafCount) {
+                throw new IllegalArgumentException("Shard " + result.describe() + " is of a different run than shard "
+                    + first.describe());
+            }
+            if (result.start < covered) {
+                throw new IllegalArgumentException("Shard " + result.describe() + " overlaps leaves before " + covered);
+            }
+            if (result.start > covered) {
+                throw new IllegalArgumentException("No shard covers leaves [" + covered + ", " + result.start + ")");
+            }
+            covered = result.end;
+            deals += result.deals;
+            showdownResultsMap.merge(result.showdownResultsMap);
+        }
+        if (covered != first.leafCount) {
+            throw new IllegalArgumentException("No shard covers leaves [" + covered + ", " + first.leafCount + ")");
+        }
+        return new ShardResult(first.canonical, first.leafCount, 1, 1, 0, first.leafCount, deals, showdownResultsMap);
+    }
+
+    public boolean isCanonical() {
+        return canonical;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public long getDeals() {
+        return deals;
+    }
+
+    public ShowdownResultsMap getShowdownResultsMap() {
+        return showdownResultsMap;
+    }
+
+    /**
+     * Describes the shard, e.g. "7/64 [714, 836)".
+     *
+     * @return The description.
+     */
+    public String describe() {
+        return shardIndex + "/" + shardCount + " [" + start + ", " + end + ")";
+    }
+
+    /**
+     * Writes the result to a file, replacing it atomically.
+     *
+     * @param path The file to write.
+     * @return The number of bytes written.
+     * @throws IOException If the file can't be written.
+     */
+    public long write(Path path) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeBoolean(canonical);
+        out.writeInt(leafCount);
+        out.writeInt(shardIndex);
+        out.writeInt(shardCount);
+        out.writeInt(start);
+        out.writeInt(end);
+        out.writeLong(deals);
+        final long[] counts = showdownResultsMap.snapshotCounts();
+        out.writeInt(HoleCards.CLASS_COUNT);
+        for (long count : counts) {
+            out.writeLong(count);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+        return AtomicFiles.write(path, ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Reads a result written by {@link #write(Path)} and verifies its checksum.
+     *
+     * @param path The result file.
+     * @return The result.
+     * @throws IOException If the file can't be read, or is not a valid result file of this version.
+     */
+    public static ShardResult read(Path path) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.capacity() < 8 + 8 || buffer.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a shard result");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(path + " has version " + buffer.getInt(4) + ", expected " + VERSION);
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.capacity() - 8);
+        if (crc.getValue() != buffer.getLong(buffer.capacity() - 8)) {
+            throw new IOException(path + " failed its checksum");
+        }
+
+        try {
+            ((Buffer) buffer).position(8);
+            final boolean canonical = buffer.get() != 0;
+            final int leafCount = buffer.getInt();
+            final int shardIndex = buffer.getInt();
+            final int shardCount = buffer.getInt();
+            final int start = buffer.getInt();
+            final int end = buffer.getInt();
+            final long deals = buffer.getLong();
+            if (buffer.getInt() != HoleCards.CLASS_COUNT) {
+                throw new IOException(path + " does not have results for " + HoleCards.CLASS_COUNT + " classes");
+            }
+            final ShowdownResultsMap showdownResultsMap = new ShowdownResultsMap();
+            for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+                showdownResultsMap.add(id, buffer.getLong(), buffer.getLong(), buffer.getLong());
+            }
+            if (buffer.remaining() != 8) {
+                throw new IOException(path + " has " + (buffer.remaining() - 8) + " unexpected bytes");
+            }
+            return new ShardResult(canonical, leafCount, shardIndex, shardCount, start, end, deals,
+                showdownResultsMap);
+        } catch (RuntimeException e) {
+            throw new IOException(path + " is not a valid shard result", e);
+        }
+    }
+}
@@ -1,35 +1,224 @@
 package com.andrewalia.simulator.permutations.util;
 
-import java.util.HashMap;
-import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
 
 import com.andrewalia.util.HoleCards;
-import org.javatuples.Triplet;
 
 /**
- * The ShowdownResultsMap class extends HashMap and is specialized for storing
- * and processing results of card game showdowns.
+ * Win, loss and tie counts of showdowns for every {@link HoleCards} class.
+ * <p>
+ * The counts live in one {@code long[]}, three per class at {@code 3 * }{@link HoleCards#getId()}, so adding results
+ * is an array update with no hashing or boxing. Writers take a {@link StampedLock}, so a map can be shared by threads,
+ * but readers never do: they copy the counts optimistically and copy again if a write came in between, so reading a
+ * map, e.g. for progress, never blocks the threads adding to it. Threads that count many results don't take the lock
+ * for each one: they count a batch or a leaf into a plain array laid out like the map's and {@link #add(long[])} it
+ * in one go. They keep a map of their own, and either {@link #drainTo(ShowdownResultsMap)} it now and then or have
+ * all of them {@link #reduce(ShowdownResultsMap...)}d when the totals are needed.
+ * </p>
  */
-public class ShowdownResultsMap extends HashMap<HoleCards,Triplet<Long[],Long[],Long[]>>{
-    public ShowdownResultsMap() {
-        super();
+public class ShowdownResultsMap {
+
+    private static final int WINS = 0;
+    private static final int LOSSES = 1;
+    private static final int TIES = 2;
+
+    /** Showdowns a class needs before it is listed among the best, so a few lucky deals don't top the list. */
+    static final long MINIMUM_SHOWDOWNS = 100;
+
+    /** Wins, losses and ties of every class, by class id. */
+    private final long[] counts = new long[3 * HoleCards.CLASS_COUNT];
+
+    /** Taken by writers; readers only validate against it. */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Receives the counts of one class, see {@link ShowdownResultsMap#forEach(ResultsConsumer)}.
+     */
+    @FunctionalInterface
+    public interface ResultsConsumer {
+        void accept(HoleCards holeCards, long wins, long losses, long ties);
     }
 
     /**
-     * Converts the map to a human-readable String representation.
+     * Adds win, loss and tie counts for some hole cards.
      *
-     * @return The String representation of the map.
+     * @param holeCards The hero's hole cards.
+     * @param wins Number of deals the hero won.
+     * @param losses Number of deals the hero lost.
+     * @param ties Number of deals that tied.
+     */
+    public void add(HoleCards holeCards, long wins, long losses, long ties) {
+        add(holeCards.getId(), wins, losses, ties);
+    }
+
+    /**
+     * Adds win, loss and tie counts for a class id.
+     *
+     * @param id The {@link HoleCards#getId()} of the hero's hole cards.
+     * @param wins Number of deals the hero won.
+     * @param losses Number of deals the hero lost.
+     * @param ties Number of deals that tied.
      */
+    public void add(int id, long wins, long losses, long ties) {
+        final long stamp = lock.writeLock();
+        try {
+            counts[3 * id + WINS] += wins;
+            counts[3 * id + LOSSES] += losses;
+            counts[3 * id + TIES] += ties;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds the counts of every class at once, taking the write lock a single time.
+     *
+     * @param counts Wins, losses and ties of every class, by class id, laid out like {@link #snapshotCounts()}.
+     */
+    public void add(long[] counts) {
+        if (counts.length != this.counts.length) {
+            throw new IllegalArgumentException("Expected " + this.counts.length + " counts, got " + counts.length);
+        }
+        final long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < counts.length; i++) {
+                this.counts[i] += counts[i];
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public long getWins(HoleCards holeCards) {
+        return snapshotCounts()[3 * holeCards.getId() + WINS];
+    }
+
+    public long getLosses(HoleCards holeCards) {
+        return snapshotCounts()[3 * holeCards.getId() + LOSSES];
+    }
+
+    public long getTies(HoleCards holeCards) {
+        return snapshotCounts()[3 * holeCards.getId() + TIES];
+    }
+
+    /**
+     * Adds all the counts of another map to this one.
+     *
+     * @param other The map to add, which is left unchanged.
+     */
+    public void merge(ShowdownResultsMap other) {
+        add(other.snapshotCounts());
+    }
+
+    /**
+     * Moves all the counts of this map to another map, leaving this one empty.
+     *
+     * @param target The map to add the counts to.
+     */
+    public void drainTo(ShowdownResultsMap target) {
+        final long[] drained;
+        final long stamp = lock.writeLock();
+        try {
+            drained = counts.clone();
+            Arrays.fill(counts, 0);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        target.add(drained);
+    }
+
+    /**
+     * Adds up a number of maps into a new one, merging them pairwise in parallel, so no map is ever written by more
+     * than one thread and no lock is contended.
+     *
+     * @param maps The maps to add up, which are left unchanged
+     * @return A map with the sum of their counts
+     */
+    public static ShowdownResultsMap reduce(ShowdownResultsMap... maps) {
+        return Arrays.stream(maps).parallel()
+            .collect(ShowdownResultsMap::new, ShowdownResultsMap::merge, ShowdownResultsMap::merge);
+    }
+
+    /**
+     * Copies the map, so the copy can be read or written while this map keeps changing.
+     *
+     * @return A map with the same counts.
+     */
+    public ShowdownResultsMap snapshot() {
+        final ShowdownResultsMap snapshot = new ShowdownResultsMap();
+        snapshot.add(snapshotCounts());
+        return snapshot;
+    }
+
+    /**
+     * Calls a consumer with the counts of every class that has any, in class id order, from a consistent snapshot.
+     *
+     * @param consumer The consumer to call.
+     */
+    public void forEach(ResultsConsumer consumer) {
+        final long[] snapshot = snapshotCounts();
+        for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+            if (snapshot[3 * id + WINS] != 0 || snapshot[3 * id + LOSSES] != 0 || snapshot[3 * id + TIES] != 0) {
+                consumer.accept(HoleCards.fromId(id), snapshot[3 * id + WINS], snapshot[3 * id + LOSSES],
+                    snapshot[3 * id + TIES]);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of classes that have any counts.
+     *
+     * @return The number of classes.
+     */
+    public int size() {
+        final int[] size = new int[1];
+        forEach((holeCards, wins, losses, ties) -> size[0]++);
+        return size[0];
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Copies the counts without blocking writers, copying again until no write came in during the copy.
+     *
+     * @return Wins, losses and ties of every class, by class id.
+     */
+    public long[] snapshotCounts() {
+        final long[] snapshot = new long[counts.length];
+        long stamp;
+        do {
+            stamp = lock.tryOptimisticRead();
+            System.arraycopy(counts, 0, snapshot, 0, counts.length);
+        } while (!lock.validate(stamp));
+        return snapshot;
+    }
+
     @Override
-    public synchronized String toString() {
-        if (isEmpty()) {
-            return "No results";
+    public boolean equals(Object o) {
+        if (!(o instanceof ShowdownResultsMap)) {
+            return false;
         }
-        final StringBuilder sb = new StringBuilder();
-        entryStreamForEach(entryStreamFilteredSorted(), sb);
-        sb.deleteCharAt(sb.length() - 1);
+        return Arrays.equals(snapshotCounts(), ((ShowdownResultsMap) o).snapshotCounts());
+    }
 
-        return sb.toString();
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(snapshotCounts());
+    }
+
+    /**
+     * Converts the map to a human-readable String representation.
+     *
+     * @return The String representation of the map.
+     */
+    @Override
+    public String toString() {
+        return toString(Integer.MAX_VALUE, 0);
     }
 
     /**
@@ -38,81 +227,49 @@ public class ShowdownResultsMap extends HashMap<HoleCards,Triplet<Long[],Long[],
      * @param limit The maximum number of entries to include in the String representation.
      * @return The limited String representation of the map.
      */
-    public synchronized String toString(int limit) {
-        final StringBuilder sb = new StringBuilder();
-        entryStreamForEach(entryStreamFilteredSorted().filter(
-            (e) -> {
-                final Triplet<Long,Long,Long> eTriplet = new Triplet<Long,Long,Long>(e.getValue().getValue0()[0], e.getValue().getValue1()[0], e.getValue().getValue2()[0]);
-                return (eTriplet.getValue0() + eTriplet.getValue1() + eTriplet.getValue2()) > 100;
-            }            
-        ).limit(limit), sb);
-        try{
-            sb.deleteCharAt(sb.length() - 1);
-        } catch (StringIndexOutOfBoundsException e) {
-            e.printStackTrace();
-        }
-
-        return sb.toString();
+    public String toString(int limit) {
+        return toString(limit, MINIMUM_SHOWDOWNS);
     }
 
     /**
-     * Helper method to append map entries to a StringBuilder.
-     *
-     * @param stream The stream of map entries.
-     * @param sb     The StringBuilder object.
+     * Lists the classes with more than a number of showdowns, best win percentage first.
      */
-    private void entryStreamForEach(Stream<Entry<HoleCards, Triplet<Long[], Long[], Long[]>>> stream, StringBuilder sb){
-        stream.forEach( (e) -> {
-            final Triplet<Long,Long,Long> eTriplet = new Triplet<Long,Long,Long>(e.getValue().getValue0()[0], e.getValue().getValue1()[0], e.getValue().getValue2()[0]);
-            final long eWins = eTriplet.getValue0();
-            final long eLosses = eTriplet.getValue1();
-            final long eTies = eTriplet.getValue2();
-
-            sb.append(e.getKey());
-            if (2 == e.getKey().toString().length()) {
+    private String toString(int limit, long minimumShowdowns) {
+        final List<long[]> entries = new ArrayList<>();
+        forEach((holeCards, wins, losses, ties) -> {
+            if (wins + losses + ties > minimumShowdowns) {
+                entries.add(new long[] { holeCards.getId(), wins, losses, ties });
+            }
+        });
+        if (entries.isEmpty()) {
+            return "No results";
+        }
+        entries.sort((e0, e1) -> Double.compare(winRatio(e1), winRatio(e0)));
+
+        final StringBuilder sb = new StringBuilder();
+        for (long[] e : entries.subList(0, Math.min(limit, entries.size()))) {
+            final String name = HoleCards.fromId((int) e[0]).toString();
+            sb.append(name);
+            if (2 == name.length()) {
                 sb.append(" ");
             }
             sb.append("\n\tWIN%\t");
             ///give the percentage of wins out of wins + losses + ties, to 2 decimal places
-            sb.append(String.format("%.2f", ((double) eWins / (eWins + eLosses + eTies)) * 100));
+            sb.append(String.format("%.2f", winRatio(e) * 100));
             sb.append("\n\tWIN#\t");
-            sb.append(eWins);
+            sb.append(e[1]);
             sb.append("\n\tLOSS#\t");
-            sb.append(eLosses);
+            sb.append(e[2]);
             sb.append("\n\tTIE#\t");
-            sb.append(eTies);
+            sb.append(e[3]);
             sb.append("\n");
-        });
+        }
+        sb.deleteCharAt(sb.length() - 1);
+
+        return sb.toString();
     }
-    
-    /**
-     * Helper method to return a sorted and filtered stream of map entries.
-     *
-     * @return The sorted and filtered stream of map entries.
-     */
-    private Stream<Entry<HoleCards, Triplet<Long[], Long[], Long[]>>> entryStreamFilteredSorted() {
-        return entrySet().stream()
-        .filter((e) -> {
-            final Triplet<Long,Long,Long> eTriplet = new Triplet<Long,Long,Long>(e.getValue().getValue0()[0], e.getValue().getValue1()[0], e.getValue().getValue2()[0]);
-            return 0 != (eTriplet.getValue0() + eTriplet.getValue1() + eTriplet.getValue2());
-        })
-        .sorted(
-            (e0,e1) -> {
-                    final Triplet<Long,Long,Long> e0Triplet = new Triplet<Long,Long,Long>(e0.getValue().getValue0()[0], e0.getValue().getValue1()[0], e0.getValue().getValue2()[0]);
-                    final Triplet<Long,Long,Long> e1Triplet = new Triplet<Long,Long,Long>(e1.getValue().getValue0()[0], e1.getValue().getValue1()[0], e1.getValue().getValue2()[0]);
-                    final long e0Wins = e0Triplet.getValue0();
-                    final long e1Wins = e1Triplet.getValue0();
-                    final long e0Losses = e0Triplet.getValue1();
-                    final long e1Losses = e1Triplet.getValue1();
-                    final long e0Ties = e0Triplet.getValue2();
-                    final long e1Ties = e1Triplet.getValue2();
-
-                    return (int) (
-                            ((double) e1Wins / (e1Wins + e1Losses + e1Ties)) * 1000000
-                        -
-                            ((double) e0Wins / (e0Wins + e0Losses + e0Ties)) * 1000000
-                    );
-                }
-        );
+
+    private static double winRatio(long[] entry) {
+        return (double) entry[1] / (entry[1] + entry[2] + entry[3]);
     }
 }
@@ -0,0 +1,67 @@
+package com.andrewalia.simulator.permutations.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that threads add to without contending, summed on demand.
+ * <p>
+ * Like a {@link java.util.concurrent.atomic.LongAdder}, the count is split over stripes that each live on their own
+ * cache lines, but threads pick their stripe explicitly, so giving every worker a stripe of its own means no two
+ * threads ever write the same cache line. {@link #sum()} adds up the stripes; it is exact once the threads are done,
+ * and a consistent enough progress figure while they are running.
+ * </p>
+ */
+public final class StripedCounter {
+
+    /** Longs between stripes in {@link #cells}, 128 bytes, so stripes don't share a cache line or its neighbour. */
+    private static final int PADDING = 16;
+
+    private final AtomicLongArray cells;
+    private final int stripeCount;
+
+    /**
+     * Creates a counter at zero.
+     *
+     * @param stripeCount Number of stripes, usually one per thread that adds to the counter
+     */
+    public StripedCounter(int stripeCount) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Stripe count must be positive, was " + stripeCount);
+        }
+        this.stripeCount = stripeCount;
+        // one stripe of padding before the first, so it doesn't share a cache line with the array header
+        this.cells = new AtomicLongArray((stripeCount + 2) * PADDING);
+    }
+
+    /**
+     * Adds to a stripe of the counter.
+     *
+     * @param stripe Stripe to add to, taken modulo the stripe count, so threads can pass any non-negative index
+     * @param delta Amount to add
+     */
+    public void add(int stripe, long delta) {
+        cells.getAndAdd((stripe % stripeCount + 1) * PADDING, delta);
+    }
+
+    /**
+     * Adds up every stripe.
+     *
+     * @return The count
+     */
+    public long sum() {
+        long sum = 0;
+        for (int stripe = 0; stripe < stripeCount; stripe++) {
+            sum += cells.get((stripe + 1) * PADDING);
+        }
+        return sum;
+    }
+
+    public int getStripeCount() {
+        return stripeCount;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+}
@@ -0,0 +1,72 @@
+package com.andrewalia.simulator.permutations.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits on a {@link DealRingBuffer} that is full (producers) or empty (consumers).
+ * <p>
+ * None of the strategies take a lock or need to be signalled: the waiting thread idles for a moment and then checks
+ * the buffer again.
+ * </p>
+ */
+public enum WaitStrategy {
+
+    /** Spins on the CPU. Lowest latency, for when every thread has a core to itself. */
+    BUSY_SPIN {
+        @Override
+        public void idle(int attempt) {
+            // check again straight away
+        }
+    },
+
+    /** Spins for a while, then yields the CPU to other threads between checks. */
+    YIELD {
+        @Override
+        public void idle(int attempt) {
+            if (attempt > SPIN_ATTEMPTS) {
+                Thread.yield();
+            }
+        }
+    },
+
+    /** Spins for a while, then parks for {@value #PARK_NANOS}ns between checks. Best when cores are oversubscribed. */
+    PARK {
+        @Override
+        public void idle(int attempt) {
+            if (attempt > SPIN_ATTEMPTS) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+    private static final int SPIN_ATTEMPTS = 100;
+    private static final long PARK_NANOS = 50000;
+
+    /**
+     * Idles once between two checks of the buffer.
+     *
+     * @param attempt The number of checks that have failed so far, starting from 1.
+     */
+    public abstract void idle(int attempt);
+
+    /**
+     * Gets a wait strategy by name, e.g. "spin", "yield" or "park".
+     *
+     * @param name The name of the strategy, ignoring case, or of the constant.
+     * @return The wait strategy.
+     * @throws IllegalArgumentException If there is no strategy by that name.
+     */
+    public static WaitStrategy fromName(String name) {
+        switch (name.toLowerCase()) {
+            case "spin":
+            case "busy_spin":
+                return BUSY_SPIN;
+            case "yield":
+                return YIELD;
+            case "park":
+                return PARK;
+            default:
+                throw new IllegalArgumentException("Unknown wait strategy " + name + ", expected spin, yield or park");
+        }
+    }
+}
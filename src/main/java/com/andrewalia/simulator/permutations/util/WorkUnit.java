@@ -0,0 +1,46 @@
+package com.andrewalia.simulator.permutations.util;
+
+/**
+ * What a producer puts in each {@link DealRingBuffer} slot for the comparing threads.
+ */
+public enum WorkUnit {
+
+    /** One deal: the hero's hole cards, the board and the villain's hole cards. */
+    DEAL,
+
+    /**
+     * One hero and board, standing for the {@value #VILLAINS_PER_BOARD} deals against every villain left. The hero is
+     * scored once and every villain once, and the slot's villain cards are unused.
+     */
+    BOARD;
+
+    /** Villain hole cards left once the hero's hole cards and the board are dealt. */
+    public static final int VILLAINS_PER_BOARD = 990;
+
+    /**
+     * Gets the number of deals a slot stands for.
+     *
+     * @return 1 for a deal, {@value #VILLAINS_PER_BOARD} for a board.
+     */
+    public int getDeals() {
+        return this == BOARD ? VILLAINS_PER_BOARD : 1;
+    }
+
+    /**
+     * Gets a work unit by name, e.g. "deal" or "board".
+     *
+     * @param name The name of the work unit, ignoring case.
+     * @return The work unit.
+     * @throws IllegalArgumentException If there is no work unit by that name.
+     */
+    public static WorkUnit fromName(String name) {
+        switch (name.toLowerCase()) {
+            case "deal":
+                return DEAL;
+            case "board":
+                return BOARD;
+            default:
+                throw new IllegalArgumentException("Unknown work unit " + name + ", expected deal or board");
+        }
+    }
+}
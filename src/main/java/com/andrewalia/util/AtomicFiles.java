@@ -0,0 +1,65 @@
+package com.andrewalia.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes files so that a crash or a failed write leaves either the old or the new file, never a partial one.
+ * <p>
+ * The contents go to a temporary file next to the file, which is forced to disk and renamed over it, and the rename
+ * is forced to disk with the directory. If the write or the rename fails, the temporary file is deleted.
+ * </p>
+ */
+public final class AtomicFiles {
+
+    private AtomicFiles() {}
+
+    /**
+     * Writes buffers one after another to a file, replacing it atomically. Each buffer is written from its position
+     * to its limit.
+     *
+     * @param path The file to write.
+     * @param buffers The contents of the file.
+     * @return The number of bytes written.
+     * @throws IOException If the file can't be written.
+     */
+    public static long write(Path path, ByteBuffer... buffers) throws IOException {
+        final Path absolutePath = path.toAbsolutePath();
+        final Path temp = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+        long written = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (ByteBuffer buffer : buffers) {
+                    while (buffer.hasRemaining()) {
+                        written += channel.write(buffer);
+                    }
+                }
+                channel.force(true);
+            }
+            Files.move(temp, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        forceDirectory(absolutePath.getParent());
+        return written;
+    }
+
+    /**
+     * Forces the entries of a directory to disk, so that a rename into it survives a crash. Some platforms, e.g.
+     * Windows, can't open a directory; there the rename is left to the file system.
+     *
+     * @param directory The directory.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories can't be opened or forced on this platform
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.andrewalia.util;
+
+/**
+ * Scores many hands per call from struct-of-arrays input.
+ * <p>
+ * Hands are given as parallel columns, either {@link CardSet} masks or card indexes, and the strengths are written
+ * to the matching positions of an output column. Nothing is allocated, and each method is a single flat loop over
+ * primitive arrays. Strengths are the same as those of {@link HandEvaluator}.
+ * </p>
+ */
+public final class BatchEvaluator {
+
+    private BatchEvaluator() {}
+
+    /**
+     * Scores hands given as card masks.
+     *
+     * @param cardMasks The {@link CardSet#getMask()} of each hand, with five to seven cards.
+     * @param strengths The column to write each hand's strength to.
+     * @param count The number of hands to score.
+     */
+    public static void evaluate(long[] cardMasks, int[] strengths, int count) {
+        for (int i = 0; i < count; i++) {
+            strengths[i] = HandEvaluator.evaluateCardMask(cardMasks[i]);
+        }
+    }
+
+    /**
+     * Scores hands that share some cards, e.g. a board, and differ in the rest, e.g. hole cards.
+     *
+     * @param sharedMask The mask of the cards every hand has.
+     * @param cardMasks The mask of each hand's own cards, adding up to five to seven cards.
+     * @param strengths The column to write each hand's strength to.
+     * @param count The number of hands to score.
+     */
+    public static void evaluate(long sharedMask, long[] cardMasks, int[] strengths, int count) {
+        for (int i = 0; i < count; i++) {
+            strengths[i] = HandEvaluator.evaluateCardMask(sharedMask | cardMasks[i]);
+        }
+    }
+
+    /**
+     * Scores seven-card hands given as one column of card indexes per card.
+     *
+     * @param c0 The index of each hand's first card.
+     * @param c1 The index of each hand's second card.
+     * @param c2 The index of each hand's third card.
+     * @param c3 The index of each hand's fourth card.
+     * @param c4 The index of each hand's fifth card.
+     * @param c5 The index of each hand's sixth card.
+     * @param c6 The index of each hand's seventh card.
+     * @param strengths The column to write each hand's strength to.
+     * @param count The number of hands to score.
+     */
+    public static void evaluate(int[] c0, int[] c1, int[] c2, int[] c3, int[] c4, int[] c5, int[] c6,
+            int[] strengths, int count) {
+        for (int i = 0; i < count; i++) {
+            strengths[i] = HandEvaluator.evaluateCardMask(
+                1L << c0[i] | 1L << c1[i] | 1L << c2[i] | 1L << c3[i] | 1L << c4[i] | 1L << c5[i] | 1L << c6[i]
+            );
+        }
+    }
+
+    /**
+     * Scores pairs of hole cards against one board with a {@link HandRankTable}.
+     *
+     * @param table The hand rank table.
+     * @param boardState The table state of the five board cards.
+     * @param hole0 The index of each hand's first hole card.
+     * @param hole1 The index of each hand's second hole card.
+     * @param strengths The column to write each hand's strength to.
+     * @param count The number of hands to score.
+     */
+    public static void evaluate(HandRankTable table, int boardState, int[] hole0, int[] hole1, int[] strengths,
+            int count) {
+        for (int i = 0; i < count; i++) {
+            strengths[i] = table.evaluate(boardState, hole0[i], hole1[i]);
+        }
+    }
+}
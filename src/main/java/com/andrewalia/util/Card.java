@@ -2,20 +2,47 @@ package com.andrewalia.util;
 
 /**
  * Represents a playing card with a rank and suit.
+ * <p>
+ * Every card has a stable index from 0 to 51, its position in {@link Deck#FULL_DECK_ARRAY}: suits in the order of
+ * {@link Suit#SUITS} and, within a suit, ranks from Ace down to Two. One canonical instance per index is kept, and
+ * the static factories always return it.
+ * </p>
  */
 public class Card implements Comparable<Card> {
 
+    private static final Card[] CARDS = new Card[52];
+
+    static {
+        for (Suit suit : Suit.SUITS) {
+            for (Rank rank : Rank.RANKS) {
+                final Card card = new Card(rank, suit);
+                CARDS[card.index] = card;
+            }
+        }
+    }
+
     private final Rank rank;
     private final Suit suit;
+    private final int index;
 
     /**
      * Constructor to initialize the card with a rank and suit.
+     * Prefer {@link #valueOf(Rank, Suit)}, which returns the canonical instance.
      * @param rank The rank of the card.
      * @param suit The suit of the card.
      */
     public Card(Rank rank, Suit suit) {
         this.rank = rank;
         this.suit = suit;
+        this.index = indexOf(rank, suit);
+    }
+
+    /**
+     * Gets the index of the card, from 0 to 51.
+     * @return The index of the card in {@link Deck#FULL_DECK_ARRAY}.
+     */
+    public int getIndex() {
+        return index;
     }
 
     /**
@@ -57,13 +84,16 @@ public class Card implements Comparable<Card> {
             return false;
         }
         final Card other = (Card) obj;
-        if (this.rank != other.rank && (this.rank == null || !this.rank.equals(other.rank))) {
-            return false;
-        }
-        if (this.suit != other.suit && (this.suit == null || !this.suit.equals(other.suit))) {
-            return false;
-        }
-        return true;
+        return this.index == other.index;
+    }
+
+    /**
+     * Gets the hash code of the card, which is its index.
+     * @return The index of the card.
+     */
+    @Override
+    public int hashCode() {
+        return index;
     }
 
     /**
@@ -86,9 +116,9 @@ public class Card implements Comparable<Card> {
     }
 
     /**
-     * Creates a new Card object from its short name.
+     * Gets the card with the given short name.
      * @param shortName The short name of the card.
-     * @return A new Card object.
+     * @return The canonical Card object.
      */
     public static Card valueOf(String shortName) {
         if (shortName.length() != 2) {
@@ -96,6 +126,37 @@ public class Card implements Comparable<Card> {
         }
         Rank rank = Rank.valueOf(shortName.charAt(0));
         Suit suit = Suit.valueOf(shortName.charAt(1));
-        return new Card(rank, suit);
+        return valueOf(rank, suit);
+    }
+
+    /**
+     * Gets the card with the given rank and suit.
+     * @param rank The rank of the card.
+     * @param suit The suit of the card.
+     * @return The canonical Card object.
+     */
+    public static Card valueOf(Rank rank, Suit suit) {
+        return CARDS[indexOf(rank, suit)];
+    }
+
+    /**
+     * Gets the card with the given index.
+     * @param index The index of the card, from 0 to 51.
+     * @return The canonical Card object.
+     */
+    public static Card valueOf(int index) {
+        return CARDS[index];
+    }
+
+    /**
+     * Computes the index of the card with the given rank and suit.
+     */
+    private static int indexOf(Rank rank, Suit suit) {
+        for (int i = 0; i < Suit.SUITS.length; i++) {
+            if (Suit.SUITS[i].getShortName() == suit.getShortName()) {
+                return i * 13 + Rank.ACE.getValue() - rank.getValue();
+            }
+        }
+        throw new IllegalArgumentException("No suit " + suit);
     }
 }
@@ -0,0 +1,259 @@
+package com.andrewalia.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of cards backed by a 64-bit mask, where bit {@code i} stands for the card with index {@code i}.
+ * <p>
+ * Membership, union, removal of dead cards and size are all single bitwise operations on the mask.
+ * Iteration visits cards in index order.
+ * </p>
+ */
+public final class CardSet implements Iterable<Card> {
+
+    public static final CardSet EMPTY = new CardSet(0L);
+    public static final CardSet FULL_DECK = new CardSet((1L << 52) - 1);
+
+    private final long mask;
+
+    private CardSet(long mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * Creates a set from a mask of card index bits.
+     *
+     * @param mask The mask, using only the low 52 bits.
+     * @return The set of cards in the mask.
+     */
+    public static CardSet ofMask(long mask) {
+        if ((mask & ~FULL_DECK.mask) != 0) {
+            throw new IllegalArgumentException("Mask has bits above 51: " + Long.toHexString(mask));
+        }
+        return new CardSet(mask);
+    }
+
+    /**
+     * Creates a set from cards.
+     *
+     * @param cards The cards in the set.
+     * @return The set of cards.
+     */
+    public static CardSet of(Card... cards) {
+        long mask = 0;
+        for (Card card : cards) {
+            mask |= bit(card.getIndex());
+        }
+        return new CardSet(mask);
+    }
+
+    /**
+     * Creates a set from card indexes.
+     *
+     * @param indexes The indexes of the cards in the set.
+     * @return The set of cards.
+     */
+    public static CardSet of(int... indexes) {
+        long mask = 0;
+        for (int index : indexes) {
+            mask |= bit(index);
+        }
+        return new CardSet(mask);
+    }
+
+    /**
+     * Gets the mask bit of a card index.
+     *
+     * @param index The index of the card, from 0 to 51.
+     * @return The mask with only that card's bit set.
+     */
+    public static long bit(int index) {
+        if (index < 0 || index >= 52) {
+            throw new IllegalArgumentException("Invalid card index " + index);
+        }
+        return 1L << index;
+    }
+
+    /**
+     * Gets the mask of this set.
+     *
+     * @return The mask, with bit {@code i} set if the card with index {@code i} is in the set.
+     */
+    public long getMask() {
+        return mask;
+    }
+
+    /**
+     * Gets the number of cards in this set.
+     *
+     * @return The number of cards.
+     */
+    public int size() {
+        return Long.bitCount(mask);
+    }
+
+    /**
+     * Checks whether this set is empty.
+     *
+     * @return True if there are no cards in this set.
+     */
+    public boolean isEmpty() {
+        return mask == 0;
+    }
+
+    /**
+     * Checks whether a card is in this set.
+     *
+     * @param card The card.
+     * @return True if the card is in this set.
+     */
+    public boolean contains(Card card) {
+        return contains(card.getIndex());
+    }
+
+    /**
+     * Checks whether the card with the given index is in this set.
+     *
+     * @param index The index of the card.
+     * @return True if the card is in this set.
+     */
+    public boolean contains(int index) {
+        return (mask & bit(index)) != 0;
+    }
+
+    /**
+     * Checks whether every card of another set is in this set.
+     *
+     * @param other The other set.
+     * @return True if the other set is a subset of this set.
+     */
+    public boolean containsAll(CardSet other) {
+        return (other.mask & ~mask) == 0;
+    }
+
+    /**
+     * Checks whether this set shares any card with another set.
+     *
+     * @param other The other set.
+     * @return True if the sets are not disjoint.
+     */
+    public boolean intersects(CardSet other) {
+        return (mask & other.mask) != 0;
+    }
+
+    /**
+     * Gets the union of this set and another set.
+     *
+     * @param other The other set.
+     * @return The cards in either set.
+     */
+    public CardSet union(CardSet other) {
+        return new CardSet(mask | other.mask);
+    }
+
+    /**
+     * Gets this set with a card added.
+     *
+     * @param card The card to add.
+     * @return The cards of this set and the given card.
+     */
+    public CardSet with(Card card) {
+        return new CardSet(mask | bit(card.getIndex()));
+    }
+
+    /**
+     * Gets this set without the given dead cards.
+     *
+     * @param dead The cards to remove.
+     * @return The cards of this set that are not in {@code dead}.
+     */
+    public CardSet remove(CardSet dead) {
+        return new CardSet(mask & ~dead.mask);
+    }
+
+    /**
+     * Gets this set without a card.
+     *
+     * @param card The card to remove.
+     * @return The cards of this set other than the given card.
+     */
+    public CardSet without(Card card) {
+        return new CardSet(mask & ~bit(card.getIndex()));
+    }
+
+    /**
+     * Writes the indexes of the cards in this set to an array, in ascending order.
+     *
+     * @param indexes The array to fill, which must hold at least {@link #size()} entries.
+     * @return The number of indexes written.
+     */
+    public int toIndexes(int[] indexes) {
+        int n = 0;
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            indexes[n++] = Long.numberOfTrailingZeros(remaining);
+        }
+        return n;
+    }
+
+    /**
+     * Gets the cards in this set, in index order.
+     *
+     * @return A new array of the canonical cards.
+     */
+    public Card[] toArray() {
+        final Card[] cards = new Card[size()];
+        int n = 0;
+        for (Card card : this) {
+            cards[n++] = card;
+        }
+        return cards;
+    }
+
+    @Override
+    public Iterator<Card> iterator() {
+        return new Iterator<Card>() {
+            private long remaining = mask;
+
+            @Override
+            public boolean hasNext() {
+                return remaining != 0;
+            }
+
+            @Override
+            public Card next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                final Card card = Card.valueOf(Long.numberOfTrailingZeros(remaining));
+                remaining &= remaining - 1;
+                return card;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CardSet)) {
+            return false;
+        }
+        return mask == ((CardSet) obj).mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mask);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("[");
+        for (Card card : this) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(card.getShortName());
+        }
+        return sb.append("]").toString();
+    }
+}
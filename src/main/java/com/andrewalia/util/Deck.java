@@ -13,6 +13,7 @@ import org.apache.commons.collections4.list.UnmodifiableList;
 public class Deck {
 
     private final List<Card> cards;
+    private CardSet cardSet;
     private final Random random = new XoRoShiRo128PlusRandom();
     public static final List<Card> FULL_DECK;
     /**
@@ -23,27 +24,10 @@ public class Deck {
     static {
         LinkedList<Card> TEMP_FULL_DECK = new LinkedList<>();
         FULL_DECK_ARRAY = new Card[52];
-        int i = 0;
-        for (Suit suit : new Suit[] { Suit.HEARTS, Suit.DIAMONDS, Suit.CLUBS, Suit.SPADES }) {
-            for (Rank rank : new Rank[] {
-                Rank.ACE,
-                Rank.KING,
-                Rank.QUEEN,
-                Rank.JACK,
-                Rank.TEN,
-                Rank.NINE,
-                Rank.EIGHT,
-                Rank.SEVEN,
-                Rank.SIX,
-                Rank.FIVE,
-                Rank.FOUR,
-                Rank.THREE,
-                Rank.TWO,
-            }) {
-                final Card card = new Card(rank, suit);
-                TEMP_FULL_DECK.add(card);
-                FULL_DECK_ARRAY[i++] = card;
-            }
+        for (int i = 0; i < FULL_DECK_ARRAY.length; i++) {
+            final Card card = Card.valueOf(i);
+            TEMP_FULL_DECK.add(card);
+            FULL_DECK_ARRAY[i] = card;
         }
         FULL_DECK = UnmodifiableList.unmodifiableList(TEMP_FULL_DECK);
     }
@@ -52,10 +36,19 @@ public class Deck {
      * Constructor that initializes a deck with a full set of 52 cards.
      */
     public Deck() {
-        cards = new LinkedList<Card>();
-        for (Card card : FULL_DECK) {
-            cards.add(new Card(card.getRank(), card.getSuit()));
+        this(CardSet.FULL_DECK);
+    }
+
+    /**
+     * Constructor that initializes a deck with the given cards, e.g. a full deck with the dead cards removed.
+     * @param cards The cards in the deck.
+     */
+    public Deck(CardSet cards) {
+        this.cards = new LinkedList<Card>();
+        for (Card card : cards) {
+            this.cards.add(card);
         }
+        this.cardSet = cards;
     }
 
     /**
@@ -70,7 +63,9 @@ public class Deck {
      * @return The dealt card.
      */
     public Card deal() {
-        return cards.remove(0);
+        final Card card = cards.remove(0);
+        cardSet = cardSet.without(card);
+        return card;
     }
 
     /**
@@ -114,9 +109,14 @@ public class Deck {
     /**
      * Adds a card to the deck.
      * @param card The card to add.
+     * @throws IllegalArgumentException If the card is already in the deck.
      */
     public void add(Card card) {
+        if (cardSet.contains(card)) {
+            throw new IllegalArgumentException(card + " is already in the deck");
+        }
         cards.add(card);
+        cardSet = cardSet.with(card);
     }
 
     /**
@@ -124,7 +124,27 @@ public class Deck {
      * @param card The card to remove.
      */
     public void remove(Card card) {
-        cards.remove(card);
+        if (cardSet.contains(card)) {
+            cards.remove(card);
+            cardSet = cardSet.without(card);
+        }
+    }
+
+    /**
+     * Checks whether a card is in the deck.
+     * @param card The card to look for.
+     * @return True if the card is in the deck.
+     */
+    public boolean contains(Card card) {
+        return cardSet.contains(card);
+    }
+
+    /**
+     * Gets the cards in the deck as a set.
+     * @return The set of cards in the deck.
+     */
+    public CardSet getCardSet() {
+        return cardSet;
     }
 
     /**
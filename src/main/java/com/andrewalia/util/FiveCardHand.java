@@ -2,35 +2,77 @@ package com.andrewalia.util;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import org.apache.commons.collections4.iterators.ArrayIterator;
 
 /**
  * Represents a five-card poker hand.
+ * <p>
+ * Hands are immutable: the cards are kept sorted by rank in a private array, and the value of the hand is computed
+ * once, as a {@link HandRank}, so comparing hands is a single integer compare. A hand can be shared between threads
+ * and used as a key in a cache.
+ * </p>
+ * <p>
+ * The value comes from the {@link HandType} predicates and rearrangers rather than from {@link HandEvaluator}, so
+ * that {@link NCardHand} stays a brute force check of the lookup evaluator.
+ * </p>
  */
-public class FiveCardHand implements Comparable<FiveCardHand>, Collection<Card> {
+public final class FiveCardHand implements Comparable<FiveCardHand>, Collection<Card> {
+
+    /** Orders cards by rank, then by index so that equal hands hold their cards in the same order. */
+    private static final Comparator<Card> BY_RANK = (card0, card1) -> {
+        final int result = card0.compareTo(card1);
+        return result != 0 ? result : Integer.compare(card0.getIndex(), card1.getIndex());
+    };
 
     private final Card[] cards;
+    private final int handRank;
 
     /**
-     * Gets the cards in this hand.
-     * @return An array of Card objects.
+     * Gets the cards in this hand, sorted by rank.
+     * @return A new array of Card objects.
      */
     public Card[] getCards() {
-        return cards;
+        return cards.clone();
+    }
+
+    /**
+     * Gets one card of this hand without copying the cards.
+     * @param index The position of the card, from 0 to 4, in the order of {@link #getCards()}.
+     * @return The card.
+     */
+    public Card getCard(int index) {
+        return cards[index];
     }
 
     /**
-     * Constructs a FiveCardHand with the given array of cards.
+     * Constructs a FiveCardHand with the given array of cards. The array is copied and not changed.
      * @param cards An array of Card objects.
      */
     public FiveCardHand(Card[] cards) {
-        this.cards = Arrays.copyOf(cards, cards.length);
-        Arrays.sort(cards);
-
         if (cards.length != 5) {
             throw new IllegalArgumentException("FiveCardHand must have exactly five cards");
         }
+        this.cards = cards.clone();
+        Arrays.sort(this.cards, BY_RANK);
+        this.handRank = HandType.getHandRank(this.cards);
+    }
+
+    /**
+     * Gets the value of this hand.
+     * @return The {@link HandRank} of this hand.
+     */
+    public int getHandRank() {
+        return handRank;
+    }
+
+    /**
+     * Gets the type of this hand.
+     * @return The HandType of this hand.
+     */
+    public HandType getHandType() {
+        return HandRank.getHandType(handRank);
     }
 
     @Override
@@ -44,19 +86,7 @@ public class FiveCardHand implements Comparable<FiveCardHand>, Collection<Card>
      * @return A string describing the type of poker hand.
      */
     public String description() {
-        HandType.getBestHandType(this).rearrange(this);
-        if (HandType.ROYAL_FLUSH.test(this)) return "Royal Flush";
-        if (HandType.STRAIGHT_FLUSH.test(this)) return "Straight Flush, " + cards[0].getRank() + " high";
-        if (HandType.FOUR_OF_A_KIND.test(this)) return "Four of a Kind, " + cards[0].getRank() + "s, " + cards[4].getRank() + " kicker";
-        if (HandType.FULL_HOUSE.test(this)) return "Full House, " + cards[0].getRank() + "s over " + cards[3].getRank() + "s";
-        if (HandType.FLUSH.test(this)) return "Flush, " + cards[0].getRank() + " high";
-        if (HandType.STRAIGHT.test(this)) return "Straight, " + cards[0].getRank() + " high";
-        if (HandType.THREE_OF_A_KIND.test(this)) return "Three of a Kind, " + cards[0].getRank() + "s, " + cards[3].getRank() + " kicker";
-        if (HandType.TWO_PAIR.test(this)) return (
-            "Two Pair, " + cards[0].getRank() + "s and " + cards[2].getRank() + "s, " + cards[4].getRank() + " kicker"
-        );
-        if (HandType.PAIR.test(this)) return "Pair of " + cards[0].getRank() + "s, " + cards[2].getRank() + " kicker";
-        return "High Card, " + cards[0].getRank() + " high";
+        return HandRank.describe(handRank);
     }
 
     public String getShortName() {
@@ -68,22 +98,6 @@ public class FiveCardHand implements Comparable<FiveCardHand>, Collection<Card>
         return sb.toString();
     }
 
-    /**
-     * Compares this hand with another hand to break a tie.
-     * @param other The other FiveCardHand.
-     * @return An integer representing the comparison result.
-     */
-    private int breakTie(FiveCardHand other) {
-        for (int i = 0; i < cards.length; i++) {
-            if (cards[i].getRank().getValue() > other.cards[i].getRank().getValue()) {
-                return 1;
-            } else if (cards[i].getRank().getValue() < other.cards[i].getRank().getValue()) {
-                return -1;
-            }
-        }
-        return 0;
-    }
-
     /**
      * Compares this FiveCardHand to another FiveCardHand.
      * @param o The other FiveCardHand.
@@ -91,19 +105,7 @@ public class FiveCardHand implements Comparable<FiveCardHand>, Collection<Card>
      */
     @Override
     public int compareTo(FiveCardHand o) {
-
-        HandType thisBestHandType = HandType.getBestHandType(this);
-        HandType otherBestHandType = HandType.getBestHandType(o);
-
-        if (thisBestHandType.compareTo(otherBestHandType) > 0) {
-            return 1;
-        } else if (thisBestHandType.compareTo(otherBestHandType) < 0) {
-            return -1;
-        }
-
-        thisBestHandType.rearrange(this);
-        otherBestHandType.rearrange(o);
-        return breakTie(o);
+        return Integer.compare(handRank, o.handRank);
     }
 
     @Override
@@ -206,11 +208,11 @@ public class FiveCardHand implements Comparable<FiveCardHand>, Collection<Card>
     public boolean equals(Object obj) {
         if (obj == this) return true;
         if (!(obj instanceof FiveCardHand)) return false;
-        final FiveCardHand other = (FiveCardHand) obj;
-        Card[] thisCards = Arrays.copyOf(cards, cards.length);
-        Card[] otherCards = Arrays.copyOf(other.cards, other.cards.length);
-        Arrays.sort(thisCards);
-        Arrays.sort(otherCards);
-        return Arrays.equals(thisCards, otherCards);
+        return Arrays.equals(cards, ((FiveCardHand) obj).cards);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(cards);
     }
 }
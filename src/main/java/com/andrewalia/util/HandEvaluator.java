@@ -0,0 +1,214 @@
+package com.andrewalia.util;
+
+/**
+ * Table-driven evaluator that turns five to seven cards into a single integer strength without allocating.
+ * <p>
+ * Cards are identified by their index in {@link Deck#FULL_DECK_ARRAY}. The cards of each suit are collected into
+ * a 13-bit rank mask (bit 0 is the Ace, bit 12 is the Two), and the hand category is decided from those four masks
+ * with a handful of bitwise operations and two 8192-entry lookup tables.
+ * </p>
+ * <p>
+ * The returned strength is the {@link HandRank} of the best five-card hand, so a larger strength is a better hand,
+ * and two hands tie exactly when their strengths are equal.
+ * </p>
+ */
+public final class HandEvaluator {
+
+    private static final int RANK_MASK_SIZE = 1 << 13;
+
+    /** Rank bit of each card index, shifted into a 16-bit lane per suit. */
+    private static final long[] CARD_BITS = new long[52];
+
+    /** Value of the highest straight contained in a rank mask, or 0 if there is none. */
+    private static final byte[] STRAIGHT_HIGH = new byte[RANK_MASK_SIZE];
+
+    /** The five highest ranks of a rank mask, packed four bits each with the highest rank first. */
+    private static final int[] KICKERS = new int[RANK_MASK_SIZE];
+
+    static {
+        for (int i = 0; i < 52; i++) {
+            CARD_BITS[i] = 1L << (i % 13) << (i / 13 * 16);
+        }
+
+        for (int mask = 0; mask < RANK_MASK_SIZE; mask++) {
+            for (int high = 14; high >= 6; high--) {
+                final int straight = 0x1F << (14 - high);
+                if ((mask & straight) == straight) {
+                    STRAIGHT_HIGH[mask] = (byte) high;
+                    break;
+                }
+            }
+            final int wheel = 0x1E01;
+            if (STRAIGHT_HIGH[mask] == 0 && (mask & wheel) == wheel) {
+                STRAIGHT_HIGH[mask] = 5;
+            }
+
+            int kickers = 0;
+            int remaining = mask;
+            for (int i = 0; i < 5; i++) {
+                kickers <<= 4;
+                if (remaining != 0) {
+                    kickers |= rankValue(remaining & -remaining);
+                    remaining &= remaining - 1;
+                }
+            }
+            KICKERS[mask] = kickers;
+        }
+    }
+
+    private HandEvaluator() {}
+
+    /**
+     * Evaluates seven cards given by their index in {@link Deck#FULL_DECK_ARRAY}.
+     *
+     * @return The strength of the best five-card hand.
+     */
+    public static int evaluate(int c0, int c1, int c2, int c3, int c4, int c5, int c6) {
+        return evaluate(
+            CARD_BITS[c0] | CARD_BITS[c1] | CARD_BITS[c2] | CARD_BITS[c3] | CARD_BITS[c4] | CARD_BITS[c5] | CARD_BITS[c6]
+        );
+    }
+
+    /**
+     * Evaluates five to seven cards.
+     *
+     * @param cards The cards to evaluate.
+     * @return The strength of the best five-card hand.
+     */
+    public static int evaluate(Card... cards) {
+        if (cards.length < 5 || cards.length > 7) {
+            throw new IllegalArgumentException("Can only evaluate 5 to 7 cards, got " + cards.length);
+        }
+        long suitMasks = 0;
+        for (Card card : cards) {
+            suitMasks |= CARD_BITS[card.getIndex()];
+        }
+        return evaluate(suitMasks);
+    }
+
+    /**
+     * Evaluates a set of five to seven cards.
+     *
+     * @param cards The cards to evaluate.
+     * @return The strength of the best five-card hand.
+     */
+    public static int evaluate(CardSet cards) {
+        if (cards.size() < 5 || cards.size() > 7) {
+            throw new IllegalArgumentException("Can only evaluate 5 to 7 cards, got " + cards.size());
+        }
+        return evaluateCardMask(cards.getMask());
+    }
+
+    /**
+     * Evaluates a hand given as a {@link CardSet} mask, where each suit is a 13-bit lane.
+     */
+    static int evaluateCardMask(long mask) {
+        return evaluate(
+            (int) mask & 0x1FFF,
+            (int) (mask >>> 13) & 0x1FFF,
+            (int) (mask >>> 26) & 0x1FFF,
+            (int) (mask >>> 39) & 0x1FFF
+        );
+    }
+
+    /**
+     * Evaluates a hand given as four 16-bit lanes holding the rank mask of each suit.
+     */
+    private static int evaluate(long suitMasks) {
+        return evaluate(
+            (int) suitMasks & 0x1FFF,
+            (int) (suitMasks >>> 16) & 0x1FFF,
+            (int) (suitMasks >>> 32) & 0x1FFF,
+            (int) (suitMasks >>> 48) & 0x1FFF
+        );
+    }
+
+    /**
+     * Evaluates a hand given as one rank mask per suit.
+     */
+    static int evaluate(int s0, int s1, int s2, int s3) {
+        final int ranks = s0 | s1 | s2 | s3;
+
+        int flush = 0;
+        if (Integer.bitCount(s0) >= 5) {
+            flush = s0;
+        } else if (Integer.bitCount(s1) >= 5) {
+            flush = s1;
+        } else if (Integer.bitCount(s2) >= 5) {
+            flush = s2;
+        } else if (Integer.bitCount(s3) >= 5) {
+            flush = s3;
+        }
+
+        if (flush != 0) {
+            final int high = STRAIGHT_HIGH[flush];
+            if (high == 14) {
+                return category(HandType.ROYAL_FLUSH) | straight(high);
+            } else if (high != 0) {
+                return category(HandType.STRAIGHT_FLUSH) | straight(high);
+            }
+        }
+
+        final int quads = s0 & s1 & s2 & s3;
+        if (quads != 0) {
+            return category(HandType.FOUR_OF_A_KIND) | rankValue(quads) * 0x11110 | KICKERS[ranks & ~quads] >>> 16;
+        }
+
+        final int threes = (s0 & s1 & (s2 | s3)) | (s2 & s3 & (s0 | s1));
+        final int twos = (s0 & s1) | (s2 & s3) | ((s0 | s1) & (s2 | s3));
+        final int three = threes & -threes;
+        if (three != 0) {
+            final int pairs = twos & ~three;
+            if (pairs != 0) {
+                return category(HandType.FULL_HOUSE) | rankValue(three) * 0x11100 | rankValue(pairs & -pairs) * 0x11;
+            }
+        }
+
+        if (flush != 0) {
+            return category(HandType.FLUSH) | KICKERS[flush];
+        }
+
+        final int high = STRAIGHT_HIGH[ranks];
+        if (high != 0) {
+            return category(HandType.STRAIGHT) | straight(high);
+        }
+
+        if (three != 0) {
+            return category(HandType.THREE_OF_A_KIND) | rankValue(three) * 0x11100 | KICKERS[ranks & ~three] >>> 12;
+        }
+
+        if (twos != 0) {
+            final int pair = twos & -twos;
+            final int otherPairs = twos & ~pair;
+            if (otherPairs != 0) {
+                final int secondPair = otherPairs & -otherPairs;
+                return category(HandType.TWO_PAIR) | rankValue(pair) * 0x11000 | rankValue(secondPair) * 0x110
+                    | KICKERS[ranks & ~(pair | secondPair)] >>> 16;
+            }
+            return category(HandType.PAIR) | rankValue(pair) * 0x11000 | KICKERS[ranks & ~pair] >>> 8;
+        }
+
+        return category(HandType.HIGH_CARD) | KICKERS[ranks];
+    }
+
+    private static int category(HandType handType) {
+        return handType.ordinal() << HandRank.CATEGORY_SHIFT;
+    }
+
+    /**
+     * Packs the five ranks of a straight with the given high card, putting the Ace last for a five-high straight.
+     */
+    private static int straight(int high) {
+        if (high == 5) {
+            return 0x5432E;
+        }
+        return high << 16 | (high - 1) << 12 | (high - 2) << 8 | (high - 3) << 4 | (high - 4);
+    }
+
+    /**
+     * Gets the value of the rank represented by a single rank bit.
+     */
+    private static int rankValue(int rankBit) {
+        return 14 - Integer.numberOfTrailingZeros(rankBit);
+    }
+}
@@ -0,0 +1,97 @@
+package com.andrewalia.util;
+
+/**
+ * Packs the value of a five-card poker hand into a single {@code int}, so comparing two hands is one integer compare.
+ * <p>
+ * Bits 20-23 hold the {@link HandType} ordinal. Below it are the values (2-14) of the five cards in the order
+ * {@link HandType#rearrange(FiveCardHand)} puts them, four bits each with the first card highest: the cards that
+ * make the hand type first, then the kickers, and for a five-high straight the Ace last. A larger hand rank is a
+ * better hand, and equal hand ranks tie.
+ * </p>
+ */
+public final class HandRank {
+
+    static final int CATEGORY_SHIFT = 20;
+    private static final HandType[] HAND_TYPES = HandType.values();
+
+    private HandRank() {}
+
+    /**
+     * Packs a hand type and the values of its five cards.
+     *
+     * @param handType The hand type.
+     * @param r0 The value of the first card, e.g. the rank of the pair.
+     * @param r1 The value of the second card.
+     * @param r2 The value of the third card.
+     * @param r3 The value of the fourth card.
+     * @param r4 The value of the fifth card.
+     * @return The hand rank.
+     */
+    public static int of(HandType handType, int r0, int r1, int r2, int r3, int r4) {
+        return handType.ordinal() << CATEGORY_SHIFT | r0 << 16 | r1 << 12 | r2 << 8 | r3 << 4 | r4;
+    }
+
+    /**
+     * Gets the hand type of a hand rank.
+     *
+     * @param handRank The hand rank.
+     * @return The hand type.
+     */
+    public static HandType getHandType(int handRank) {
+        return HAND_TYPES[handRank >>> CATEGORY_SHIFT];
+    }
+
+    /**
+     * Gets the rank of one of the five cards of a hand rank.
+     *
+     * @param handRank The hand rank.
+     * @param position The position of the card, from 0 to 4, in rearranged order.
+     * @return The rank of the card.
+     */
+    public static Rank getRank(int handRank, int position) {
+        return Rank.RANKS[Rank.ACE.getValue() - (handRank >>> (16 - 4 * position) & 0xF)];
+    }
+
+    /**
+     * Compares two hand ranks.
+     *
+     * @param handRank0 The first hand rank.
+     * @param handRank1 The second hand rank.
+     * @return A positive number if the first hand is better, negative if the second is, 0 on a tie.
+     */
+    public static int compare(int handRank0, int handRank1) {
+        return Integer.compare(handRank0, handRank1);
+    }
+
+    /**
+     * Describes a hand rank, e.g. "Full House, Kings over Twos".
+     *
+     * @param handRank The hand rank.
+     * @return A string describing the hand.
+     */
+    public static String describe(int handRank) {
+        switch (getHandType(handRank)) {
+            case ROYAL_FLUSH:
+                return "Royal Flush";
+            case STRAIGHT_FLUSH:
+                return "Straight Flush, " + getRank(handRank, 0) + " high";
+            case FOUR_OF_A_KIND:
+                return "Four of a Kind, " + getRank(handRank, 0) + "s, " + getRank(handRank, 4) + " kicker";
+            case FULL_HOUSE:
+                return "Full House, " + getRank(handRank, 0) + "s over " + getRank(handRank, 3) + "s";
+            case FLUSH:
+                return "Flush, " + getRank(handRank, 0) + " high";
+            case STRAIGHT:
+                return "Straight, " + getRank(handRank, 0) + " high";
+            case THREE_OF_A_KIND:
+                return "Three of a Kind, " + getRank(handRank, 0) + "s, " + getRank(handRank, 3) + " kicker";
+            case TWO_PAIR:
+                return "Two Pair, " + getRank(handRank, 0) + "s and " + getRank(handRank, 2) + "s, "
+                    + getRank(handRank, 4) + " kicker";
+            case PAIR:
+                return "Pair of " + getRank(handRank, 0) + "s, " + getRank(handRank, 2) + " kicker";
+            default:
+                return "High Card, " + getRank(handRank, 0) + " high";
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.andrewalia.util;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Precomputed state-transition table that scores seven cards with seven array reads.
+ * <p>
+ * Each state stands for the cards seen so far and owns a row of {@link #ROW_SIZE} entries. Entry {@code card} of a
+ * row is the offset of the row reached by adding that card, except in rows of six cards, where it is the
+ * {@link HandEvaluator} strength of the resulting seven cards. Rows of five and six cards also hold their own
+ * strength at {@link #STRENGTH_SLOT}. The root row, for no cards, is at offset {@link #START}.
+ * </p>
+ * <p>
+ * States are plain offsets that can be extended one card at a time with {@link #extend(int, int)}, so cards
+ * shared by many hands, like a board, are walked once and each hand only adds its own cards.
+ * </p>
+ * <p>
+ * The table is about 130 MB. {@link #getInstance()} maps it from the file named by the {@value #PATH_PROPERTY}
+ * system property (default {@value #DEFAULT_PATH}) so several JVMs share the page cache, and builds it in memory if
+ * the file is missing or fails its checksum. Files are written by {@link #write(Path)}, e.g. with {@code -g}.
+ * </p>
+ */
+public final class HandRankTable {
+
+    public static final int ROW_SIZE = 53;
+    public static final int STRENGTH_SLOT = 52;
+
+    /** The state for no cards. */
+    public static final int START = 0;
+
+    public static final String PATH_PROPERTY = "poker.handRankTable";
+    public static final String DEFAULT_PATH = "handranks.dat";
+
+    /** "PKHR" */
+    private static final int MAGIC = 0x504B4852;
+    private static final int VERSION = 1;
+    /** Magic, version, entry count and the CRC32 of the entries. */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+
+    private final IntBuffer entries;
+
+    private HandRankTable(IntBuffer entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Gets the shared table, loading or building it on first use.
+     *
+     * @return The shared table.
+     */
+    public static HandRankTable getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Builds a table in memory.
+     *
+     * @return The new table.
+     */
+    public static HandRankTable build() {
+        return new HandRankTable(IntBuffer.wrap(HandRankTableGenerator.generate()));
+    }
+
+    /**
+     * Maps a table file written by {@link #write(Path)} and verifies its checksum.
+     *
+     * @param path The table file.
+     * @return The mapped table.
+     * @throws IOException If the file can't be read, or is not a valid table of this version.
+     */
+    public static HandRankTable load(Path path) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a hand rank table");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(path + " has version " + buffer.getInt(4) + ", expected " + VERSION);
+        }
+        final int entryCount = buffer.getInt(8);
+        if (entryCount % ROW_SIZE != 0 || buffer.capacity() != HEADER_SIZE + (long) entryCount * 4) {
+            throw new IOException(path + " has " + buffer.capacity() + " bytes, expected " + entryCount + " entries");
+        }
+
+        final ByteBuffer data = buffer.duplicate();
+        ((Buffer) data).position(HEADER_SIZE);
+        final ByteBuffer entries = data.slice();
+        final CRC32 crc = new CRC32();
+        crc.update(entries.duplicate());
+        if (crc.getValue() != buffer.getLong(12)) {
+            throw new IOException(path + " failed its checksum");
+        }
+
+        return new HandRankTable(entries.asIntBuffer());
+    }
+
+    /**
+     * Writes the table to a file, replacing it atomically.
+     *
+     * @param path The file to write.
+     * @throws IOException If the file can't be written.
+     */
+    public void write(Path path) throws IOException {
+        final ByteBuffer data = ByteBuffer.allocate(entries.limit() * 4);
+        for (int i = 0; i < entries.limit(); i++) {
+            data.putInt(entries.get(i));
+        }
+        ((Buffer) data).flip();
+        final CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(entries.limit()).putLong(crc.getValue());
+        ((Buffer) header).flip();
+
+        AtomicFiles.write(path, header, data);
+    }
+
+    /**
+     * Evaluates seven cards given by their index in {@link Deck#FULL_DECK_ARRAY}.
+     *
+     * @return The {@link HandEvaluator} strength of the best five-card hand.
+     */
+    public int evaluate(int c0, int c1, int c2, int c3, int c4, int c5, int c6) {
+        return entries.get(entries.get(entries.get(entries.get(entries.get(entries.get(entries.get(START + c0)
+            + c1) + c2) + c3) + c4) + c5) + c6);
+    }
+
+    /**
+     * Extends a partial hand by one card. The order cards are added in does not matter.
+     * <p>
+     * For a state of up to five cards this gives the state with the card added. For a state of six cards it gives
+     * the strength of the seven cards, which can't be extended any further.
+     * </p>
+     *
+     * @param state A state of fewer than seven cards, starting from {@link #START}.
+     * @param card The index of the card to add.
+     * @return The extended state, or the strength of seven cards.
+     */
+    public int extend(int state, int card) {
+        return entries.get(state + card);
+    }
+
+    /**
+     * Extends a state by several cards.
+     *
+     * @param state A state, starting from {@link #START}.
+     * @param cards The indexes of the cards to add, leaving the total at six cards or fewer.
+     * @return The extended state.
+     */
+    public int extend(int state, int... cards) {
+        for (int card : cards) {
+            state = entries.get(state + card);
+        }
+        return state;
+    }
+
+    /**
+     * Completes a five-card state, e.g. a board, with two hole cards.
+     *
+     * @param state A state of five cards.
+     * @param c0 The index of the first hole card.
+     * @param c1 The index of the second hole card.
+     * @return The strength of the seven cards.
+     */
+    public int evaluate(int state, int c0, int c1) {
+        return entries.get(entries.get(state + c0) + c1);
+    }
+
+    /**
+     * Gets the strength of a state of five or six cards.
+     *
+     * @param state A state of five or six cards.
+     * @return The strength of the best five-card hand among its cards.
+     */
+    public int getStrength(int state) {
+        return entries.get(state + STRENGTH_SLOT);
+    }
+
+    /**
+     * Gets the number of states in the table.
+     *
+     * @return The number of rows.
+     */
+    public int getStateCount() {
+        return entries.limit() / ROW_SIZE;
+    }
+
+    /**
+     * Checks whether the table is mapped from a file rather than built in memory.
+     *
+     * @return True if the table is memory mapped.
+     */
+    public boolean isMapped() {
+        return entries.isDirect();
+    }
+
+    /**
+     * Loads the table from the configured file, falling back to building it, and reports how long that took and
+     * how much memory the process holds afterwards.
+     */
+    private static HandRankTable loadOrBuild() {
+        final Path path = Paths.get(System.getProperty(PATH_PROPERTY, DEFAULT_PATH));
+        final long start = System.nanoTime();
+        HandRankTable table = null;
+        if (Files.exists(path)) {
+            try {
+                table = load(path);
+            } catch (IOException e) {
+                System.out.println("Could not load hand rank table: " + e.getMessage());
+            }
+        }
+        final String source;
+        if (table != null) {
+            source = "Mapped hand rank table from " + path;
+        } else {
+            table = build();
+            source = "Built hand rank table in memory";
+        }
+        final long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println(source + " in " + millis + "ms: " + table.getStateCount() + " states, "
+            + (table.entries.limit() * 4L >> 20) + "MB, resident memory " + residentMemory());
+        return table;
+    }
+
+    /**
+     * Describes the resident set size of this process, or the used heap where that is not available.
+     */
+    private static String residentMemory() {
+        try {
+            final List<String> lines = Files.readAllLines(Paths.get("/proc/self/status"));
+            for (String line : lines) {
+                if (line.startsWith("VmRSS:")) {
+                    return line.substring("VmRSS:".length()).trim();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // not on Linux
+        }
+        final Runtime runtime = Runtime.getRuntime();
+        return ((runtime.totalMemory() - runtime.freeMemory()) >> 20) + " MB heap";
+    }
+
+    private static final class Holder {
+        static final HandRankTable INSTANCE = loadOrBuild();
+    }
+}
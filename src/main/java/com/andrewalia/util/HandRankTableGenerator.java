@@ -0,0 +1,184 @@
+package com.andrewalia.util;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Builds the entries of a {@link HandRankTable}.
+ * <p>
+ * Every state stands for a set of up to six cards. A card is kept as its rank and, while its suit can still end up
+ * in a flush of the final seven cards, its suit. Once a suit has too few cards to reach five, the suits of its cards
+ * are dropped, which lets states that can only differ in irrelevant suits share one row. The cards of a state are
+ * packed seven bits each, sorted, into a {@code long} key.
+ * </p>
+ */
+final class HandRankTableGenerator {
+
+    private static final int NO_SUIT = 4;
+    private static final int CODE_BITS = 7;
+    private static final int CODE_MASK = (1 << CODE_BITS) - 1;
+
+    private HandRankTableGenerator() {}
+
+    /**
+     * Generates the table entries, {@link HandRankTable#ROW_SIZE} per state with the root state first.
+     *
+     * @return The table entries.
+     */
+    static int[] generate() {
+        final Long2IntOpenHashMap stateIds = new Long2IntOpenHashMap();
+        stateIds.defaultReturnValue(-1);
+        final LongArrayList stateKeys = new LongArrayList();
+        stateIds.put(0L, 0);
+        stateKeys.add(0L);
+
+        int[] entries = new int[HandRankTable.ROW_SIZE * 1024];
+        final int[] codes = new int[7];
+
+        // states are appended as they are discovered, so this walks the cards one level at a time
+        for (int state = 0; state < stateKeys.size(); state++) {
+            final long key = stateKeys.getLong(state);
+            final int cardCount = decode(key, codes);
+            final int row = state * HandRankTable.ROW_SIZE;
+            if (row + HandRankTable.ROW_SIZE > entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+
+            for (int card = 0; card < 52; card++) {
+                final int code = code(card % 13, card / 13);
+                if (!canAdd(codes, cardCount, code)) {
+                    continue;
+                }
+                codes[cardCount] = code;
+                final long nextKey = normalize(codes, cardCount + 1);
+                if (cardCount == 6) {
+                    entries[row + card] = evaluate(codes, 7);
+                } else {
+                    int nextState = stateIds.get(nextKey);
+                    if (nextState == -1) {
+                        nextState = stateKeys.size();
+                        stateIds.put(nextKey, nextState);
+                        stateKeys.add(nextKey);
+                    }
+                    entries[row + card] = nextState * HandRankTable.ROW_SIZE;
+                }
+                decode(key, codes);
+            }
+
+            if (cardCount >= 5) {
+                entries[row + HandRankTable.STRENGTH_SLOT] = evaluate(codes, cardCount);
+            }
+        }
+
+        return Arrays.copyOf(entries, stateKeys.size() * HandRankTable.ROW_SIZE);
+    }
+
+    /**
+     * Checks whether a card can be added to the cards of a state, rejecting cards that are already in it and
+     * fifth cards of a rank.
+     */
+    private static boolean canAdd(int[] codes, int cardCount, int code) {
+        int rankCount = 0;
+        for (int i = 0; i < cardCount; i++) {
+            if (codes[i] == code) {
+                return false;
+            }
+            if (rank(codes[i]) == rank(code)) {
+                rankCount++;
+            }
+        }
+        return rankCount < 4;
+    }
+
+    /**
+     * Drops the suits that can no longer make a flush, sorts the cards and packs them into a key.
+     */
+    private static long normalize(int[] codes, int cardCount) {
+        final int[] suitCounts = new int[NO_SUIT];
+        for (int i = 0; i < cardCount; i++) {
+            if (suit(codes[i]) != NO_SUIT) {
+                suitCounts[suit(codes[i])]++;
+            }
+        }
+        for (int i = 0; i < cardCount; i++) {
+            final int suit = suit(codes[i]);
+            if (suit != NO_SUIT && suitCounts[suit] + 7 - cardCount < 5) {
+                codes[i] = code(rank(codes[i]), NO_SUIT);
+            }
+        }
+        Arrays.sort(codes, 0, cardCount);
+
+        long key = 0;
+        for (int i = 0; i < cardCount; i++) {
+            key = key << CODE_BITS | codes[i];
+        }
+        return key;
+    }
+
+    /**
+     * Unpacks the cards of a key into {@code codes}.
+     *
+     * @return The number of cards.
+     */
+    private static int decode(long key, int[] codes) {
+        int cardCount = 0;
+        for (long remaining = key; remaining != 0; remaining >>>= CODE_BITS) {
+            cardCount++;
+        }
+        for (int i = cardCount - 1; i >= 0; i--) {
+            codes[i] = (int) key & CODE_MASK;
+            key >>>= CODE_BITS;
+        }
+        return cardCount;
+    }
+
+    /**
+     * Evaluates the cards of a state with five or more cards.
+     * <p>
+     * At that point at most one suit still has its cards' suits, and it keeps them. Cards without a suit are spread
+     * over the other suits in rank order, so no rank lands twice in a suit and no suit gets enough of them to
+     * make a flush.
+     * </p>
+     */
+    private static int evaluate(int[] codes, int cardCount) {
+        final int[] suitMasks = new int[4];
+        for (int i = 0; i < cardCount; i++) {
+            if (suit(codes[i]) != NO_SUIT) {
+                suitMasks[suit(codes[i])] |= 1 << rank(codes[i]);
+            }
+        }
+
+        final int[] spareSuits = new int[4];
+        int spareSuitCount = 0;
+        for (int suit = 0; suit < 4; suit++) {
+            if (suitMasks[suit] == 0) {
+                spareSuits[spareSuitCount++] = suit;
+            }
+        }
+
+        int spare = 0;
+        for (int i = 0; i < cardCount; i++) {
+            if (suit(codes[i]) == NO_SUIT) {
+                suitMasks[spareSuits[spare++ % spareSuitCount]] |= 1 << rank(codes[i]);
+            }
+        }
+        return HandEvaluator.evaluate(suitMasks[0], suitMasks[1], suitMasks[2], suitMasks[3]);
+    }
+
+    /**
+     * Encodes a rank bit (0 for Ace to 12 for Two) and a suit, or {@link #NO_SUIT}, as a non-zero code.
+     */
+    private static int code(int rank, int suit) {
+        return rank * 5 + suit + 1;
+    }
+
+    private static int rank(int code) {
+        return (code - 1) / 5;
+    }
+
+    private static int suit(int code) {
+        return (code - 1) % 5;
+    }
+}
@@ -11,12 +11,11 @@ import org.apache.commons.lang3.ArrayUtils;
  */
 public enum HandType{
     HIGH_CARD(
-        (fiveCardHand) -> true,
-        (fiveCardHand) -> ArrayUtils.reverse(fiveCardHand.getCards())
+        (cards) -> true,
+        (cards) -> ArrayUtils.reverse(cards)
     ),
     PAIR(
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             return (
                 cards[0].getRank() == cards[1].getRank() ||
                 cards[1].getRank() == cards[2].getRank() ||
@@ -24,9 +23,8 @@ public enum HandType{
                 cards[3].getRank() == cards[4].getRank()
             );
         },
-        (fiveCardHand) -> {
+        (cards) -> {
             //get the most frequent rank using a for loop
-            Card[] cards = fiveCardHand.getCards();
             Rank mostFrequentRank = null;
             int mostFrequentRankCount = 0;
             for (int i = 0; i < cards.length; i++) {
@@ -66,8 +64,7 @@ public enum HandType{
 
     ),
     TWO_PAIR(
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             return (
                     cards[0].getRank() == cards[1].getRank() &&
                     cards[2].getRank() == cards[3].getRank()
@@ -79,8 +76,7 @@ public enum HandType{
                     cards[3].getRank() == cards[4].getRank()
                 );
         },
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             if (cards[2].getRank() == cards[3].getRank()) {
                 Card temp = cards[0];
                 cards[0] = cards[2];
@@ -107,8 +103,7 @@ public enum HandType{
         }
     ),
     THREE_OF_A_KIND(
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             return (
                 cards[0].getRank() == cards[1].getRank() &&
                 cards[1].getRank() == cards[2].getRank()
@@ -120,8 +115,7 @@ public enum HandType{
                 cards[3].getRank() == cards[4].getRank()
             );
         },
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             if (cards[0].getRank() == cards[1].getRank() && cards[1].getRank() == cards[2].getRank()) {
                 //first 3 are good, check if we need to swap the last 2
                 if (cards[3].getRank().getValue() < cards[4].getRank().getValue()) {
@@ -157,8 +151,7 @@ public enum HandType{
         }
     ),
     STRAIGHT(
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             // Special case for A2345 straight
             //REMEMBER, ACE IS SORTED TO THE END OF THE ARRAY
             if (
@@ -177,22 +170,33 @@ public enum HandType{
             }
             return true;
         },
-        (fiveCardHand) -> ArrayUtils.reverse(fiveCardHand.getCards())
+        (cards) -> {
+            ArrayUtils.reverse(cards);
+            // A5432 is a five high straight, so the ace goes last
+            if (cards[0].getRank() == Rank.ACE && cards[1].getRank() == Rank.FIVE) {
+                Card temp = cards[0];
+                cards[0] = cards[1];
+                cards[1] = cards[2];
+                cards[2] = cards[3];
+                cards[3] = cards[4];
+                cards[4] = temp;
+            }
+            return;
+        }
     ),
     FLUSH(
-        (fiveCardHand) -> {
-            for (int i = 1; i < fiveCardHand.getCards().length; i++) {
-                if (fiveCardHand.getCards()[i].getSuit() != fiveCardHand.getCards()[i - 1].getSuit()) {
+        (cards) -> {
+            for (int i = 1; i < cards.length; i++) {
+                if (cards[i].getSuit() != cards[i - 1].getSuit()) {
                     return false;
                 }
             }
             return true;
         },
-        (fiveCardHand) -> ArrayUtils.reverse(fiveCardHand.getCards())
+        (cards) -> ArrayUtils.reverse(cards)
     ),
     FULL_HOUSE(
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             return
                 (cards[0].getRank() == cards[1].getRank()
                 && cards[1].getRank() == cards[2].getRank()
@@ -202,8 +206,7 @@ public enum HandType{
                 && cards[2].getRank() == cards[3].getRank()
                 && cards[3].getRank() == cards[4].getRank());
         },
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             if (cards[1].getRank() != cards[2].getRank()) {
                 Card temp = cards[0];
                 cards[0] = cards[3];
@@ -215,8 +218,7 @@ public enum HandType{
         }
     ),
     FOUR_OF_A_KIND(
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             return
                     (cards[0].getRank() == cards[1].getRank() &&
                     cards[1].getRank() == cards[2].getRank() &&
@@ -226,8 +228,7 @@ public enum HandType{
                     cards[2].getRank() == cards[3].getRank() &&
                     cards[3].getRank() == cards[4].getRank());
         },
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             if (cards[0].getRank() == cards[1].getRank()) {
                 //do nothing
             } else {
@@ -243,12 +244,11 @@ public enum HandType{
 
     ),
     STRAIGHT_FLUSH(
-        (fiveCardHand) -> {
-            return HandType.STRAIGHT.test(fiveCardHand)
-                && HandType.FLUSH.test(fiveCardHand);
+        (cards) -> {
+            return HandType.STRAIGHT.predicate.test(cards)
+                && HandType.FLUSH.predicate.test(cards);
         },
-        (fiveCardHand) -> {
-            Card[] cards = fiveCardHand.getCards();
+        (cards) -> {
             ArrayUtils.reverse(cards);
             // if first card ace, shift array 1 left
             if (cards[0].getRank() == Rank.ACE) {
@@ -266,23 +266,26 @@ public enum HandType{
         
     ),
     ROYAL_FLUSH(
-        (fiveCardHand) -> {
-            return HandType.STRAIGHT_FLUSH.test(fiveCardHand)
-                && fiveCardHand.getCards()[0].getRank() == Rank.TEN;
+        (cards) -> {
+            return HandType.STRAIGHT_FLUSH.predicate.test(cards)
+                && cards[0].getRank() == Rank.TEN;
         },
-        (fiveCardHand) -> ArrayUtils.reverse(fiveCardHand.getCards())
+        (cards) -> ArrayUtils.reverse(cards)
     );
 
-    private Predicate<FiveCardHand> predicate;
-    private Consumer<FiveCardHand> rearranger;
+    /** Rank bits, by rank value, of A2345. */
+    private static final int WHEEL = 1 << 14 | 1 << 5 | 1 << 4 | 1 << 3 | 1 << 2;
+
+    private final Predicate<Card[]> predicate;
+    private final Consumer<Card[]> rearranger;
     
     /**
      * Constructor to create a HandType enum.
      * 
-     * @param predicate The Predicate that tests if a hand is of this type.
-     * @param rearranger The Consumer that rearranges the hand for this type.
+     * @param predicate The Predicate that tests if five cards sorted by rank are of this type.
+     * @param rearranger The Consumer that rearranges five cards sorted by rank for this type, in place.
      */
-    HandType(Predicate<FiveCardHand> predicate, Consumer<FiveCardHand> rearranger) {
+    HandType(Predicate<Card[]> predicate, Consumer<Card[]> rearranger) {
         this.predicate = predicate;
         this.rearranger = rearranger;
     }
@@ -294,17 +297,40 @@ public enum HandType{
      * @return True if the hand is of this type, otherwise false.
      */
     public boolean test(FiveCardHand hand) {
-        Arrays.sort(hand.getCards());
-        return predicate.test(hand);
+        return predicate.test(hand.getCards());
     }
 
     /**
-     * Rearranges the cards in the given FiveCardHand according to this HandType.
+     * Gets the cards of the given FiveCardHand in the order this HandType breaks ties in: the cards making the
+     * hand type first, then the kickers, highest first. The hand itself is not changed.
      * 
-     * @param hand The hand to rearrange.
+     * @param hand A hand of this type.
+     * @return A new array with the rearranged cards.
+     */
+    public Card[] rearrange(FiveCardHand hand) {
+        final Card[] cards = hand.getCards();
+        rearranger.accept(cards);
+        return cards;
+    }
+
+    /**
+     * Values five cards sorted by rank the way hands were compared before {@link HandEvaluator}: the best HandType
+     * whose predicate holds, then the ranks of the cards in the order its rearranger puts them. It shares no code
+     * with {@link HandEvaluator} or {@link #getBestHandType(Card...)}, so brute force comparisons check them.
+     *
+     * @param sortedCards Five cards sorted by rank, which are not changed.
+     * @return The {@link HandRank} of the cards.
      */
-    public void rearrange(FiveCardHand hand) {
-        rearranger.accept(hand);
+    static int getHandRank(Card[] sortedCards) {
+        for (HandType handType : getRoyalFlushFirstHandTypes()) {
+            if (handType.predicate.test(sortedCards)) {
+                final Card[] cards = sortedCards.clone();
+                handType.rearranger.accept(cards);
+                return HandRank.of(handType, cards[0].getRank().getValue(), cards[1].getRank().getValue(),
+                    cards[2].getRank().getValue(), cards[3].getRank().getValue(), cards[4].getRank().getValue());
+            }
+        }
+        throw new IllegalStateException("No hand type matches " + Arrays.toString(sortedCards));
     }
 
     /**
@@ -334,11 +360,56 @@ public enum HandType{
      * @return The best HandType for the hand.
      */
     static public HandType getBestHandType(FiveCardHand hand) {
-        for (HandType handType : HandType.getRoyalFlushFirstHandTypes()) {
-            if (handType.test(hand)) {
-                return handType;
-            }
+        return getBestHandType(hand.getCard(0), hand.getCard(1), hand.getCard(2), hand.getCard(3), hand.getCard(4));
+    }
+
+    /**
+     * Determines the best possible HandType for five cards in a single pass.
+     * <p>
+     * Each card adds one to the count of its rank and sets its rank and suit bits. The hand type then follows from
+     * the number of distinct ranks, the largest count and whether there is one suit, without sorting the cards or
+     * running the predicates of each HandType.
+     * </p>
+     * 
+     * @param cards Five cards, in any order.
+     * @return The best HandType for the cards.
+     */
+    static public HandType getBestHandType(Card... cards) {
+        if (cards.length != 5) {
+            throw new IllegalArgumentException("HandType needs exactly five cards, got " + cards.length);
+        }
+        long rankCounts = 0;
+        int rankMask = 0;
+        int suitMask = 0;
+        int maxCount = 0;
+        for (Card card : cards) {
+            final int shift = card.getRank().getValue() << 2;
+            rankCounts += 1L << shift;
+            maxCount = Math.max(maxCount, (int) (rankCounts >>> shift) & 0xF);
+            rankMask |= 1 << card.getRank().getValue();
+            suitMask |= 1 << card.getIndex() / 13;
+        }
+
+        switch (Integer.bitCount(rankMask)) {
+            case 2:
+                return maxCount == 4 ? FOUR_OF_A_KIND : FULL_HOUSE;
+            case 3:
+                return maxCount == 3 ? THREE_OF_A_KIND : TWO_PAIR;
+            case 4:
+                return PAIR;
+            default:
+                break;
+        }
+
+        final int low = Integer.numberOfTrailingZeros(rankMask);
+        final boolean straight = 31 - Integer.numberOfLeadingZeros(rankMask) - low == 4 || rankMask == WHEEL;
+        final boolean flush = (suitMask & suitMask - 1) == 0;
+        if (straight && flush) {
+            return low == Rank.TEN.getValue() ? ROYAL_FLUSH : STRAIGHT_FLUSH;
+        }
+        if (flush) {
+            return FLUSH;
         }
-        return null;
+        return straight ? STRAIGHT : HIGH_CARD;
     }
 }
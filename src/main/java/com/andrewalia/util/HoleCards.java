@@ -1,26 +1,33 @@
 package com.andrewalia.util;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 public class HoleCards{
+
+    /** Number of hole cards classes, and of class ids. */
+    public static final int CLASS_COUNT = 169;
+
     private final Rank lowRank;
     private final Rank highRank;
     private final boolean suited;
-    private final static Map<Set<Card>,HoleCards> H_MAP = new HashMap<>();
+    private final int id;
+    /** Canonical hole cards for every ordered pair of card indexes, at {@code index0 * 52 + index1}. */
+    private final static HoleCards[] BY_CARD_INDEXES = new HoleCards[52 * 52];
+    /** Canonical hole cards of every class, by id. */
+    private final static HoleCards[] BY_ID = new HoleCards[CLASS_COUNT];
 
     static {
+        final Map<HoleCards,HoleCards> canonical = new HashMap<>();
         for (Card card : Deck.FULL_DECK) {
             for (Card oCard : Deck.FULL_DECK) {
                 if (card == oCard) {
                     continue;
                 }
-                Set<Card> set = new HashSet<>();
-                set.add(card);
-                set.add(oCard);
-                H_MAP.put(set, new HoleCards(card, oCard));
+                final HoleCards holeCards = new HoleCards(card, oCard);
+                canonical.putIfAbsent(holeCards, holeCards);
+                BY_CARD_INDEXES[card.getIndex() * 52 + oCard.getIndex()] = canonical.get(holeCards);
+                BY_ID[holeCards.id] = canonical.get(holeCards);
             }
         }
     }
@@ -34,13 +41,103 @@ public class HoleCards{
             this.highRank = card1.getRank();
         }
         this.suited = card1.getSuit().equals(card2.getSuit());
+        // rows and columns of the usual 13x13 grid run from aces to twos, suited above the diagonal
+        final int high = 14 - highRank.getValue();
+        final int low = 14 - lowRank.getValue();
+        this.id = suited ? high * 13 + low : low * 13 + high;
+    }
+
+    /**
+     * Gets the canonical hole cards of a class id.
+     *
+     * @param id The id, from 0 to {@link #CLASS_COUNT} - 1.
+     * @return The hole cards.
+     * @see #getId()
+     */
+    static public HoleCards fromId(int id) {
+        return BY_ID[id];
     }
 
     static public HoleCards valueOf(Card card0, Card card1) {
-        Set<Card> set = new HashSet<>();
-        set.add(card0);
-        set.add(card1);
-        return H_MAP.get(set);
+        return valueOf(card0.getIndex(), card1.getIndex());
+    }
+
+    /**
+     * Gets the canonical hole cards for two card indexes.
+     *
+     * @param index0 The index of the first card.
+     * @param index1 The index of the second card.
+     * @return The hole cards, or null if both indexes are the same card.
+     */
+    static public HoleCards valueOf(int index0, int index1) {
+        return BY_CARD_INDEXES[index0 * 52 + index1];
+    }
+
+    /**
+     * Gets the canonical hole cards for a set of two cards.
+     *
+     * @param cards The two cards.
+     * @return The hole cards.
+     */
+    static public HoleCards valueOf(CardSet cards) {
+        if (cards.size() != 2) {
+            throw new IllegalArgumentException("Hole cards must be exactly two cards, got " + cards);
+        }
+        final long mask = cards.getMask();
+        return valueOf(Long.numberOfTrailingZeros(mask), 63 - Long.numberOfLeadingZeros(mask));
+    }
+
+    /**
+     * Gets the hole cards written by {@link #toString()}, e.g. "AKs", "AKo" or "TT".
+     *
+     * @param name The short name of the hole cards.
+     * @return The hole cards.
+     */
+    static public HoleCards valueOf(String name) {
+        final boolean pair = name.length() == 2 && name.charAt(0) == name.charAt(1);
+        if (!pair && (name.length() != 3 || (name.charAt(2) != 's' && name.charAt(2) != 'o'))) {
+            throw new IllegalArgumentException("Invalid hole cards " + name);
+        }
+        final Rank high = Rank.valueOf(name.charAt(0));
+        final Rank low = Rank.valueOf(name.charAt(1));
+        if (!pair && high == low) {
+            throw new IllegalArgumentException("Invalid hole cards " + name);
+        }
+        return valueOf(
+            Card.valueOf(high, Suit.HEARTS),
+            Card.valueOf(low, !pair && name.charAt(2) == 's' ? Suit.HEARTS : Suit.DIAMONDS));
+    }
+
+    public Rank getHighRank() {
+        return highRank;
+    }
+
+    public Rank getLowRank() {
+        return lowRank;
+    }
+
+    public boolean isSuited() {
+        return suited;
+    }
+
+    /**
+     * Gets the dense id of the class of these hole cards: its position in the 13x13 grid of classes, read row by
+     * row, with aces first, pairs on the diagonal, suited classes above it and offsuit classes below it. AA is 0,
+     * AKs is 1, AKo is 13 and 22 is 168.
+     *
+     * @return The id, from 0 to {@link #CLASS_COUNT} - 1.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the number of two-card combinations in the class of these hole cards.
+     *
+     * @return 6 for a pair, 4 if suited, 12 if offsuit.
+     */
+    public int getComboCount() {
+        return lowRank.equals(highRank) ? 6 : suited ? 4 : 12;
     }
 
     @Override
@@ -71,4 +168,4 @@ public class HoleCards{
     public int hashCode() {
         return lowRank.hashCode() + highRank.hashCode()*13 + (suited ? 1 : 0);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,236 @@
+package com.andrewalia.util;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The k-element subsets of {0, ..., n - 1} in colexicographic order, each with an index from 0 to C(n, k) - 1.
+ * <p>
+ * The index of the subset {c_0 &lt; ... &lt; c_(k-1)} is its number in the combinatorial number system, the sum of
+ * C(c_i, i + 1), so {@link #rank(int[])} and {@link #unrank(long, int[])} go between the two in O(n) without visiting
+ * the subsets in between. A range of indexes can then be handed to a thread, a shard or a checkpoint as two numbers,
+ * and its {@link #spliterator(long, long)} splits it in halves of known size for parallel streams and fork-join. The
+ * order is that of
+ * {@code org.apache.commons.math3.util.Combinations}, but nothing is allocated per subset: {@link #next(int[])} steps
+ * the caller's array in place, and each spliterator hands out one array that it reuses.
+ * </p>
+ */
+public final class IndexedCombinations {
+
+    /** C(i, j) for i and j up to 64, C(i, j) = 0 for j > i. */
+    private static final long[][] BINOMIALS = new long[65][66];
+
+    static {
+        for (int i = 0; i <= 64; i++) {
+            BINOMIALS[i][0] = 1;
+            for (int j = 1; j <= i; j++) {
+                BINOMIALS[i][j] = BINOMIALS[i - 1][j - 1] + BINOMIALS[i - 1][j];
+            }
+        }
+    }
+
+    private final int n;
+    private final int k;
+    private final long size;
+
+    /**
+     * Creates the combinations of k of n elements.
+     *
+     * @param n Number of elements to choose from, at most 64
+     * @param k Number of elements in each subset, from 1 to n
+     */
+    public IndexedCombinations(int n, int k) {
+        if (n < 1 || n > 64 || k < 1 || k > n) {
+            throw new IllegalArgumentException("Can't index " + k + "-subsets of " + n + " elements");
+        }
+        this.n = n;
+        this.k = k;
+        this.size = BINOMIALS[n][k];
+    }
+
+    /**
+     * Gets the number of subsets.
+     *
+     * @return C(n, k)
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of elements in each subset.
+     *
+     * @return k
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Gets the index of a subset.
+     *
+     * @param combination The elements of the subset in ascending order
+     * @return The index of the subset in colexicographic order
+     * @throws IllegalArgumentException If the array isn't a subset of k elements in ascending order
+     */
+    public long rank(int[] combination) {
+        if (combination.length != k) {
+            throw new IllegalArgumentException("Expected " + k + " elements, got " + combination.length);
+        }
+        long rank = 0;
+        int previous = -1;
+        for (int i = 0; i < k; i++) {
+            if (combination[i] <= previous || combination[i] >= n) {
+                throw new IllegalArgumentException("Not an ascending subset of 0 to " + (n - 1));
+            }
+            rank += BINOMIALS[combination[i]][i + 1];
+            previous = combination[i];
+        }
+        return rank;
+    }
+
+    /**
+     * Gets the subset at an index.
+     *
+     * @param index Index of the subset in colexicographic order
+     * @param combination Array of k elements to write the subset to, in ascending order
+     * @return The array passed in
+     * @throws IndexOutOfBoundsException If the index is negative or not less than {@link #size()}
+     */
+    public int[] unrank(long index, int[] combination) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of 0 to " + (size - 1));
+        }
+        long remaining = index;
+        int m = n - 1;
+        for (int i = k - 1; i >= 0; i--) {
+            // largest m with C(m, i + 1) <= remaining, which only goes down from one element to the one before
+            while (BINOMIALS[m][i + 1] > remaining) {
+                m--;
+            }
+            combination[i] = m;
+            remaining -= BINOMIALS[m][i + 1];
+            m--;
+        }
+        return combination;
+    }
+
+    /**
+     * Steps a subset to the next one in colexicographic order, in place.
+     *
+     * @param combination The elements of a subset in ascending order
+     * @return True if there is a next subset, false if the array held the last one, which is then left as it was
+     */
+    public boolean next(int[] combination) {
+        // raise the lowest element that has room below the next one, and put those below it back at the bottom
+        int i = 0;
+        while (i < k && combination[i] + 1 == (i + 1 < k ? combination[i + 1] : n)) {
+            i++;
+        }
+        if (i == k) {
+            return false;
+        }
+        combination[i]++;
+        for (int j = 0; j < i; j++) {
+            combination[j] = j;
+        }
+        return true;
+    }
+
+    /**
+     * Gets a spliterator over every subset.
+     *
+     * @return The spliterator
+     */
+    public Spliterator<int[]> spliterator() {
+        return spliterator(0, size);
+    }
+
+    /**
+     * Gets a spliterator over a range of subsets. It is {@link Spliterator#SIZED} and {@link Spliterator#SUBSIZED},
+     * and splits its range in two halves. It hands every subset out in the same array, so copy the array to keep a
+     * subset.
+     *
+     * @param start Index of the first subset, inclusive
+     * @param end Index of the last subset, exclusive
+     * @return The spliterator
+     * @throws IndexOutOfBoundsException If the range isn't within 0 to {@link #size()}
+     */
+    public Spliterator<int[]> spliterator(long start, long end) {
+        if (start < 0 || end > size || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + " to " + end + " out of 0 to " + size);
+        }
+        return new CombinationSpliterator(start, end);
+    }
+
+    /**
+     * Spliterator over a range of indexes, that unranks the first subset it hands out and steps the rest in place.
+     */
+    private final class CombinationSpliterator implements Spliterator<int[]> {
+
+        private final int[] combination = new int[k];
+
+        /** Index of the next subset to hand out */
+        private long index;
+
+        private final long end;
+
+        /** Whether {@link #combination} holds the subset before {@link #index} */
+        private boolean positioned;
+
+        private CombinationSpliterator(long start, long end) {
+            this.index = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            if (index >= end) {
+                return false;
+            }
+            advance();
+            action.accept(combination);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super int[]> action) {
+            while (index < end) {
+                advance();
+                action.accept(combination);
+            }
+        }
+
+        private void advance() {
+            if (positioned) {
+                next(combination);
+            } else {
+                unrank(index, combination);
+                positioned = true;
+            }
+            index++;
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            if (end - index < 2) {
+                return null;
+            }
+            final long middle = index + (end - index) / 2;
+            final CombinationSpliterator prefix = new CombinationSpliterator(index, middle);
+            index = middle;
+            positioned = false;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
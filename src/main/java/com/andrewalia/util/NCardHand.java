@@ -2,38 +2,74 @@ package com.andrewalia.util;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.LinkedList;
 
-import org.apache.commons.math3.util.Combinations;
-
 /**
  * Class to represent a hand consisting of N cards.
+ * <p>
+ * Hands are immutable. The strength is found once, when the hand is constructed, with {@link HandEvaluator} unless
+ * the lookup evaluator is disabled, and kept in a final field. The best five-card hand is only found when asked for,
+ * and kept in a volatile field, so a hand can be read from any thread and shared through caches.
+ * </p>
  */
-public class NCardHand implements Comparable<NCardHand> {
+public final class NCardHand implements Comparable<NCardHand> {
+
+    private static volatile boolean lookupEvaluatorEnabled = true;
 
     private final Card[] cards;
-    private FiveCardHand bestFiveCardHand = null;
+    private final int strength;
+
+    /** Best five-card hand once found, which every thread that races to find it finds the same. */
+    private volatile FiveCardHand bestFiveCardHand = null;
 
     /**
      * Constructor to create an NCardHand.
      * 
-     * @param cards Array of cards to initialize the hand.
+     * @param cards Array of at least five cards to initialize the hand. The array is copied and not changed.
      */
     public NCardHand(Card[] cards) {
         this.cards = Arrays.copyOf(cards, cards.length);
+        this.strength = lookupEvaluatorEnabled && cards.length <= 7
+            ? HandEvaluator.evaluate(this.cards)
+            : bruteForceStrength(this.cards);
     }
 
     /**
-     * Finds and returns the best possible five-card hand from this N-card hand.
+     * Returns the best possible five-card hand from this N-card hand, found by brute force the first time.
      * 
      * @return The best five-card hand.
      */
     public FiveCardHand getBestFiveCardHand() {
-        if (bestFiveCardHand == null) {
-            bestFiveCardHand = new FiveCardHand((Card[]) Collections.max(getAllFiveCardHands()).toArray());
+        FiveCardHand best = bestFiveCardHand;
+        if (best == null) {
+            best = findBestFiveCardHand(cards);
+            bestFiveCardHand = best;
         }
-        return bestFiveCardHand;
+        return best;
+    }
+
+    /**
+     * Gets the strength of at least five cards by brute force: the highest {@link HandRank} of all their five-card
+     * hands, which is the value {@link HandEvaluator} gives for the same cards.
+     *
+     * @param cards The cards, five or more
+     * @return The {@link HandRank} of the best five-card hand
+     */
+    public static int bruteForceStrength(Card... cards) {
+        return findBestFiveCardHand(cards).getHandRank();
+    }
+
+    /**
+     * Finds the five-card hand of the highest {@link HandRank} among cards.
+     */
+    private static FiveCardHand findBestFiveCardHand(Card[] cards) {
+        FiveCardHand best = null;
+        for (FiveCardHand hand : getAllFiveCardHands(cards)) {
+            if (best == null || hand.getHandRank() > best.getHandRank()) {
+                best = hand;
+            }
+        }
+        return best;
     }
 
     /**
@@ -42,23 +78,38 @@ public class NCardHand implements Comparable<NCardHand> {
      * @return A collection of all possible five-card hands.
      */
     public Collection<FiveCardHand> getAllFiveCardHands() {
+        return getAllFiveCardHands(cards);
+    }
+
+    private static Collection<FiveCardHand> getAllFiveCardHands(Card[] cards) {
         if (cards.length < 5) {
             throw new IllegalArgumentException("Not enough cards");
         }
 
-        Combinations fiveCardHandIndexCombinations = new Combinations(cards.length, 5);
+        IndexedCombinations fiveCardHandIndexCombinations = new IndexedCombinations(cards.length, 5);
         Collection<FiveCardHand> fiveCardHandsCombinations = new LinkedList<>();
-        
-        for (int[] is : fiveCardHandIndexCombinations) {
+
+        final int[] is = fiveCardHandIndexCombinations.unrank(0, new int[5]);
+        do {
             final Card[] fiveCardArray = new Card[5];
             for (int i = 0; i < 5; i++) {
                 fiveCardArray[i] = cards[is[i]];
             }
             fiveCardHandsCombinations.add(new FiveCardHand(fiveCardArray));
-        }
+        } while (fiveCardHandIndexCombinations.next(is));
         return fiveCardHandsCombinations;
     }
 
+    /**
+     * Gets the strength of this hand, as computed by {@link HandEvaluator}, or by {@link #bruteForceStrength} when the
+     * lookup evaluator is disabled, which gives the same value.
+     *
+     * @return The {@link HandRank} of the best five-card hand.
+     */
+    public int getStrength() {
+        return strength;
+    }
+
     /**
      * Compares this hand to another NCardHand based on their best five-card hands.
      * 
@@ -67,7 +118,27 @@ public class NCardHand implements Comparable<NCardHand> {
      */
     @Override
     public int compareTo(NCardHand o) {
-        return getBestFiveCardHand().compareTo(o.getBestFiveCardHand());
+        return Integer.compare(strength, o.strength);
+    }
+
+    /**
+     * Checks whether hands, and the simulations comparing them, are evaluated with {@link HandEvaluator} and
+     * {@link HandRankTable}.
+     *
+     * @return True if the lookup evaluator is used, false if hands are compared by brute force.
+     */
+    public static boolean isLookupEvaluatorEnabled() {
+        return lookupEvaluatorEnabled;
+    }
+
+    /**
+     * Switches hand evaluation, in NCardHand and in simulations, between the lookup evaluator and the brute force
+     * comparison of all five-card hands. Only hands constructed afterwards are affected.
+     *
+     * @param enabled True to use the lookup evaluator, false to use brute force.
+     */
+    public static void setLookupEvaluatorEnabled(boolean enabled) {
+        lookupEvaluatorEnabled = enabled;
     }
 
     /**
@@ -0,0 +1,241 @@
+package com.andrewalia.util;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * All-in preflop results of every {@link HoleCards} class against every other, over every board.
+ * <p>
+ * A matchup counts the boards the hero wins, loses and ties over every pair of disjoint combinations of the two
+ * classes, so it is weighted by how many ways each class can be dealt. Only matchups of a class against itself or a
+ * later class are kept, as the results of B against A are those of A against B with wins and losses swapped. The
+ * counts are exact and fit in an {@code int}, so the matrix takes {@value #MATCHUP_COUNT} times 12 bytes.
+ * </p>
+ * <p>
+ * Computing the matrix takes minutes (see {@link #build(int, AtomicInteger)}), so it is written to a file, e.g. with
+ * {@code -m}, and {@link #getInstance()} loads it from the file named by the {@value #PATH_PROPERTY} system property
+ * (default {@value #DEFAULT_PATH}). A query is then an array read.
+ * </p>
+ */
+public final class PreflopMatrix {
+
+    /** Number of matchups of a class against itself or a later class. */
+    public static final int MATCHUP_COUNT = HoleCards.CLASS_COUNT * (HoleCards.CLASS_COUNT + 1) / 2;
+
+    public static final String PATH_PROPERTY = "poker.preflopMatrix";
+    public static final String DEFAULT_PATH = "preflop.dat";
+
+    /** "PKPM" */
+    private static final int MAGIC = 0x504B504D;
+    private static final int VERSION = 1;
+    /** Magic, version, entry count and the CRC32 of the entries. */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+
+    /** Guards loading the shared matrix. */
+    private static final Object INSTANCE_LOCK = new Object();
+
+    /** The shared matrix, or null until it is loaded. */
+    private static volatile PreflopMatrix instance;
+
+    /** Wins, losses and ties of the first class of each matchup, in {@link #matchupIndex(int, int)} order. */
+    private final int[] entries;
+
+    private PreflopMatrix(int[] entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Gets the shared matrix, loading it on first use. A call that fails to load it leaves it unloaded, so a later
+     * call tries again, e.g. once the file is generated.
+     *
+     * @return The shared matrix.
+     * @throws IllegalStateException If the matrix file is missing or not valid.
+     */
+    public static PreflopMatrix getInstance() {
+        PreflopMatrix matrix = instance;
+        if (matrix == null) {
+            synchronized (INSTANCE_LOCK) {
+                matrix = instance;
+                if (matrix == null) {
+                    matrix = loadConfigured();
+                    instance = matrix;
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Computes the matrix in memory.
+     *
+     * @param threadCount Number of threads to compute matchups on.
+     * @param progress Counter of the {@value #MATCHUP_COUNT} matchups computed so far, or null.
+     * @return The new matrix.
+     */
+    public static PreflopMatrix build(int threadCount, AtomicInteger progress) {
+        return new PreflopMatrix(PreflopMatrixGenerator.generate(threadCount, progress));
+    }
+
+    /**
+     * Computes the wins, losses and ties of one class against another, without a matrix.
+     *
+     * @param hero The hero's class.
+     * @param villain The villain's class.
+     * @return The number of boards the hero wins, loses and ties over every pair of disjoint combinations.
+     */
+    public static long[] computeMatchup(HoleCards hero, HoleCards villain) {
+        final long[] counts = new long[3];
+        PreflopMatrixGenerator.addMatchup(hero.getId(), villain.getId(), counts);
+        return counts;
+    }
+
+    /**
+     * Computes the wins, losses and ties of one class against itself and every later class the way
+     * {@link #build(int, AtomicInteger)} does, on the calling thread.
+     *
+     * @param hero The hero's class.
+     * @return Wins, losses and ties of the hero against each class, three entries per {@link HoleCards#getId()},
+     *     zero for the classes before the hero's.
+     */
+    public static long[] computeRow(HoleCards hero) {
+        final long[] row = new long[3 * HoleCards.CLASS_COUNT];
+        for (int p0 = 0; p0 < PreflopMatrixGenerator.LOWEST_BOARD_CARD_POSITIONS; p0++) {
+            PreflopMatrixGenerator.addRow(hero.getId(), p0, row);
+        }
+        return row;
+    }
+
+    /**
+     * Gets the position of a matchup of a class against itself or a later class.
+     *
+     * @param first Id of the first class.
+     * @param second Id of the second class, at least {@code first}.
+     * @return The index of the matchup, from 0 to {@link #MATCHUP_COUNT} - 1.
+     */
+    static int matchupIndex(int first, int second) {
+        return first * (2 * HoleCards.CLASS_COUNT - first + 1) / 2 + second - first;
+    }
+
+    /**
+     * Reads a matrix file written by {@link #write(Path)} and verifies its checksum.
+     *
+     * @param path The matrix file.
+     * @return The matrix.
+     * @throws IOException If the file can't be read, or is not a valid matrix of this version.
+     */
+    public static PreflopMatrix load(Path path) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a preflop matrix");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(path + " has version " + buffer.getInt(4) + ", expected " + VERSION);
+        }
+        final int entryCount = buffer.getInt(8);
+        if (entryCount != 3 * MATCHUP_COUNT || buffer.capacity() != HEADER_SIZE + entryCount * 4) {
+            throw new IOException(path + " has " + buffer.capacity() + " bytes, expected " + 3 * MATCHUP_COUNT
+                + " entries");
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, entryCount * 4);
+        if (crc.getValue() != buffer.getLong(12)) {
+            throw new IOException(path + " failed its checksum");
+        }
+
+        final int[] entries = new int[entryCount];
+        ((Buffer) buffer).position(HEADER_SIZE);
+        buffer.asIntBuffer().get(entries);
+        return new PreflopMatrix(entries);
+    }
+
+    /**
+     * Writes the matrix to a file, replacing it atomically.
+     *
+     * @param path The file to write.
+     * @throws IOException If the file can't be written.
+     */
+    public void write(Path path) throws IOException {
+        final ByteBuffer data = ByteBuffer.allocate(entries.length * 4);
+        data.asIntBuffer().put(entries);
+        final CRC32 crc = new CRC32();
+        crc.update(data.array());
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(entries.length).putLong(crc.getValue());
+        ((Buffer) header).flip();
+
+        AtomicFiles.write(path, header, data);
+    }
+
+    /**
+     * Gets the number of boards the hero wins, over every pair of disjoint combinations of the two classes.
+     *
+     * @param hero The hero's hole cards.
+     * @param villain The villain's hole cards.
+     * @return The number of wins.
+     */
+    public long getWins(HoleCards hero, HoleCards villain) {
+        return hero.getId() <= villain.getId()
+            ? entries[3 * matchupIndex(hero.getId(), villain.getId())]
+            : entries[3 * matchupIndex(villain.getId(), hero.getId()) + 1];
+    }
+
+    /**
+     * Gets the number of boards the hero loses, over every pair of disjoint combinations of the two classes.
+     *
+     * @param hero The hero's hole cards.
+     * @param villain The villain's hole cards.
+     * @return The number of losses.
+     */
+    public long getLosses(HoleCards hero, HoleCards villain) {
+        return getWins(villain, hero);
+    }
+
+    /**
+     * Gets the number of boards that tie, over every pair of disjoint combinations of the two classes.
+     *
+     * @param hero The hero's hole cards.
+     * @param villain The villain's hole cards.
+     * @return The number of ties.
+     */
+    public long getTies(HoleCards hero, HoleCards villain) {
+        return entries[3 * matchupIndex(Math.min(hero.getId(), villain.getId()), Math.max(hero.getId(), villain.getId())) + 2];
+    }
+
+    /**
+     * Gets the all-in equity of the hero, counting ties as half a win.
+     *
+     * @param hero The hero's hole cards.
+     * @param villain The villain's hole cards.
+     * @return The share of the pot the hero wins on average, from 0 to 1.
+     */
+    public double getEquity(HoleCards hero, HoleCards villain) {
+        final long wins = getWins(hero, villain);
+        final long losses = getLosses(hero, villain);
+        final long ties = getTies(hero, villain);
+        return (wins + ties / 2.0) / (wins + losses + ties);
+    }
+
+    /**
+     * Loads the matrix from the configured file and reports how long that took.
+     */
+    private static PreflopMatrix loadConfigured() {
+        final Path path = Paths.get(System.getProperty(PATH_PROPERTY, DEFAULT_PATH));
+        final long start = System.nanoTime();
+        final PreflopMatrix matrix;
+        try {
+            matrix = load(path);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load preflop matrix, generate it with -m " + path, e);
+        }
+        System.out.println("Loaded preflop matrix from " + path + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+        return matrix;
+    }
+}
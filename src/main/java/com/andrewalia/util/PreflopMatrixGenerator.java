@@ -0,0 +1,254 @@
+package com.andrewalia.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the entries of a {@link PreflopMatrix}.
+ * <p>
+ * Every class is one orbit of suit permutations, so the matrix only deals the canonical hero of each class, the
+ * boards that are canonical under the {@link SuitIsomorphism#stabilizer(long)} of the hero, and the villains that are
+ * canonical under the stabilizer of both, each weighted by how many deals it stands for. Villains of an earlier class
+ * than the hero are skipped, as that matchup is the mirror of one the other class deals, which halves the work. Each
+ * hero is split by its lowest board card, and boards are walked one card at a time through the
+ * {@link HandRankTable}.
+ * </p>
+ */
+final class PreflopMatrixGenerator {
+
+    /** Canonical combination of every class, by id. */
+    private static final int[][] CANONICAL_COMBOS = new int[HoleCards.CLASS_COUNT][];
+
+    /** Combinations of every class, by id. */
+    private static final int[][][] COMBOS = new int[HoleCards.CLASS_COUNT][][];
+
+    /** Class id of every ordered pair of different cards, at {@code index0 * 52 + index1}. */
+    private static final short[] CLASS_IDS = new short[52 * 52];
+
+    /** Positions the lowest board card can take among the 50 cards left after the hero's. */
+    static final int LOWEST_BOARD_CARD_POSITIONS = 46;
+
+    static {
+        final List<List<int[]>> combos = new ArrayList<>();
+        for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+            combos.add(new ArrayList<>());
+        }
+        for (int i = 0; i < 52; i++) {
+            for (int j = i + 1; j < 52; j++) {
+                final int id = HoleCards.valueOf(i, j).getId();
+                CLASS_IDS[i * 52 + j] = CLASS_IDS[j * 52 + i] = (short) id;
+                combos.get(id).add(new int[] { i, j });
+                if (SuitIsomorphism.ALL.isCanonical(CardSet.bit(i) | CardSet.bit(j))) {
+                    CANONICAL_COMBOS[id] = new int[] { i, j };
+                }
+            }
+        }
+        for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+            COMBOS[id] = combos.get(id).toArray(new int[0][]);
+        }
+    }
+
+    private PreflopMatrixGenerator() {}
+
+    /**
+     * Computes every matchup of a class against itself or a later class.
+     *
+     * @param threadCount Number of threads to compute matchups on
+     * @param progress Counter of matchups computed so far, or null
+     * @return Wins, losses and ties of the first class of each matchup, three entries per matchup in
+     *     {@link PreflopMatrix#matchupIndex(int, int)} order
+     */
+    static int[] generate(int threadCount, AtomicInteger progress) {
+        final long[] counts = new long[3 * PreflopMatrix.MATCHUP_COUNT];
+        final int[] remaining = new int[HoleCards.CLASS_COUNT];
+        Arrays.fill(remaining, LOWEST_BOARD_CARD_POSITIONS);
+
+        final ForkJoinPool pool = new ForkJoinPool(threadCount);
+        try {
+            pool.submit(() -> IntStream.range(0, HoleCards.CLASS_COUNT * LOWEST_BOARD_CARD_POSITIONS).parallel()
+                .forEach(leaf -> {
+                    final int hero = leaf / LOWEST_BOARD_CARD_POSITIONS;
+                    final long[] row = new long[3 * HoleCards.CLASS_COUNT];
+                    addRow(hero, leaf % LOWEST_BOARD_CARD_POSITIONS, row);
+                    synchronized (counts) {
+                        final int first = 3 * PreflopMatrix.matchupIndex(hero, hero);
+                        for (int k = 3 * hero; k < row.length; k++) {
+                            counts[first + k - 3 * hero] += row[k];
+                        }
+                        if (--remaining[hero] == 0 && progress != null) {
+                            progress.addAndGet(HoleCards.CLASS_COUNT - hero);
+                        }
+                    }
+                })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating the preflop matrix", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not generate the preflop matrix", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        final int[] entries = new int[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            entries[i] = Math.toIntExact(counts[i]);
+        }
+        return entries;
+    }
+
+    /**
+     * Adds the weighted wins, losses and ties of a hero class against itself and every later class, over the boards
+     * with a given lowest card.
+     *
+     * @param hero Id of the hero's class
+     * @param p0 Position of the lowest board card among the 50 cards left after the hero's
+     * @param row Wins, losses and ties of the hero against each villain class, three entries per class id, to add to
+     */
+    static void addRow(int hero, int p0, long[] row) {
+        final HandRankTable table = HandRankTable.getInstance();
+        final int[] heroCards = CANONICAL_COMBOS[hero];
+        final long heroMask = CardSet.bit(heroCards[0]) | CardSet.bit(heroCards[1]);
+        final long heroWeight = SuitIsomorphism.ALL.orbitSize(heroMask);
+        final SuitIsomorphism heroStabilizer = SuitIsomorphism.ALL.stabilizer(heroMask);
+
+        final int[] candidates = new int[50];
+        CardSet.FULL_DECK.remove(CardSet.of(heroCards)).toIndexes(candidates);
+        final int[] villains = new int[45];
+
+        final int state1 = table.extend(HandRankTable.START, candidates[p0]);
+        for (int p1 = p0 + 1; p1 < 47; p1++) {
+            final int state2 = table.extend(state1, candidates[p1]);
+            for (int p2 = p1 + 1; p2 < 48; p2++) {
+                final int state3 = table.extend(state2, candidates[p2]);
+                for (int p3 = p2 + 1; p3 < 49; p3++) {
+                    final int state4 = table.extend(state3, candidates[p3]);
+                    for (int p4 = p3 + 1; p4 < 50; p4++) {
+                        final long boardMask = CardSet.bit(candidates[p0]) | CardSet.bit(candidates[p1])
+                            | CardSet.bit(candidates[p2]) | CardSet.bit(candidates[p3]) | CardSet.bit(candidates[p4]);
+                        if (!heroStabilizer.isCanonical(boardMask)) {
+                            continue;
+                        }
+                        final long boardWeight = heroWeight * heroStabilizer.orbitSize(boardMask);
+                        SuitIsomorphism boardStabilizer = heroStabilizer.stabilizer(boardMask);
+                        if (boardStabilizer.size() == 1) {
+                            boardStabilizer = null;
+                        }
+                        final int boardState = table.extend(state4, candidates[p4]);
+
+                        int villainCount = 0;
+                        for (int p = 0; p < 50; p++) {
+                            if (p != p0 && p != p1 && p != p2 && p != p3 && p != p4) {
+                                villains[villainCount++] = candidates[p];
+                            }
+                        }
+
+                        final int heroStrength = table.evaluate(boardState, heroCards[0], heroCards[1]);
+                        for (int i = 0; i < villains.length; i++) {
+                            final int villainState = table.extend(boardState, villains[i]);
+                            final int classes = villains[i] * 52;
+                            for (int j = i + 1; j < villains.length; j++) {
+                                final int villain = CLASS_IDS[classes + villains[j]];
+                                if (villain < hero) {
+                                    continue;
+                                }
+                                long weight = boardWeight;
+                                if (boardStabilizer != null) {
+                                    final long villainMask = CardSet.bit(villains[i]) | CardSet.bit(villains[j]);
+                                    if (!boardStabilizer.isCanonical(villainMask)) {
+                                        continue;
+                                    }
+                                    weight *= boardStabilizer.orbitSize(villainMask);
+                                }
+                                final int villainStrength = table.extend(villainState, villains[j]);
+                                row[3 * villain + (heroStrength > villainStrength ? 0 : heroStrength < villainStrength ? 1 : 2)] += weight;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the weighted wins, losses and ties of a hero class against a villain class over every board, dealing the
+     * villain before the board so a single matchup is quick to compute.
+     *
+     * @param hero Id of the hero's class
+     * @param villain Id of the villain's class
+     * @param counts Wins, losses and ties of the hero to add to
+     */
+    static void addMatchup(int hero, int villain, long[] counts) {
+        final HandRankTable table = HandRankTable.getInstance();
+        final int[] heroCards = CANONICAL_COMBOS[hero];
+        final long heroMask = CardSet.bit(heroCards[0]) | CardSet.bit(heroCards[1]);
+        final long heroWeight = SuitIsomorphism.ALL.orbitSize(heroMask);
+        final SuitIsomorphism heroStabilizer = SuitIsomorphism.ALL.stabilizer(heroMask);
+        final int[] candidates = new int[48];
+
+        for (int[] villainCards : COMBOS[villain]) {
+            final long villainMask = CardSet.bit(villainCards[0]) | CardSet.bit(villainCards[1]);
+            if ((heroMask & villainMask) != 0 || !heroStabilizer.isCanonical(villainMask)) {
+                continue;
+            }
+            final long weight = heroWeight * heroStabilizer.orbitSize(villainMask);
+            final SuitIsomorphism stabilizer = heroStabilizer.stabilizer(villainMask);
+            CardSet.ofMask(CardSet.FULL_DECK.getMask() & ~(heroMask | villainMask)).toIndexes(candidates);
+            addBoards(table, heroCards, villainCards, candidates, weight, stabilizer.size() == 1 ? null : stabilizer,
+                counts);
+        }
+    }
+
+    /**
+     * Adds the weighted wins, losses and ties of one hero and villain over every board.
+     *
+     * @param stabilizer Permutations that leave both players' cards unchanged, or null if only the identity does
+     */
+    private static void addBoards(HandRankTable table, int[] hero, int[] villain, int[] candidates, long weight,
+            SuitIsomorphism stabilizer, long[] counts) {
+        long wins = 0;
+        long losses = 0;
+        long ties = 0;
+        for (int p0 = 0; p0 < 44; p0++) {
+            final int state1 = table.extend(HandRankTable.START, candidates[p0]);
+            for (int p1 = p0 + 1; p1 < 45; p1++) {
+                final int state2 = table.extend(state1, candidates[p1]);
+                for (int p2 = p1 + 1; p2 < 46; p2++) {
+                    final int state3 = table.extend(state2, candidates[p2]);
+                    for (int p3 = p2 + 1; p3 < 47; p3++) {
+                        final int state4 = table.extend(state3, candidates[p3]);
+                        for (int p4 = p3 + 1; p4 < 48; p4++) {
+                            long boardWeight = 1;
+                            if (stabilizer != null) {
+                                final long boardMask = CardSet.bit(candidates[p0]) | CardSet.bit(candidates[p1])
+                                    | CardSet.bit(candidates[p2]) | CardSet.bit(candidates[p3])
+                                    | CardSet.bit(candidates[p4]);
+                                if (!stabilizer.isCanonical(boardMask)) {
+                                    continue;
+                                }
+                                boardWeight = stabilizer.orbitSize(boardMask);
+                            }
+                            final int boardState = table.extend(state4, candidates[p4]);
+                            final int heroStrength = table.evaluate(boardState, hero[0], hero[1]);
+                            final int villainStrength = table.evaluate(boardState, villain[0], villain[1]);
+                            if (heroStrength > villainStrength) {
+                                wins += boardWeight;
+                            } else if (heroStrength < villainStrength) {
+                                losses += boardWeight;
+                            } else {
+                                ties += boardWeight;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        counts[0] += wins * weight;
+        counts[1] += losses * weight;
+        counts[2] += ties * weight;
+    }
+}
@@ -0,0 +1,182 @@
+package com.andrewalia.util;
+
+/**
+ * Enumerates the k-element subsets of {0, ..., n - 1} in revolving-door order, where each subset differs from the one
+ * before by exactly one element leaving and one entering.
+ * <p>
+ * This is Algorithm R of Knuth, TAOCP 7.2.1.3. Every step is constant time on average, and tells which element left
+ * and which entered, so a caller keeping state about the subset, e.g. the {@link CardSet} mask of a board, only
+ * updates it for those two instead of rebuilding it. Nothing is allocated after construction: the subset is kept in
+ * one array that the caller reads between steps.
+ * </p>
+ */
+public final class RevolvingDoorCombinations {
+
+    private final int k;
+
+    /** The subset in ascending order from index 1, with the sentinel n at index k + 1. */
+    private final int[] c;
+
+    /** The subset in ascending order, as handed to callers. */
+    private final int[] combination;
+
+    private long mask;
+    private int removed = -1;
+    private int added = -1;
+    private boolean done;
+
+    /**
+     * Creates an enumeration positioned at its first subset, {0, ..., k - 1}.
+     *
+     * @param n Number of elements to choose from, at most 64
+     * @param k Number of elements in each subset, from 1 to n
+     */
+    public RevolvingDoorCombinations(int n, int k) {
+        if (n < 1 || n > 64 || k < 1 || k > n) {
+            throw new IllegalArgumentException("Can't enumerate " + k + "-subsets of " + n + " elements");
+        }
+        this.k = k;
+        this.c = new int[k + 2];
+        this.combination = new int[k];
+        for (int j = 1; j <= k; j++) {
+            c[j] = j - 1;
+            combination[j - 1] = j - 1;
+            mask |= 1L << (j - 1);
+        }
+        c[k + 1] = n;
+    }
+
+    /**
+     * Moves to the next subset.
+     *
+     * @return True if there is one, false once every subset was visited
+     */
+    public boolean next() {
+        if (done) {
+            return false;
+        }
+        if (!step()) {
+            done = true;
+            removed = -1;
+            added = -1;
+            return false;
+        }
+        mask ^= 1L << removed | 1L << added;
+        return true;
+    }
+
+    /**
+     * Applies one step of Algorithm R to {@link #c}, setting the element that left and the one that entered.
+     *
+     * @return False if the current subset was the last
+     */
+    private boolean step() {
+        int j;
+        if ((k & 1) == 1) {
+            if (c[1] + 1 < c[2]) {
+                swap(1, c[1], c[1] + 1);
+                return true;
+            }
+            j = 2;
+        } else {
+            if (c[1] > 0) {
+                swap(1, c[1], c[1] - 1);
+                return true;
+            }
+            // k is at least 2, so start by trying to increase c[2]
+            j = 2;
+            if (c[j] + 1 < c[j + 1]) {
+                increase(j);
+                return true;
+            }
+            j++;
+        }
+        while (j <= k) {
+            // try to decrease c[j], where c[j] = c[j - 1] + 1
+            if (c[j] >= j) {
+                removed = c[j];
+                added = j - 2;
+                c[j] = c[j - 1];
+                c[j - 1] = j - 2;
+                syncCombination(j);
+                return true;
+            }
+            j++;
+            if (j > k) {
+                return false;
+            }
+            // try to increase c[j], where c[j - 1] = j - 2
+            if (c[j] + 1 < c[j + 1]) {
+                increase(j);
+                return true;
+            }
+            j++;
+        }
+        return false;
+    }
+
+    /**
+     * Sets c[j - 1] to c[j] and increases c[j] by one, where c[j - 1] = j - 2.
+     */
+    private void increase(int j) {
+        removed = c[j - 1];
+        added = c[j] + 1;
+        c[j - 1] = c[j];
+        c[j] = c[j] + 1;
+        syncCombination(j);
+    }
+
+    /**
+     * Replaces element {@code from} with {@code to} at position j, which keeps the subset in order.
+     */
+    private void swap(int j, int from, int to) {
+        removed = from;
+        added = to;
+        c[j] = to;
+        combination[j - 1] = to;
+    }
+
+    /**
+     * Copies positions j - 1 and j of {@link #c} to the caller's array.
+     */
+    private void syncCombination(int j) {
+        combination[j - 2] = c[j - 1];
+        combination[j - 1] = c[j];
+    }
+
+    /**
+     * Gets the current subset. The array is reused by every step, so copy it to keep it.
+     *
+     * @return The elements of the subset in ascending order
+     */
+    public int[] getCombination() {
+        return combination;
+    }
+
+    /**
+     * Gets the current subset as a bit mask, bit i set for element i.
+     *
+     * @return The mask of the subset
+     */
+    public long getMask() {
+        return mask;
+    }
+
+    /**
+     * Gets the element that left the subset on the last step.
+     *
+     * @return The element, or -1 before the first step and after the last
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Gets the element that entered the subset on the last step.
+     *
+     * @return The element, or -1 before the first step and after the last
+     */
+    public int getAdded() {
+        return added;
+    }
+}
@@ -0,0 +1,175 @@
+package com.andrewalia.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A group of suit permutations, used to skip deals that only differ from another deal by renaming suits.
+ * <p>
+ * Swapping suits never changes who wins a showdown, so of all the deals a suit permutation maps into each other
+ * (an orbit) only one, the canonical one, has to be evaluated, counted as many times as the orbit has deals. Cards
+ * are given as {@link CardSet} masks, and the canonical member of an orbit is the one with the smallest mask.
+ * </p>
+ * <p>
+ * Deals are canonicalized in stages: the hero's cards under {@link #ALL}, then the board under the
+ * {@link #stabilizer(long)} of the hero's cards, then the villain's cards under the stabilizer of the board within
+ * that. Multiplying the {@link #orbitSize(long)} of each stage gives the number of deals a canonical deal stands
+ * for.
+ * </p>
+ */
+public final class SuitIsomorphism {
+
+    private static final int SUIT_BITS = 13;
+    private static final long SUIT_MASK = (1L << SUIT_BITS) - 1;
+
+    /** All 24 permutations of the four suits. */
+    public static final SuitIsomorphism ALL = new SuitIsomorphism(allPermutations());
+
+    /** Each permutation maps suit {@code s} to suit {@code permutation[s]}, the identity first. */
+    private final int[][] permutations;
+
+    private SuitIsomorphism(int[][] permutations) {
+        this.permutations = permutations;
+    }
+
+    /**
+     * Renames the suits of a set of cards.
+     *
+     * @param mask The {@link CardSet} mask of the cards.
+     * @param permutation The new suit of each suit.
+     * @return The mask of the cards with their suits renamed.
+     */
+    public static long permute(long mask, int[] permutation) {
+        return (mask & SUIT_MASK) << permutation[0] * SUIT_BITS
+            | (mask >>> SUIT_BITS & SUIT_MASK) << permutation[1] * SUIT_BITS
+            | (mask >>> 2 * SUIT_BITS & SUIT_MASK) << permutation[2] * SUIT_BITS
+            | (mask >>> 3 * SUIT_BITS & SUIT_MASK) << permutation[3] * SUIT_BITS;
+    }
+
+    /**
+     * Gets the subgroup of permutations that leave a set of cards unchanged.
+     *
+     * @param mask The {@link CardSet} mask of the cards.
+     * @return The stabilizer of the cards.
+     */
+    public SuitIsomorphism stabilizer(long mask) {
+        final List<int[]> stabilizer = new ArrayList<>();
+        for (int[] permutation : permutations) {
+            if (permute(mask, permutation) == mask) {
+                stabilizer.add(permutation);
+            }
+        }
+        return stabilizer.size() == permutations.length ? this : new SuitIsomorphism(stabilizer.toArray(new int[0][]));
+    }
+
+    /**
+     * Checks whether a set of cards has the smallest mask of its orbit.
+     *
+     * @param mask The {@link CardSet} mask of the cards.
+     * @return True if no permutation of this group gives a smaller mask.
+     */
+    public boolean isCanonical(long mask) {
+        for (int i = 1; i < permutations.length; i++) {
+            if (permute(mask, permutations[i]) < mask) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the canonical member of the orbit of a set of cards.
+     *
+     * @param mask The {@link CardSet} mask of the cards.
+     * @return The smallest mask any permutation of this group gives.
+     */
+    public long canonicalize(long mask) {
+        long canonical = mask;
+        for (int i = 1; i < permutations.length; i++) {
+            canonical = Math.min(canonical, permute(mask, permutations[i]));
+        }
+        return canonical;
+    }
+
+    /**
+     * Gets the canonical member of the orbit of a tuple of card sets, e.g. hero, board and villain, that are
+     * permuted together.
+     *
+     * @param masks The {@link CardSet} masks of the card sets.
+     * @return The permuted masks that are smallest in order, first mask first.
+     */
+    public long[] canonicalize(long... masks) {
+        long[] canonical = masks.clone();
+        final long[] permuted = new long[masks.length];
+        for (int i = 1; i < permutations.length; i++) {
+            for (int j = 0; j < masks.length; j++) {
+                permuted[j] = permute(masks[j], permutations[i]);
+            }
+            for (int j = 0; j < masks.length; j++) {
+                if (permuted[j] != canonical[j]) {
+                    if (permuted[j] < canonical[j]) {
+                        canonical = permuted.clone();
+                    }
+                    break;
+                }
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Gets the number of distinct sets of cards this group maps a set of cards to.
+     *
+     * @param mask The {@link CardSet} mask of the cards.
+     * @return The size of the orbit.
+     */
+    public int orbitSize(long mask) {
+        int fixed = 0;
+        for (int[] permutation : permutations) {
+            if (permute(mask, permutation) == mask) {
+                fixed++;
+            }
+        }
+        return permutations.length / fixed;
+    }
+
+    /**
+     * Gets the number of distinct tuples of card sets this group maps a tuple of card sets to.
+     *
+     * @param masks The {@link CardSet} masks of the card sets.
+     * @return The size of the orbit.
+     */
+    public int orbitSize(long... masks) {
+        int fixed = 0;
+        for (int[] permutation : permutations) {
+            boolean same = true;
+            for (int j = 0; j < masks.length && same; j++) {
+                same = permute(masks[j], permutation) == masks[j];
+            }
+            if (same) {
+                fixed++;
+            }
+        }
+        return permutations.length / fixed;
+    }
+
+    /**
+     * Gets the number of permutations in this group.
+     *
+     * @return The size of the group.
+     */
+    public int size() {
+        return permutations.length;
+    }
+
+    private static int[][] allPermutations() {
+        final List<int[]> permutations = new ArrayList<>();
+        for (int a = 0; a < 4; a++)
+            for (int b = 0; b < 4; b++)
+                for (int c = 0; c < 4; c++)
+                    for (int d = 0; d < 4; d++)
+                        if (a != b && a != c && a != d && b != c && b != d && c != d)
+                            permutations.add(new int[] { a, b, c, d });
+        return permutations.toArray(new int[0][]);
+    }
+}
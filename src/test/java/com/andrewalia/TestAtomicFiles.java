@@ -0,0 +1,54 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.util.AtomicFiles;
+
+@Testable
+public class TestAtomicFiles {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testWriteReplacesTheFile() throws IOException {
+        final Path path = directory.resolve("data.bin");
+        Files.write(path, new byte[] { 9, 9, 9, 9, 9 });
+
+        final ByteBuffer header = ByteBuffer.wrap(new byte[] { 1, 2 });
+        final ByteBuffer data = ByteBuffer.wrap(new byte[] { 3, 4, 5 });
+        assertEquals(5, AtomicFiles.write(path, header, data));
+
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, 5 }, Files.readAllBytes(path));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    public void testFailedMoveLeavesNoTemporaryFile() throws IOException {
+        // a non-empty directory can't be replaced by a file
+        final Path path = directory.resolve("occupied");
+        Files.createDirectory(path);
+        Files.write(path.resolve("inside"), new byte[] { 1 });
+
+        assertThrows(IOException.class, () -> AtomicFiles.write(path, ByteBuffer.wrap(new byte[] { 1, 2, 3 })));
+        assertEquals(1, countFiles());
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
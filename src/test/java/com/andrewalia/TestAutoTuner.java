@@ -0,0 +1,101 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.util.AutoTuner;
+import com.andrewalia.simulator.permutations.util.AutoTuner.Phase;
+import com.andrewalia.simulator.permutations.util.AutoTuner.Setup;
+
+@Testable
+public class TestAutoTuner {
+
+    /**
+     * Deals per second of a made-up machine that is fastest with 4 threads, 2 of them producers, and batches of 4096.
+     */
+    private static double dealsPerSecond(Setup setup) {
+        return 1e9 / (1 + Math.abs(setup.getThreadCount() - 4) + Math.abs(setup.getProducers() - 2)
+            + Math.abs(Math.log(setup.getBatchSize() / 4096.0)));
+    }
+
+    /**
+     * Runs one segment of a second with a setup.
+     */
+    private static void runSegment(AutoTuner tuner, double slowdown) {
+        final Setup setup = tuner.next();
+        tuner.record(setup, 1000, (long) (dealsPerSecond(setup) / slowdown), 1000);
+    }
+
+    @Test
+    public void testCalibrationFindsTheFastestSetup() {
+        final AutoTuner tuner = new AutoTuner(8, 1024);
+        assertEquals(Phase.WARMUP, tuner.getPhase());
+        assertEquals(Setup.split(8, 1024), tuner.next());
+
+        final Set<Setup> tried = new HashSet<>();
+        int segments = 0;
+        while (tuner.getPhase() != Phase.STEADY) {
+            tried.add(tuner.next());
+            runSegment(tuner, 1);
+            segments++;
+            assertTrue(segments < 20, "calibration ends");
+        }
+        assertEquals(new Setup(2, 2, 4096), tuner.getBest());
+        assertEquals(dealsPerSecond(tuner.getBest()), tuner.getBestDealsPerSecond(), 1);
+        assertTrue(tried.contains(Setup.split(2, 1024)) && tried.contains(Setup.split(4, 1024)));
+        assertEquals(segments, tuner.getCurve().size());
+        // 1000 units a second, for segments of 30 seconds
+        assertEquals(1000 * AutoTuner.STEADY_MILLIS / 1000, tuner.getSegmentUnits());
+
+        // small changes keep the setup, a large one starts over
+        runSegment(tuner, 1.1);
+        assertEquals(Phase.STEADY, tuner.getPhase());
+        runSegment(tuner, 1.5);
+        assertEquals(Phase.THREADS, tuner.getPhase());
+        while (tuner.getPhase() != Phase.STEADY) {
+            runSegment(tuner, 1.5);
+        }
+        assertEquals(new Setup(2, 2, 4096), tuner.getBest());
+        assertEquals(dealsPerSecond(tuner.getBest()) / 1.5, tuner.getBestDealsPerSecond(), 1);
+    }
+
+    @Test
+    public void testTwoThreadsStillTryBatchSizes() {
+        final AutoTuner tuner = new AutoTuner(1, 1024);
+        assertEquals(new Setup(1, 1, 1024), tuner.next());
+        while (tuner.getPhase() != Phase.STEADY) {
+            assertEquals(2, tuner.next().getThreadCount());
+            runSegment(tuner, 1);
+        }
+        assertEquals(new Setup(1, 1, 4096), tuner.getBest());
+    }
+
+    @Test
+    public void testThreadsOnlyTunesTheThreadCount() {
+        final AutoTuner tuner = AutoTuner.forThreads(8);
+        assertEquals(Setup.ofThreads(8), tuner.next());
+        assertEquals("8 threads", tuner.next().toString());
+
+        final Set<Setup> tried = new HashSet<>();
+        while (tuner.getPhase() != Phase.STEADY) {
+            final Phase phase = tuner.getPhase();
+            assertTrue(phase == Phase.WARMUP || phase == Phase.THREADS, "only the thread count is tuned");
+            final Setup setup = tuner.next();
+            assertEquals(0, setup.getProducers());
+            tried.add(setup);
+            // fastest on 4 threads, whatever the producers and batch size
+            final AutoTuner.Measurement measurement = tuner.record(setup, 1000,
+                (long) (1e9 / (1 + Math.abs(setup.getThreadCount() - 4))), 1000);
+            assertTrue(tuner.describe(phase, measurement).startsWith("Calibration " + phase + ": " + setup));
+        }
+        assertTrue(tried.contains(Setup.ofThreads(1)) && tried.contains(Setup.ofThreads(2)));
+        assertEquals(Setup.ofThreads(4), tuner.getBest());
+        assertTrue(tuner.describeCurve().contains("THREADS: 4 threads"));
+    }
+}
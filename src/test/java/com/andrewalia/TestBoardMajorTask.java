@@ -0,0 +1,117 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.thread.BoardMajorTask;
+import com.andrewalia.simulator.permutations.thread.DealRangeTask;
+import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+import com.andrewalia.simulator.permutations.util.StripedCounter;
+import com.andrewalia.util.CardSet;
+import com.andrewalia.util.HandEvaluator;
+import com.andrewalia.util.HoleCards;
+import com.andrewalia.util.NCardHand;
+
+@Testable
+public class TestBoardMajorTask {
+
+    @Test
+    public void testBoardsMatchDirectEnumeration() {
+        assertBoardsMatchDirectEnumeration(true);
+    }
+
+    @Test
+    public void testBruteForceBoardsMatchDirectEnumeration() {
+        assertBoardsMatchDirectEnumeration(false);
+    }
+
+    /**
+     * Evaluates three boards with or without the hand rank table, and checks every hero on them against
+     * {@link HandEvaluator}.
+     */
+    private static void assertBoardsMatchDirectEnumeration(boolean lookupEvaluator) {
+        final int start = 1234567;
+        final StripedCounter permutations = new StripedCounter(2);
+        final ShowdownResultsMap results = new ShowdownResultsMap();
+        NCardHand.setLookupEvaluatorEnabled(lookupEvaluator);
+        try {
+            new ForkJoinPool(2).invoke(new BoardMajorTask(start, start + 3, false, permutations, results));
+        } finally {
+            NCardHand.setLookupEvaluatorEnabled(true);
+        }
+
+        final ShowdownResultsMap expected = new ShowdownResultsMap();
+        for (int[] board : lexicographicBoards(start, 3)) {
+            final long boardMask = CardSet.of(board).getMask();
+            final int[] strengths = new int[52 * 52];
+            for (int h0 = 0; h0 < 52; h0++)
+                for (int h1 = h0 + 1; h1 < 52; h1++)
+                    if ((boardMask & (CardSet.bit(h0) | CardSet.bit(h1))) == 0) {
+                        strengths[h0 * 52 + h1] = HandEvaluator.evaluate(h0, h1, board[0], board[1], board[2],
+                            board[3], board[4]);
+                    }
+            for (int h0 = 0; h0 < 52; h0++)
+                for (int h1 = h0 + 1; h1 < 52; h1++) {
+                    final long heroMask = CardSet.bit(h0) | CardSet.bit(h1);
+                    if ((boardMask & heroMask) != 0) {
+                        continue;
+                    }
+                    long wins = 0;
+                    long losses = 0;
+                    long ties = 0;
+                    for (int v0 = 0; v0 < 52; v0++)
+                        for (int v1 = v0 + 1; v1 < 52; v1++) {
+                            if (((boardMask | heroMask) & (CardSet.bit(v0) | CardSet.bit(v1))) != 0) {
+                                continue;
+                            }
+                            final int hero = strengths[h0 * 52 + h1];
+                            final int villain = strengths[v0 * 52 + v1];
+                            if (hero > villain) {
+                                wins++;
+                            } else if (hero < villain) {
+                                losses++;
+                            } else {
+                                ties++;
+                            }
+                        }
+                    expected.add(HoleCards.valueOf(h0, h1), wins, losses, ties);
+                }
+        }
+
+        assertEquals(3 * BoardMajorTask.COMBO_COUNT * BoardMajorTask.VILLAIN_COUNT, permutations.sum());
+        assertEquals(expected, results);
+    }
+
+    /**
+     * Gets boards in the lexicographic order of the task, from an index on.
+     */
+    private static int[][] lexicographicBoards(int start, int count) {
+        final int[][] boards = new int[count][];
+        int index = 0;
+        for (int b0 = 0; b0 < 52; b0++)
+            for (int b1 = b0 + 1; b1 < 52; b1++)
+                for (int b2 = b1 + 1; b2 < 52; b2++)
+                    for (int b3 = b2 + 1; b3 < 52; b3++)
+                        for (int b4 = b3 + 1; b4 < 52; b4++, index++)
+                            if (index >= start && index < start + count) {
+                                boards[index - start] = new int[] { b0, b1, b2, b3, b4 };
+                            }
+        return boards;
+    }
+
+    @Test
+    public void testBoardsAccountForEveryDeal() {
+        assertEquals(1081, BoardMajorTask.COMBO_COUNT);
+        assertEquals(990, BoardMajorTask.VILLAIN_COUNT);
+        assertEquals(2598960, BoardMajorTask.getBoardCount(false));
+        assertEquals(134459, BoardMajorTask.getBoardCount(true));
+        assertEquals(DealRangeTask.DEAL_COUNT,
+            BoardMajorTask.getDealCount(false, 0, BoardMajorTask.getBoardCount(false)));
+        assertEquals(DealRangeTask.DEAL_COUNT,
+            BoardMajorTask.getDealCount(true, 0, BoardMajorTask.getBoardCount(true)));
+    }
+}
@@ -0,0 +1,91 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.util.Card;
+import com.andrewalia.util.CardSet;
+import com.andrewalia.util.Deck;
+import com.andrewalia.util.HoleCards;
+import com.andrewalia.util.Rank;
+import com.andrewalia.util.Suit;
+
+@Testable
+public class TestCardSet {
+    @Test
+    public void testCardsAreInterned() {
+        for (int i = 0; i < 52; i++) {
+            final Card card = Deck.FULL_DECK_ARRAY[i];
+            assertEquals(i, card.getIndex());
+            assertSame(card, Card.valueOf(i));
+            assertSame(card, Card.valueOf(card.getShortName()));
+            assertSame(card, Card.valueOf(card.getRank(), card.getSuit()));
+        }
+
+        final Card aceOfSpades = new Card(Rank.ACE, Suit.SPADES);
+        assertEquals(Card.valueOf("AS"), aceOfSpades);
+        assertEquals(Card.valueOf("AS").hashCode(), aceOfSpades.hashCode());
+    }
+
+    @Test
+    public void testSetOperations() {
+        final CardSet hole = CardSet.of(Card.valueOf("AS"), Card.valueOf("KS"));
+        final CardSet board = CardSet.of(Card.valueOf("2H"), Card.valueOf("3D"), Card.valueOf("AS"));
+
+        assertEquals(2, hole.size());
+        assertTrue(hole.contains(Card.valueOf("AS")));
+        assertFalse(hole.contains(Card.valueOf("AH")));
+        assertTrue(hole.intersects(board));
+
+        final CardSet union = hole.union(board);
+        assertEquals(4, union.size());
+        assertTrue(union.containsAll(hole));
+        assertTrue(union.containsAll(board));
+
+        final CardSet live = CardSet.FULL_DECK.remove(union);
+        assertEquals(48, live.size());
+        assertFalse(live.intersects(union));
+        assertEquals(CardSet.FULL_DECK, live.union(union));
+
+        assertEquals("[AH, 2H, KS]", CardSet.EMPTY.with(Card.valueOf("KS")).with(Card.valueOf("2H"))
+            .with(Card.valueOf("AH")).toString());
+        assertEquals(CardSet.EMPTY, hole.without(Card.valueOf("AS")).without(Card.valueOf("KS")));
+
+        final int[] indexes = new int[52];
+        assertEquals(2, hole.toIndexes(indexes));
+        assertArrayEquals(new int[] { Card.valueOf("KS").getIndex(), Card.valueOf("AS").getIndex() },
+            new int[] { indexes[1], indexes[0] });
+    }
+
+    @Test
+    public void testDeckKeepsItsSetInStep() {
+        final Deck deck = new Deck();
+        final Card aceOfSpades = Card.valueOf("AS");
+        assertThrows(IllegalArgumentException.class, () -> deck.add(aceOfSpades));
+        assertEquals(52, deck.size());
+
+        deck.remove(aceOfSpades);
+        assertFalse(deck.contains(aceOfSpades));
+        assertEquals(51, deck.size());
+        deck.add(aceOfSpades);
+        assertTrue(deck.contains(aceOfSpades));
+        assertEquals(52, deck.size());
+        assertEquals(CardSet.FULL_DECK, deck.getCardSet());
+    }
+
+    @Test
+    public void testHoleCardsLookupWithoutCanonicalInstances() {
+        final HoleCards holeCards = HoleCards.valueOf(new Card(Rank.ACE, Suit.SPADES), new Card(Rank.KING, Suit.SPADES));
+        assertEquals("AKs", holeCards.toString());
+        assertSame(holeCards, HoleCards.valueOf(Card.valueOf("KH"), Card.valueOf("AH")));
+        assertSame(holeCards, HoleCards.valueOf(CardSet.of(Card.valueOf("AD"), Card.valueOf("KD"))));
+        assertEquals("AKo", HoleCards.valueOf(Card.valueOf("AD"), Card.valueOf("KC")).toString());
+    }
+}
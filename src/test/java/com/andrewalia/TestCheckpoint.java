@@ -0,0 +1,148 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.Main;
+import com.andrewalia.simulator.permutations.thread.DealRangeTask;
+import com.andrewalia.simulator.permutations.util.Checkpoint;
+import com.andrewalia.simulator.permutations.util.ProgressFormat;
+import com.andrewalia.simulator.permutations.util.StripedCounter;
+import com.andrewalia.util.HoleCards;
+import com.andrewalia.util.NCardHand;
+
+@Testable
+public class TestCheckpoint {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final Random random = new Random(23);
+        final Checkpoint checkpoint = new Checkpoint(true, 169 * 46);
+        int leaf = 0;
+        for (int i = 0; i < 52; i++) {
+            for (int j = i + 1; j < 52; j++) {
+                if (random.nextInt(8) == 0) {
+                    leaf += 1 + random.nextInt(10);
+                    checkpoint.complete(leaf, HoleCards.valueOf(i, j), random.nextInt(1 << 30), random.nextInt(1 << 30),
+                        random.nextInt(1 << 30), random.nextInt(1 << 30));
+                }
+            }
+        }
+
+        final Path path = directory.resolve("run.ckpt");
+        assertEquals(checkpoint.write(path), Files.size(path));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count(), "temporary files left behind");
+        }
+        final Checkpoint read = Checkpoint.read(path);
+
+        assertTrue(read.isCanonical());
+        assertEquals(checkpoint.getLeafCount(), read.getLeafCount());
+        assertEquals(checkpoint.getCompletedDeals(), read.getCompletedDeals());
+        assertEquals(checkpoint.getCompletedLeafCount(), read.getCompletedLeafCount());
+        for (int i = 0; i < checkpoint.getLeafCount(); i++) {
+            assertEquals(checkpoint.isCompleted(i), read.isCompleted(i));
+        }
+        assertEquals(checkpoint.getShowdownResultsMap(), read.getShowdownResultsMap());
+    }
+
+    @Test
+    public void testCorruptCheckpointIsRejected() throws IOException {
+        final Checkpoint checkpoint = new Checkpoint(false, 1326 * 46);
+        checkpoint.complete(7, HoleCards.valueOf("AKs"), 3, 2, 1, 6);
+        final Path path = directory.resolve("run.ckpt");
+        checkpoint.write(path);
+        final byte[] bytes = Files.readAllBytes(path);
+
+        for (int i = 0; i < bytes.length; i++) {
+            final byte[] corrupt = bytes.clone();
+            corrupt[i] ^= 0x10;
+            Files.write(path, corrupt);
+            assertThrows(IOException.class, () -> Checkpoint.read(path), "flipped a bit of byte " + i);
+        }
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> Checkpoint.read(path));
+    }
+
+    @Test
+    public void testResumeGivesIdenticalTotals() throws IOException {
+        // hero AH KH (cards 0 and 1); leaves 42 to 45 hold the boards drawn from cards 44 to 51
+        final StripedCounter permutations = new StripedCounter(2);
+        final Checkpoint uninterrupted = new Checkpoint(false, DealRangeTask.getLeafCount(false));
+        final Path path = directory.resolve("run.ckpt");
+        final StripedCounter resumedPermutations;
+        final Checkpoint resumed;
+        NCardHand.setLookupEvaluatorEnabled(false);
+        try {
+            final ForkJoinPool pool = new ForkJoinPool(2);
+            pool.invoke(new DealRangeTask(42, 46, permutations, uninterrupted));
+
+            final Checkpoint interrupted = new Checkpoint(false, DealRangeTask.getLeafCount(false));
+            pool.invoke(new DealRangeTask(43, 44, new StripedCounter(2), interrupted));
+            pool.invoke(new DealRangeTask(45, 46, new StripedCounter(2), interrupted));
+            interrupted.write(path);
+
+            resumed = Checkpoint.read(path);
+            assertFalse(resumed.isCompleted(42));
+            assertTrue(resumed.isCompleted(43));
+            resumedPermutations = new StripedCounter(2);
+            resumedPermutations.add(0, resumed.getCompletedDeals());
+            pool.invoke(new DealRangeTask(42, 46, resumedPermutations, resumed));
+            pool.shutdown();
+        } finally {
+            NCardHand.setLookupEvaluatorEnabled(true);
+        }
+
+        assertEquals(56 * 990, permutations.sum());
+        assertEquals(permutations.sum(), resumedPermutations.sum());
+        assertEquals(uninterrupted.getCompletedDeals(), resumed.getCompletedDeals());
+        assertEquals(4, resumed.getCompletedLeafCount());
+        assertEquals(uninterrupted.getShowdownResultsMap(), resumed.getShowdownResultsMap());
+    }
+
+    @Test
+    public void testRunWithoutResumeKeepsAnExistingCheckpoint() throws IOException {
+        final Checkpoint checkpoint = new Checkpoint(true, DealRangeTask.getLeafCount(true));
+        checkpoint.complete(7, HoleCards.valueOf(0, 1), 600, 300, 90, 990);
+        final Path path = directory.resolve("run.ckpt");
+        checkpoint.write(path);
+        final byte[] bytes = Files.readAllBytes(path);
+
+        assertThrows(FileAlreadyExistsException.class,
+            () -> Main.forkJoin(1, true, path, 0, false, ProgressFormat.TEXT));
+        assertArrayEquals(bytes, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void testHoleCardsNamesRoundTrip() {
+        for (int i = 0; i < 52; i++) {
+            for (int j = 0; j < 52; j++) {
+                if (i != j) {
+                    final HoleCards holeCards = HoleCards.valueOf(i, j);
+                    assertEquals(holeCards, HoleCards.valueOf(holeCards.toString()));
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> HoleCards.valueOf("AKx"));
+        assertThrows(IllegalArgumentException.class, () -> HoleCards.valueOf("TTs"));
+    }
+}
@@ -0,0 +1,166 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.cluster.ClusterProtocol;
+import com.andrewalia.simulator.permutations.cluster.Coordinator;
+import com.andrewalia.simulator.permutations.cluster.Worker;
+import com.andrewalia.simulator.permutations.thread.DealRangeTask;
+import com.andrewalia.simulator.permutations.util.Checkpoint;
+import com.andrewalia.simulator.permutations.util.PermutationsResult;
+import com.andrewalia.simulator.permutations.util.StripedCounter;
+import com.andrewalia.util.NCardHand;
+
+@Testable
+public class TestCluster {
+
+    private static final String LOOPBACK = InetAddress.getLoopbackAddress().getHostAddress();
+
+    @Test
+    public void testLostRangeIsReassigned() throws Exception {
+        // hero AH KH; the last four leaves hold the boards drawn from cards 44 to 51
+        final int start = 42;
+        final int end = 46;
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        NCardHand.setLookupEvaluatorEnabled(false);
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final int port = serverSocket.getLocalPort();
+            final Coordinator coordinator = new Coordinator(serverSocket, false, start, end, 1);
+            final Future<PermutationsResult> run = executor.submit(coordinator::run);
+
+            // a worker that takes a range and dies before sending its result
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                ClusterProtocol.writeHello(out, 1, "dying");
+                final DataInputStream assign = ClusterProtocol.read(in).expect(ClusterProtocol.ASSIGN).getPayload();
+                assign.readBoolean();
+                assertEquals(DealRangeTask.getLeafCount(false), assign.readInt());
+                assertEquals(start, assign.readInt());
+            }
+
+            final Future<Integer> first = executor.submit(() -> Worker.run(LOOPBACK, port, 1));
+            final Future<Integer> second = executor.submit(() -> Worker.run(LOOPBACK, port, 2));
+            final PermutationsResult result = run.get();
+            assertEquals(end - start, first.get() + second.get());
+            assertTrue(result.isSuccessful());
+            assertEquals(1, coordinator.getReassignments());
+            assertEquals(56 * 990, result.getDeals());
+
+            final Checkpoint expected = new Checkpoint(false, DealRangeTask.getLeafCount(false));
+            pool.invoke(new DealRangeTask(start, end, new StripedCounter(2), expected));
+            assertEquals(expected.getShowdownResultsMap(), result.getShowdownResultsMap());
+        } finally {
+            NCardHand.setLookupEvaluatorEnabled(true);
+            executor.shutdownNow();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testStalledWorkerLosesItsLease() throws Exception {
+        final int start = 42;
+        final int end = 44;
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        NCardHand.setLookupEvaluatorEnabled(false);
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+                Socket stalled = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+            final Coordinator coordinator = new Coordinator(serverSocket, false, start, end, 2, 500, 3);
+            final Future<PermutationsResult> run = executor.submit(coordinator::run);
+
+            // a worker whose heartbeats keep coming but never show any progress, like one whose pool is stuck
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(stalled.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stalled.getOutputStream()));
+            ClusterProtocol.writeHello(out, 1, "stalled");
+            final DataInputStream assign = ClusterProtocol.read(in).expect(ClusterProtocol.ASSIGN).getPayload();
+            assign.readBoolean();
+            assign.readInt();
+            assertEquals(start, assign.readInt());
+            assertEquals(end, assign.readInt());
+            assertEquals(125, assign.readInt());
+            executor.submit(() -> {
+                while (true) {
+                    ClusterProtocol.writeHeartbeat(out, 0);
+                    Thread.sleep(100);
+                }
+            });
+
+            final Future<Integer> worker = executor.submit(() -> Worker.run(LOOPBACK, serverSocket.getLocalPort(), 1));
+            final PermutationsResult result = run.get();
+            assertTrue(result.isSuccessful());
+            assertEquals(1, worker.get());
+            assertEquals(1, coordinator.getReassignments());
+            assertEquals(DealRangeTask.getDealCount(false, start, end), result.getDeals());
+        } finally {
+            NCardHand.setLookupEvaluatorEnabled(true);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRangeLostByEveryAttemptFailsTheRun() throws Exception {
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final Coordinator coordinator = new Coordinator(serverSocket, false, 42, 43, 1, 60000, 2);
+            final Future<PermutationsResult> run = executor.submit(coordinator::run);
+
+            // workers that take the range and die on it every time, as if the range itself failed
+            for (int attempt = 0; attempt < 2; attempt++) {
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+                    final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    ClusterProtocol.writeHello(out, 1, "failing");
+                    ClusterProtocol.read(in).expect(ClusterProtocol.ASSIGN);
+                }
+            }
+
+            final PermutationsResult result = run.get();
+            assertFalse(result.isSuccessful());
+            assertEquals(PermutationsResult.EXIT_FAILURE, result.getExitCode());
+            assertEquals(1, coordinator.getReassignments());
+            assertEquals(0, result.getDeals());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWorkerRejectsProtocolErrors() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final Thread server = new Thread(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    ClusterProtocol.read(in).expect(ClusterProtocol.HELLO);
+                    // a coordinator of a run with another cut of the leaves
+                    ClusterProtocol.writeAssign(out, true, 1000, 0, 1, 1000);
+                    in.read();
+                } catch (IOException e) {
+                    // the worker hung up
+                }
+            });
+            server.start();
+            assertThrows(IOException.class, () -> Worker.run(LOOPBACK, serverSocket.getLocalPort(), 1));
+        }
+    }
+}
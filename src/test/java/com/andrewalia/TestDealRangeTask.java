@@ -0,0 +1,80 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.thread.DealRangeTask;
+import com.andrewalia.simulator.permutations.util.Checkpoint;
+import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+import com.andrewalia.simulator.permutations.util.StripedCounter;
+import com.andrewalia.util.HandEvaluator;
+import com.andrewalia.util.HoleCards;
+import com.andrewalia.util.NCardHand;
+
+@Testable
+public class TestDealRangeTask {
+
+    @Test
+    public void testRangeMatchesDirectEnumeration() {
+        assertRangeMatchesDirectEnumeration(true);
+    }
+
+    @Test
+    public void testBruteForceRangeMatchesDirectEnumeration() {
+        assertRangeMatchesDirectEnumeration(false);
+    }
+
+    /**
+     * Evaluates the last three leaves of the first hero with or without the hand rank table, and checks them against
+     * {@link HandEvaluator}.
+     */
+    private static void assertRangeMatchesDirectEnumeration(boolean lookupEvaluator) {
+        // hero AH KH (cards 0 and 1); the last three leaves hold the boards drawn from cards 45 to 51
+        final StripedCounter permutations = new StripedCounter(2);
+        final Checkpoint checkpoint = new Checkpoint(false, DealRangeTask.getLeafCount(false));
+        NCardHand.setLookupEvaluatorEnabled(lookupEvaluator);
+        try {
+            new ForkJoinPool(2).invoke(new DealRangeTask(43, 46, permutations, checkpoint));
+        } finally {
+            NCardHand.setLookupEvaluatorEnabled(true);
+        }
+
+        long wins = 0;
+        long losses = 0;
+        long ties = 0;
+        for (int b0 = 45; b0 < 52; b0++)
+            for (int b1 = b0 + 1; b1 < 52; b1++)
+                for (int b2 = b1 + 1; b2 < 52; b2++)
+                    for (int b3 = b2 + 1; b3 < 52; b3++)
+                        for (int b4 = b3 + 1; b4 < 52; b4++) {
+                            final int hero = HandEvaluator.evaluate(0, 1, b0, b1, b2, b3, b4);
+                            final long board = 1L << b0 | 1L << b1 | 1L << b2 | 1L << b3 | 1L << b4;
+                            for (int v0 = 2; v0 < 52; v0++)
+                                for (int v1 = v0 + 1; v1 < 52; v1++) {
+                                    if ((board & (1L << v0 | 1L << v1)) != 0) {
+                                        continue;
+                                    }
+                                    final int villain = HandEvaluator.evaluate(v0, v1, b0, b1, b2, b3, b4);
+                                    if (hero > villain) {
+                                        wins++;
+                                    } else if (hero < villain) {
+                                        losses++;
+                                    } else {
+                                        ties++;
+                                    }
+                                }
+                        }
+
+        final ShowdownResultsMap results = checkpoint.getShowdownResultsMap();
+        assertEquals(21 * 990, permutations.sum());
+        assertEquals(21 * 990, checkpoint.getCompletedDeals());
+        assertEquals(3, checkpoint.getCompletedLeafCount());
+        assertEquals(wins, results.getWins(HoleCards.valueOf(0, 1)));
+        assertEquals(losses, results.getLosses(HoleCards.valueOf(0, 1)));
+        assertEquals(ties, results.getTies(HoleCards.valueOf(0, 1)));
+    }
+}
@@ -0,0 +1,101 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.util.DealRingBuffer;
+import com.andrewalia.simulator.permutations.util.WaitStrategy;
+
+@Testable
+public class TestDealRingBuffer {
+
+    @Test
+    public void testEveryDealIsReadOnce() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            assertEveryDealIsReadOnce(waitStrategy);
+        }
+    }
+
+    @Test
+    public void testClosedEmptyBufferReturnsNoSlot() {
+        final DealRingBuffer ringBuffer = new DealRingBuffer(3, 2, WaitStrategy.PARK);
+        assertEquals(4, ringBuffer.getCapacity());
+
+        final long sequence = ringBuffer.claimWrite();
+        ringBuffer.getBatch(sequence)[0] = 42;
+        ringBuffer.publish(sequence, 1);
+        ringBuffer.close();
+
+        final long read = ringBuffer.claimRead();
+        assertEquals(sequence, read);
+        assertEquals(1, ringBuffer.getSize(read));
+        assertEquals(42, ringBuffer.getBatch(read)[0]);
+        ringBuffer.release(read);
+        assertEquals(-1, ringBuffer.claimRead());
+    }
+
+    private static void assertEveryDealIsReadOnce(WaitStrategy waitStrategy) throws InterruptedException {
+        final int producerCount = 3;
+        final int consumerCount = 2;
+        final int dealsPerProducer = 3000;
+        final int batchSize = 7;
+        final DealRingBuffer ringBuffer = new DealRingBuffer(4, batchSize, waitStrategy);
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong count = new AtomicLong();
+
+        final Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            final int producer = p;
+            producers[p] = new Thread(() -> {
+                int deal = 0;
+                while (deal < dealsPerProducer) {
+                    final long sequence = ringBuffer.claimWrite();
+                    final int[] batch = ringBuffer.getBatch(sequence);
+                    int size = 0;
+                    while (size < batchSize && deal < dealsPerProducer) {
+                        batch[size * DealRingBuffer.DEAL_SIZE] = producer * dealsPerProducer + deal++;
+                        size++;
+                    }
+                    ringBuffer.publish(sequence, size);
+                }
+            });
+        }
+
+        final Thread[] consumers = new Thread[consumerCount];
+        for (int c = 0; c < consumerCount; c++) {
+            consumers[c] = new Thread(() -> {
+                long sequence;
+                while ((sequence = ringBuffer.claimRead()) >= 0) {
+                    final int[] batch = ringBuffer.getBatch(sequence);
+                    for (int i = 0; i < ringBuffer.getSize(sequence); i++) {
+                        sum.addAndGet(batch[i * DealRingBuffer.DEAL_SIZE]);
+                        count.incrementAndGet();
+                    }
+                    ringBuffer.release(sequence);
+                }
+            });
+        }
+
+        for (Thread thread : consumers) {
+            thread.start();
+        }
+        for (Thread thread : producers) {
+            thread.start();
+        }
+        for (Thread thread : producers) {
+            thread.join();
+        }
+        ringBuffer.close();
+        for (Thread thread : consumers) {
+            thread.join();
+        }
+
+        final long deals = (long) producerCount * dealsPerProducer;
+        assertEquals(deals, count.get(), waitStrategy.toString());
+        assertEquals(deals * (deals - 1) / 2, sum.get(), waitStrategy.toString());
+    }
+}
@@ -1,5 +1,7 @@
 package com.andrewalia;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -299,4 +301,31 @@ public class TestFiveCardHand {
             new Card(Rank.FIVE, Suit.DIAMONDS)
         })) < 0);
     }
+
+    @Test
+    public void testHandIsImmutable() {
+        final Card[] cards = new Card[]{
+            new Card(Rank.KING, Suit.HEARTS),
+            new Card(Rank.TWO, Suit.DIAMONDS),
+            new Card(Rank.KING, Suit.CLUBS),
+            new Card(Rank.ACE, Suit.SPADES),
+            new Card(Rank.TWO, Suit.SPADES)
+        };
+        final Card[] original = cards.clone();
+        final FiveCardHand hand = new FiveCardHand(cards);
+        final String shortName = hand.getShortName();
+
+        assertArrayEquals(original, cards);
+        assertTrue(HandType.TWO_PAIR.test(hand));
+        final Card[] rearranged = HandType.TWO_PAIR.rearrange(hand);
+        assertEquals(Rank.KING, rearranged[0].getRank());
+        assertEquals(Rank.ACE, rearranged[4].getRank());
+        hand.getCards()[0] = new Card(Rank.ACE, Suit.HEARTS);
+        assertEquals(shortName, hand.getShortName());
+        assertEquals(HandType.TWO_PAIR, hand.getHandType());
+
+        final FiveCardHand reordered = new FiveCardHand(new Card[]{ cards[4], cards[3], cards[2], cards[1], cards[0] });
+        assertEquals(hand, reordered);
+        assertEquals(hand.hashCode(), reordered.hashCode());
+    }
 }
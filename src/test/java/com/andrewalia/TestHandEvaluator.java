@@ -0,0 +1,181 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.util.BatchEvaluator;
+import com.andrewalia.util.Card;
+import com.andrewalia.util.CardSet;
+import com.andrewalia.util.Deck;
+import com.andrewalia.util.FiveCardHand;
+import com.andrewalia.util.HandEvaluator;
+import com.andrewalia.util.HandRank;
+import com.andrewalia.util.HandType;
+import com.andrewalia.util.NCardHand;
+import com.andrewalia.util.Rank;
+import com.andrewalia.util.Suit;
+
+@Testable
+public class TestHandEvaluator {
+
+    @Test
+    public void testAllFiveCardHandsMatchBruteForce() {
+        final int[] counts = new int[HandType.values().length];
+        final Card[] deck = Deck.FULL_DECK_ARRAY;
+        for (int a = 0; a < 52; a++)
+            for (int b = a + 1; b < 52; b++)
+                for (int c = b + 1; c < 52; c++)
+                    for (int d = c + 1; d < 52; d++)
+                        for (int e = d + 1; e < 52; e++) {
+                            final Card[] cards = { deck[a], deck[b], deck[c], deck[d], deck[e] };
+                            final int handRank = HandEvaluator.evaluate(cards);
+                            // FiveCardHand values the cards with the HandType predicates, independently
+                            assertEquals(new FiveCardHand(cards).getHandRank(), handRank);
+                            counts[HandRank.getHandType(handRank).ordinal()]++;
+                        }
+
+        assertArrayEquals(new int[] { 1302540, 1098240, 123552, 54912, 10200, 5108, 3744, 624, 36, 4 }, counts);
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            final int[] indexes = randomIndexes(random, 9);
+            final Card[] hero = new Card[7];
+            final Card[] villain = new Card[7];
+            for (int j = 0; j < 7; j++) {
+                hero[j] = Deck.FULL_DECK_ARRAY[indexes[j]];
+                villain[j] = Deck.FULL_DECK_ARRAY[indexes[j < 2 ? j + 7 : j]];
+            }
+
+            final int heroStrength = HandEvaluator.evaluate(
+                indexes[0], indexes[1], indexes[2], indexes[3], indexes[4], indexes[5], indexes[6]);
+            final int villainStrength = HandEvaluator.evaluate(villain);
+            assertEquals(HandEvaluator.evaluate(hero), heroStrength);
+
+            final FiveCardHand heroBest = new NCardHand(hero).getBestFiveCardHand();
+            final FiveCardHand villainBest = new NCardHand(villain).getBestFiveCardHand();
+            assertEquals(HandType.getBestHandType(heroBest), HandRank.getHandType(heroStrength));
+            assertEquals(HandType.getBestHandType(villainBest), HandRank.getHandType(villainStrength));
+            assertEquals(heroStrength, heroBest.getHandRank());
+            assertEquals(heroStrength, new NCardHand(hero).getStrength());
+            assertEquals(villainStrength, NCardHand.bruteForceStrength(villain));
+            assertRearrangedRanks(heroBest, heroStrength);
+            assertRearrangedRanks(villainBest, villainStrength);
+            assertEquals(
+                Integer.signum(heroBest.compareTo(villainBest)),
+                Integer.signum(Integer.compare(heroStrength, villainStrength)),
+                heroBest + " vs " + villainBest
+            );
+        }
+    }
+
+    @Test
+    public void testBatchMatchesSingle() {
+        final Random random = new Random(5);
+        final int count = 1000;
+        final int[][] columns = new int[7][count];
+        final long[] cardMasks = new long[count];
+        final long[] holeMasks = new long[count];
+        final int[] expected = new int[count];
+        for (int i = 0; i < count; i++) {
+            final int[] indexes = randomIndexes(random, 7);
+            for (int j = 0; j < 7; j++) {
+                columns[j][i] = indexes[j];
+            }
+            cardMasks[i] = CardSet.of(indexes).getMask();
+            holeMasks[i] = CardSet.of(indexes[0], indexes[1]).getMask();
+            expected[i] = HandEvaluator.evaluate(
+                indexes[0], indexes[1], indexes[2], indexes[3], indexes[4], indexes[5], indexes[6]);
+        }
+
+        final int[] strengths = new int[count];
+        BatchEvaluator.evaluate(cardMasks, strengths, count);
+        assertArrayEquals(expected, strengths);
+
+        final int[] columnStrengths = new int[count];
+        BatchEvaluator.evaluate(columns[0], columns[1], columns[2], columns[3], columns[4], columns[5], columns[6],
+            columnStrengths, count);
+        assertArrayEquals(expected, columnStrengths);
+
+        final long board = CardSet.of(0, 13, 26, 39, 12).getMask();
+        final int[] boardStrengths = new int[count];
+        BatchEvaluator.evaluate(board, holeMasks, boardStrengths, count);
+        for (int i = 0; i < count; i++) {
+            if ((holeMasks[i] & board) == 0) {
+                assertEquals(HandEvaluator.evaluate(CardSet.ofMask(board | holeMasks[i])), boardStrengths[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testWheelIsLowestStraight() {
+        final FiveCardHand wheel = new FiveCardHand(new Card[]{
+            new Card(Rank.ACE, Suit.CLUBS),
+            new Card(Rank.TWO, Suit.DIAMONDS),
+            new Card(Rank.THREE, Suit.HEARTS),
+            new Card(Rank.FOUR, Suit.SPADES),
+            new Card(Rank.FIVE, Suit.CLUBS)
+        });
+        final FiveCardHand sixHigh = new FiveCardHand(new Card[]{
+            new Card(Rank.SIX, Suit.CLUBS),
+            new Card(Rank.TWO, Suit.DIAMONDS),
+            new Card(Rank.THREE, Suit.HEARTS),
+            new Card(Rank.FOUR, Suit.SPADES),
+            new Card(Rank.FIVE, Suit.CLUBS)
+        });
+
+        assertTrue(wheel.compareTo(sixHigh) < 0);
+        assertTrue(HandEvaluator.evaluate(wheel.getCards()) < HandEvaluator.evaluate(sixHigh.getCards()));
+        assertEquals(HandType.STRAIGHT, HandRank.getHandType(HandEvaluator.evaluate(wheel.getCards())));
+    }
+
+    @Test
+    public void testDescription() {
+        assertEquals("Full House, Kings over Twos", hand("KH", "2D", "KC", "2S", "KS").description());
+        assertEquals("Two Pair, Jacks and Fours, Ace kicker", hand("4H", "JD", "AC", "4S", "JS").description());
+        assertEquals("Straight Flush, Five high", hand("AH", "2H", "3H", "4H", "5H").description());
+        assertEquals("Pair of Nines, King kicker", hand("9H", "9D", "KC", "2S", "7S").description());
+        assertEquals("Royal Flush", hand("AS", "KS", "QS", "JS", "TS").description());
+    }
+
+    /**
+     * Checks the ranks packed into a hand rank against the order {@link HandType#rearrange(FiveCardHand)} gives.
+     */
+    private static void assertRearrangedRanks(FiveCardHand hand, int handRank) {
+        final Card[] rearranged = HandType.getBestHandType(hand).rearrange(hand);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(rearranged[i].getRank(), HandRank.getRank(handRank, i), hand.toString());
+        }
+    }
+
+    private static FiveCardHand hand(String... shortNames) {
+        final Card[] cards = new Card[shortNames.length];
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = Card.valueOf(shortNames[i]);
+        }
+        return new FiveCardHand(cards);
+    }
+
+    private static int[] randomIndexes(Random random, int n) {
+        final int[] indexes = new int[n];
+        for (int i = 0; i < n; i++) {
+            boolean duplicate;
+            do {
+                indexes[i] = random.nextInt(52);
+                duplicate = false;
+                for (int j = 0; j < i; j++) {
+                    duplicate |= indexes[j] == indexes[i];
+                }
+            } while (duplicate);
+        }
+        return indexes;
+    }
+}
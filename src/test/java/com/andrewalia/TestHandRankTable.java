@@ -0,0 +1,112 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.util.Card;
+import com.andrewalia.util.HandEvaluator;
+import com.andrewalia.util.HandRankTable;
+
+@Testable
+public class TestHandRankTable {
+
+    private static HandRankTable table;
+
+    @BeforeAll
+    public static void buildTable() {
+        table = HandRankTable.build();
+    }
+
+    @Test
+    public void testMatchesEvaluator() {
+        final Random random = new Random(7);
+        for (int i = 0; i < 200000; i++) {
+            final int[] c = randomIndexes(random);
+            assertEquals(
+                HandEvaluator.evaluate(c[0], c[1], c[2], c[3], c[4], c[5], c[6]),
+                table.evaluate(c[0], c[1], c[2], c[3], c[4], c[5], c[6])
+            );
+        }
+    }
+
+    @Test
+    public void testIncrementalBoardState() {
+        final Random random = new Random(3);
+        for (int i = 0; i < 50000; i++) {
+            final int[] c = randomIndexes(random);
+            final int flop = table.extend(HandRankTable.START, c[2], c[3], c[4]);
+            final int board = table.extend(table.extend(flop, c[5]), c[6]);
+            final int expected = HandEvaluator.evaluate(c[0], c[1], c[2], c[3], c[4], c[5], c[6]);
+
+            assertEquals(expected, table.evaluate(board, c[0], c[1]));
+            assertEquals(expected, table.evaluate(board, c[1], c[0]));
+            assertEquals(expected, table.extend(table.extend(table.extend(table.extend(flop, c[0]), c[6]), c[1]), c[5]));
+            assertEquals(
+                HandEvaluator.evaluate(Card.valueOf(c[2]), Card.valueOf(c[3]), Card.valueOf(c[4]), Card.valueOf(c[5]),
+                    Card.valueOf(c[6])),
+                table.getStrength(board));
+            assertEquals(
+                HandEvaluator.evaluate(Card.valueOf(c[0]), Card.valueOf(c[2]), Card.valueOf(c[3]), Card.valueOf(c[4]),
+                    Card.valueOf(c[5]), Card.valueOf(c[6])),
+                table.getStrength(table.extend(board, c[0])));
+        }
+    }
+
+    @Test
+    public void testWriteAndMap(@TempDir Path dir) throws IOException {
+        final Path path = dir.resolve("handranks.dat");
+        table.write(path);
+
+        final HandRankTable mapped = HandRankTable.load(path);
+        assertTrue(mapped.isMapped());
+        assertFalse(table.isMapped());
+        assertEquals(table.getStateCount(), mapped.getStateCount());
+
+        final Random random = new Random(11);
+        for (int i = 0; i < 10000; i++) {
+            final int[] c = randomIndexes(random);
+            assertEquals(
+                table.evaluate(c[0], c[1], c[2], c[3], c[4], c[5], c[6]),
+                mapped.evaluate(c[0], c[1], c[2], c[3], c[4], c[5], c[6])
+            );
+        }
+    }
+
+    @Test
+    public void testRejectsCorruptFile(@TempDir Path dir) throws IOException {
+        final Path path = dir.resolve("handranks.dat");
+        table.write(path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(Files.size(path) / 2);
+            final int b = file.read();
+            file.seek(Files.size(path) / 2);
+            file.write(b ^ 1);
+        }
+        assertThrows(IOException.class, () -> HandRankTable.load(path));
+    }
+
+    private static int[] randomIndexes(Random random) {
+        final int[] indexes = new int[7];
+        long used = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            do {
+                indexes[i] = random.nextInt(52);
+            } while ((used & 1L << indexes[i]) != 0);
+            used |= 1L << indexes[i];
+        }
+        return indexes;
+    }
+}
@@ -1,5 +1,6 @@
 package com.andrewalia;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -7,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.platform.commons.annotation.Testable;
 
 import com.andrewalia.util.Card;
+import com.andrewalia.util.Deck;
 import com.andrewalia.util.FiveCardHand;
 import com.andrewalia.util.HandType;
 import com.andrewalia.util.NCardHand;
@@ -96,4 +98,35 @@ public class TestHandType {
             new Card(Rank.THREE, Suit.CLUBS)
         })));
     }
+
+    @Test
+    public void testHistogramMatchesPredicatesOnAllHands() {
+        final Card[] deck = Deck.FULL_DECK_ARRAY;
+        final int[] counts = new int[HandType.values().length];
+        int total = 0;
+        for (int a = 0; a < 52; a++)
+            for (int b = a + 1; b < 52; b++)
+                for (int c = b + 1; c < 52; c++)
+                    for (int d = c + 1; d < 52; d++)
+                        for (int e = d + 1; e < 52; e++) {
+                            final FiveCardHand hand = new FiveCardHand(
+                                new Card[]{ deck[a], deck[b], deck[c], deck[d], deck[e] });
+                            final HandType byHistogram = HandType.getBestHandType(hand);
+                            assertEquals(byPredicates(hand), byHistogram, hand.toString());
+                            counts[byHistogram.ordinal()]++;
+                            total++;
+                        }
+
+        assertEquals(2598960, total);
+        assertArrayEquals(new int[] { 1302540, 1098240, 123552, 54912, 10200, 5108, 3744, 624, 36, 4 }, counts);
+    }
+
+    private static HandType byPredicates(FiveCardHand hand) {
+        for (HandType handType : HandType.getRoyalFlushFirstHandTypes()) {
+            if (handType.test(hand)) {
+                return handType;
+            }
+        }
+        throw new AssertionError("No hand type matches " + hand);
+    }
 }
@@ -0,0 +1,60 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.util.IndexPermutation;
+
+@Testable
+public class TestIndexPermutation {
+
+    @Test
+    public void testEveryIndexOnce() {
+        for (long size : new long[] { 1, 2, 3, 5, 16, 17, 1000, 2118760 }) {
+            final IndexPermutation permutation = new IndexPermutation(size, size * 31);
+            final BitSet seen = new BitSet((int) size);
+            for (long i = 0; i < size; i++) {
+                final long mapped = permutation.apply(i);
+                assertTrue(mapped >= 0 && mapped < size);
+                assertFalse(seen.get((int) mapped), size + " indexes, " + mapped + " visited twice");
+                seen.set((int) mapped);
+            }
+        }
+    }
+
+    @Test
+    public void testSeedChoosesThePermutation() {
+        final IndexPermutation a = new IndexPermutation(2118760, 7);
+        final IndexPermutation b = new IndexPermutation(2118760, 7);
+        final IndexPermutation c = new IndexPermutation(2118760, 8);
+        int differences = 0;
+        for (long i = 0; i < 100; i++) {
+            assertEquals(a.apply(i), b.apply(i));
+            differences += a.apply(i) != c.apply(i) ? 1 : 0;
+        }
+        assertTrue(differences > 90);
+
+        // the first indexes land all over the range, not next to each other
+        long below = 0;
+        for (long i = 0; i < 1000; i++) {
+            below += a.apply(i) < 2118760 / 2 ? 1 : 0;
+        }
+        assertNotEquals(0, below);
+        assertTrue(below > 400 && below < 600, below + " of the first 1000 in the lower half");
+    }
+
+    @Test
+    public void testInvalidArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new IndexPermutation(0, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> new IndexPermutation(10, 1).apply(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> new IndexPermutation(10, 1).apply(-1));
+    }
+}
@@ -0,0 +1,111 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.math3.util.CombinatoricsUtils;
+import org.apache.commons.math3.util.Combinations;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.util.IndexedCombinations;
+
+@Testable
+public class TestIndexedCombinations {
+
+    @Test
+    public void testOrderAndIndexesMatchCommonsMath() {
+        for (int n = 1; n <= 10; n++) {
+            for (int k = 1; k <= n; k++) {
+                assertColexicographic(n, k);
+            }
+        }
+        assertColexicographic(20, 5);
+    }
+
+    private static void assertColexicographic(int n, int k) {
+        final IndexedCombinations combinations = new IndexedCombinations(n, k);
+        assertEquals(CombinatoricsUtils.binomialCoefficient(n, k), combinations.size());
+        final int[] stepped = combinations.unrank(0, new int[k]);
+        final int[] unranked = new int[k];
+        final Iterator<int[]> expected = new Combinations(n, k).iterator();
+        long index = 0;
+        while (true) {
+            final int[] combination = expected.next();
+            assertArrayEquals(combination, stepped, n + " choose " + k + " at " + index);
+            assertArrayEquals(combination, combinations.unrank(index, unranked));
+            assertEquals(index, combinations.rank(combination));
+            index++;
+            if (!combinations.next(stepped)) {
+                break;
+            }
+        }
+        assertFalse(expected.hasNext());
+        assertEquals(combinations.size(), index);
+    }
+
+    @Test
+    public void testLargeIndexesRoundTrip() {
+        final IndexedCombinations combinations = new IndexedCombinations(64, 32);
+        assertEquals(1832624140942590534L, combinations.size());
+        final int[] combination = new int[32];
+        for (long index : new long[] { 0, 1, 123456789012345678L, combinations.size() - 1 }) {
+            assertEquals(index, combinations.rank(combinations.unrank(index, combination)));
+        }
+        final int[] last = combinations.unrank(combinations.size() - 1, combination);
+        assertEquals(32, last[0]);
+        assertFalse(combinations.next(last));
+        assertEquals(32, last[0]);
+    }
+
+    @Test
+    public void testSpliteratorSplitsEvenly() {
+        final IndexedCombinations combinations = new IndexedCombinations(50, 5);
+        final Spliterator<int[]> suffix = combinations.spliterator(1000, 2001);
+        assertTrue(suffix.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+        final Spliterator<int[]> prefix = suffix.trySplit();
+        assertEquals(500, prefix.getExactSizeIfKnown());
+        assertEquals(501, suffix.getExactSizeIfKnown());
+
+        final long[] next = { 1000 };
+        prefix.forEachRemaining(combination -> assertEquals(next[0]++, combinations.rank(combination)));
+        assertTrue(suffix.tryAdvance(combination -> assertEquals(next[0]++, combinations.rank(combination))));
+        // a spliterator that has started can still split what it has left
+        final Spliterator<int[]> rest = suffix.trySplit();
+        assertEquals(250, rest.getExactSizeIfKnown());
+        rest.forEachRemaining(combination -> assertEquals(next[0]++, combinations.rank(combination)));
+        suffix.forEachRemaining(combination -> assertEquals(next[0]++, combinations.rank(combination)));
+        assertEquals(2001, next[0]);
+
+        final Spliterator<int[]> single = combinations.spliterator(7, 8);
+        assertNull(single.trySplit());
+    }
+
+    @Test
+    public void testParallelStreamVisitsEverySubset() {
+        final IndexedCombinations combinations = new IndexedCombinations(30, 4);
+        final long sum = StreamSupport.stream(combinations.spliterator(), true)
+            .mapToLong(combinations::rank)
+            .sum();
+        assertEquals(combinations.size() * (combinations.size() - 1) / 2, sum);
+    }
+
+    @Test
+    public void testInvalidArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new IndexedCombinations(65, 5));
+        assertThrows(IllegalArgumentException.class, () -> new IndexedCombinations(5, 0));
+        final IndexedCombinations combinations = new IndexedCombinations(5, 2);
+        assertThrows(IndexOutOfBoundsException.class, () -> combinations.unrank(10, new int[2]));
+        assertThrows(IndexOutOfBoundsException.class, () -> combinations.spliterator(3, 11));
+        assertThrows(IllegalArgumentException.class, () -> combinations.rank(new int[] { 2, 2 }));
+        assertThrows(IllegalArgumentException.class, () -> combinations.rank(new int[] { 1, 2, 3 }));
+    }
+}
@@ -0,0 +1,330 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.Main;
+import com.andrewalia.simulator.permutations.thread.ComparingThread;
+import com.andrewalia.simulator.permutations.thread.ProducerThread;
+import com.andrewalia.simulator.permutations.util.BoardOrder;
+import com.andrewalia.simulator.permutations.util.DealRingBuffer;
+import com.andrewalia.simulator.permutations.util.PermutationsResult;
+import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+import com.andrewalia.simulator.permutations.util.StripedCounter;
+import com.andrewalia.simulator.permutations.util.WaitStrategy;
+import com.andrewalia.simulator.permutations.util.WorkUnit;
+import com.andrewalia.util.CardSet;
+import com.andrewalia.util.HandEvaluator;
+import com.andrewalia.util.HoleCards;
+import com.andrewalia.util.IndexedCombinations;
+import com.andrewalia.util.NCardHand;
+
+@Testable
+public class TestPermutationsRun {
+
+    /** Board of the deals, cards that neither the hero AH KH (0 and 1) nor the villains use. */
+    private static final int[] BOARD = { 2, 15, 28, 41, 50 };
+
+    /** Boards of a hero, as positions among the 50 cards left, in the order of the producers. */
+    private static final IndexedCombinations BOARDS = new IndexedCombinations(50, 5);
+
+    @Test
+    public void testEveryDealIsReportedAfterTheLastBatch() {
+        final DealRingBuffer ringBuffer = new DealRingBuffer(4, 16, WaitStrategy.YIELD);
+        final StripedCounter permutations = new StripedCounter(2);
+        final ShowdownResultsMap[] results = { new ShowdownResultsMap(), new ShowdownResultsMap() };
+        final Runnable[] producers = { () -> publishVillains(ringBuffer, 0, 20), () -> publishVillains(ringBuffer, 20, 52) };
+        final Runnable[] comparers = {
+            new ComparingThread(ringBuffer, permutations, 0, results[0]),
+            new ComparingThread(ringBuffer, permutations, 1, results[1])
+        };
+
+        final PermutationsResult result;
+        NCardHand.setLookupEvaluatorEnabled(false);
+        try {
+            result = assertTimeoutPreemptively(Duration.ofSeconds(60),
+                () -> Main.run(ringBuffer, producers, comparers, permutations, results));
+        } finally {
+            NCardHand.setLookupEvaluatorEnabled(true);
+        }
+
+        long wins = 0;
+        long losses = 0;
+        long ties = 0;
+        long deals = 0;
+        final int hero = HandEvaluator.evaluate(0, 1, BOARD[0], BOARD[1], BOARD[2], BOARD[3], BOARD[4]);
+        for (int v0 = 2; v0 < 52; v0++)
+            for (int v1 = v0 + 1; v1 < 52; v1++) {
+                if (isBoard(v0) || isBoard(v1)) {
+                    continue;
+                }
+                final int villain = HandEvaluator.evaluate(v0, v1, BOARD[0], BOARD[1], BOARD[2], BOARD[3], BOARD[4]);
+                deals++;
+                if (hero > villain) {
+                    wins++;
+                } else if (hero < villain) {
+                    losses++;
+                } else {
+                    ties++;
+                }
+            }
+
+        assertTrue(result.isSuccessful());
+        assertEquals(0, result.getExitCode());
+        assertEquals(deals, result.getDeals());
+        final ShowdownResultsMap heroResults = result.getShowdownResultsMap();
+        assertEquals(wins, heroResults.getWins(HoleCards.valueOf(0, 1)));
+        assertEquals(losses, heroResults.getLosses(HoleCards.valueOf(0, 1)));
+        assertEquals(ties, heroResults.getTies(HoleCards.valueOf(0, 1)));
+    }
+
+    @Test
+    public void testBoardUnitsMatchEveryDeal() {
+        final DealRingBuffer ringBuffer = new DealRingBuffer(4, 2, WaitStrategy.YIELD);
+        final StripedCounter permutations = new StripedCounter(2);
+        final ShowdownResultsMap[] results = { new ShowdownResultsMap(), new ShowdownResultsMap() };
+        final int[][] boards = { BOARD, { 12, 25, 38, 51, 3 }, { 4, 5, 6, 7, 8 } };
+        final Runnable[] producers = { () -> {
+            for (int[] board : boards) {
+                final long sequence = ringBuffer.claimWrite();
+                final int[] unit = { 0, 1, board[0], board[1], board[2], board[3], board[4], -1, -1 };
+                System.arraycopy(unit, 0, ringBuffer.getBatch(sequence), 0, DealRingBuffer.DEAL_SIZE);
+                ringBuffer.publish(sequence, 1);
+            }
+        } };
+        final ComparingThread[] comparers = {
+            new ComparingThread(ringBuffer, permutations, 0, results[0], WorkUnit.BOARD),
+            new ComparingThread(ringBuffer, permutations, 1, results[1], WorkUnit.BOARD)
+        };
+
+        final PermutationsResult result = assertTimeoutPreemptively(Duration.ofSeconds(60),
+            () -> Main.run(ringBuffer, producers, comparers, permutations, results));
+
+        final ShowdownResultsMap expected = new ShowdownResultsMap();
+        for (int[] board : boards) {
+            final int hero = HandEvaluator.evaluate(0, 1, board[0], board[1], board[2], board[3], board[4]);
+            for (int v0 = 2; v0 < 52; v0++)
+                for (int v1 = v0 + 1; v1 < 52; v1++) {
+                    if (contains(board, v0) || contains(board, v1)) {
+                        continue;
+                    }
+                    final int villain = HandEvaluator.evaluate(v0, v1, board[0], board[1], board[2], board[3],
+                        board[4]);
+                    expected.add(HoleCards.valueOf(0, 1), hero > villain ? 1 : 0, hero < villain ? 1 : 0,
+                        hero == villain ? 1 : 0);
+                }
+        }
+
+        assertTrue(result.isSuccessful());
+        assertEquals(3 * WorkUnit.VILLAINS_PER_BOARD, result.getDeals());
+        assertEquals(expected, result.getShowdownResultsMap());
+        assertEquals(3 * (1 + WorkUnit.VILLAINS_PER_BOARD),
+            comparers[0].getEvaluations() + comparers[1].getEvaluations());
+    }
+
+    @Test
+    public void testSegmentsProduceTheirUnits() {
+        final DealRingBuffer ringBuffer = new DealRingBuffer(4, 2, WaitStrategy.YIELD);
+        final StripedCounter permutations = new StripedCounter(1);
+        final ShowdownResultsMap results = new ShowdownResultsMap();
+        final long start = BOARDS.size() - 2;
+        final Runnable[] producers = {
+            ProducerThread.ofRange(ringBuffer, start, start + 1, BoardOrder.LEXICOGRAPHIC, WorkUnit.BOARD, 0),
+            ProducerThread.ofRange(ringBuffer, start + 1, start + 3, BoardOrder.LEXICOGRAPHIC, WorkUnit.BOARD, 0)
+        };
+        final Runnable[] comparers = {
+            new ComparingThread(ringBuffer, permutations, 0, results, WorkUnit.BOARD)
+        };
+
+        final PermutationsResult result = assertTimeoutPreemptively(Duration.ofSeconds(60),
+            () -> Main.run(ringBuffer, producers, comparers, permutations, results));
+
+        // the last two boards of the first hero, then the first board of the second
+        final ShowdownResultsMap expected = new ShowdownResultsMap();
+        addBoard(expected, new int[] { 0, 1 }, BOARDS.unrank(BOARDS.size() - 2, new int[5]));
+        addBoard(expected, new int[] { 0, 1 }, BOARDS.unrank(BOARDS.size() - 1, new int[5]));
+        addBoard(expected, new int[] { 0, 2 }, BOARDS.unrank(0, new int[5]));
+        assertTrue(result.isSuccessful());
+        assertEquals(3 * WorkUnit.VILLAINS_PER_BOARD, result.getDeals());
+        assertEquals(expected, result.getShowdownResultsMap());
+        assertThrows(IllegalArgumentException.class, () -> ProducerThread.ofRange(ringBuffer, 0,
+            ProducerThread.UNIT_COUNT + 1, BoardOrder.REVOLVING_DOOR, WorkUnit.BOARD, 0));
+    }
+
+    @Test
+    public void testRevolvingDoorHeroMatchesLexicographic() {
+        // the second producer starts in the middle of the hero, so it steps through the first producer's boards
+        final long middle = BOARDS.size() / 2 + 1;
+        final PermutationsResult lexicographic = runHero(new long[] { 0, BOARDS.size() }, BoardOrder.LEXICOGRAPHIC);
+        final PermutationsResult revolvingDoor = runHero(new long[] { 0, middle, BOARDS.size() },
+            BoardOrder.REVOLVING_DOOR);
+
+        assertTrue(lexicographic.isSuccessful());
+        assertTrue(revolvingDoor.isSuccessful());
+        assertEquals(BOARDS.size() * WorkUnit.VILLAINS_PER_BOARD, revolvingDoor.getDeals());
+        assertEquals(lexicographic.getDeals(), revolvingDoor.getDeals());
+        assertEquals(lexicographic.getShowdownResultsMap(), revolvingDoor.getShowdownResultsMap());
+    }
+
+    /**
+     * Runs the boards of the first hero in an order, with one producer for each range between the given units.
+     */
+    private static PermutationsResult runHero(long[] bounds, BoardOrder boardOrder) {
+        final int comparerCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+        final DealRingBuffer ringBuffer = new DealRingBuffer(4 * comparerCount, 256, WaitStrategy.YIELD);
+        final StripedCounter permutations = new StripedCounter(comparerCount);
+        final ShowdownResultsMap[] results = new ShowdownResultsMap[comparerCount];
+        final Runnable[] comparers = new Runnable[comparerCount];
+        for (int i = 0; i < comparerCount; i++) {
+            results[i] = new ShowdownResultsMap();
+            comparers[i] = new ComparingThread(ringBuffer, permutations, i, results[i], WorkUnit.BOARD);
+        }
+        final Runnable[] producers = new Runnable[bounds.length - 1];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = ProducerThread.ofRange(ringBuffer, bounds[i], bounds[i + 1], boardOrder, WorkUnit.BOARD, 0);
+        }
+
+        return assertTimeoutPreemptively(Duration.ofMinutes(10),
+            () -> Main.run(ringBuffer, producers, comparers, permutations, results));
+    }
+
+    /**
+     * Adds the results of a hero against every villain on a board, given as positions among the cards the hero left.
+     */
+    private static void addBoard(ShowdownResultsMap results, int[] hero, int[] positions) {
+        final int[] candidates = new int[50];
+        CardSet.FULL_DECK.remove(CardSet.of(hero)).toIndexes(candidates);
+        final int[] board = new int[5];
+        for (int i = 0; i < 5; i++) {
+            board[i] = candidates[positions[i]];
+        }
+        final int heroStrength = HandEvaluator.evaluate(hero[0], hero[1], board[0], board[1], board[2], board[3],
+            board[4]);
+        for (int v0 = 0; v0 < 52; v0++)
+            for (int v1 = v0 + 1; v1 < 52; v1++) {
+                if (contains(hero, v0) || contains(hero, v1) || contains(board, v0) || contains(board, v1)) {
+                    continue;
+                }
+                final int villain = HandEvaluator.evaluate(v0, v1, board[0], board[1], board[2], board[3], board[4]);
+                results.add(HoleCards.valueOf(hero[0], hero[1]), heroStrength > villain ? 1 : 0,
+                    heroStrength < villain ? 1 : 0, heroStrength == villain ? 1 : 0);
+            }
+    }
+
+    @Test
+    public void testFailureCancelsTheRun() {
+        final DealRingBuffer ringBuffer = new DealRingBuffer(4, 16, WaitStrategy.PARK);
+        final StripedCounter permutations = new StripedCounter(2);
+        final ShowdownResultsMap[] results = { new ShowdownResultsMap(), new ShowdownResultsMap() };
+        final Runnable endless = () -> {
+            while (true) {
+                publishVillains(ringBuffer, 3, 52);
+            }
+        };
+        final Runnable invalid = () -> {
+            final long sequence = ringBuffer.claimWrite();
+            ringBuffer.getBatch(sequence)[0] = 60;
+            ringBuffer.publish(sequence, 1);
+        };
+        final Runnable[] producers = { endless, invalid };
+        final Runnable[] comparers = {
+            new ComparingThread(ringBuffer, permutations, 0, results[0]),
+            new ComparingThread(ringBuffer, permutations, 1, results[1])
+        };
+
+        final PermutationsResult result;
+        NCardHand.setLookupEvaluatorEnabled(false);
+        try {
+            result = assertTimeoutPreemptively(Duration.ofSeconds(60),
+                () -> Main.run(ringBuffer, producers, comparers, permutations, results));
+        } finally {
+            NCardHand.setLookupEvaluatorEnabled(true);
+        }
+
+        assertFalse(result.isSuccessful());
+        assertEquals(1, result.getExitCode());
+        assertTrue(result.getFailure() instanceof ArrayIndexOutOfBoundsException, result.getFailure().toString());
+        assertTrue(ringBuffer.isAborted());
+    }
+
+    @Test
+    public void testInterruptedRunCountsWhatTheThreadsFlushed() throws InterruptedException {
+        final DealRingBuffer ringBuffer = new DealRingBuffer(4, 16, WaitStrategy.YIELD);
+        final StripedCounter permutations = new StripedCounter(2);
+        final ShowdownResultsMap[] results = { new ShowdownResultsMap(), new ShowdownResultsMap() };
+        final Runnable endless = () -> {
+            while (true) {
+                publishVillains(ringBuffer, 2, 52);
+            }
+        };
+        final Runnable[] producers = { endless };
+        final Runnable[] comparers = {
+            new ComparingThread(ringBuffer, permutations, 0, results[0]),
+            new ComparingThread(ringBuffer, permutations, 1, results[1])
+        };
+        final PermutationsResult[] result = new PermutationsResult[1];
+        final boolean[] interrupted = new boolean[1];
+        final Thread runner = new Thread(() -> {
+            result[0] = Main.run(ringBuffer, producers, comparers, permutations, results);
+            interrupted[0] = Thread.currentThread().isInterrupted();
+        });
+
+        runner.start();
+        while (permutations.sum() == 0) {
+            Thread.sleep(10);
+        }
+        runner.interrupt();
+        runner.join(60000);
+
+        assertFalse(runner.isAlive());
+        assertTrue(interrupted[0]);
+        assertFalse(result[0].isSuccessful());
+        assertTrue(result[0].getFailure() instanceof InterruptedException, result[0].getFailure().toString());
+        final HoleCards hero = HoleCards.valueOf(0, 1);
+        final ShowdownResultsMap showdowns = result[0].getShowdownResultsMap();
+        assertEquals(result[0].getDeals(), showdowns.getWins(hero) + showdowns.getLosses(hero) + showdowns.getTies(hero));
+        assertEquals(permutations.sum(), result[0].getDeals());
+    }
+
+    /** Publishes the deals of hero AH KH on {@link #BOARD} against every villain with a first card in a range. */
+    private static void publishVillains(DealRingBuffer ringBuffer, int fromCard, int toCard) {
+        long sequence = ringBuffer.claimWrite();
+        int size = 0;
+        for (int v0 = Math.max(2, fromCard); v0 < toCard; v0++) {
+            for (int v1 = v0 + 1; v1 < 52; v1++) {
+                if (isBoard(v0) || isBoard(v1)) {
+                    continue;
+                }
+                if (size == ringBuffer.getBatchSize()) {
+                    ringBuffer.publish(sequence, size);
+                    sequence = ringBuffer.claimWrite();
+                    size = 0;
+                }
+                final int[] deal = { 0, 1, BOARD[0], BOARD[1], BOARD[2], BOARD[3], BOARD[4], v0, v1 };
+                System.arraycopy(deal, 0, ringBuffer.getBatch(sequence), size++ * DealRingBuffer.DEAL_SIZE,
+                    DealRingBuffer.DEAL_SIZE);
+            }
+        }
+        ringBuffer.publish(sequence, size);
+    }
+
+    private static boolean isBoard(int card) {
+        return contains(BOARD, card);
+    }
+
+    private static boolean contains(int[] cards, int card) {
+        for (int c : cards) {
+            if (c == card) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,120 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.util.HoleCards;
+import com.andrewalia.util.PreflopMatrix;
+
+@Testable
+public class TestPreflopMatrix {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testClassIds() {
+        final boolean[] seen = new boolean[HoleCards.CLASS_COUNT];
+        int combos = 0;
+        for (int i = 0; i < 52; i++) {
+            for (int j = i + 1; j < 52; j++) {
+                final HoleCards holeCards = HoleCards.valueOf(i, j);
+                seen[holeCards.getId()] = true;
+                assertEquals(holeCards, HoleCards.fromId(holeCards.getId()));
+            }
+        }
+        for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+            assertTrue(seen[id], "no hole cards with id " + id);
+            assertEquals(id, HoleCards.fromId(id).getId());
+            combos += HoleCards.fromId(id).getComboCount();
+        }
+        assertEquals(1326, combos);
+        assertEquals(0, HoleCards.valueOf("AA").getId());
+        assertEquals(1, HoleCards.valueOf("AKs").getId());
+        assertEquals(13, HoleCards.valueOf("AKo").getId());
+        assertEquals(168, HoleCards.valueOf("22").getId());
+    }
+
+    @Test
+    public void testRowMatchesSingleMatchups() {
+        final HoleCards hero = HoleCards.valueOf("32o");
+        final long[] row = PreflopMatrix.computeRow(hero);
+        for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+            final long[] matchup = id < hero.getId() ? new long[3]
+                : PreflopMatrix.computeMatchup(hero, HoleCards.fromId(id));
+            assertArrayEquals(matchup, Arrays.copyOfRange(row, 3 * id, 3 * id + 3), HoleCards.fromId(id).toString());
+        }
+
+        final long[] mirror = PreflopMatrix.computeMatchup(HoleCards.valueOf("22"), hero);
+        assertArrayEquals(new long[] { row[3 * 168 + 1], row[3 * 168], row[3 * 168 + 2] }, mirror);
+    }
+
+    @Test
+    public void testKnownMatchups() {
+        // every pair of disjoint combinations over the 1,712,304 boards of the 48 cards left
+        final long[] aces = PreflopMatrix.computeMatchup(HoleCards.valueOf("AA"), HoleCards.valueOf("KK"));
+        assertEquals(36 * 1712304L, aces[0] + aces[1] + aces[2]);
+        assertEquals(0.8195, equity(aces), 0.0005);
+
+        final long[] racehorse = PreflopMatrix.computeMatchup(HoleCards.valueOf("AKo"), HoleCards.valueOf("22"));
+        assertEquals(72 * 1712304L, racehorse[0] + racehorse[1] + racehorse[2]);
+        assertEquals(0.4735, equity(racehorse), 0.0005);
+
+        final long[] sameClass = PreflopMatrix.computeMatchup(HoleCards.valueOf("AKs"), HoleCards.valueOf("AKs"));
+        assertEquals(12 * 1712304L, sameClass[0] + sameClass[1] + sameClass[2]);
+        assertEquals(sameClass[0], sameClass[1]);
+    }
+
+    @Test
+    public void testInvalidFileIsRejected() throws IOException {
+        final Path path = directory.resolve("preflop.dat");
+        Files.write(path, new byte[] { 'P', 'K', 'H', 'R', 0, 0, 0, 1 });
+        assertThrows(IOException.class, () -> PreflopMatrix.load(path));
+    }
+
+    @Test
+    public void testMissingFileCanBeGeneratedLater() throws IOException {
+        final Path path = directory.resolve("missing.dat");
+        final String configured = System.getProperty(PreflopMatrix.PATH_PROPERTY);
+        System.setProperty(PreflopMatrix.PATH_PROPERTY, path.toString());
+        try {
+            assertThrows(IllegalStateException.class, PreflopMatrix::getInstance);
+            assertThrows(IllegalStateException.class, PreflopMatrix::getInstance);
+
+            // an all-zero matrix, as the real one takes minutes to generate
+            final byte[] entries = new byte[3 * PreflopMatrix.MATCHUP_COUNT * 4];
+            final CRC32 crc = new CRC32();
+            crc.update(entries);
+            Files.write(path, ByteBuffer.allocate(20 + entries.length).putInt(0x504B504D).putInt(1)
+                .putInt(3 * PreflopMatrix.MATCHUP_COUNT).putLong(crc.getValue()).put(entries).array());
+
+            final PreflopMatrix matrix = PreflopMatrix.getInstance();
+            assertSame(matrix, PreflopMatrix.getInstance());
+            assertEquals(0, matrix.getWins(HoleCards.valueOf("AA"), HoleCards.valueOf("KK")));
+        } finally {
+            if (configured == null) {
+                System.clearProperty(PreflopMatrix.PATH_PROPERTY);
+            } else {
+                System.setProperty(PreflopMatrix.PATH_PROPERTY, configured);
+            }
+        }
+    }
+
+    private static double equity(long[] counts) {
+        return (counts[0] + counts[2] / 2.0) / (counts[0] + counts[1] + counts[2]);
+    }
+}
@@ -0,0 +1,102 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.util.BoardSampleMoments;
+import com.andrewalia.simulator.permutations.util.ProgressFormat;
+import com.andrewalia.simulator.permutations.util.ProgressSnapshot;
+import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+import com.andrewalia.util.HoleCards;
+
+@Testable
+public class TestProgressSnapshot {
+
+    @Test
+    public void testRateAndEta() {
+        final ShowdownResultsMap results = new ShowdownResultsMap();
+        // resumed at 1000 deals, 4000 more in 2 seconds, 5000 left at 2000 deals per second
+        final ProgressSnapshot snapshot = ProgressSnapshot.take(2000, 1000, 5000, 10000, results);
+        assertEquals(2000, snapshot.getDealsPerSecond(), 1e-9);
+        assertEquals(2500, snapshot.getEtaMillis());
+
+        final ProgressSnapshot started = ProgressSnapshot.take(0, 0, 0, 10000, results);
+        assertEquals(-1, started.getEtaMillis());
+        assertEquals("Permutations: 0/10000 (0.000%), 0.000 deals/s, ETA unknown\nTop hands: none yet",
+            started.format(ProgressFormat.TEXT));
+        assertEquals("{\"elapsedMillis\":0,\"deals\":0,\"totalDeals\":10000,\"fraction\":0.000000,"
+            + "\"dealsPerSecond\":0.0,\"etaMillis\":null,\"topHands\":[]}", started.format(ProgressFormat.JSON));
+        assertEquals(ProgressFormat.JSON, ProgressFormat.fromName("JSON"));
+        assertThrows(IllegalArgumentException.class, () -> ProgressFormat.fromName("xml"));
+    }
+
+    @Test
+    public void testTopHandsMatchFullSort() {
+        final Random random = new Random(37);
+        final ShowdownResultsMap results = new ShowdownResultsMap();
+        for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+            // every few classes has too few showdowns to be listed
+            final long showdowns = id % 7 == 0 ? 100 : 1000 + random.nextInt(1000);
+            final long wins = random.nextInt((int) showdowns + 1);
+            results.add(HoleCards.fromId(id), wins, showdowns - wins, 0);
+        }
+        final long[] counts = results.snapshotCounts();
+        final HoleCards[] expected = IntStream.range(0, HoleCards.CLASS_COUNT)
+            .filter(id -> id % 7 != 0)
+            .mapToObj(HoleCards::fromId)
+            .sorted(Comparator.comparingDouble((HoleCards h) -> -(double) counts[3 * h.getId()]
+                / (counts[3 * h.getId()] + counts[3 * h.getId() + 1])))
+            .limit(ProgressSnapshot.TOP_HAND_COUNT)
+            .toArray(HoleCards[]::new);
+
+        final ProgressSnapshot snapshot = ProgressSnapshot.take(10000, 0, 1, 10, results);
+        assertArrayEquals(expected, snapshot.getTopHands());
+
+        final String json = snapshot.format(ProgressFormat.JSON);
+        assertTrue(json.startsWith("{\"elapsedMillis\":10000,\"deals\":1,\"totalDeals\":10,\"fraction\":0.100000,"
+            + "\"dealsPerSecond\":0.1,\"etaMillis\":90000,\"topHands\":[{\"hand\":\"" + expected[0] + "\",\"wins\":"
+            + counts[3 * expected[0].getId()] + ","), json);
+        assertEquals(-1, json.indexOf('\n'));
+        final String text = snapshot.format(ProgressFormat.TEXT);
+        assertTrue(text.startsWith("Permutations: 1/10 (10.000%), 0.1000 deals/s, ETA 01m 30s\nTop hands:\n\t"
+            + expected[0]), text);
+        assertEquals(2 + ProgressSnapshot.TOP_HAND_COUNT, text.split("\n").length);
+    }
+
+    @Test
+    public void testSampledBoardsGiveMargins() {
+        final HoleCards aces = HoleCards.valueOf("AA");
+        final long[] boardWins = { 800, 850, 900, 950 };
+        final ShowdownResultsMap results = new ShowdownResultsMap();
+        final BoardSampleMoments moments = new BoardSampleMoments();
+        for (long wins : boardWins) {
+            results.add(aces, wins, 990 - wins, 0);
+            moments.add(aces.getId(), wins);
+        }
+        // sample variance of 800..950 by 50 is 50^2 * 5/3, over 4 boards out of 6 x C(50, 5)
+        final double population = 6.0 * BoardSampleMoments.BOARDS_PER_HERO;
+        final double standardError = Math.sqrt((1 - 4 / population) * 2500 * 5 / 3 / 4) / 990;
+
+        final ProgressSnapshot snapshot = ProgressSnapshot.take(10000, 0, 3960, 39600, results,
+            BoardSampleMoments.reduce(moments, new BoardSampleMoments()));
+        assertEquals(1.96 * standardError, snapshot.getWinMargin(aces), 1e-12);
+        assertTrue(snapshot.format(ProgressFormat.TEXT).contains(String.format(Locale.ROOT, "WIN%% %.2f +/- %.2f",
+            100 * 3500.0 / 3960, 100 * 1.96 * standardError)));
+        assertTrue(snapshot.format(ProgressFormat.JSON).contains(",\"winMargin\":"));
+
+        final ProgressSnapshot unsampled = ProgressSnapshot.take(10000, 0, 3960, 39600, results);
+        assertTrue(Double.isNaN(unsampled.getWinMargin(aces)));
+        assertFalse(unsampled.format(ProgressFormat.TEXT).contains("+/-"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.math3.util.CombinatoricsUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.util.RevolvingDoorCombinations;
+
+@Testable
+public class TestRevolvingDoorCombinations {
+
+    @Test
+    public void testEverySubsetOnceWithOneSwapPerStep() {
+        for (int n = 1; n <= 12; n++) {
+            for (int k = 1; k <= n; k++) {
+                assertRevolvingDoor(n, k);
+            }
+        }
+        assertRevolvingDoor(50, 5);
+        assertRevolvingDoor(64, 2);
+    }
+
+    @Test
+    public void testInvalidSizesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RevolvingDoorCombinations(65, 5));
+        assertThrows(IllegalArgumentException.class, () -> new RevolvingDoorCombinations(5, 0));
+        assertThrows(IllegalArgumentException.class, () -> new RevolvingDoorCombinations(5, 6));
+    }
+
+    private static void assertRevolvingDoor(int n, int k) {
+        final RevolvingDoorCombinations combinations = new RevolvingDoorCombinations(n, k);
+        final Set<Long> seen = new HashSet<>();
+        long previous = 0;
+        do {
+            final int[] combination = combinations.getCombination();
+            long mask = 0;
+            for (int i = 0; i < k; i++) {
+                assertTrue(i == 0 || combination[i - 1] < combination[i], "subset in ascending order");
+                assertTrue(combination[i] >= 0 && combination[i] < n);
+                mask |= 1L << combination[i];
+            }
+            assertEquals(mask, combinations.getMask());
+            if (!seen.isEmpty()) {
+                assertEquals(1L << combinations.getRemoved(), previous & ~mask, "one element left");
+                assertEquals(1L << combinations.getAdded(), mask & ~previous, "one element entered");
+            }
+            assertTrue(seen.add(mask), "subset visited twice");
+            previous = mask;
+        } while (combinations.next());
+
+        assertEquals(CombinatoricsUtils.binomialCoefficient(n, k), seen.size(), n + " choose " + k);
+        assertFalse(combinations.next());
+        assertEquals(-1, combinations.getRemoved());
+    }
+}
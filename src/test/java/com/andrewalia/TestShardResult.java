@@ -0,0 +1,141 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.thread.DealRangeTask;
+import com.andrewalia.simulator.permutations.util.Checkpoint;
+import com.andrewalia.simulator.permutations.util.ShardResult;
+import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+import com.andrewalia.util.HoleCards;
+
+@Testable
+public class TestShardResult {
+
+    private static final int LEAF_COUNT = 1000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testShardsCoverEveryLeafOnce() {
+        final int leafCount = DealRangeTask.getLeafCount(true);
+        int covered = 0;
+        long deals = 0;
+        for (int shard = 1; shard <= 64; shard++) {
+            final int start = ShardResult.getStart(leafCount, shard, 64);
+            final int end = ShardResult.getStart(leafCount, shard + 1, 64);
+            assertEquals(covered, start);
+            assertTrue(end - start == leafCount / 64 || end - start == leafCount / 64 + 1);
+            deals += DealRangeTask.getDealCount(true, start, end);
+            covered = end;
+        }
+        assertEquals(leafCount, covered);
+        assertEquals(DealRangeTask.DEAL_COUNT, deals);
+        assertEquals(DealRangeTask.DEAL_COUNT, DealRangeTask.getDealCount(false, 0, DealRangeTask.getLeafCount(false)));
+        assertThrows(IllegalArgumentException.class, () -> ShardResult.getStart(leafCount, 0, 64));
+    }
+
+    @Test
+    public void testMergeMatchesSingleShard() throws IOException {
+        final Random random = new Random(41);
+        final List<ShardResult> shards = new ArrayList<>();
+        final ShowdownResultsMap expected = new ShowdownResultsMap();
+        long deals = 0;
+        // shards 1/2, 3/4 and 4/4 of the same run together cover every leaf once
+        for (int[] shard : new int[][] { { 1, 2 }, { 3, 4 }, { 4, 4 } }) {
+            final ShardResult result = randomShard(random, shard[0], shard[1]);
+            shards.add(result);
+            expected.merge(result.getShowdownResultsMap());
+            deals += result.getDeals();
+        }
+        Collections.shuffle(shards, random);
+
+        final Path mergedPath = directory.resolve("merged.dat");
+        ShardResult.merge(shards).write(mergedPath);
+        final ShardResult merged = ShardResult.read(mergedPath);
+        assertEquals("1/1 [0, " + LEAF_COUNT + ")", merged.describe());
+        assertEquals(deals, merged.getDeals());
+        assertEquals(expected, merged.getShowdownResultsMap());
+
+        final Path singlePath = directory.resolve("single.dat");
+        new ShardResult(true, LEAF_COUNT, 1, 1, 0, LEAF_COUNT, deals, expected).write(singlePath);
+        assertArrayEquals(Files.readAllBytes(singlePath), Files.readAllBytes(mergedPath));
+    }
+
+    @Test
+    public void testIncompleteOrOverlappingShardsAreRejected() {
+        final Random random = new Random(43);
+        final ShardResult first = randomShard(random, 1, 2);
+        final ShardResult second = randomShard(random, 2, 2);
+        final ShardResult quarter = randomShard(random, 1, 4);
+        final ShardResult otherRun = new ShardResult(false, LEAF_COUNT, 2, 2, LEAF_COUNT / 2, LEAF_COUNT, 0,
+            new ShowdownResultsMap());
+
+        assertThrows(IllegalArgumentException.class, () -> ShardResult.merge(Arrays.asList(first)));
+        assertThrows(IllegalArgumentException.class, () -> ShardResult.merge(Arrays.asList(second)));
+        assertThrows(IllegalArgumentException.class, () -> ShardResult.merge(Arrays.asList(first, second, quarter)));
+        assertThrows(IllegalArgumentException.class, () -> ShardResult.merge(Arrays.asList(first, second, second)));
+        assertThrows(IllegalArgumentException.class, () -> ShardResult.merge(Arrays.asList(first, otherRun)));
+        assertThrows(IllegalArgumentException.class, () -> ShardResult.merge(new ArrayList<>()));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ShardResult(true, LEAF_COUNT, 1, 2, 0, LEAF_COUNT, 0, new ShowdownResultsMap()));
+    }
+
+    @Test
+    public void testResultOfCheckpoint() {
+        final Checkpoint checkpoint = new Checkpoint(true, LEAF_COUNT);
+        for (int leaf = 250; leaf < 499; leaf++) {
+            checkpoint.complete(leaf, HoleCards.valueOf("AKs"), 3, 2, 1, 6);
+        }
+        assertThrows(IllegalStateException.class, () -> ShardResult.of(checkpoint, 2, 4));
+        checkpoint.complete(499, HoleCards.valueOf("AKs"), 3, 2, 1, 6);
+
+        final ShardResult result = ShardResult.of(checkpoint, 2, 4);
+        assertEquals("2/4 [250, 500)", result.describe());
+        assertEquals(250 * 6, result.getDeals());
+        assertEquals(250 * 3, result.getShowdownResultsMap().getWins(HoleCards.valueOf("AKs")));
+
+        checkpoint.complete(0, HoleCards.valueOf("AKs"), 3, 2, 1, 6);
+        assertThrows(IllegalStateException.class, () -> ShardResult.of(checkpoint, 2, 4));
+    }
+
+    @Test
+    public void testCorruptResultIsRejected() throws IOException {
+        final Path path = directory.resolve("shard.dat");
+        randomShard(new Random(47), 3, 7).write(path);
+        final byte[] bytes = Files.readAllBytes(path);
+        for (int i = 0; i < bytes.length; i++) {
+            final byte[] corrupt = bytes.clone();
+            corrupt[i] ^= 0x01;
+            Files.write(path, corrupt);
+            assertThrows(IOException.class, () -> ShardResult.read(path), "flipped a bit of byte " + i);
+        }
+    }
+
+    private static ShardResult randomShard(Random random, int shardIndex, int shardCount) {
+        final ShowdownResultsMap results = new ShowdownResultsMap();
+        for (int i = 0; i < 20; i++) {
+            results.add(HoleCards.fromId(random.nextInt(HoleCards.CLASS_COUNT)), random.nextInt(1 << 20),
+                random.nextInt(1 << 20), random.nextInt(1 << 10));
+        }
+        return new ShardResult(true, LEAF_COUNT, shardIndex, shardCount,
+            ShardResult.getStart(LEAF_COUNT, shardIndex, shardCount),
+            ShardResult.getStart(LEAF_COUNT, shardIndex + 1, shardCount), random.nextInt(1 << 30), results);
+    }
+}
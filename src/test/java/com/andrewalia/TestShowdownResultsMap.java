@@ -0,0 +1,132 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.util.ShowdownResultsMap;
+import com.andrewalia.util.HoleCards;
+
+@Testable
+public class TestShowdownResultsMap {
+
+    @Test
+    public void testMergeDrainAndSnapshot() {
+        final Random random = new Random(29);
+        final ShowdownResultsMap local = new ShowdownResultsMap();
+        final long[] expected = new long[3 * HoleCards.CLASS_COUNT];
+        for (int i = 0; i < 10000; i++) {
+            final HoleCards holeCards = HoleCards.valueOf(random.nextInt(26), 26 + random.nextInt(26));
+            final long wins = random.nextInt(1000);
+            final long losses = random.nextInt(1000);
+            final long ties = random.nextInt(10);
+            local.add(holeCards, wins, losses, ties);
+            expected[3 * holeCards.getId()] += wins;
+            expected[3 * holeCards.getId() + 1] += losses;
+            expected[3 * holeCards.getId() + 2] += ties;
+        }
+        assertArrayEquals(expected, local.snapshotCounts());
+        final HoleCards aces = HoleCards.valueOf("AA");
+        assertEquals(expected[3 * aces.getId()], local.getWins(aces));
+        assertEquals(expected[3 * aces.getId() + 1], local.getLosses(aces));
+        assertEquals(expected[3 * aces.getId() + 2], local.getTies(aces));
+        final ShowdownResultsMap batched = new ShowdownResultsMap();
+        batched.add(expected);
+        assertEquals(local, batched);
+
+        final ShowdownResultsMap snapshot = local.snapshot();
+        final ShowdownResultsMap merged = new ShowdownResultsMap();
+        merged.merge(local);
+        merged.merge(local);
+        assertEquals(local, snapshot);
+
+        final ShowdownResultsMap global = new ShowdownResultsMap();
+        local.drainTo(global);
+        local.add(HoleCards.valueOf("AA"), 1, 0, 0);
+        assertEquals(1, local.size());
+        assertEquals(snapshot, global);
+        assertNotEquals(snapshot, local);
+
+        snapshot.drainTo(global);
+        assertTrue(snapshot.isEmpty());
+        assertEquals(merged, global);
+    }
+
+    @Test
+    public void testReduce() {
+        final Random random = new Random(31);
+        final ShowdownResultsMap[] maps = new ShowdownResultsMap[7];
+        final ShowdownResultsMap expected = new ShowdownResultsMap();
+        for (int i = 0; i < maps.length; i++) {
+            maps[i] = new ShowdownResultsMap();
+            for (int j = 0; j < 100; j++) {
+                final HoleCards holeCards = HoleCards.fromId(random.nextInt(HoleCards.CLASS_COUNT));
+                maps[i].add(holeCards, random.nextInt(1000), random.nextInt(1000), random.nextInt(10));
+            }
+            expected.merge(maps[i]);
+        }
+        final ShowdownResultsMap first = maps[0].snapshot();
+
+        assertEquals(expected, ShowdownResultsMap.reduce(maps));
+        assertEquals(first, maps[0]);
+        assertEquals(first, ShowdownResultsMap.reduce(maps[0]));
+        assertTrue(ShowdownResultsMap.reduce().isEmpty());
+    }
+
+    @Test
+    public void testSnapshotsAreConsistentWhileWriting() throws InterruptedException {
+        // the writer always adds as many wins as losses, so any torn snapshot would show a difference
+        final ShowdownResultsMap results = new ShowdownResultsMap();
+        final AtomicBoolean done = new AtomicBoolean();
+        final Thread writer = new Thread(() -> {
+            for (int i = 0; !done.get(); i++) {
+                results.add(i % HoleCards.CLASS_COUNT, i, i, 0);
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 20000; i++) {
+                final long[] counts = results.snapshotCounts();
+                long wins = 0;
+                long losses = 0;
+                for (int id = 0; id < HoleCards.CLASS_COUNT; id++) {
+                    wins += counts[3 * id];
+                    losses += counts[3 * id + 1];
+                }
+                assertEquals(wins, losses);
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+    }
+
+    @Test
+    public void testIterationAndDescription() {
+        final ShowdownResultsMap results = new ShowdownResultsMap();
+        assertEquals("No results", results.toString());
+        results.add(HoleCards.valueOf("72o"), 30, 60, 10);
+        results.add(HoleCards.valueOf("AA"), 850, 140, 10);
+        results.add(HoleCards.valueOf("KQs"), 60, 39, 1);
+        results.add(HoleCards.valueOf("AA"), 1, 0, 0);
+
+        final List<String> visited = new ArrayList<>();
+        results.forEach((holeCards, wins, losses, ties) -> visited.add(holeCards + " " + wins + " " + losses + " " + ties));
+        assertEquals(3, results.size());
+        assertEquals("[AA 851 140 10, KQs 60 39 1, 72o 30 60 10]", visited.toString());
+
+        assertEquals("AA \n\tWIN%\t85.01\n\tWIN#\t851\n\tLOSS#\t140\n\tTIE#\t10\n"
+            + "KQs\n\tWIN%\t60.00\n\tWIN#\t60\n\tLOSS#\t39\n\tTIE#\t1\n"
+            + "72o\n\tWIN%\t30.00\n\tWIN#\t30\n\tLOSS#\t60\n\tTIE#\t10", results.toString());
+        assertEquals("AA \n\tWIN%\t85.01\n\tWIN#\t851\n\tLOSS#\t140\n\tTIE#\t10", results.toString(1));
+    }
+}
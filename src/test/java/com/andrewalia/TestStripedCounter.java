@@ -0,0 +1,40 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.simulator.permutations.util.StripedCounter;
+
+@Testable
+public class TestStripedCounter {
+
+    @Test
+    public void testConcurrentAddsAreExact() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter(3);
+        final Thread[] threads = new Thread[5];
+        for (int i = 0; i < threads.length; i++) {
+            // five threads over three stripes, so two stripes are shared
+            final int stripe = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 200000; j++) {
+                    counter.add(stripe, stripe + 1);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(200000L * (1 + 2 + 3 + 4 + 5), counter.sum());
+        assertEquals(Long.toString(counter.sum()), counter.toString());
+    }
+
+    @Test
+    public void testInvalidStripeCountIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new StripedCounter(0));
+        assertEquals(0, new StripedCounter(1).sum());
+    }
+}
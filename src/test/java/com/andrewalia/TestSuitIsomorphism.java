@@ -0,0 +1,148 @@
+package com.andrewalia;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.commons.annotation.Testable;
+
+import com.andrewalia.util.CardSet;
+import com.andrewalia.util.HandEvaluator;
+import com.andrewalia.util.SuitIsomorphism;
+
+@Testable
+public class TestSuitIsomorphism {
+
+    /** Aces to jacks of every suit, a deck that suit permutations map onto itself. */
+    private static final int[] CARDS = new int[16];
+
+    static {
+        for (int suit = 0; suit < 4; suit++) {
+            for (int rank = 0; rank < 4; rank++) {
+                CARDS[suit * 4 + rank] = suit * 13 + rank;
+            }
+        }
+    }
+
+    @Test
+    public void testHeroClasses() {
+        int classes = 0;
+        int heroes = 0;
+        for (int i = 0; i < 52; i++) {
+            for (int j = i + 1; j < 52; j++) {
+                final long hero = CardSet.bit(i) | CardSet.bit(j);
+                if (SuitIsomorphism.ALL.isCanonical(hero)) {
+                    classes++;
+                    heroes += SuitIsomorphism.ALL.orbitSize(hero);
+                }
+            }
+        }
+        assertEquals(169, classes);
+        assertEquals(1326, heroes);
+    }
+
+    @Test
+    public void testCanonicalDealsGiveExhaustiveTotals() {
+        final long[] exhaustive = new long[3];
+        for (long hero : subsets(2, 0))
+            for (long board : subsets(3, hero))
+                for (long villain : subsets(2, hero | board)) {
+                    exhaustive[showdown(hero, board, villain)]++;
+                }
+
+        final long[] weighted = new long[3];
+        long evaluated = 0;
+        for (long hero : subsets(2, 0)) {
+            if (!SuitIsomorphism.ALL.isCanonical(hero)) {
+                continue;
+            }
+            final SuitIsomorphism heroStabilizer = SuitIsomorphism.ALL.stabilizer(hero);
+            for (long board : subsets(3, hero)) {
+                if (!heroStabilizer.isCanonical(board)) {
+                    continue;
+                }
+                final SuitIsomorphism boardStabilizer = heroStabilizer.stabilizer(board);
+                for (long villain : subsets(2, hero | board)) {
+                    if (!boardStabilizer.isCanonical(villain)) {
+                        continue;
+                    }
+                    final long weight = SuitIsomorphism.ALL.orbitSize(hero) * heroStabilizer.orbitSize(board)
+                        * boardStabilizer.orbitSize(villain);
+                    assertEquals(SuitIsomorphism.ALL.orbitSize(hero, board, villain), weight);
+                    weighted[showdown(hero, board, villain)] += weight;
+                    evaluated++;
+                }
+            }
+        }
+
+        assertArrayEquals(exhaustive, weighted);
+        final long total = exhaustive[0] + exhaustive[1] + exhaustive[2];
+        assertTrue(total > 15 * evaluated, total + " deals, " + evaluated + " evaluated");
+    }
+
+    @Test
+    public void testTupleCanonicalFormIsSharedByTheOrbit() {
+        final Random random = new Random(17);
+        final List<long[]> permutations = new ArrayList<>();
+        for (int a = 0; a < 4; a++)
+            for (int b = 0; b < 4; b++)
+                for (int c = 0; c < 4; c++)
+                    for (int d = 0; d < 4; d++)
+                        if (a != b && a != c && a != d && b != c && b != d && c != d)
+                            permutations.add(new long[] { a, b, c, d });
+        assertEquals(24, permutations.size());
+
+        for (int i = 0; i < 1000; i++) {
+            final long hero = randomCards(random, 2, 0);
+            final long board = randomCards(random, 5, hero);
+            final long villain = randomCards(random, 2, hero | board);
+            final long[] canonical = SuitIsomorphism.ALL.canonicalize(hero, board, villain);
+            for (long[] permutation : permutations) {
+                final int[] p = { (int) permutation[0], (int) permutation[1], (int) permutation[2], (int) permutation[3] };
+                assertArrayEquals(canonical, SuitIsomorphism.ALL.canonicalize(
+                    SuitIsomorphism.permute(hero, p), SuitIsomorphism.permute(board, p), SuitIsomorphism.permute(villain, p)));
+            }
+        }
+    }
+
+    /** 0 if the hero wins, 1 if the villain wins, 2 on a tie, with the best five of hole cards and three board cards. */
+    private static int showdown(long hero, long board, long villain) {
+        final int heroStrength = HandEvaluator.evaluate(CardSet.ofMask(hero | board));
+        final int villainStrength = HandEvaluator.evaluate(CardSet.ofMask(villain | board));
+        return heroStrength > villainStrength ? 0 : heroStrength < villainStrength ? 1 : 2;
+    }
+
+    private static List<Long> subsets(int size, long dead) {
+        final List<Long> subsets = new ArrayList<>();
+        addSubsets(subsets, size, dead, 0, 0L);
+        return subsets;
+    }
+
+    private static void addSubsets(List<Long> subsets, int size, long dead, int from, long mask) {
+        if (size == 0) {
+            subsets.add(mask);
+            return;
+        }
+        for (int i = from; i < CARDS.length; i++) {
+            if ((dead & CardSet.bit(CARDS[i])) == 0) {
+                addSubsets(subsets, size - 1, dead, i + 1, mask | CardSet.bit(CARDS[i]));
+            }
+        }
+    }
+
+    private static long randomCards(Random random, int size, long dead) {
+        long mask = 0;
+        while (Long.bitCount(mask) < size) {
+            final long bit = CardSet.bit(random.nextInt(52));
+            if ((dead & bit) == 0) {
+                mask |= bit;
+            }
+        }
+        return mask;
+    }
+}